@@ -14,14 +14,21 @@ package com.digi.xbee.api;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.digi.xbee.api.connection.IConnectionInterface;
 import com.digi.xbee.api.connection.DataReader;
+import com.digi.xbee.api.connection.DataWriter;
 import com.digi.xbee.api.connection.serial.SerialPortParameters;
 import com.digi.xbee.api.exceptions.ATCommandException;
 import com.digi.xbee.api.exceptions.InterfaceNotOpenException;
@@ -42,6 +49,7 @@ import com.digi.xbee.api.models.ATCommand;
 import com.digi.xbee.api.models.ATCommandResponse;
 import com.digi.xbee.api.models.ATCommandStatus;
 import com.digi.xbee.api.models.AssociationIndicationStatus;
+import com.digi.xbee.api.models.FrameIDAllocator;
 import com.digi.xbee.api.models.HardwareVersion;
 import com.digi.xbee.api.models.PowerLevel;
 import com.digi.xbee.api.models.RemoteATCommandOptions;
@@ -50,6 +58,7 @@ import com.digi.xbee.api.models.XBee64BitAddress;
 import com.digi.xbee.api.models.OperatingMode;
 import com.digi.xbee.api.models.XBeeProtocol;
 import com.digi.xbee.api.models.XBeeTransmitStatus;
+import com.digi.xbee.api.models.WritePriority;
 import com.digi.xbee.api.packet.XBeeAPIPacket;
 import com.digi.xbee.api.packet.APIFrameType;
 import com.digi.xbee.api.packet.XBeePacket;
@@ -116,6 +125,8 @@ public abstract class AbstractXBeeDevice {
 	
 	protected DataReader dataReader = null;
 	
+	protected DataWriter dataWriter = null;
+	
 	protected XBeeProtocol xbeeProtocol = XBeeProtocol.UNKNOWN;
 	
 	protected OperatingMode operatingMode = OperatingMode.UNKNOWN;
@@ -123,7 +134,8 @@ public abstract class AbstractXBeeDevice {
 	protected XBee16BitAddress xbee16BitAddress = XBee16BitAddress.UNKNOWN_ADDRESS;
 	protected XBee64BitAddress xbee64BitAddress = XBee64BitAddress.UNKNOWN_ADDRESS;
 	
-	protected int currentFrameID = 0xFF;
+	private final FrameIDAllocator frameIDAllocator = new FrameIDAllocator();
+	
 	protected int receiveTimeout = DEFAULT_RECEIVE_TIMETOUT;
 	
 	protected AbstractXBeeDevice localXBeeDevice;
@@ -135,12 +147,18 @@ public abstract class AbstractXBeeDevice {
 	
 	private HardwareVersion hardwareVersion;
 	
-	private Object ioLock = new Object();
-	
-	private boolean ioPacketReceived = false;
 	private boolean applyConfigurationChanges = true;
 	
-	private byte[] ioPacketPayload;
+	private final ArrayList<Raw802IOPacketRequest> raw802IOPacketRequests = new ArrayList<Raw802IOPacketRequest>();
+	
+	private final Object ioSampleRequestLock = new Object();
+	
+	private IOSampleRequest ioSampleRequest;
+	
+	private IOSample lastIOSample;
+	
+	private long lastIOSampleTime;
+	private long ioSampleCacheTime = 0;
 	
 	/**
 	 * Class constructor. Instantiates a new {@code XBeeDevice} object in the 
@@ -1101,41 +1119,69 @@ public abstract class AbstractXBeeDevice {
 	/**
 	 * Writes the given XBee packet in the connection interface of this device.
 	 * 
+	 * <p>If the data writer of the local device is running, the packet is 
+	 * written by it with the priority class of the packet, so this method 
+	 * blocks until all the packets of higher priority are written.</p>
+	 * 
 	 * @param packet XBee packet to be written.
 	 * 
 	 * @throws IOException if an I/O error occurs while writing the XBee packet 
 	 *                     in the connection interface.
 	 * 
+	 * @see com.digi.xbee.api.connection.DataWriter
+	 * @see com.digi.xbee.api.models.WritePriority
 	 * @see com.digi.xbee.api.packet.XBeePacket
 	 */
 	private void writePacket(XBeePacket packet) throws IOException {
 		logger.debug(toString() + "Sending XBee packet: \n{}", packet.toPrettyString());
-		// Write bytes with the required escaping mode.
+		// Generate bytes with the required escaping mode.
+		byte[] data;
 		switch (operatingMode) {
 		case API:
 		default:
-			connectionInterface.writeData(packet.generateByteArray());
+			data = packet.generateByteArray();
 			break;
 		case API_ESCAPE:
-			connectionInterface.writeData(packet.generateByteArrayEscaped());
+			data = packet.generateByteArrayEscaped();
 			break;
 		}
+		// Remote devices write through the data writer of the local device.
+		DataWriter writer = isRemote() ? localXBeeDevice.dataWriter : dataWriter;
+		if (writer != null && writer.isRunning())
+			writer.writeData(data, WritePriority.get(packet));
+		else
+			connectionInterface.writeData(data);
 	}
 	
 	/**
 	 * Returns the next Frame ID of this XBee device.
 	 * 
+	 * <p>Frame IDs are allocated by the frame ID allocator of the local 
+	 * device, so they are never shared by two frames in flight. If all the 
+	 * frame IDs are in flight, this method blocks until one is released.</p>
+	 * 
 	 * @return The next Frame ID.
+	 * 
+	 * @see #getFrameIDAllocator()
 	 */
 	protected int getNextFrameID() {
+		return getFrameIDAllocator().allocate();
+	}
+	
+	/**
+	 * Returns the allocator of the frame IDs used by the frames sent through 
+	 * the local XBee device.
+	 * 
+	 * <p>Remote devices return the allocator of their local device.</p>
+	 * 
+	 * @return The frame ID allocator.
+	 * 
+	 * @see com.digi.xbee.api.models.FrameIDAllocator
+	 */
+	public FrameIDAllocator getFrameIDAllocator() {
 		if (isRemote())
-			return localXBeeDevice.getNextFrameID();
-		if (currentFrameID == 0xff) {
-			// Reset counter.
-			currentFrameID = 1;
-		} else
-			currentFrameID ++;
-		return currentFrameID;
+			return localXBeeDevice.getFrameIDAllocator();
+		return frameIDAllocator;
 	}
 	
 	/**
@@ -1294,6 +1340,219 @@ public abstract class AbstractXBeeDevice {
 		setParameter(ioLine.getConfigurationATCommand(), new byte[]{(byte)ioValue.getID()});
 	}
 	
+	/**
+	 * Sets the configuration of the given IO lines of this XBee device.
+	 * 
+	 * <p>The configuration commands of all the lines are sent one after 
+	 * another without waiting for the previous answers and without applying 
+	 * the changes. Once every line has been answered, changes are applied 
+	 * only once if the 'apply configuration changes' option is enabled.</p>
+	 * 
+	 * @param ioConfiguration Map with the IO mode to set to each IO line.
+	 * 
+	 * @return Map with the status of the configuration command of each IO 
+	 *         line, {@code null} for the lines without answer.
+	 * 
+	 * @throws InterfaceNotOpenException if this device connection is not open.
+	 * @throws NullPointerException if {@code ioConfiguration == null} or 
+	 *                              if any IO line or IO mode is {@code null}.
+	 * @throws TimeoutException if no IO line is answered.
+	 * @throws XBeeException if there is any other XBee related exception.
+	 * 
+	 * @see #setIOConfiguration(IOLine, IOMode)
+	 * @see #isApplyConfigurationChangesEnabled()
+	 * @see com.digi.xbee.api.io.IOLine
+	 * @see com.digi.xbee.api.io.IOMode
+	 * @see com.digi.xbee.api.models.ATCommandStatus
+	 */
+	public Map<IOLine, ATCommandStatus> setIOConfiguration(Map<IOLine, IOMode> ioConfiguration) 
+			throws TimeoutException, XBeeException {
+		if (ioConfiguration == null)
+			throw new NullPointerException("IO configuration cannot be null.");
+		
+		Map<IOLine, byte[]> values = new LinkedHashMap<IOLine, byte[]>();
+		for (Map.Entry<IOLine, IOMode> entry:ioConfiguration.entrySet()) {
+			if (entry.getKey() == null)
+				throw new NullPointerException("IO line cannot be null.");
+			if (entry.getValue() == null)
+				throw new NullPointerException("IO mode cannot be null.");
+			values.put(entry.getKey(), new byte[]{(byte)entry.getValue().getID()});
+		}
+		
+		return setIOLineValues(values);
+	}
+	
+	/**
+	 * Sets the digital values (high or low) to the given IO lines of this 
+	 * XBee device.
+	 * 
+	 * <p>The commands of all the lines are sent one after another without 
+	 * waiting for the previous answers and without applying the changes. Once 
+	 * every line has been answered, changes are applied only once if the 
+	 * 'apply configuration changes' option is enabled.</p>
+	 * 
+	 * @param ioValues Map with the digital value to set to each IO line.
+	 * 
+	 * @return Map with the status of the command of each IO line, 
+	 *         {@code null} for the lines without answer.
+	 * 
+	 * @throws InterfaceNotOpenException if this device connection is not open.
+	 * @throws NullPointerException if {@code ioValues == null} or 
+	 *                              if any IO line or IO value is {@code null}.
+	 * @throws TimeoutException if no IO line is answered.
+	 * @throws XBeeException if there is any other XBee related exception.
+	 * 
+	 * @see #setDIOValue(IOLine, IOValue)
+	 * @see #isApplyConfigurationChangesEnabled()
+	 * @see com.digi.xbee.api.io.IOLine
+	 * @see com.digi.xbee.api.io.IOValue
+	 * @see com.digi.xbee.api.models.ATCommandStatus
+	 */
+	public Map<IOLine, ATCommandStatus> setDIOValues(Map<IOLine, IOValue> ioValues) 
+			throws TimeoutException, XBeeException {
+		if (ioValues == null)
+			throw new NullPointerException("IO values cannot be null.");
+		
+		Map<IOLine, byte[]> values = new LinkedHashMap<IOLine, byte[]>();
+		for (Map.Entry<IOLine, IOValue> entry:ioValues.entrySet()) {
+			if (entry.getKey() == null)
+				throw new NullPointerException("IO line cannot be null.");
+			if (entry.getValue() == null)
+				throw new NullPointerException("IO value cannot be null.");
+			values.put(entry.getKey(), new byte[]{(byte)entry.getValue().getID()});
+		}
+		
+		return setIOLineValues(values);
+	}
+	
+	/**
+	 * Sends the configuration command of every given IO line with the 
+	 * corresponding value, pipelining the commands, and applies the changes 
+	 * once at the end if the 'apply configuration changes' option is 
+	 * enabled.
+	 * 
+	 * @param values Map with the value of the configuration command of each 
+	 *               IO line.
+	 * 
+	 * @return Map with the status of the command of each IO line, 
+	 *         {@code null} for the lines without answer.
+	 * 
+	 * @throws InterfaceNotOpenException if this device connection is not open.
+	 * @throws TimeoutException if no IO line is answered.
+	 * @throws XBeeException if there is any other XBee related exception.
+	 */
+	private Map<IOLine, ATCommandStatus> setIOLineValues(Map<IOLine, byte[]> values) 
+			throws TimeoutException, XBeeException {
+		// Check connection.
+		if (!connectionInterface.isOpen())
+			throw new InterfaceNotOpenException();
+		
+		OperatingMode operatingMode = getOperatingMode();
+		if (operatingMode != OperatingMode.API && operatingMode != OperatingMode.API_ESCAPE)
+			throw new InvalidOperatingModeException(operatingMode);
+		
+		final Map<IOLine, ATCommandStatus> results = new LinkedHashMap<IOLine, ATCommandStatus>();
+		if (values.isEmpty())
+			return results;
+		
+		// Queue the commands, the changes are applied at the end.
+		final Map<Integer, IOLine> pendingLines = new HashMap<Integer, IOLine>();
+		List<XBeePacket> packets = new ArrayList<XBeePacket>();
+		for (Map.Entry<IOLine, byte[]> entry:values.entrySet()) {
+			int frameID = getNextFrameID();
+			String command = entry.getKey().getConfigurationATCommand();
+			if (isRemote()) {
+				XBee16BitAddress remote16BitAddress = get16BitAddress();
+				if (remote16BitAddress == null)
+					remote16BitAddress = XBee16BitAddress.UNKNOWN_ADDRESS;
+				packets.add(new RemoteATCommandPacket(frameID, get64BitAddress(), remote16BitAddress, 
+						RemoteATCommandOptions.OPTION_NONE, command, entry.getValue()));
+			} else
+				packets.add(new ATCommandQueuePacket(frameID, command, entry.getValue()));
+			pendingLines.put(frameID, entry.getKey());
+			results.put(entry.getKey(), null);
+		}
+		
+		IPacketReceiveListener packetReceiveListener = new IPacketReceiveListener() {
+			/*
+			 * (non-Javadoc)
+			 * @see com.digi.xbee.api.listeners.IPacketReceiveListener#packetReceived(com.digi.xbee.api.packet.XBeePacket)
+			 */
+			@Override
+			public void packetReceived(XBeePacket receivedPacket) {
+				int frameID;
+				String command;
+				ATCommandStatus status;
+				if (!isRemote() && receivedPacket instanceof ATCommandResponsePacket) {
+					ATCommandResponsePacket response = (ATCommandResponsePacket)receivedPacket;
+					frameID = response.getFrameID();
+					command = response.getCommand();
+					status = response.getStatus();
+				} else if (isRemote() && receivedPacket instanceof RemoteATCommandResponsePacket) {
+					RemoteATCommandResponsePacket response = (RemoteATCommandResponsePacket)receivedPacket;
+					// Remote devices known only by their 16-bit address 
+					// match by frame ID.
+					if (!isSameAddress(response.get64bitSourceAddress()))
+						return;
+					frameID = response.getFrameID();
+					command = response.getCommand();
+					status = response.getStatus();
+				} else
+					return;
+				
+				synchronized (pendingLines) {
+					IOLine ioLine = pendingLines.get(frameID);
+					if (ioLine == null || !ioLine.getConfigurationATCommand().equalsIgnoreCase(command))
+						return;
+					pendingLines.remove(frameID);
+					results.put(ioLine, status);
+					if (pendingLines.isEmpty())
+						pendingLines.notifyAll();
+				}
+			}
+		};
+		
+		AbstractXBeeDevice localDevice = isRemote() ? localXBeeDevice : this;
+		localDevice.addPacketListener(packetReceiveListener);
+		try {
+			// Send all the commands before waiting for the answers.
+			for (XBeePacket packet:packets)
+				localDevice.sendXBeePacketAsync(packet);
+			
+			long deadline = System.currentTimeMillis() + receiveTimeout;
+			synchronized (pendingLines) {
+				long wait = deadline - System.currentTimeMillis();
+				while (!pendingLines.isEmpty() && wait > 0) {
+					try {
+						pendingLines.wait(wait);
+					} catch (InterruptedException e) {
+						// Stop waiting and report the lines answered so far.
+						Thread.currentThread().interrupt();
+						break;
+					}
+					wait = deadline - System.currentTimeMillis();
+				}
+			}
+		} catch (IOException e) {
+			throw new XBeeException("Error writing in the communication interface.", e);
+		} finally {
+			localDevice.removePacketListener(packetReceiveListener);
+		}
+		
+		Map<IOLine, ATCommandStatus> report;
+		synchronized (pendingLines) {
+			if (pendingLines.size() == values.size())
+				throw new TimeoutException();
+			report = new LinkedHashMap<IOLine, ATCommandStatus>(results);
+		}
+		
+		// Apply the changes once.
+		if (isApplyConfigurationChangesEnabled() && report.containsValue(ATCommandStatus.OK))
+			applyChanges();
+		
+		return report;
+	}
+	
 	/**
 	 * Returns the digital value of the provided IO line of this XBee device.
 	 * 
@@ -1754,6 +2013,12 @@ public abstract class AbstractXBeeDevice {
 	 * Returns an IO sample from this XBee device containing the value of all
 	 * enabled digital IO and analog input channels.
 	 * 
+	 * <p>Concurrent calls share a single {@code IS} request: while a request 
+	 * is in progress, other callers wait for its result instead of sending 
+	 * their own request. If an IO sample cache time has been configured, a 
+	 * sample read within that time is returned without sending any request.
+	 * </p>
+	 * 
 	 * @return An IO sample containing the value of all enabled digital IO and
 	 *         analog input channels.
 	 * 
@@ -1761,6 +2026,7 @@ public abstract class AbstractXBeeDevice {
 	 * @throws TimeoutException if there is a timeout getting the IO sample.
 	 * @throws XBeeException if there is any other XBee related exception.
 	 * 
+	 * @see #setIOSampleCacheTime(long)
 	 * @see com.digi.xbee.api.io.IOSample
 	 */
 	public IOSample readIOSample() throws TimeoutException, XBeeException {
@@ -1768,6 +2034,60 @@ public abstract class AbstractXBeeDevice {
 		if (!connectionInterface.isOpen())
 			throw new InterfaceNotOpenException();
 		
+		IOSampleRequest request;
+		boolean owner = false;
+		synchronized (ioSampleRequestLock) {
+			// Answer with the last sample if it is still fresh.
+			if (ioSampleCacheTime > 0 && lastIOSample != null 
+					&& System.currentTimeMillis() - lastIOSampleTime <= ioSampleCacheTime)
+				return lastIOSample;
+			
+			// Join the request in progress, if any.
+			request = ioSampleRequest;
+			if (request == null) {
+				request = new IOSampleRequest();
+				ioSampleRequest = request;
+				owner = true;
+			}
+		}
+		
+		if (!owner)
+			return request.getIOSample();
+		
+		try {
+			IOSample ioSample = requestIOSample();
+			synchronized (ioSampleRequestLock) {
+				lastIOSample = ioSample;
+				lastIOSampleTime = System.currentTimeMillis();
+			}
+			request.ioSample = ioSample;
+			return ioSample;
+		} catch (XBeeException e) {
+			request.xbeeException = e;
+			throw e;
+		} catch (RuntimeException e) {
+			request.runtimeException = e;
+			throw e;
+		} finally {
+			synchronized (ioSampleRequestLock) {
+				ioSampleRequest = null;
+			}
+			request.latch.countDown();
+		}
+	}
+	
+	/**
+	 * Sends an {@code IS} request to this XBee device and returns the 
+	 * received IO sample.
+	 * 
+	 * @return The received IO sample.
+	 * 
+	 * @throws TimeoutException if there is a timeout getting the IO sample.
+	 * @throws XBeeException if there is any other XBee related exception.
+	 * 
+	 * @see #readIOSample()
+	 */
+	private IOSample requestIOSample() throws TimeoutException, XBeeException {
 		// Try to build an IO Sample from the sample payload.
 		byte[] samplePayload = null;
 		IOSample ioSample;
@@ -1775,7 +2095,6 @@ public abstract class AbstractXBeeDevice {
 		// The response to the IS command in local 802.15.4 devices is empty, 
 		// so we have to create a packet listener to receive the IO sample.
 		if (!isRemote() && getXBeeProtocol() == XBeeProtocol.RAW_802_15_4) {
-			executeParameter("IS");
 			samplePayload = receiveRaw802IOPacket();
 			if (samplePayload == null)
 				throw new TimeoutException("Timeout waiting for the IO response packet.");
@@ -1793,31 +2112,84 @@ public abstract class AbstractXBeeDevice {
 	}
 	
 	/**
-	 * Returns the latest 802.15.4 IO packet and returns its value.
+	 * Returns the time during which a read IO sample answers the following 
+	 * calls to {@link #readIOSample()}.
+	 * 
+	 * @return The IO sample cache time in milliseconds, {@code 0} if it is 
+	 *         disabled.
 	 * 
-	 * @return The value of the latest received 802.15.4 IO packet.
+	 * @see #setIOSampleCacheTime(long)
 	 */
-	private byte[] receiveRaw802IOPacket() {
-		ioPacketReceived = false;
-		ioPacketPayload = null;
-		addPacketListener(IOPacketReceiveListener);
-		synchronized (ioLock) {
-			try {
-				ioLock.wait(receiveTimeout);
-			} catch (InterruptedException e) { }
+	public long getIOSampleCacheTime() {
+		synchronized (ioSampleRequestLock) {
+			return ioSampleCacheTime;
+		}
+	}
+	
+	/**
+	 * Sets the time during which a read IO sample answers the following 
+	 * calls to {@link #readIOSample()}, {@link #getDIOValue(IOLine)} and 
+	 * {@link #getADCValue(IOLine)} without sending a new request.
+	 * 
+	 * @param cacheTime The IO sample cache time in milliseconds, {@code 0} to 
+	 *                  always send a new request. Default is {@code 0}.
+	 * 
+	 * @throws IllegalArgumentException if {@code cacheTime < 0}.
+	 * 
+	 * @see #getIOSampleCacheTime()
+	 * @see #readIOSample()
+	 */
+	public void setIOSampleCacheTime(long cacheTime) {
+		if (cacheTime < 0)
+			throw new IllegalArgumentException("Cache time cannot be less than 0.");
+		
+		synchronized (ioSampleRequestLock) {
+			ioSampleCacheTime = cacheTime;
+			if (cacheTime == 0)
+				lastIOSample = null;
+		}
+	}
+	
+	/**
+	 * Sends the {@code IS} command to this local 802.15.4 device and returns 
+	 * the payload of the IO packet received as answer.
+	 * 
+	 * <p>The request is registered before sending the command, so the IO 
+	 * packet cannot be missed. Concurrent requests are queued and every 
+	 * received IO packet completes the oldest pending request.</p>
+	 * 
+	 * @return The payload of the received 802.15.4 IO packet, {@code null} if 
+	 *         it was not received before the receive timeout.
+	 * 
+	 * @throws TimeoutException if there is a timeout sending the {@code IS} 
+	 *                          command.
+	 * @throws XBeeException if there is any other XBee related exception.
+	 */
+	private byte[] receiveRaw802IOPacket() throws TimeoutException, XBeeException {
+		Raw802IOPacketRequest request = new Raw802IOPacketRequest();
+		synchronized (raw802IOPacketRequests) {
+			if (raw802IOPacketRequests.isEmpty())
+				addPacketListener(IOPacketReceiveListener);
+			raw802IOPacketRequests.add(request);
+		}
+		try {
+			executeParameter("IS");
+			return request.getPayload(receiveTimeout);
+		} finally {
+			synchronized (raw802IOPacketRequests) {
+				raw802IOPacketRequests.remove(request);
+				if (raw802IOPacketRequests.isEmpty())
+					removePacketListener(IOPacketReceiveListener);
+			}
 		}
-		removePacketListener(IOPacketReceiveListener);
-		if (ioPacketReceived)
-			return ioPacketPayload;
-		return null;
 	}
 	
 	/**
 	 * Custom listener for 802.15.4 IO packets. It will try to receive an 
-	 * 802.15.4 IO sample packet.
+	 * 802.15.4 IO sample packet sent by this device.
 	 * 
-	 * <p>When an IO sample packet is received, it saves its payload and 
-	 * notifies the object that was waiting for the reception.</p>
+	 * <p>When an IO sample packet is received, it completes the oldest 
+	 * pending IO packet request with its payload.</p>
 	 */
 	private IPacketReceiveListener IOPacketReceiveListener = new IPacketReceiveListener() {
 		/*
@@ -1829,34 +2201,76 @@ public abstract class AbstractXBeeDevice {
 			// Discard non API packets.
 			if (!(receivedPacket instanceof XBeeAPIPacket))
 				return;
-			// If we already have received an IO packet, ignore this packet.
-			if (ioPacketReceived)
-				return;
 			
-			// Save the packet value (IO sample payload)
+			// Get the packet value (IO sample payload) discarding the 
+			// packets sent by other devices.
+			byte[] payload;
 			switch (((XBeeAPIPacket)receivedPacket).getFrameType()) {
 			case IO_DATA_SAMPLE_RX_INDICATOR:
-				ioPacketPayload = ((IODataSampleRxIndicatorPacket)receivedPacket).getRFData();
+				IODataSampleRxIndicatorPacket ioPacket = (IODataSampleRxIndicatorPacket)receivedPacket;
+				if (!isSameAddress(ioPacket.get64bitSourceAddress()))
+					return;
+				payload = ioPacket.getRFData();
 				break;
 			case RX_IO_16:
-				ioPacketPayload = ((RX16IOPacket)receivedPacket).getRFData();
+				RX16IOPacket rx16Packet = (RX16IOPacket)receivedPacket;
+				if (!isSameAddress(rx16Packet.get16bitSourceAddress()))
+					return;
+				payload = rx16Packet.getRFData();
 				break;
 			case RX_IO_64:
-				ioPacketPayload = ((RX64IOPacket)receivedPacket).getRFData();
+				RX64IOPacket rx64Packet = (RX64IOPacket)receivedPacket;
+				if (!isSameAddress(rx64Packet.get64bitSourceAddress()))
+					return;
+				payload = rx64Packet.getRFData();
 				break;
 			default:
 				return;
 			}
-			// Set the IO packet received flag.
-			ioPacketReceived = true;
 			
-			// Continue execution by notifying the lock object.
-			synchronized (ioLock) {
-				ioLock.notify();
+			// Complete the oldest pending request.
+			Raw802IOPacketRequest request;
+			synchronized (raw802IOPacketRequests) {
+				if (raw802IOPacketRequests.isEmpty())
+					return;
+				request = raw802IOPacketRequests.remove(0);
 			}
+			request.complete(payload);
 		}
 	};
 	
+	/**
+	 * Returns whether the given 64-bit address is the address of this device 
+	 * or the address of this device is unknown.
+	 * 
+	 * @param address The 64-bit address to check.
+	 * 
+	 * @return {@code true} if the address may be the address of this device, 
+	 *         {@code false} otherwise.
+	 */
+	private boolean isSameAddress(XBee64BitAddress address) {
+		XBee64BitAddress deviceAddress = get64BitAddress();
+		if (deviceAddress == null || deviceAddress.equals(XBee64BitAddress.UNKNOWN_ADDRESS))
+			return true;
+		return deviceAddress.equals(address);
+	}
+	
+	/**
+	 * Returns whether the given 16-bit address is the address of this device 
+	 * or the address of this device is unknown.
+	 * 
+	 * @param address The 16-bit address to check.
+	 * 
+	 * @return {@code true} if the address may be the address of this device, 
+	 *         {@code false} otherwise.
+	 */
+	private boolean isSameAddress(XBee16BitAddress address) {
+		XBee16BitAddress deviceAddress = get16BitAddress();
+		if (deviceAddress == null || deviceAddress.equals(XBee16BitAddress.UNKNOWN_ADDRESS))
+			return true;
+		return deviceAddress.equals(address);
+	}
+	
 	/**
 	 * Performs a software reset on this XBee device and blocks until the 
 	 * process is completed.
@@ -2234,4 +2648,78 @@ public abstract class AbstractXBeeDevice {
 	public void writeChanges() throws TimeoutException, XBeeException {
 		executeParameter("WR");
 	}
+	
+	/**
+	 * Helper class that holds the result of an {@code IS} request shared by 
+	 * concurrent calls to {@link AbstractXBeeDevice#readIOSample()}.
+	 */
+	private static class IOSampleRequest {
+		
+		// Variables.
+		private final CountDownLatch latch = new CountDownLatch(1);
+		
+		private volatile IOSample ioSample;
+		
+		private volatile XBeeException xbeeException;
+		private volatile RuntimeException runtimeException;
+		
+		/**
+		 * Waits for the request to finish and returns its IO sample.
+		 * 
+		 * @return The received IO sample.
+		 * 
+		 * @throws XBeeException if the request failed.
+		 */
+		private IOSample getIOSample() throws XBeeException {
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new XBeeException("Interrupted while waiting for the IO sample.", e);
+			}
+			if (xbeeException != null)
+				throw xbeeException;
+			if (runtimeException != null)
+				throw runtimeException;
+			return ioSample;
+		}
+	}
+	
+	/**
+	 * Helper class that holds a pending request of an 802.15.4 IO packet.
+	 */
+	private static class Raw802IOPacketRequest {
+		
+		// Variables.
+		private final CountDownLatch latch = new CountDownLatch(1);
+		
+		private volatile byte[] payload;
+		
+		/**
+		 * Completes the request with the given payload.
+		 * 
+		 * @param payload The payload of the received IO packet.
+		 */
+		private void complete(byte[] payload) {
+			this.payload = payload;
+			latch.countDown();
+		}
+		
+		/**
+		 * Waits for the request to be completed and returns the payload.
+		 * 
+		 * @param timeout Maximum time to wait in milliseconds.
+		 * 
+		 * @return The payload of the received IO packet, {@code null} if it 
+		 *         was not received before the timeout.
+		 */
+		private byte[] getPayload(long timeout) {
+			try {
+				latch.await(timeout, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return payload;
+		}
+	}
 }
@@ -23,6 +23,7 @@ import com.digi.xbee.api.exceptions.XBeeException;
 import com.digi.xbee.api.listeners.IDiscoveryListener;
 import com.digi.xbee.api.listeners.IPacketReceiveListener;
 import com.digi.xbee.api.models.ATCommandStatus;
+import com.digi.xbee.api.models.FrameIDAllocator;
 import com.digi.xbee.api.models.XBee16BitAddress;
 import com.digi.xbee.api.models.XBee64BitAddress;
 import com.digi.xbee.api.models.XBeeProtocol;
@@ -53,8 +54,6 @@ class NodeDiscovery {
 	public static final long DEFAULT_TIMEOUT = 20000; // 20 seconds.
 	
 	// Variables.
-	private static int globalFrameID = 1;
-	
 	private XBeeDevice xbeeDevice;
 	
 	private List<RemoteXBeeDevice> deviceList;
@@ -81,11 +80,6 @@ class NodeDiscovery {
 		
 		this.xbeeDevice = xbeeDevice;
 		
-		frameID = globalFrameID;
-		globalFrameID = globalFrameID + 1;
-		if (globalFrameID == 0xFF)
-			globalFrameID = 1;
-		
 		logger = LoggerFactory.getLogger(this.getClass());
 	}
 	
@@ -308,6 +302,14 @@ class NodeDiscovery {
 			}
 		};
 		
+		// Reserve a frame ID for the whole discovery, as every response uses it.
+		FrameIDAllocator frameIDAllocator = xbeeDevice.getFrameIDAllocator();
+		if (frameIDAllocator != null) {
+			frameID = frameIDAllocator.allocateExclusive(xbeeDevice.getReceiveTimeout());
+			if (frameID == FrameIDAllocator.NO_FRAME_ID)
+				throw new XBeeException("There is no frame ID available to perform the discovery.");
+		}
+		
 		logger.debug("{}Start listening.", xbeeDevice.toString());
 		xbeeDevice.addPacketListener(packetReceiveListener);
 		
@@ -341,6 +343,8 @@ class NodeDiscovery {
 			}
 		} finally {
 			xbeeDevice.removePacketListener(packetReceiveListener);
+			if (frameIDAllocator != null)
+				frameIDAllocator.release(frameID);
 			logger.debug("{}Stop listening.", xbeeDevice.toString());
 		}
 	}
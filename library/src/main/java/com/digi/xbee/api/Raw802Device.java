@@ -189,6 +189,7 @@ public class Raw802Device extends XBeeDevice {
 		
 		logger.info(toString() + "Sending data asynchronously to {} >> {}.", address, HexUtils.prettyHexString(data));
 		
+		data = encodeData(null, data);
 		XBeePacket xbeePacket = new TX16Packet(getNextFrameID(), address, XBeeTransmitOptions.NONE, data);
 		sendAndCheckXBeePacket(xbeePacket, true);
 	}
@@ -249,6 +250,7 @@ public class Raw802Device extends XBeeDevice {
 		
 		logger.info(toString() + "Sending data to {} >> {}.", address, HexUtils.prettyHexString(data));
 		
+		data = encodeData(null, data);
 		XBeePacket xbeePacket = new TX16Packet(getNextFrameID(), address, XBeeTransmitOptions.NONE, data);
 		sendAndCheckXBeePacket(xbeePacket, false);
 	}
@@ -16,6 +16,7 @@ import java.io.IOException;
 import com.digi.xbee.api.exceptions.InterfaceNotOpenException;
 import com.digi.xbee.api.exceptions.TimeoutException;
 import com.digi.xbee.api.exceptions.XBeeException;
+import com.digi.xbee.api.io.IOSampleHistory;
 import com.digi.xbee.api.models.ATCommand;
 import com.digi.xbee.api.models.ATCommandResponse;
 import com.digi.xbee.api.models.XBee16BitAddress;
@@ -31,6 +32,9 @@ import com.digi.xbee.api.models.XBeeProtocol;
  * @see RemoteZigBeeDevice
  */
 public class RemoteXBeeDevice extends AbstractXBeeDevice {
+	
+	// Variables.
+	private volatile IOSampleHistory ioSampleHistory;
 
 	/**
 	 * Class constructor. Instantiates a new {@code RemoteXBeeDevice} object 
@@ -117,6 +121,37 @@ public class RemoteXBeeDevice extends AbstractXBeeDevice {
 		checkATCommandResponseIsValid(response);
 	}
 	
+	/**
+	 * Returns the history of IO samples received from this remote XBee 
+	 * device.
+	 * 
+	 * <p>The history is only filled if it has been enabled in the local XBee 
+	 * device, see {@link XBeeDevice#setIOSampleHistoryCapacity(int)}.</p>
+	 * 
+	 * @return The IO sample history of this device, {@code null} if no IO 
+	 *         sample has been stored yet.
+	 * 
+	 * @see XBeeDevice#setIOSampleHistoryCapacity(int)
+	 * @see com.digi.xbee.api.io.IOSampleHistory
+	 */
+	public IOSampleHistory getIOSampleHistory() {
+		return ioSampleHistory;
+	}
+	
+	/**
+	 * Sets the history of IO samples received from this remote XBee device.
+	 * 
+	 * <p><b>This is only for internal use.</b></p>
+	 * 
+	 * @param ioSampleHistory The new IO sample history.
+	 * 
+	 * @see #getIOSampleHistory()
+	 * @see com.digi.xbee.api.io.IOSampleHistory
+	 */
+	public void setIOSampleHistory(IOSampleHistory ioSampleHistory) {
+		this.ioSampleHistory = ioSampleHistory;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see com.digi.xbee.api.AbstractXBeeDevice#toString()
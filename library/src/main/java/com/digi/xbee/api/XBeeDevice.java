@@ -12,36 +12,77 @@
 package com.digi.xbee.api;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 import com.digi.xbee.api.connection.DataReader;
+import com.digi.xbee.api.connection.DataWriter;
 import com.digi.xbee.api.connection.IConnectionInterface;
 import com.digi.xbee.api.connection.serial.SerialPortParameters;
 import com.digi.xbee.api.exceptions.InterfaceAlreadyOpenException;
 import com.digi.xbee.api.exceptions.InterfaceNotOpenException;
 import com.digi.xbee.api.exceptions.InvalidOperatingModeException;
 import com.digi.xbee.api.exceptions.OperationNotSupportedException;
+import com.digi.xbee.api.exceptions.RateLimitException;
 import com.digi.xbee.api.exceptions.TimeoutException;
+import com.digi.xbee.api.exceptions.TransmitException;
 import com.digi.xbee.api.exceptions.XBeeException;
+import com.digi.xbee.api.io.IOSample;
+import com.digi.xbee.api.io.IOSampleAggregator;
+import com.digi.xbee.api.io.IOSampleChangeFilter;
+import com.digi.xbee.api.io.IOSampleRule;
+import com.digi.xbee.api.io.IOSampleRuleEngine;
 import com.digi.xbee.api.listeners.IIOSampleReceiveListener;
+import com.digi.xbee.api.listeners.IIOSampleRuleListener;
 import com.digi.xbee.api.listeners.IModemStatusReceiveListener;
 import com.digi.xbee.api.listeners.IPacketReceiveListener;
 import com.digi.xbee.api.listeners.IDataReceiveListener;
 import com.digi.xbee.api.models.ATCommand;
 import com.digi.xbee.api.models.ATCommandResponse;
+import com.digi.xbee.api.models.FrameIDAllocator;
 import com.digi.xbee.api.models.ModemStatusEvent;
 import com.digi.xbee.api.models.OperatingMode;
+import com.digi.xbee.api.models.QueueOverflowPolicy;
+import com.digi.xbee.api.models.TransmitRateLimiter;
+import com.digi.xbee.api.models.TransmitRetryPolicy;
+import com.digi.xbee.api.models.TransmitWindow;
 import com.digi.xbee.api.models.XBee16BitAddress;
 import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.models.XBeeIOSampleMessage;
 import com.digi.xbee.api.models.XBeeMessage;
+import com.digi.xbee.api.models.XBeeMessageFragmenter;
+import com.digi.xbee.api.models.XBeeMessageReassembler;
 import com.digi.xbee.api.models.XBeePacketsQueue;
+import com.digi.xbee.api.models.XBeePacketsSpool;
+import com.digi.xbee.api.models.XBeePayloadCodec;
+import com.digi.xbee.api.models.XBeeTransmitFuture;
 import com.digi.xbee.api.models.XBeeTransmitOptions;
+import com.digi.xbee.api.models.XBeeTransmitStatus;
+import com.digi.xbee.api.packet.APIFrameType;
 import com.digi.xbee.api.packet.XBeeAPIPacket;
 import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.common.IODataSampleRxIndicatorPacket;
 import com.digi.xbee.api.packet.common.ReceivePacket;
 import com.digi.xbee.api.packet.common.TransmitPacket;
+import com.digi.xbee.api.packet.common.TransmitStatusPacket;
+import com.digi.xbee.api.packet.raw.RX16IOPacket;
 import com.digi.xbee.api.packet.raw.RX16Packet;
+import com.digi.xbee.api.packet.raw.RX64IOPacket;
 import com.digi.xbee.api.packet.raw.RX64Packet;
+import com.digi.xbee.api.packet.raw.TX16Packet;
 import com.digi.xbee.api.packet.raw.TX64Packet;
+import com.digi.xbee.api.packet.raw.TXStatusPacket;
+import com.digi.xbee.api.utils.ByteUtils;
 import com.digi.xbee.api.utils.HexUtils;
 
 /**
@@ -68,6 +109,39 @@ public class XBeeDevice extends AbstractXBeeDevice {
 	
 	private boolean modemStatusReceived = false;
 	
+	private int ioSampleHistoryCapacity = 0;
+	
+	private volatile IOSampleChangeFilter ioSampleChangeFilter;
+	
+	private final IOSampleRuleEngine ioSampleRuleEngine = new IOSampleRuleEngine();
+	
+	private volatile IOSampleAggregator ioSampleAggregator;
+	
+	private int packetsQueueCapacity = XBeePacketsQueue.DEFAULT_MAX_LENGTH;
+	private int packetsQueueBlockTimeout = 0;
+	
+	private QueueOverflowPolicy packetsQueueOverflowPolicy = XBeePacketsQueue.DEFAULT_OVERFLOW_POLICY;
+	
+	private XBeePacketsSpool packetsSpool;
+	
+	private Timer transmitTimer;
+	
+	private volatile TransmitWindow transmitWindow = new TransmitWindow();
+	
+	private final HashSet<TransmitTimeoutTask> pendingTransmissions = new HashSet<TransmitTimeoutTask>();
+	
+	private volatile TransmitRetryPolicy transmitRetryPolicy;
+	
+	private volatile TransmitRateLimiter transmitRateLimiter;
+	
+	private final HashSet<TransmitRetry> pendingRetries = new HashSet<TransmitRetry>();
+	
+	private volatile XBeeMessageFragmenter messageFragmenter;
+	
+	private XBeeMessageReassembler readReassembler;
+	
+	private volatile XBeePayloadCodec payloadCodec;
+	
 	/**
 	 * Class constructor. Instantiates a new {@code XBeeDevice} object 
 	 * physically connected to the given port name and configured at the 
@@ -193,7 +267,12 @@ public class XBeeDevice extends AbstractXBeeDevice {
 		dataReader = new DataReader(connectionInterface, operatingMode, this);
 		dataReader.start();
 		
-		// Wait 10 milliseconds until the dataReader thread is started.
+		// Initialize the data writer.
+		dataWriter = new DataWriter(connectionInterface);
+		dataWriter.start();
+		
+		// Wait 10 milliseconds until the dataReader and dataWriter threads 
+		// are started.
 		// This is because when the connection is opened immediately after 
 		// closing it, there is sometimes a concurrency problem and the 
 		// dataReader thread never dies.
@@ -225,9 +304,14 @@ public class XBeeDevice extends AbstractXBeeDevice {
 	 * @see #open()
 	 */
 	public void close() {
+		// Fail the pending asynchronous transmissions.
+		cancelPendingTransmissions();
 		// Stop XBee reader.
 		if (dataReader != null && dataReader.isRunning())
 			dataReader.stopReader();
+		// Stop XBee writer.
+		if (dataWriter != null)
+			dataWriter.stopWriter();
 		// Close interface.
 		connectionInterface.close();
 		logger.info(toString() + "Connection interface closed.");
@@ -326,6 +410,518 @@ public class XBeeDevice extends AbstractXBeeDevice {
 		this.receiveTimeout = receiveTimeout;
 	}
 	
+	/**
+	 * Returns the maximum number of received packets kept in the queue used 
+	 * by the read methods of this XBee device.
+	 * 
+	 * @return The capacity of the packets queue.
+	 * 
+	 * @see #setPacketsQueueCapacity(int)
+	 * @see #readData()
+	 */
+	public int getPacketsQueueCapacity() {
+		return packetsQueueCapacity;
+	}
+	
+	/**
+	 * Configures the maximum number of received packets kept in the queue 
+	 * used by the read methods of this XBee device.
+	 * 
+	 * <p>The new capacity takes effect the next time the device is opened. 
+	 * Default is {@value XBeePacketsQueue#DEFAULT_MAX_LENGTH}.</p>
+	 * 
+	 * @param capacity The capacity of the packets queue.
+	 * 
+	 * @throws IllegalArgumentException if {@code capacity < 1}.
+	 * 
+	 * @see #getPacketsQueueCapacity()
+	 * @see #setPacketsQueueOverflowPolicy(QueueOverflowPolicy, int)
+	 */
+	public void setPacketsQueueCapacity(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Packets queue capacity must be greater than 0.");
+		
+		this.packetsQueueCapacity = capacity;
+	}
+	
+	/**
+	 * Returns the policy applied when a packet is received and the packets 
+	 * queue of this XBee device is full.
+	 * 
+	 * @return The overflow policy of the packets queue.
+	 * 
+	 * @see #setPacketsQueueOverflowPolicy(QueueOverflowPolicy, int)
+	 * @see com.digi.xbee.api.models.QueueOverflowPolicy
+	 */
+	public QueueOverflowPolicy getPacketsQueueOverflowPolicy() {
+		return packetsQueueOverflowPolicy;
+	}
+	
+	/**
+	 * Returns the maximum time to wait for free space in the packets queue 
+	 * when the overflow policy is {@link QueueOverflowPolicy#BLOCK}.
+	 * 
+	 * @return The block timeout in milliseconds.
+	 * 
+	 * @see #setPacketsQueueOverflowPolicy(QueueOverflowPolicy, int)
+	 */
+	public int getPacketsQueueBlockTimeout() {
+		return packetsQueueBlockTimeout;
+	}
+	
+	/**
+	 * Configures the policy applied when a packet is received and the 
+	 * packets queue of this XBee device is full.
+	 * 
+	 * <p>With {@link QueueOverflowPolicy#BLOCK} the reading thread stops 
+	 * processing incoming frames, including the ones notified to the 
+	 * listeners, until the application reads a packet or the block timeout 
+	 * elapses. The received packet is dropped if the queue is still full.</p>
+	 * 
+	 * <p>The new policy takes effect the next time the device is opened. 
+	 * Default is {@link QueueOverflowPolicy#DROP_OLDEST}.</p>
+	 * 
+	 * @param overflowPolicy The overflow policy of the packets queue.
+	 * @param blockTimeout Maximum time in milliseconds to wait for free 
+	 *                     space with {@link QueueOverflowPolicy#BLOCK}. 
+	 *                     Ignored by the other policies.
+	 * 
+	 * @throws IllegalArgumentException if {@code blockTimeout < 0}.
+	 * @throws NullPointerException if {@code overflowPolicy == null}.
+	 * 
+	 * @see #getPacketsQueueOverflowPolicy()
+	 * @see #getPacketsQueueBlockTimeout()
+	 * @see #getDroppedPackets()
+	 * @see com.digi.xbee.api.models.QueueOverflowPolicy
+	 */
+	public void setPacketsQueueOverflowPolicy(QueueOverflowPolicy overflowPolicy, int blockTimeout) {
+		if (overflowPolicy == null)
+			throw new NullPointerException("Overflow policy cannot be null.");
+		if (blockTimeout < 0)
+			throw new IllegalArgumentException("Block timeout cannot be less than 0.");
+		
+		this.packetsQueueOverflowPolicy = overflowPolicy;
+		this.packetsQueueBlockTimeout = blockTimeout;
+	}
+	
+	/**
+	 * Returns the window that limits the outstanding asynchronous 
+	 * transmissions of this XBee device.
+	 * 
+	 * @return The transmit window, {@code null} if the outstanding 
+	 *         transmissions are not limited.
+	 * 
+	 * @see #setTransmitWindow(TransmitWindow)
+	 * @see com.digi.xbee.api.models.TransmitWindow
+	 */
+	public TransmitWindow getTransmitWindow() {
+		return transmitWindow;
+	}
+	
+	/**
+	 * Configures the window that limits the outstanding asynchronous 
+	 * transmissions of this XBee device.
+	 * 
+	 * <p>The window adapts its size to the transmit statuses: it grows while 
+	 * transmissions succeed and it shrinks on failures, timeouts and 
+	 * transmissions with many retries. By default, every device has a 
+	 * global window with the default sizes of {@link TransmitWindow}.</p>
+	 * 
+	 * @param transmitWindow The transmit window, {@code null} not to limit 
+	 *                       the outstanding transmissions.
+	 * 
+	 * @see #getTransmitWindow()
+	 * @see #sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])
+	 * @see com.digi.xbee.api.models.TransmitWindow
+	 */
+	public void setTransmitWindow(TransmitWindow transmitWindow) {
+		this.transmitWindow = transmitWindow;
+	}
+	
+	/**
+	 * Returns the policy used to retry the asynchronous transmissions that 
+	 * fail.
+	 * 
+	 * @return The transmit retry policy, {@code null} if transmissions are 
+	 *         not retried.
+	 * 
+	 * @see #setTransmitRetryPolicy(TransmitRetryPolicy)
+	 * @see com.digi.xbee.api.models.TransmitRetryPolicy
+	 */
+	public TransmitRetryPolicy getTransmitRetryPolicy() {
+		return transmitRetryPolicy;
+	}
+	
+	/**
+	 * Configures the policy used to retry the asynchronous transmissions 
+	 * that fail.
+	 * 
+	 * <p>When it is configured, the future returned by 
+	 * {@link #sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])} is only 
+	 * completed when the transmission succeeds, fails with a status that is 
+	 * not retryable or runs out of attempts. Retries are scheduled in the 
+	 * transmit timer of the device, so no thread waits for them.</p>
+	 * 
+	 * @param transmitRetryPolicy The transmit retry policy, {@code null} not 
+	 *                            to retry transmissions.
+	 * 
+	 * @see #getTransmitRetryPolicy()
+	 * @see com.digi.xbee.api.models.TransmitRetryPolicy
+	 */
+	public void setTransmitRetryPolicy(TransmitRetryPolicy transmitRetryPolicy) {
+		this.transmitRetryPolicy = transmitRetryPolicy;
+	}
+	
+	/**
+	 * Returns the rate limits applied to the transmissions of this XBee 
+	 * device.
+	 * 
+	 * @return The transmit rate limiter, {@code null} if transmissions are 
+	 *         not rate limited.
+	 * 
+	 * @see #setTransmitRateLimiter(TransmitRateLimiter)
+	 * @see com.digi.xbee.api.models.TransmitRateLimiter
+	 */
+	public TransmitRateLimiter getTransmitRateLimiter() {
+		return transmitRateLimiter;
+	}
+	
+	/**
+	 * Configures the rate limits applied to the transmissions of this XBee 
+	 * device.
+	 * 
+	 * <p>Transmissions over the limits wait up to the receive timeout for 
+	 * their tokens, or fail immediately with a {@code RateLimitException} if 
+	 * the rate limiter rejects them. Retries of asynchronous transmissions 
+	 * never wait; they are rescheduled instead.</p>
+	 * 
+	 * @param transmitRateLimiter The transmit rate limiter, {@code null} not 
+	 *                            to rate limit transmissions.
+	 * 
+	 * @see #getReceiveTimeout()
+	 * @see #getTransmitRateLimiter()
+	 * @see com.digi.xbee.api.exceptions.RateLimitException
+	 * @see com.digi.xbee.api.models.TransmitRateLimiter
+	 */
+	public void setTransmitRateLimiter(TransmitRateLimiter transmitRateLimiter) {
+		this.transmitRateLimiter = transmitRateLimiter;
+	}
+	
+	/**
+	 * Returns the fragmenter used to send and receive data that does not fit 
+	 * in a single frame.
+	 * 
+	 * @return The message fragmenter, {@code null} if fragmentation is 
+	 *         disabled.
+	 * 
+	 * @see #enableMessageFragmentation()
+	 * @see #setMessageFragmenter(XBeeMessageFragmenter)
+	 * @see com.digi.xbee.api.models.XBeeMessageFragmenter
+	 */
+	public XBeeMessageFragmenter getMessageFragmenter() {
+		return messageFragmenter;
+	}
+	
+	/**
+	 * Configures the fragmenter used to send and receive data that does not 
+	 * fit in a single frame.
+	 * 
+	 * <p>When it is configured, {@link #sendData(RemoteXBeeDevice, byte[])} 
+	 * splits the data into fragments, and the received fragments are 
+	 * reassembled before delivering the {@code XBeeMessage} to the data 
+	 * listeners and to the read data methods. The remote devices must have 
+	 * fragmentation enabled too.</p>
+	 * 
+	 * <p>The other send methods do not split the data: they throw an 
+	 * {@code OperationNotSupportedException} if it does not fit in a single 
+	 * frame, and send the data starting with the marker byte of the 
+	 * fragments as a message of a single fragment.</p>
+	 * 
+	 * @param messageFragmenter The message fragmenter, {@code null} to 
+	 *                          disable fragmentation.
+	 * 
+	 * @see #enableMessageFragmentation()
+	 * @see #getMessageFragmenter()
+	 * @see com.digi.xbee.api.models.XBeeMessageFragmenter
+	 */
+	public void setMessageFragmenter(XBeeMessageFragmenter messageFragmenter) {
+		this.messageFragmenter = messageFragmenter;
+	}
+	
+	/**
+	 * Enables fragmentation with a fragmenter that uses the maximum RF 
+	 * payload size read from the XBee module ({@code NP} parameter).
+	 * 
+	 * @return The configured message fragmenter.
+	 * 
+	 * @throws InterfaceNotOpenException if this device connection is not open.
+	 * @throws TimeoutException if there is a timeout reading the parameter.
+	 * @throws XBeeException if there is any other XBee related exception.
+	 * 
+	 * @see #getMessageFragmenter()
+	 * @see #setMessageFragmenter(XBeeMessageFragmenter)
+	 * @see com.digi.xbee.api.models.XBeeMessageFragmenter
+	 */
+	public XBeeMessageFragmenter enableMessageFragmentation() throws TimeoutException, XBeeException {
+		int maxPayloadSize = ByteUtils.byteArrayToInt(getParameter("NP"));
+		XBeeMessageFragmenter fragmenter = new XBeeMessageFragmenter(maxPayloadSize);
+		setMessageFragmenter(fragmenter);
+		return fragmenter;
+	}
+	
+	/**
+	 * Returns the codec used to compress the data sent and to decompress the 
+	 * data received.
+	 * 
+	 * @return The payload codec, {@code null} if compression is disabled.
+	 * 
+	 * @see #setPayloadCodec(XBeePayloadCodec)
+	 * @see com.digi.xbee.api.models.XBeePayloadCodec
+	 */
+	public XBeePayloadCodec getPayloadCodec() {
+		return payloadCodec;
+	}
+	
+	/**
+	 * Configures the codec used to compress the data sent and to decompress 
+	 * the data received.
+	 * 
+	 * <p>When it is configured, every method that sends data to remote 
+	 * devices compresses the data, before fragmenting it in 
+	 * {@link #sendData(RemoteXBeeDevice, byte[])}, and the received data is 
+	 * decompressed after reassembling it and before delivering the 
+	 * {@code XBeeMessage} to the data listeners and to the read data 
+	 * methods. The remote devices must use a codec with the same 
+	 * dictionaries.</p>
+	 * 
+	 * @param payloadCodec The payload codec, {@code null} to disable 
+	 *                     compression.
+	 * 
+	 * @see #getPayloadCodec()
+	 * @see #setMessageFragmenter(XBeeMessageFragmenter)
+	 * @see com.digi.xbee.api.models.XBeePayloadCodec
+	 */
+	public void setPayloadCodec(XBeePayloadCodec payloadCodec) {
+		this.payloadCodec = payloadCodec;
+	}
+	
+	/**
+	 * Returns the disk spool used to store the packets received while the 
+	 * packets queue of this XBee device is full.
+	 * 
+	 * @return The packets spool, {@code null} if it is not configured.
+	 * 
+	 * @see #setPacketsSpool(XBeePacketsSpool)
+	 * @see com.digi.xbee.api.models.XBeePacketsSpool
+	 */
+	public XBeePacketsSpool getPacketsSpool() {
+		return packetsSpool;
+	}
+	
+	/**
+	 * Configures the disk spool used to store the packets received while the 
+	 * packets queue of this XBee device is full.
+	 * 
+	 * <p>Spooled packets are returned by the read methods in arrival order 
+	 * once the application has read the packets in the queue. Packets 
+	 * recovered by the spool from a previous execution are returned first. 
+	 * The overflow policy is only applied when the spool is full.</p>
+	 * 
+	 * <p>The spool is not closed when the device is closed. The new spool 
+	 * takes effect the next time the device is opened.</p>
+	 * 
+	 * @param packetsSpool The packets spool, {@code null} to disable it.
+	 * 
+	 * @see #getPacketsSpool()
+	 * @see #setPacketsQueueOverflowPolicy(QueueOverflowPolicy, int)
+	 * @see com.digi.xbee.api.models.XBeePacketsSpool
+	 */
+	public void setPacketsSpool(XBeePacketsSpool packetsSpool) {
+		this.packetsSpool = packetsSpool;
+	}
+	
+	/**
+	 * Returns the number of received packets dropped because the packets 
+	 * queue of this XBee device was full, grouped by frame type.
+	 * 
+	 * <p>Counters are reset every time the device is opened.</p>
+	 * 
+	 * @return A map with the number of dropped packets of every frame type 
+	 *         with at least one dropped packet. Empty if the device has not 
+	 *         been opened.
+	 * 
+	 * @see #setPacketsQueueCapacity(int)
+	 * @see #setPacketsQueueOverflowPolicy(QueueOverflowPolicy, int)
+	 * @see com.digi.xbee.api.packet.APIFrameType
+	 */
+	public Map<APIFrameType, Long> getDroppedPackets() {
+		if (dataReader == null)
+			return new HashMap<APIFrameType, Long>();
+		return dataReader.getXBeePacketsQueue().getDroppedPacketsByFrameType();
+	}
+	
+	/**
+	 * Returns the number of IO samples kept in the history of each remote 
+	 * XBee device.
+	 * 
+	 * @return The capacity of the IO sample histories, {@code 0} if IO sample 
+	 *         history is disabled.
+	 * 
+	 * @see #setIOSampleHistoryCapacity(int)
+	 * @see RemoteXBeeDevice#getIOSampleHistory()
+	 */
+	public int getIOSampleHistoryCapacity() {
+		return ioSampleHistoryCapacity;
+	}
+	
+	/**
+	 * Configures the number of IO samples to keep in the history of each 
+	 * remote XBee device.
+	 * 
+	 * <p>When enabled, every IO sample received from a remote XBee device is 
+	 * stored in the history of the corresponding device of the network (see 
+	 * {@link #getNetwork()}) before notifying the IO sample listeners. 
+	 * Histories created with a different capacity are recreated when the 
+	 * next sample of their device is received.</p>
+	 * 
+	 * <p>IO sample history is disabled by default.</p>
+	 * 
+	 * @param capacity The number of IO samples to keep per remote device, 
+	 *                 {@code 0} to disable IO sample history.
+	 * 
+	 * @throws IllegalArgumentException if {@code capacity < 0}.
+	 * 
+	 * @see #getIOSampleHistoryCapacity()
+	 * @see RemoteXBeeDevice#getIOSampleHistory()
+	 * @see com.digi.xbee.api.io.IOSampleHistory
+	 */
+	public void setIOSampleHistoryCapacity(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("IO sample history capacity cannot be less than 0.");
+		
+		this.ioSampleHistoryCapacity = capacity;
+	}
+	
+	/**
+	 * Returns the filter applied to the IO samples received from remote XBee 
+	 * devices before notifying the IO sample listeners.
+	 * 
+	 * @return The IO sample change filter, {@code null} if every IO sample is 
+	 *         notified.
+	 * 
+	 * @see #setIOSampleChangeFilter(IOSampleChangeFilter)
+	 * @see com.digi.xbee.api.io.IOSampleChangeFilter
+	 */
+	public IOSampleChangeFilter getIOSampleChangeFilter() {
+		return ioSampleChangeFilter;
+	}
+	
+	/**
+	 * Configures the filter applied to the IO samples received from remote 
+	 * XBee devices before notifying the IO sample listeners.
+	 * 
+	 * <p>When a filter is configured, IO sample listeners are only notified 
+	 * of the samples containing changes (see {@link IOSampleChangeFilter}). 
+	 * Samples without changes are discarded before creating the 
+	 * {@code IOSample} object.</p>
+	 * 
+	 * @param filter The new IO sample change filter, {@code null} to notify 
+	 *               every IO sample.
+	 * 
+	 * @see #getIOSampleChangeFilter()
+	 * @see com.digi.xbee.api.io.IOSampleChangeFilter
+	 */
+	public void setIOSampleChangeFilter(IOSampleChangeFilter filter) {
+		this.ioSampleChangeFilter = filter;
+	}
+	
+	/**
+	 * Returns the aggregator of the IO samples received from remote XBee 
+	 * devices.
+	 * 
+	 * @return The IO sample aggregator, {@code null} if IO samples are not 
+	 *         aggregated.
+	 * 
+	 * @see #setIOSampleAggregator(IOSampleAggregator)
+	 * @see com.digi.xbee.api.io.IOSampleAggregator
+	 */
+	public IOSampleAggregator getIOSampleAggregator() {
+		return ioSampleAggregator;
+	}
+	
+	/**
+	 * Configures the aggregator of the IO samples received from remote XBee 
+	 * devices.
+	 * 
+	 * <p>Every received IO sample is added to the aggregator, even if it is 
+	 * discarded by the IO sample change filter. The listeners of the 
+	 * aggregator are notified every time a window is closed.</p>
+	 * 
+	 * @param aggregator The new IO sample aggregator, {@code null} to stop 
+	 *                   aggregating IO samples.
+	 * 
+	 * @see #getIOSampleAggregator()
+	 * @see com.digi.xbee.api.io.IOSampleAggregator
+	 */
+	public void setIOSampleAggregator(IOSampleAggregator aggregator) {
+		this.ioSampleAggregator = aggregator;
+	}
+	
+	/**
+	 * Adds the given rule to the set of rules evaluated over the IO samples 
+	 * received from remote XBee devices.
+	 * 
+	 * <p>Rules are evaluated for every received IO sample before notifying 
+	 * the IO sample listeners, even if the sample is discarded by the IO 
+	 * sample change filter. The listener is only notified when the rule 
+	 * matches.</p>
+	 * 
+	 * <p>If the rule has been already added, its configuration is read again 
+	 * and its listener is replaced.</p>
+	 * 
+	 * @param rule The rule to add.
+	 * @param listener The listener to notify when the rule matches.
+	 * 
+	 * @throws NullPointerException if {@code rule == null} or
+	 *                              if {@code listener == null}.
+	 * 
+	 * @see #removeIOSampleRule(IOSampleRule)
+	 * @see com.digi.xbee.api.io.IOSampleRule
+	 * @see com.digi.xbee.api.listeners.IIOSampleRuleListener
+	 */
+	public void addIOSampleRule(IOSampleRule rule, IIOSampleRuleListener listener) {
+		ioSampleRuleEngine.addRule(rule, listener);
+	}
+	
+	/**
+	 * Removes the given rule from the set of rules evaluated over the IO 
+	 * samples received from remote XBee devices.
+	 * 
+	 * <p>If the rule has not been added, this method does nothing.</p>
+	 * 
+	 * @param rule The rule to remove.
+	 * 
+	 * @see #addIOSampleRule(IOSampleRule, IIOSampleRuleListener)
+	 * @see com.digi.xbee.api.io.IOSampleRule
+	 */
+	public void removeIOSampleRule(IOSampleRule rule) {
+		ioSampleRuleEngine.removeRule(rule);
+	}
+	
+	/**
+	 * Returns the engine that evaluates the IO sample rules of this device.
+	 * 
+	 * <p><b>This is only for internal use.</b></p>
+	 * 
+	 * @return The IO sample rule engine.
+	 * 
+	 * @see #addIOSampleRule(IOSampleRule, IIOSampleRuleListener)
+	 * @see com.digi.xbee.api.io.IOSampleRuleEngine
+	 */
+	public IOSampleRuleEngine getIOSampleRuleEngine() {
+		return ioSampleRuleEngine;
+	}
+	
 	/**
 	 * Determines the operating mode of this XBee device.
 	 * 
@@ -539,6 +1135,7 @@ public class XBeeDevice extends AbstractXBeeDevice {
 		
 		logger.debug(toString() + "Sending data asynchronously to {} >> {}.", address, HexUtils.prettyHexString(data));
 		
+		data = encodeData(address, data);
 		XBeePacket xbeePacket;
 		switch (getXBeeProtocol()) {
 		case RAW_802_15_4:
@@ -565,68 +1162,490 @@ public class XBeeDevice extends AbstractXBeeDevice {
 	 *                     used.
 	 * @param data Byte array containing the data to be sent.
 	 * 
-	 * @throws InterfaceNotOpenException if this device connection is not open.
-	 * @throws NullPointerException if {@code address64Bit == null} or 
-	 *                              if {@code address16bit == null} or
-	 *                              if {@code data == null}.
-	 * @throws XBeeException if a remote device is trying to send data or 
-	 *                       if there is any other XBee related exception.
+	 * @throws InterfaceNotOpenException if this device connection is not open.
+	 * @throws NullPointerException if {@code address64Bit == null} or 
+	 *                              if {@code address16bit == null} or
+	 *                              if {@code data == null}.
+	 * @throws XBeeException if a remote device is trying to send data or 
+	 *                       if there is any other XBee related exception.
+	 * 
+	 * @see #getReceiveTimeout()
+	 * @see #setReceiveTimeout(int)
+	 * @see #sendData(RemoteXBeeDevice, byte[])
+	 * @see #sendData(XBee64BitAddress, byte[])
+	 * @see #sendData(XBee64BitAddress, XBee16BitAddress, byte[])
+	 * @see #sendDataAsync(RemoteXBeeDevice, byte[])
+	 * @see #sendDataAsync(XBee64BitAddress, byte[])
+	 * @see com.digi.xbee.api.models.XBee16BitAddress
+	 * @see com.digi.xbee.api.models.XBee64BitAddress
+	 */
+	protected void sendDataAsync(XBee64BitAddress address64Bit, XBee16BitAddress address16bit, byte[] data) throws XBeeException {
+		// Verify the parameters are not null, if they are null, throw an exception.
+		if (address64Bit == null)
+			throw new NullPointerException("64-bit address cannot be null");
+		if (address16bit == null)
+			throw new NullPointerException("16-bit address cannot be null");
+		if (data == null)
+			throw new NullPointerException("Data cannot be null");
+		
+		// Check connection.
+		if (!connectionInterface.isOpen())
+			throw new InterfaceNotOpenException();
+		// Check if device is remote.
+		if (isRemote())
+			throw new OperationNotSupportedException("Cannot send data to a remote device from a remote device.");
+		
+		logger.debug(toString() + "Sending data asynchronously to {}[{}] >> {}.", 
+				address64Bit, address16bit, HexUtils.prettyHexString(data));
+		
+		data = encodeData(address64Bit, data);
+		XBeePacket xbeePacket = new TransmitPacket(getNextFrameID(), address64Bit, address16bit, 0, XBeeTransmitOptions.NONE, data);
+		sendAndCheckXBeePacket(xbeePacket, true);
+	}
+	
+	/**
+	 * Sends the provided data to the provided XBee device asynchronously.
+	 * 
+	 * <p>Asynchronous transmissions do not wait for answer from the remote 
+	 * device or for transmit status packet.</p>
+	 * 
+	 * @param xbeeDevice The XBee device of the network that will receive the 
+	 *                   data.
+	 * @param data Byte array containing the data to be sent.
+	 * 
+	 * @throws InterfaceNotOpenException if this device connection is not open.
+	 * @throws NullPointerException if {@code xbeeDevice == null} or 
+	 *                              if {@code data == null}.
+	 * @throws XBeeException if there is any XBee related exception.
+	 * 
+	 * @see #sendData(RemoteXBeeDevice, byte[])
+	 * @see RemoteXBeeDevice
+	 */
+	public void sendDataAsync(RemoteXBeeDevice xbeeDevice, byte[] data) throws XBeeException {
+		if (xbeeDevice == null)
+			throw new NullPointerException("Remote XBee device cannot be null");
+		sendDataAsync(xbeeDevice.get64BitAddress(), data);
+	}
+	
+	/**
+	 * Sends the provided data to the provided XBee device asynchronously and 
+	 * returns a future completed when the transmit status is received.
+	 * 
+	 * <p>The method does not wait for the transmit status, so several 
+	 * transmissions can be in flight at the same time. The returned future 
+	 * is completed with the transmit status, including the retry count and 
+	 * the discovery status, or fails with a {@code TimeoutException} if no 
+	 * status is received within the configured receive timeout.</p>
+	 * 
+	 * @param xbeeDevice The XBee device of the network that will receive the 
+	 *                   data.
+	 * @param data Byte array containing the data to be sent.
+	 * 
+	 * @return The future of the transmission.
+	 * 
+	 * @throws InterfaceNotOpenException if this device connection is not open.
+	 * @throws NullPointerException if {@code xbeeDevice == null} or 
+	 *                              if {@code data == null}.
+	 * @throws XBeeException if there is any XBee related exception.
+	 * 
+	 * @see #getReceiveTimeout()
+	 * @see #setReceiveTimeout(int)
+	 * @see #sendData(RemoteXBeeDevice, byte[])
+	 * @see #sendDataAsync(RemoteXBeeDevice, byte[])
+	 * @see com.digi.xbee.api.models.XBeeTransmitFuture
+	 */
+	public XBeeTransmitFuture sendDataAsyncWithStatus(RemoteXBeeDevice xbeeDevice, byte[] data) throws XBeeException {
+		if (xbeeDevice == null)
+			throw new NullPointerException("Remote XBee device cannot be null");
+		if (data == null)
+			throw new NullPointerException("Data cannot be null");
+		
+		// Check connection.
+		if (!connectionInterface.isOpen())
+			throw new InterfaceNotOpenException();
+		// Check if device is remote.
+		if (isRemote())
+			throw new OperationNotSupportedException("Cannot send data to a remote device from a remote device.");
+		
+		logger.debug(toString() + "Sending data asynchronously to {} >> {}.", xbeeDevice, HexUtils.prettyHexString(data));
+		
+		return sendXBeePacketWithStatus(createTransmitPacket(xbeeDevice, encodeData(xbeeDevice.get64BitAddress(), data)));
+	}
+	
+	/**
+	 * Sends the provided data to all the given XBee devices and returns the 
+	 * result of every transmission.
+	 * 
+	 * <p>Transmissions are pipelined: every packet is sent without waiting 
+	 * for the transmit status of the previous ones, limited only by the 
+	 * available frame IDs and the transmit window. All the packets share 
+	 * the same data array, unless the payload codec compresses it for every 
+	 * destination.</p>
+	 * 
+	 * <p>This method blocks until the transmit status of every transmission 
+	 * is received or its receive timeout expires. Failures are reported per 
+	 * destination in the returned futures, which are all done unless the 
+	 * calling thread is interrupted. In that case the method returns 
+	 * immediately and the remaining futures are completed later.</p>
+	 * 
+	 * @param xbeeDevices The XBee devices of the network that will receive 
+	 *                    the data. Duplicated devices are sent the data 
+	 *                    only once.
+	 * @param data Byte array containing the data to be sent.
+	 * 
+	 * @return Map with the future of the transmission to every XBee device, 
+	 *         in the iteration order of {@code xbeeDevices}.
+	 * 
+	 * @throws InterfaceNotOpenException if this device connection is not open.
+	 * @throws NullPointerException if {@code xbeeDevices == null} or 
+	 *                              if {@code data == null} or 
+	 *                              if any device of {@code xbeeDevices} is 
+	 *                              {@code null}.
+	 * @throws XBeeException if there is any XBee related exception.
+	 * 
+	 * @see #getReceiveTimeout()
+	 * @see #getTransmitWindow()
+	 * @see #sendData(RemoteXBeeDevice, byte[])
+	 * @see #sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])
+	 * @see com.digi.xbee.api.models.XBeeTransmitFuture
+	 */
+	public Map<RemoteXBeeDevice, XBeeTransmitFuture> sendData(Collection<RemoteXBeeDevice> xbeeDevices, byte[] data) throws XBeeException {
+		if (xbeeDevices == null)
+			throw new NullPointerException("Remote XBee devices cannot be null");
+		if (data == null)
+			throw new NullPointerException("Data cannot be null");
+		for (RemoteXBeeDevice xbeeDevice : xbeeDevices) {
+			if (xbeeDevice == null)
+				throw new NullPointerException("Remote XBee device cannot be null");
+		}
+		
+		// Check connection.
+		if (!connectionInterface.isOpen())
+			throw new InterfaceNotOpenException();
+		// Check if device is remote.
+		if (isRemote())
+			throw new OperationNotSupportedException("Cannot send data to a remote device from a remote device.");
+		
+		logger.debug(toString() + "Sending data to {} devices >> {}.", xbeeDevices.size(), HexUtils.prettyHexString(data));
+		
+		LinkedHashMap<RemoteXBeeDevice, XBeeTransmitFuture> results = new LinkedHashMap<RemoteXBeeDevice, XBeeTransmitFuture>();
+		for (RemoteXBeeDevice xbeeDevice : xbeeDevices) {
+			if (results.containsKey(xbeeDevice))
+				continue;
+			XBeeTransmitFuture future;
+			try {
+				future = sendXBeePacketWithStatus(createTransmitPacket(xbeeDevice, 
+						encodeData(xbeeDevice.get64BitAddress(), data)));
+			} catch (XBeeException e) {
+				// Report the error of this destination and go on with the rest.
+				future = new XBeeTransmitFuture();
+				future.fail(e);
+			}
+			results.put(xbeeDevice, future);
+		}
+		
+		// Wait for the transmit status of all the transmissions.
+		for (XBeeTransmitFuture future : results.values()) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				// The error is available in the future.
+			} catch (CancellationException e) {
+				// The future was cancelled by the caller.
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Creates the transmit packet to send the provided data to the given 
+	 * XBee device depending on the protocol of the local XBee device.
+	 * 
+	 * @param xbeeDevice The XBee device of the network that will receive the 
+	 *                   data.
+	 * @param data Byte array containing the data to be sent.
+	 * 
+	 * @return The transmit packet.
+	 * 
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	protected XBeePacket createTransmitPacket(RemoteXBeeDevice xbeeDevice, byte[] data) {
+		XBee64BitAddress address64Bit = xbeeDevice.get64BitAddress();
+		XBee16BitAddress address16Bit = xbeeDevice.get16BitAddress();
+		switch (getXBeeProtocol()) {
+		case RAW_802_15_4:
+			if (address64Bit == null && address16Bit != null)
+				return new TX16Packet(getNextFrameID(), address16Bit, XBeeTransmitOptions.NONE, data);
+			return new TX64Packet(getNextFrameID(), address64Bit, XBeeTransmitOptions.NONE, data);
+		case ZIGBEE:
+		case DIGI_POINT:
+			if (address16Bit != null)
+				return new TransmitPacket(getNextFrameID(), address64Bit, address16Bit, 0, XBeeTransmitOptions.NONE, data);
+			return new TransmitPacket(getNextFrameID(), address64Bit, XBee16BitAddress.UNKNOWN_ADDRESS, 0, XBeeTransmitOptions.NONE, data);
+		default:
+			return new TransmitPacket(getNextFrameID(), address64Bit, XBee16BitAddress.UNKNOWN_ADDRESS, 0, XBeeTransmitOptions.NONE, data);
+		}
+	}
+	
+	/**
+	 * Sends the provided transmit packet asynchronously and returns a future 
+	 * completed by the transmit status with the same frame ID.
+	 * 
+	 * <p>The future fails with a {@code TimeoutException} if the status is 
+	 * not received within the configured receive timeout.</p>
+	 * 
+	 * <p>If a transmit window is configured, this method waits up to the 
+	 * receive timeout for room in the window before sending the packet.</p>
+	 * 
+	 * <p>If a transmit retry policy is configured, failed transmissions are 
+	 * sent again with a new frame ID and the future is completed by the 
+	 * last attempt.</p>
+	 * 
+	 * @param packet The transmit packet to be sent.
+	 * 
+	 * @return The future of the transmission.
+	 * 
+	 * @throws RateLimitException if the transmission is rejected by the rate 
+	 *                            limits.
+	 * @throws TimeoutException if there is no room in the transmit window.
+	 * @throws XBeeException if the packet cannot be written.
+	 * 
+	 * @see #getReceiveTimeout()
+	 * @see #getTransmitRetryPolicy()
+	 * @see #getTransmitWindow()
+	 * @see com.digi.xbee.api.models.XBeeTransmitFuture
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	protected XBeeTransmitFuture sendXBeePacketWithStatus(XBeePacket packet) throws XBeeException {
+		TransmitRetryPolicy retryPolicy = transmitRetryPolicy;
+		if (retryPolicy == null || !(packet instanceof XBeeAPIPacket))
+			return sendTransmitAttempt(packet, null, receiveTimeout);
+		
+		TransmitRetry retry = new TransmitRetry((XBeeAPIPacket)packet, retryPolicy);
+		synchronized (pendingTransmissions) {
+			pendingRetries.add(retry);
+		}
+		try {
+			sendTransmitAttempt(packet, retry, receiveTimeout);
+		} catch (XBeeException e) {
+			retry.finish();
+			throw e;
+		} catch (RuntimeException e) {
+			retry.finish();
+			throw e;
+		}
+		return retry.future;
+	}
+	
+	/**
+	 * Sends an attempt of the provided transmit packet asynchronously and 
+	 * returns a future completed by the transmit status with the same frame 
+	 * ID.
+	 * 
+	 * @param packet The transmit packet to be sent.
+	 * @param retry The retry state of the transmission, {@code null} if it 
+	 *              is not retried.
+	 * @param windowTimeout Time to wait for room in the transmit window in 
+	 *                      milliseconds.
+	 * 
+	 * @return The future of the attempt.
+	 * 
+	 * @throws RateLimitException if the transmission is rejected by the rate 
+	 *                            limits.
+	 * @throws TimeoutException if there is no room in the transmit window.
+	 * @throws XBeeException if the packet cannot be written.
+	 */
+	private XBeeTransmitFuture sendTransmitAttempt(XBeePacket packet, TransmitRetry retry, int windowTimeout) throws XBeeException {
+		// Wait for the tokens of the rate limits.
+		acquireRateLimits(packet, windowTimeout);
+		
+		final XBeeTransmitFuture future = new XBeeTransmitFuture();
+		final TransmitTimeoutTask timeoutTask = new TransmitTimeoutTask(future, transmitWindow, getDestination(packet));
+		timeoutTask.retry = retry;
+		
+		// Wait for room in the transmit window.
+		if (timeoutTask.window != null) {
+			timeoutTask.ticket = timeoutTask.window.acquire(timeoutTask.destination, windowTimeout);
+			if (timeoutTask.ticket == TransmitWindow.NO_TICKET) {
+				// The frame ID will not be answered.
+				if (packet instanceof XBeeAPIPacket)
+					getFrameIDAllocator().release(((XBeeAPIPacket)packet).getFrameID());
+				throw new TimeoutException("There is no room in the transmit window.");
+			}
+		}
+		
+		IPacketReceiveListener statusListener = new IPacketReceiveListener() {
+			/*
+			 * (non-Javadoc)
+			 * @see com.digi.xbee.api.listeners.IPacketReceiveListener#packetReceived(com.digi.xbee.api.packet.XBeePacket)
+			 */
+			@Override
+			public void packetReceived(XBeePacket receivedPacket) {
+				if (!(receivedPacket instanceof TransmitStatusPacket) 
+						&& !(receivedPacket instanceof TXStatusPacket))
+					return;
+				// Finish the transmission even if the future was cancelled, 
+				// so its slot of the transmit window is released.
+				future.complete(receivedPacket);
+				timeoutTask.statusPacket = receivedPacket;
+				finishTransmission(timeoutTask, true);
+			}
+		};
+		timeoutTask.listener = statusListener;
+		
+		synchronized (pendingTransmissions) {
+			pendingTransmissions.add(timeoutTask);
+			if (transmitTimer == null)
+				transmitTimer = new Timer("XBeeTransmitTimer", true);
+			transmitTimer.schedule(timeoutTask, receiveTimeout);
+		}
+		try {
+			sendXBeePacket(packet, statusListener);
+		} catch (IOException e) {
+			finishTransmission(timeoutTask, false);
+			throw new XBeeException("Error writing in the communication interface.", e);
+		} catch (RuntimeException e) {
+			finishTransmission(timeoutTask, false);
+			throw e;
+		}
+		return future;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see com.digi.xbee.api.AbstractXBeeDevice#sendAndCheckXBeePacket(com.digi.xbee.api.packet.XBeePacket, boolean)
+	 */
+	@Override
+	protected void sendAndCheckXBeePacket(XBeePacket packet, boolean asyncTransmission) throws TransmitException, XBeeException {
+		acquireRateLimits(packet, receiveTimeout);
+		super.sendAndCheckXBeePacket(packet, asyncTransmission);
+	}
+	
+	/**
+	 * Waits for the tokens of the rate limits needed to send the given 
+	 * transmit packet.
+	 * 
+	 * @param packet The transmit packet.
+	 * @param timeout Maximum time to wait for the tokens in milliseconds.
 	 * 
-	 * @see #getReceiveTimeout()
-	 * @see #setReceiveTimeout(int)
-	 * @see #sendData(RemoteXBeeDevice, byte[])
-	 * @see #sendData(XBee64BitAddress, byte[])
-	 * @see #sendData(XBee64BitAddress, XBee16BitAddress, byte[])
-	 * @see #sendDataAsync(RemoteXBeeDevice, byte[])
-	 * @see #sendDataAsync(XBee64BitAddress, byte[])
-	 * @see com.digi.xbee.api.models.XBee16BitAddress
-	 * @see com.digi.xbee.api.models.XBee64BitAddress
+	 * @throws RateLimitException if the transmission is rejected by the rate 
+	 *                            limiter.
+	 * 
+	 * @see #getTransmitRateLimiter()
 	 */
-	protected void sendDataAsync(XBee64BitAddress address64Bit, XBee16BitAddress address16bit, byte[] data) throws XBeeException {
-		// Verify the parameters are not null, if they are null, throw an exception.
-		if (address64Bit == null)
-			throw new NullPointerException("64-bit address cannot be null");
-		if (address16bit == null)
-			throw new NullPointerException("16-bit address cannot be null");
-		if (data == null)
-			throw new NullPointerException("Data cannot be null");
-		
-		// Check connection.
-		if (!connectionInterface.isOpen())
-			throw new InterfaceNotOpenException();
-		// Check if device is remote.
-		if (isRemote())
-			throw new OperationNotSupportedException("Cannot send data to a remote device from a remote device.");
+	private void acquireRateLimits(XBeePacket packet, int timeout) throws RateLimitException {
+		TransmitRateLimiter rateLimiter = transmitRateLimiter;
+		if (rateLimiter == null)
+			return;
 		
-		logger.debug(toString() + "Sending data asynchronously to {}[{}] >> {}.", 
-				address64Bit, address16bit, HexUtils.prettyHexString(data));
+		byte[] data;
+		if (packet instanceof TransmitPacket)
+			data = ((TransmitPacket)packet).getRFData();
+		else if (packet instanceof TX64Packet)
+			data = ((TX64Packet)packet).getRFData();
+		else if (packet instanceof TX16Packet)
+			data = ((TX16Packet)packet).getRFData();
+		else
+			return;
 		
-		XBeePacket xbeePacket = new TransmitPacket(getNextFrameID(), address64Bit, address16bit, 0, XBeeTransmitOptions.NONE, data);
-		sendAndCheckXBeePacket(xbeePacket, true);
+		if (!rateLimiter.acquire(getDestination(packet), data == null ? 0 : data.length, timeout)) {
+			// The frame ID will not be answered.
+			getFrameIDAllocator().release(((XBeeAPIPacket)packet).getFrameID());
+			throw new RateLimitException();
+		}
 	}
 	
 	/**
-	 * Sends the provided data to the provided XBee device asynchronously.
+	 * Returns the destination of the given transmit packet used by the 
+	 * transmit window and the rate limits.
 	 * 
-	 * <p>Asynchronous transmissions do not wait for answer from the remote 
-	 * device or for transmit status packet.</p>
+	 * @param packet The transmit packet.
 	 * 
-	 * @param xbeeDevice The XBee device of the network that will receive the 
-	 *                   data.
-	 * @param data Byte array containing the data to be sent.
+	 * @return The destination address, {@code null} for broadcast or 
+	 *         unknown destinations.
+	 */
+	private Object getDestination(XBeePacket packet) {
+		Object destination = null;
+		if (packet instanceof TransmitPacket)
+			destination = ((TransmitPacket)packet).get64bitDestinationAddress();
+		else if (packet instanceof TX64Packet)
+			destination = ((TX64Packet)packet).get64bitDestinationAddress();
+		else if (packet instanceof TX16Packet)
+			destination = ((TX16Packet)packet).get16bitDestinationAddress();
+		if (XBee64BitAddress.BROADCAST_ADDRESS.equals(destination) 
+				|| XBee16BitAddress.BROADCAST_ADDRESS.equals(destination))
+			return null;
+		return destination;
+	}
+	
+	/**
+	 * Removes the given transmission from the pending ones, unsubscribes its 
+	 * transmit status listener, releases its slot of the transmit window and 
+	 * lets its retry state decide whether it must be sent again.
 	 * 
-	 * @throws InterfaceNotOpenException if this device connection is not open.
-	 * @throws NullPointerException if {@code xbeeDevice == null} or 
-	 *                              if {@code data == null}.
-	 * @throws XBeeException if there is any XBee related exception.
+	 * <p>The window is adapted to the transmit status packet of the 
+	 * transmission, or treated as congested if it timed out.</p>
 	 * 
-	 * @see #sendData(RemoteXBeeDevice, byte[])
-	 * @see RemoteXBeeDevice
+	 * @param timeoutTask The timeout task of the transmission.
+	 * @param completed {@code true} if its transmit status was received or 
+	 *                  it timed out, {@code false} if it was not sent or its 
+	 *                  future was already done when it timed out.
 	 */
-	public void sendDataAsync(RemoteXBeeDevice xbeeDevice, byte[] data) throws XBeeException {
-		if (xbeeDevice == null)
-			throw new NullPointerException("Remote XBee device cannot be null");
-		sendDataAsync(xbeeDevice.get64BitAddress(), data);
+	private void finishTransmission(TransmitTimeoutTask timeoutTask, boolean completed) {
+		timeoutTask.cancel();
+		// The data reader does not remove the listeners of a frame ID by 
+		// itself, so the listener must be removed once it is not needed.
+		if (timeoutTask.listener != null)
+			removePacketListener(timeoutTask.listener);
+		synchronized (pendingTransmissions) {
+			if (!pendingTransmissions.remove(timeoutTask))
+				return;
+		}
+		if (timeoutTask.window != null) {
+			if (completed) {
+				XBeeTransmitStatus status = null;
+				int retryCount = 0;
+				if (timeoutTask.statusPacket instanceof TransmitStatusPacket) {
+					status = ((TransmitStatusPacket)timeoutTask.statusPacket).getTransmitStatus();
+					retryCount = ((TransmitStatusPacket)timeoutTask.statusPacket).getTransmitRetryCount();
+				} else if (timeoutTask.statusPacket instanceof TXStatusPacket)
+					status = ((TXStatusPacket)timeoutTask.statusPacket).getTransmitStatus();
+				timeoutTask.window.transmitCompleted(timeoutTask.ticket, timeoutTask.destination, status, retryCount);
+			} else
+				timeoutTask.window.transmitAborted(timeoutTask.destination);
+		}
+		if (completed && timeoutTask.retry != null)
+			timeoutTask.retry.attemptFinished(timeoutTask);
+	}
+	
+	/**
+	 * Fails all the pending asynchronous transmissions and stops the 
+	 * transmit timer.
+	 */
+	private void cancelPendingTransmissions() {
+		ArrayList<TransmitTimeoutTask> tasks;
+		ArrayList<TransmitRetry> retries;
+		synchronized (pendingTransmissions) {
+			tasks = new ArrayList<TransmitTimeoutTask>(pendingTransmissions);
+			pendingTransmissions.clear();
+			retries = new ArrayList<TransmitRetry>(pendingRetries);
+			pendingRetries.clear();
+			if (transmitTimer != null) {
+				transmitTimer.cancel();
+				transmitTimer = null;
+			}
+		}
+		for (TransmitTimeoutTask task : tasks) {
+			removePacketListener(task.listener);
+			task.future.fail(new XBeeException("Connection interface closed."));
+			if (task.window != null)
+				task.window.transmitAborted(task.destination);
+		}
+		for (TransmitRetry retry : retries)
+			retry.future.fail(new XBeeException("Connection interface closed."));
 	}
 	
 	/**
@@ -676,6 +1695,7 @@ public class XBeeDevice extends AbstractXBeeDevice {
 		
 		logger.debug(toString() + "Sending data to {} >> {}.", address, HexUtils.prettyHexString(data));
 		
+		data = encodeData(address, data);
 		XBeePacket xbeePacket;
 		switch (getXBeeProtocol()) {
 		case RAW_802_15_4:
@@ -745,6 +1765,7 @@ public class XBeeDevice extends AbstractXBeeDevice {
 		logger.debug(toString() + "Sending data to {}[{}] >> {}.", 
 				address64Bit, address16bit, HexUtils.prettyHexString(data));
 		
+		data = encodeData(address64Bit, data);
 		XBeePacket xbeePacket = new TransmitPacket(getNextFrameID(), address64Bit, address16bit, 0, XBeeTransmitOptions.NONE, data);
 		sendAndCheckXBeePacket(xbeePacket, false);
 	}
@@ -772,6 +1793,8 @@ public class XBeeDevice extends AbstractXBeeDevice {
 	 * @throws TimeoutException if there is a timeout sending the data.
 	 * @throws XBeeException if there is any other XBee related exception.
 	 * 
+	 * @see #getMessageFragmenter()
+	 * @see #getPayloadCodec()
 	 * @see #getReceiveTimeout()
 	 * @see #setReceiveTimeout(int)
 	 * @see #sendDataAsync(RemoteXBeeDevice, byte[])
@@ -780,6 +1803,20 @@ public class XBeeDevice extends AbstractXBeeDevice {
 		if (xbeeDevice == null)
 			throw new NullPointerException("Remote XBee device cannot be null");
 		
+		// Compress the data before splitting it if it does not fit in a 
+		// single frame. The other send methods compress the data themselves.
+		XBeeMessageFragmenter fragmenter = messageFragmenter;
+		if (fragmenter != null && data != null) {
+			byte[] payload = compressData(xbeeDevice.get64BitAddress(), data);
+			List<byte[]> fragments;
+			if (fragmenter.needsEncoding(payload))
+				fragments = fragmenter.encode(payload);
+			else
+				fragments = Collections.singletonList(payload);
+			sendFragments(xbeeDevice, fragments, fragmenter.getMaxRetransmissions());
+			return;
+		}
+		
 		switch (getXBeeProtocol()) {
 		case ZIGBEE:
 		case DIGI_POINT:
@@ -803,6 +1840,75 @@ public class XBeeDevice extends AbstractXBeeDevice {
 		}
 	}
 	
+	/**
+	 * Sends the given fragments to the provided XBee device and waits for 
+	 * their transmit status.
+	 * 
+	 * <p>Fragments are pipelined within the transmit window. Only the 
+	 * fragments whose transmission fails are sent again, up to the given 
+	 * number of retransmissions.</p>
+	 * 
+	 * @param xbeeDevice The XBee device of the network that will receive the 
+	 *                   fragments.
+	 * @param fragments The payloads of the fragments.
+	 * @param maxRetransmissions Number of times a failed fragment is sent 
+	 *                           again.
+	 * 
+	 * @throws InterfaceNotOpenException if this device connection is not open.
+	 * @throws TimeoutException if there is a timeout sending a fragment.
+	 * @throws TransmitException if the transmit status of a fragment is not 
+	 *                           a success after all the retransmissions.
+	 * @throws XBeeException if there is any other XBee related exception.
+	 * 
+	 * @see com.digi.xbee.api.models.XBeeMessageFragmenter
+	 */
+	private void sendFragments(RemoteXBeeDevice xbeeDevice, List<byte[]> fragments, int maxRetransmissions) throws XBeeException {
+		// Check connection.
+		if (!connectionInterface.isOpen())
+			throw new InterfaceNotOpenException();
+		// Check if device is remote.
+		if (isRemote())
+			throw new OperationNotSupportedException("Cannot send data to a remote device from a remote device.");
+		
+		logger.debug(toString() + "Sending {} fragments to {}.", fragments.size(), xbeeDevice);
+		
+		XBeeTransmitFuture[] futures = new XBeeTransmitFuture[fragments.size()];
+		XBeeException error = null;
+		for (int attempt = 0; attempt <= maxRetransmissions; attempt++) {
+			// Send the fragments that were not delivered yet.
+			for (int i = 0; i < futures.length; i++) {
+				if (futures[i] != null && futures[i].isSuccess())
+					continue;
+				try {
+					futures[i] = sendXBeePacketWithStatus(createTransmitPacket(xbeeDevice, fragments.get(i)));
+				} catch (XBeeException e) {
+					futures[i] = new XBeeTransmitFuture();
+					futures[i].fail(e);
+				}
+			}
+			
+			// Wait for the transmit status of all the fragments.
+			error = null;
+			for (XBeeTransmitFuture future : futures) {
+				try {
+					XBeeTransmitStatus status = future.get();
+					if (status != XBeeTransmitStatus.SUCCESS)
+						error = new TransmitException(status);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new XBeeException("Interrupted while sending the fragments.", e);
+				} catch (ExecutionException e) {
+					error = (XBeeException)e.getCause();
+				} catch (CancellationException e) {
+					error = new XBeeException("Fragment transmission cancelled.");
+				}
+			}
+			if (error == null)
+				return;
+		}
+		throw error;
+	}
+	
 	/**
 	 * Sends the provided data to all the XBee nodes of the network (broadcast).
 	 * 
@@ -1176,15 +2282,174 @@ public class XBeeDevice extends AbstractXBeeDevice {
 		
 		XBeePacketsQueue xbeePacketsQueue = dataReader.getXBeePacketsQueue();
 		XBeePacket xbeePacket = null;
+		long deadline = System.currentTimeMillis() + timeout;
 		
 		if (remoteXBeeDevice != null)
 			xbeePacket = xbeePacketsQueue.getFirstDataPacketFrom(remoteXBeeDevice, timeout);
 		else
 			xbeePacket = xbeePacketsQueue.getFirstDataPacket(timeout);
 		
-		if (xbeePacket == null)
-			return null;
+		while (xbeePacket != null) {
+			XBeeMessage message = createXBeeMessage(xbeePacket, remoteXBeeDevice);
+			// Keep reading while fragments of an incomplete message arrive.
+			if (message != null || messageFragmenter == null)
+				return message;
+			
+			int remaining = (int)Math.max(0, deadline - System.currentTimeMillis());
+			if (remoteXBeeDevice != null)
+				xbeePacket = xbeePacketsQueue.getFirstDataPacketFrom(remoteXBeeDevice, remaining);
+			else
+				xbeePacket = xbeePacketsQueue.getFirstDataPacket(remaining);
+		}
+		return null;
+	}
+	
+	/**
+	 * Reads the data received by this XBee device, waiting up to the provided 
+	 * timeout for the first message.
+	 * 
+	 * <p>This method blocks until new data is received or the provided timeout 
+	 * expires. Then all the received messages, up to {@code maxMessages}, 
+	 * are added to the given collection at once. Use this method instead of 
+	 * calling {@link #readData(int)} in a loop when polling for data from 
+	 * many remote devices.</p>
+	 * 
+	 * @param messages The collection to add the read messages to.
+	 * @param maxMessages The maximum number of messages to read.
+	 * @param timeout The time to wait for new data in milliseconds.
+	 * 
+	 * @return The number of messages added to the collection, {@code 0} if 
+	 *         this device did not receive new data during {@code timeout} 
+	 *         milliseconds.
+	 * 
+	 * @throws IllegalArgumentException if {@code maxMessages < 1} or 
+	 *                                  if {@code timeout < 0}.
+	 * @throws InterfaceNotOpenException if this device connection is not open.
+	 * @throws NullPointerException if {@code messages == null}.
+	 * 
+	 * @see #readData(int)
+	 * @see #readIOSamples(Collection, int, int)
+	 * @see com.digi.xbee.api.models.XBeeMessage
+	 */
+	public int readData(Collection<XBeeMessage> messages, int maxMessages, int timeout) {
+		if (messages == null)
+			throw new NullPointerException("Messages collection cannot be null.");
+		if (maxMessages < 1)
+			throw new IllegalArgumentException("Maximum number of messages must be greater than 0.");
+		if (timeout < 0)
+			throw new IllegalArgumentException("Read timeout must be 0 or greater.");
+		
+		// Check connection.
+		if (!connectionInterface.isOpen())
+			throw new InterfaceNotOpenException();
+		
+		ArrayList<XBeePacket> xbeePackets = new ArrayList<XBeePacket>();
+		dataReader.getXBeePacketsQueue().drainDataPackets(xbeePackets, maxMessages, timeout);
+		
+		int count = 0;
+		for (XBeePacket xbeePacket : xbeePackets) {
+			XBeeMessage message = createXBeeMessage(xbeePacket, null);
+			if (message != null) {
+				messages.add(message);
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Reads the IO samples received by this XBee device, waiting up to the 
+	 * provided timeout for the first sample.
+	 * 
+	 * <p>This method blocks until a new IO sample is received or the provided 
+	 * timeout expires. Then all the received IO samples, up to 
+	 * {@code maxSamples}, are added to the given collection at once.</p>
+	 * 
+	 * <p>IO samples read with this method are not affected by the IO sample 
+	 * change filter, which only applies to the IO sample listeners.</p>
+	 * 
+	 * @param samples The collection to add the read IO samples to.
+	 * @param maxSamples The maximum number of IO samples to read.
+	 * @param timeout The time to wait for new IO samples in milliseconds.
+	 * 
+	 * @return The number of IO samples added to the collection, {@code 0} if 
+	 *         this device did not receive new IO samples during 
+	 *         {@code timeout} milliseconds.
+	 * 
+	 * @throws IllegalArgumentException if {@code maxSamples < 1} or 
+	 *                                  if {@code timeout < 0}.
+	 * @throws InterfaceNotOpenException if this device connection is not open.
+	 * @throws NullPointerException if {@code samples == null}.
+	 * 
+	 * @see #readData(Collection, int, int)
+	 * @see #addIOSampleListener(IIOSampleReceiveListener)
+	 * @see com.digi.xbee.api.models.XBeeIOSampleMessage
+	 */
+	public int readIOSamples(Collection<XBeeIOSampleMessage> samples, int maxSamples, int timeout) {
+		if (samples == null)
+			throw new NullPointerException("Samples collection cannot be null.");
+		if (maxSamples < 1)
+			throw new IllegalArgumentException("Maximum number of samples must be greater than 0.");
+		if (timeout < 0)
+			throw new IllegalArgumentException("Read timeout must be 0 or greater.");
+		
+		// Check connection.
+		if (!connectionInterface.isOpen())
+			throw new InterfaceNotOpenException();
+		
+		ArrayList<XBeePacket> xbeePackets = new ArrayList<XBeePacket>();
+		dataReader.getXBeePacketsQueue().drainIOPackets(xbeePackets, maxSamples, timeout);
 		
+		int count = 0;
+		for (XBeePacket xbeePacket : xbeePackets) {
+			// Obtain the IO sample from the packet.
+			IOSample ioSample = null;
+			switch (((XBeeAPIPacket)xbeePacket).getFrameType()) {
+			case IO_DATA_SAMPLE_RX_INDICATOR:
+				ioSample = ((IODataSampleRxIndicatorPacket)xbeePacket).getIOSample();
+				break;
+			case RX_IO_64:
+				ioSample = ((RX64IOPacket)xbeePacket).getIOSample();
+				break;
+			case RX_IO_16:
+				ioSample = ((RX16IOPacket)xbeePacket).getIOSample();
+				break;
+			default:
+				break;
+			}
+			if (ioSample == null)
+				continue;
+			
+			// Obtain the remote device from the packet.
+			try {
+				RemoteXBeeDevice remoteDevice = dataReader.getRemoteXBeeDeviceFromPacket((XBeeAPIPacket)xbeePacket);
+				if (remoteDevice == null)
+					continue;
+				samples.add(new XBeeIOSampleMessage(remoteDevice, ioSample));
+				count++;
+			} catch (XBeeException e) {
+				logger.error(e.getMessage(), e);
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Creates an XBee message from the given data packet.
+	 * 
+	 * @param xbeePacket The data packet.
+	 * @param remoteXBeeDevice The remote device the packet was read from. 
+	 *                         {@code null} if the packet was read from any 
+	 *                         remote XBee device.
+	 * 
+	 * @return The {@code XBeeMessage} containing the data and the source 
+	 *         address of the remote node that sent the data. {@code null} if 
+	 *         any error occurs while trying to get the source of the message.
+	 * 
+	 * @see RemoteXBeeDevice
+	 * @see com.digi.xbee.api.models.XBeeMessage
+	 */
+	private XBeeMessage createXBeeMessage(XBeePacket xbeePacket, RemoteXBeeDevice remoteXBeeDevice) {
 		// Obtain the remote device from the packet.
 		RemoteXBeeDevice remoteDevice = null;
 		try {
@@ -1224,10 +2489,103 @@ public class XBeeDevice extends AbstractXBeeDevice {
 			return null;
 		}
 		
+		// Reassemble the fragmented messages and decompress them.
+		data = decodeData(remoteDevice, data);
+		if (data == null)
+			return null;
+		
 		// Create and return the XBee message.
 		return new XBeeMessage(remoteDevice, data, ((XBeeAPIPacket)xbeePacket).isBroadcast());
 	}
 	
+	/**
+	 * Processes the data to be sent in a single frame to the given 
+	 * destination with the payload codec and the message fragmenter.
+	 * 
+	 * <p>Every method that sends data to remote devices uses it, so the 
+	 * receivers can decode all the data they receive. Data starting with the 
+	 * marker byte of the fragmenter is sent as a message of a single 
+	 * fragment.</p>
+	 * 
+	 * @param destination The 64-bit address of the destination, {@code null} 
+	 *                    if it is unknown.
+	 * @param data The data to be sent.
+	 * 
+	 * @return The payload to be sent.
+	 * 
+	 * @throws OperationNotSupportedException if a fragmenter is configured 
+	 *                                        and the data does not fit in a 
+	 *                                        single frame.
+	 * 
+	 * @see #decodeData(RemoteXBeeDevice, byte[])
+	 * @see #getMessageFragmenter()
+	 * @see #getPayloadCodec()
+	 */
+	protected byte[] encodeData(XBee64BitAddress destination, byte[] data) throws OperationNotSupportedException {
+		data = compressData(destination, data);
+		
+		XBeeMessageFragmenter fragmenter = messageFragmenter;
+		if (fragmenter == null || !fragmenter.needsEncoding(data))
+			return data;
+		if (data.length > fragmenter.getMaxPayloadSize() - XBeeMessageFragmenter.HEADER_SIZE)
+			throw new OperationNotSupportedException("Data does not fit in a single frame, only sendData(RemoteXBeeDevice, byte[]) sends it in fragments.");
+		return fragmenter.encode(data).get(0);
+	}
+	
+	/**
+	 * Compresses the data to be sent to the given destination with the 
+	 * payload codec, if it is configured.
+	 * 
+	 * @param destination The 64-bit address of the destination, {@code null} 
+	 *                    if it is unknown.
+	 * @param data The data to be sent.
+	 * 
+	 * @return The compressed data.
+	 * 
+	 * @see #getPayloadCodec()
+	 */
+	private byte[] compressData(XBee64BitAddress destination, byte[] data) {
+		XBeePayloadCodec codec = payloadCodec;
+		if (codec != null)
+			data = codec.encode(destination, data);
+		return data;
+	}
+	
+	/**
+	 * Processes the data read from the given remote device with the 
+	 * reassembler of the read data methods and the payload codec.
+	 * 
+	 * @param remoteDevice The remote XBee device that sent the data.
+	 * @param data The received data.
+	 * 
+	 * @return The data of the message, {@code null} if it is a fragment of a 
+	 *         message that is not complete yet or if it cannot be 
+	 *         decompressed.
+	 * 
+	 * @see #getMessageFragmenter()
+	 * @see #getPayloadCodec()
+	 */
+	private byte[] decodeData(RemoteXBeeDevice remoteDevice, byte[] data) {
+		XBeeMessageFragmenter fragmenter = messageFragmenter;
+		if (fragmenter != null && data != null) {
+			XBeeMessageReassembler reassembler;
+			synchronized (this) {
+				if (readReassembler == null || readReassembler.getFragmenter() != fragmenter)
+					readReassembler = fragmenter.createReassembler();
+				reassembler = readReassembler;
+			}
+			data = reassembler.decode(remoteDevice, data);
+		}
+		
+		XBeePayloadCodec codec = payloadCodec;
+		if (codec != null && data != null) {
+			data = codec.decode(data);
+			if (data == null)
+				logger.warn(toString() + "Discarding data from {} that cannot be decompressed.", remoteDevice);
+		}
+		return data;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see com.digi.xbee.api.AbstractXBeeDevice#toString()
@@ -1252,4 +2610,216 @@ public class XBeeDevice extends AbstractXBeeDevice {
 		
 		return message.toString();
 	}
+	
+	/**
+	 * Helper class that fails an asynchronous transmission when its transmit 
+	 * status is not received in time.
+	 */
+	private class TransmitTimeoutTask extends TimerTask {
+		
+		// Variables.
+		private final XBeeTransmitFuture future;
+		
+		private final TransmitWindow window;
+		
+		private final Object destination;
+		
+		private long ticket = TransmitWindow.NO_TICKET;
+		
+		private IPacketReceiveListener listener;
+		
+		private TransmitRetry retry;
+		
+		private XBeePacket statusPacket;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code TransmitTimeoutTask} 
+		 * object for the given transmission.
+		 * 
+		 * @param future The future of the transmission.
+		 * @param window The transmit window of the transmission, 
+		 *               {@code null} if there is no window.
+		 * @param destination The destination of the transmission.
+		 */
+		private TransmitTimeoutTask(XBeeTransmitFuture future, TransmitWindow window, Object destination) {
+			this.future = future;
+			this.window = window;
+			this.destination = destination;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.util.TimerTask#run()
+		 */
+		@Override
+		public void run() {
+			// A future cancelled before the timeout says nothing about the 
+			// congestion of the network.
+			finishTransmission(this, future.fail(new TimeoutException()));
+		}
+	}
+	
+	/**
+	 * Helper class that stores the retry state of an asynchronous 
+	 * transmission and schedules its retries in the transmit timer.
+	 */
+	private class TransmitRetry {
+		
+		// Variables.
+		private final XBeeAPIPacket packet;
+		
+		private final TransmitRetryPolicy policy;
+		
+		private final XBeeTransmitFuture future = new XBeeTransmitFuture();
+		
+		private final long startTime = System.currentTimeMillis();
+		
+		private int attempts = 1;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code TransmitRetry} object 
+		 * for the given transmission.
+		 * 
+		 * @param packet The transmit packet.
+		 * @param policy The retry policy of the transmission.
+		 */
+		private TransmitRetry(XBeeAPIPacket packet, TransmitRetryPolicy policy) {
+			this.packet = packet;
+			this.policy = policy;
+		}
+		
+		/**
+		 * Schedules a retry if the given finished attempt must be retried, or 
+		 * completes the future of the transmission with its result otherwise.
+		 * 
+		 * @param attempt The timeout task of the finished attempt.
+		 */
+		private void attemptFinished(TransmitTimeoutTask attempt) {
+			XBeeTransmitStatus status = attempt.future.getTransmitStatus();
+			XBeeException error = status == null ? getError(attempt.future) : null;
+			boolean retryable = status == null ? 
+					policy.isRetryOnTimeout() && error instanceof TimeoutException : policy.isRetryable(status);
+			if (retryable && !future.isDone()) {
+				long backoff = policy.getBackoff(attempts);
+				if (policy.canRetry(attempts, System.currentTimeMillis() - startTime + backoff)) {
+					attempts++;
+					if (schedule(backoff))
+						return;
+				}
+			}
+			
+			// Complete the transmission with the result of the last attempt.
+			if (attempt.statusPacket != null)
+				future.complete(attempt.statusPacket);
+			else
+				future.fail(error);
+			finish();
+		}
+		
+		/**
+		 * Sends a new attempt of the transmission. Called from the transmit 
+		 * timer.
+		 */
+		private void resend() {
+			if (future.isDone()) {
+				finish();
+				return;
+			}
+			
+			// Do not block the timer waiting for a frame ID, for room in the 
+			// transmit window or for the rate limits; wait another backoff 
+			// instead.
+			int frameID = getFrameIDAllocator().tryAllocate();
+			if (frameID == FrameIDAllocator.NO_FRAME_ID) {
+				waitForResources();
+				return;
+			}
+			packet.setFrameID(frameID);
+			try {
+				sendTransmitAttempt(packet, this, 0);
+			} catch (TimeoutException e) {
+				waitForResources();
+			} catch (RateLimitException e) {
+				waitForResources();
+			} catch (XBeeException e) {
+				future.fail(e);
+				finish();
+			} catch (RuntimeException e) {
+				future.fail(new XBeeException(e));
+				finish();
+			}
+		}
+		
+		/**
+		 * Schedules the pending attempt again because there is no frame ID, 
+		 * room in the transmit window or rate limit tokens, or fails the 
+		 * transmission if the deadline is exceeded.
+		 */
+		private void waitForResources() {
+			long backoff = policy.getBackoff(attempts);
+			if (policy.canRetry(attempts - 1, System.currentTimeMillis() - startTime + backoff) && schedule(backoff))
+				return;
+			future.fail(new TimeoutException("There is no room to retry the transmission."));
+			finish();
+		}
+		
+		/**
+		 * Schedules the next attempt in the transmit timer.
+		 * 
+		 * @param delay Time to wait before the attempt in milliseconds.
+		 * 
+		 * @return {@code true} if the attempt was scheduled, {@code false} if 
+		 *         the connection was closed.
+		 */
+		private boolean schedule(long delay) {
+			synchronized (pendingTransmissions) {
+				if (!pendingRetries.contains(this))
+					return false;
+				if (transmitTimer == null)
+					transmitTimer = new Timer("XBeeTransmitTimer", true);
+				transmitTimer.schedule(new TimerTask() {
+					/*
+					 * (non-Javadoc)
+					 * @see java.util.TimerTask#run()
+					 */
+					@Override
+					public void run() {
+						resend();
+					}
+				}, delay);
+				return true;
+			}
+		}
+		
+		/**
+		 * Removes this transmission from the pending retries.
+		 */
+		private void finish() {
+			synchronized (pendingTransmissions) {
+				pendingRetries.remove(this);
+			}
+		}
+		
+		/**
+		 * Returns the error of the given failed future.
+		 * 
+		 * @param attemptFuture The future of the attempt.
+		 * 
+		 * @return The exception that failed the future.
+		 */
+		private XBeeException getError(XBeeTransmitFuture attemptFuture) {
+			try {
+				attemptFuture.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof XBeeException)
+					return (XBeeException)e.getCause();
+				return new XBeeException(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (CancellationException e) {
+				// Handled below.
+			}
+			return new XBeeException("Transmission failed.");
+		}
+	}
 }
@@ -14,6 +14,7 @@ package com.digi.xbee.api.connection;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -30,6 +31,14 @@ import com.digi.xbee.api.XBeeNetwork;
 import com.digi.xbee.api.exceptions.InvalidPacketException;
 import com.digi.xbee.api.exceptions.XBeeException;
 import com.digi.xbee.api.io.IOSample;
+import com.digi.xbee.api.io.IOSampleChangeFilter;
+import com.digi.xbee.api.io.IOSampleDecoder;
+import com.digi.xbee.api.io.IOSampleAggregate;
+import com.digi.xbee.api.io.IOSampleAggregator;
+import com.digi.xbee.api.io.IOSampleHistory;
+import com.digi.xbee.api.io.IOSampleRuleEngine;
+import com.digi.xbee.api.io.IOSampleRuleMatch;
+import com.digi.xbee.api.listeners.IIOSampleAggregateListener;
 import com.digi.xbee.api.listeners.IIOSampleReceiveListener;
 import com.digi.xbee.api.listeners.IModemStatusReceiveListener;
 import com.digi.xbee.api.listeners.IPacketReceiveListener;
@@ -40,6 +49,9 @@ import com.digi.xbee.api.models.OperatingMode;
 import com.digi.xbee.api.models.XBee16BitAddress;
 import com.digi.xbee.api.models.XBee64BitAddress;
 import com.digi.xbee.api.models.XBeeMessage;
+import com.digi.xbee.api.models.XBeeMessageFragmenter;
+import com.digi.xbee.api.models.XBeeMessageReassembler;
+import com.digi.xbee.api.models.XBeePayloadCodec;
 import com.digi.xbee.api.models.XBeePacketsQueue;
 import com.digi.xbee.api.packet.XBeeAPIPacket;
 import com.digi.xbee.api.packet.APIFrameType;
@@ -89,6 +101,10 @@ public class DataReader extends Thread {
 	
 	private XBeeDevice xbeeDevice;
 	
+	private IOSampleDecoder ioSampleDecoder = new IOSampleDecoder();
+	
+	private XBeeMessageReassembler reassembler;
+	
 	/**
 	 * Class constructor. Instantiates a new {@code DataReader} object for the 
 	 * given connection interface using the given XBee operating mode and XBee
@@ -117,7 +133,14 @@ public class DataReader extends Thread {
 		this.xbeeDevice = xbeeDevice;
 		this.logger = LoggerFactory.getLogger(DataReader.class);
 		parser = new XBeePacketParser();
-		xbeePacketsQueue = new XBeePacketsQueue();
+		if (xbeeDevice != null && xbeeDevice.getPacketsQueueCapacity() > 0 
+				&& xbeeDevice.getPacketsQueueOverflowPolicy() != null)
+			xbeePacketsQueue = new XBeePacketsQueue(xbeeDevice.getPacketsQueueCapacity(), 
+					xbeeDevice.getPacketsQueueOverflowPolicy(), xbeeDevice.getPacketsQueueBlockTimeout());
+		else
+			xbeePacketsQueue = new XBeePacketsQueue();
+		if (xbeeDevice != null && xbeeDevice.getPacketsSpool() != null)
+			xbeePacketsQueue.setSpool(xbeeDevice.getPacketsSpool());
 	}
 	
 	/**
@@ -397,6 +420,19 @@ public class DataReader extends Thread {
 		if (apiType == null)
 			return;
 		
+		// Release the frame ID of the answered request.
+		switch (apiType) {
+		case AT_COMMAND_RESPONSE:
+		case REMOTE_AT_COMMAND_RESPONSE:
+		case TRANSMIT_STATUS:
+		case TX_STATUS:
+			if (xbeeDevice != null && xbeeDevice.getFrameIDAllocator() != null)
+				xbeeDevice.getFrameIDAllocator().responseReceived(apiPacket.getFrameID());
+			break;
+		default:
+			break;
+		}
+		
 		try {
 			// Obtain the remote device from the packet.
 			RemoteXBeeDevice remoteDevice = getRemoteXBeeDeviceFromPacket(apiPacket);
@@ -405,30 +441,36 @@ public class DataReader extends Thread {
 			switch(apiType) {
 			case RECEIVE_PACKET:
 				ReceivePacket receivePacket = (ReceivePacket)apiPacket;
-				data = receivePacket.getRFData();
-				notifyDataReceived(new XBeeMessage(remoteDevice, data, apiPacket.isBroadcast()));
+				data = decodeData(remoteDevice, receivePacket.getRFData());
+				if (data != null)
+					notifyDataReceived(new XBeeMessage(remoteDevice, data, apiPacket.isBroadcast()));
 				break;
 			case RX_64:
 				RX64Packet rx64Packet = (RX64Packet)apiPacket;
-				data = rx64Packet.getRFData();
-				notifyDataReceived(new XBeeMessage(remoteDevice, data, apiPacket.isBroadcast()));
+				data = decodeData(remoteDevice, rx64Packet.getRFData());
+				if (data != null)
+					notifyDataReceived(new XBeeMessage(remoteDevice, data, apiPacket.isBroadcast()));
 				break;
 			case RX_16:
 				RX16Packet rx16Packet = (RX16Packet)apiPacket;
-				data = rx16Packet.getRFData();
-				notifyDataReceived(new XBeeMessage(remoteDevice, data, apiPacket.isBroadcast()));
+				data = decodeData(remoteDevice, rx16Packet.getRFData());
+				if (data != null)
+					notifyDataReceived(new XBeeMessage(remoteDevice, data, apiPacket.isBroadcast()));
 				break;
 			case IO_DATA_SAMPLE_RX_INDICATOR:
 				IODataSampleRxIndicatorPacket ioSamplePacket = (IODataSampleRxIndicatorPacket)apiPacket;
-				notifyIOSampleReceived(remoteDevice, ioSamplePacket.getIOSample());
+				if (ioSampleReceived(remoteDevice, ioSamplePacket.getRFData()))
+					notifyIOSampleReceived(remoteDevice, ioSamplePacket.getIOSample());
 				break;
 			case RX_IO_64:
 				RX64IOPacket rx64IOPacket = (RX64IOPacket)apiPacket;
-				notifyIOSampleReceived(remoteDevice, rx64IOPacket.getIOSample());
+				if (ioSampleReceived(remoteDevice, rx64IOPacket.getRFData()))
+					notifyIOSampleReceived(remoteDevice, rx64IOPacket.getIOSample());
 				break;
 			case RX_IO_16:
 				RX16IOPacket rx16IOPacket = (RX16IOPacket)apiPacket;
-				notifyIOSampleReceived(remoteDevice, rx16IOPacket.getIOSample());
+				if (ioSampleReceived(remoteDevice, rx16IOPacket.getRFData()))
+					notifyIOSampleReceived(remoteDevice, rx16IOPacket.getIOSample());
 				break;
 			case MODEM_STATUS:
 				ModemStatusPacket modemStatusPacket = (ModemStatusPacket)apiPacket;
@@ -442,6 +484,101 @@ public class DataReader extends Thread {
 		}
 	}
 	
+	/**
+	 * Processes the received data with the reassembler of the message 
+	 * fragmenter and the payload codec configured in the local device.
+	 * 
+	 * @param remoteDevice The remote XBee device that sent the data.
+	 * @param data The received data.
+	 * 
+	 * @return The data of the message, {@code null} if it is a fragment of a 
+	 *         message that is not complete yet or if it cannot be 
+	 *         decompressed.
+	 * 
+	 * @see com.digi.xbee.api.XBeeDevice#getMessageFragmenter()
+	 * @see com.digi.xbee.api.XBeeDevice#getPayloadCodec()
+	 * @see com.digi.xbee.api.models.XBeeMessageReassembler
+	 * @see com.digi.xbee.api.models.XBeePayloadCodec
+	 */
+	private byte[] decodeData(RemoteXBeeDevice remoteDevice, byte[] data) {
+		if (xbeeDevice == null || data == null)
+			return data;
+		
+		XBeeMessageFragmenter fragmenter = xbeeDevice.getMessageFragmenter();
+		if (fragmenter != null) {
+			if (reassembler == null || reassembler.getFragmenter() != fragmenter)
+				reassembler = fragmenter.createReassembler();
+			data = reassembler.decode(remoteDevice, data);
+		}
+		
+		XBeePayloadCodec codec = xbeeDevice.getPayloadCodec();
+		if (codec != null && data != null) {
+			data = codec.decode(data);
+			if (data == null)
+				logger.warn(connectionInterface.toString() + "Discarding data from {} that cannot be decompressed.", remoteDevice);
+		}
+		return data;
+	}
+	
+	/**
+	 * Processes a received IO sample before notifying it to the subscribed IO 
+	 * sample listeners.
+	 * 
+	 * <p>The sample is stored in the IO sample history of the remote device, 
+	 * evaluated by the IO sample rules, added to the IO sample aggregator and 
+	 * checked against the IO sample change filter if they are enabled in the 
+	 * local device.</p>
+	 * 
+	 * @param remoteDevice The remote XBee device that sent the sample.
+	 * @param ioSamplePayload The payload of the received IO sample.
+	 * 
+	 * @return {@code true} if the IO sample listeners must be notified, 
+	 *         {@code false} otherwise.
+	 * 
+	 * @see com.digi.xbee.api.RemoteXBeeDevice
+	 * @see com.digi.xbee.api.io.IOSampleDecoder
+	 */
+	private boolean ioSampleReceived(RemoteXBeeDevice remoteDevice, byte[] ioSamplePayload) {
+		long timestamp = System.currentTimeMillis();
+		
+		if (!ioSampleDecoder.decode(ioSamplePayload) || remoteDevice == null || xbeeDevice == null)
+			return true;
+		
+		// Store the sample in the history of the remote device.
+		int historyCapacity = xbeeDevice.getIOSampleHistoryCapacity();
+		if (historyCapacity > 0) {
+			IOSampleHistory history = remoteDevice.getIOSampleHistory();
+			if (history == null || history.getCapacity() != historyCapacity) {
+				history = new IOSampleHistory(historyCapacity);
+				remoteDevice.setIOSampleHistory(history);
+			}
+			history.addSample(timestamp, ioSampleDecoder);
+		}
+		
+		// Evaluate the IO sample rules.
+		IOSampleRuleEngine ruleEngine = xbeeDevice.getIOSampleRuleEngine();
+		if (ruleEngine != null) {
+			List<IOSampleRuleMatch> matches = ruleEngine.evaluate(remoteDevice, ioSampleDecoder);
+			if (!matches.isEmpty())
+				notifyIOSampleRuleMatched(matches);
+		}
+		
+		// Aggregate the sample.
+		IOSampleAggregator aggregator = xbeeDevice.getIOSampleAggregator();
+		if (aggregator != null) {
+			List<IOSampleAggregate> aggregates = aggregator.addSample(remoteDevice, timestamp, ioSampleDecoder);
+			if (!aggregates.isEmpty())
+				notifyIOSamplesAggregated(aggregator.getAggregateListeners(), aggregates);
+		}
+		
+		// Discard the sample if it does not contain changes.
+		IOSampleChangeFilter changeFilter = xbeeDevice.getIOSampleChangeFilter();
+		if (changeFilter != null && !changeFilter.accept(remoteDevice, ioSampleDecoder))
+			return false;
+		
+		return true;
+	}
+	
 	/**
 	 * Returns the remote XBee device from where the given package was sent 
 	 * from.
@@ -631,7 +768,8 @@ public class DataReader extends Thread {
 	 * @see com.digi.xbee.api.packet.XBeePacket
 	 */
 	private void notifyPacketReceived(final XBeePacket packet) {
-		logger.debug(connectionInterface.toString() + "Packet received: \n{}", packet.toPrettyString());
+		if (logger.isDebugEnabled())
+			logger.debug(connectionInterface.toString() + "Packet received: \n{}", packet.toPrettyString());
 		
 		try {
 			synchronized (packetReceiveListeners) {
@@ -712,6 +850,87 @@ public class DataReader extends Thread {
 		}
 	}
 	
+	/**
+	 * Notifies the listeners of the matched IO sample rules.
+	 *
+	 * @param matches The list of IO sample rule matches.
+	 * 
+	 * @see com.digi.xbee.api.io.IOSampleRuleMatch
+	 */
+	private void notifyIOSampleRuleMatched(final List<IOSampleRuleMatch> matches) {
+		logger.debug(connectionInterface.toString() + "IO sample rule matched.");
+		
+		try {
+			ScheduledExecutorService executor = Executors.newScheduledThreadPool(Math.min(MAXIMUM_PARALLEL_LISTENER_THREADS, 
+					matches.size()));
+			for (final IOSampleRuleMatch match:matches) {
+				executor.execute(new Runnable() {
+					/*
+					 * (non-Javadoc)
+					 * @see java.lang.Runnable#run()
+					 */
+					@Override
+					public void run() {
+						// Synchronize the listener so it is not called 
+						// twice. That is, let the listener to finish its job.
+						synchronized (match.getListener()) {
+							match.getListener().ioSampleRuleMatched(match.getRemoteDevice(), 
+									match.getRule(), match.getValue());
+						}
+					}
+				});
+			}
+			executor.shutdown();
+		} catch (Exception e) {
+			logger.error(e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Notifies the given IO sample aggregate listeners about the closed 
+	 * aggregation windows.
+	 * 
+	 * <p>Every listener receives the aggregates in order.</p>
+	 *
+	 * @param listeners The aggregate listeners to notify.
+	 * @param aggregates The aggregates of the closed windows.
+	 * 
+	 * @see com.digi.xbee.api.io.IOSampleAggregate
+	 * @see com.digi.xbee.api.listeners.IIOSampleAggregateListener
+	 */
+	private void notifyIOSamplesAggregated(List<IIOSampleAggregateListener> listeners, 
+			final List<IOSampleAggregate> aggregates) {
+		if (listeners.isEmpty())
+			return;
+		
+		logger.debug(connectionInterface.toString() + "IO sample aggregation window closed.");
+		
+		try {
+			ScheduledExecutorService executor = Executors.newScheduledThreadPool(Math.min(MAXIMUM_PARALLEL_LISTENER_THREADS, 
+					listeners.size()));
+			for (final IIOSampleAggregateListener listener:listeners) {
+				executor.execute(new Runnable() {
+					/*
+					 * (non-Javadoc)
+					 * @see java.lang.Runnable#run()
+					 */
+					@Override
+					public void run() {
+						// Synchronize the listener so it is not called 
+						// twice. That is, let the listener to finish its job.
+						synchronized (listener) {
+							for (IOSampleAggregate aggregate:aggregates)
+								listener.ioSamplesAggregated(aggregate);
+						}
+					}
+				});
+			}
+			executor.shutdown();
+		} catch (Exception e) {
+			logger.error(e.getMessage(), e);
+		}
+	}
+	
 	/**
 	 * Notifies subscribed Modem Status listeners that a Modem Status event 
 	 * packet has been received.
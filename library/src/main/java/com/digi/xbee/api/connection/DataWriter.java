@@ -0,0 +1,436 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.connection;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.digi.xbee.api.models.WritePriority;
+
+/**
+ * Thread that writes the data of all the callers in an output connection 
+ * interface.
+ * 
+ * <p>Data is queued in a bounded queue per priority class (see 
+ * {@link WritePriority}) and written by this thread one frame at a time, so 
+ * a local AT command never waits behind a backlog of data transmissions. 
+ * To avoid starving the lower classes, a queued frame is promoted one class 
+ * for every aging interval it has been waiting.</p>
+ * 
+ * <p>When several frames are queued, up to {@value #MAX_BATCH_FRAMES} of 
+ * them are taken in priority order. If the connection interface supports 
+ * gather writes (see {@link IGatheringConnectionInterface}), they are 
+ * written together with a single write; otherwise they are written one by 
+ * one.</p>
+ * 
+ * <p>Callers are blocked until their data is written, so errors are 
+ * reported to the thread that requested the write. If the queue of a class 
+ * is full, callers of that class are blocked until there is room.</p>
+ * 
+ * @see DataReader
+ * @see WritePriority
+ */
+public class DataWriter extends Thread {
+	
+	// Constants.
+	/**
+	 * Default maximum number of frames queued per priority class 
+	 * ({@value}).
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 32;
+	
+	/**
+	 * Default time a frame must wait to be promoted one priority class 
+	 * ({@value} ms).
+	 */
+	public static final int DEFAULT_AGING_INTERVAL = 250;
+	
+	/**
+	 * Maximum number of queued frames written together ({@value}).
+	 */
+	public static final int MAX_BATCH_FRAMES = 8;
+	
+	// Variables.
+	private volatile boolean running = false;
+	private boolean stopped = false;
+	
+	private final IConnectionInterface connectionInterface;
+	
+	private final int queueCapacity;
+	private final int agingInterval;
+	
+	private final ArrayList<LinkedList<WriteRequest>> queues;
+	
+	private final Object lock = new Object();
+	
+	private Logger logger;
+	
+	/**
+	 * Class constructor. Instantiates a new {@code DataWriter} object for the 
+	 * given connection interface using the default queue capacity and aging 
+	 * interval.
+	 * 
+	 * @param connectionInterface Connection interface to write data to.
+	 * 
+	 * @throws NullPointerException if {@code connectionInterface == null}.
+	 * 
+	 * @see #DataWriter(IConnectionInterface, int, int)
+	 * @see IConnectionInterface
+	 */
+	public DataWriter(IConnectionInterface connectionInterface) {
+		this(connectionInterface, DEFAULT_QUEUE_CAPACITY, DEFAULT_AGING_INTERVAL);
+	}
+	
+	/**
+	 * Class constructor. Instantiates a new {@code DataWriter} object for the 
+	 * given connection interface with the given parameters.
+	 * 
+	 * @param connectionInterface Connection interface to write data to.
+	 * @param queueCapacity Maximum number of frames queued per priority 
+	 *                      class.
+	 * @param agingInterval Time in milliseconds a frame must wait to be 
+	 *                      promoted one priority class.
+	 * 
+	 * @throws IllegalArgumentException if {@code queueCapacity < 1} or 
+	 *                                  if {@code agingInterval < 1}.
+	 * @throws NullPointerException if {@code connectionInterface == null}.
+	 * 
+	 * @see IConnectionInterface
+	 */
+	public DataWriter(IConnectionInterface connectionInterface, int queueCapacity, int agingInterval) {
+		if (connectionInterface == null)
+			throw new NullPointerException("Connection interface cannot be null.");
+		if (queueCapacity < 1)
+			throw new IllegalArgumentException("Queue capacity must be greater than 0.");
+		if (agingInterval < 1)
+			throw new IllegalArgumentException("Aging interval must be greater than 0.");
+		
+		this.connectionInterface = connectionInterface;
+		this.queueCapacity = queueCapacity;
+		this.agingInterval = agingInterval;
+		this.logger = LoggerFactory.getLogger(DataWriter.class);
+		
+		queues = new ArrayList<LinkedList<WriteRequest>>(WritePriority.values().length);
+		for (int i = 0; i < WritePriority.values().length; i++)
+			queues.add(new LinkedList<WriteRequest>());
+		
+		setName("XBeeDataWriter");
+		setDaemon(true);
+	}
+	
+	/**
+	 * Writes the given data in the connection interface with the given 
+	 * priority.
+	 * 
+	 * <p>This method blocks until the data is written. If the queue of the 
+	 * priority class is full, it first blocks until there is room.</p>
+	 * 
+	 * @param data The data to write.
+	 * @param priority The priority class of the data.
+	 * 
+	 * @throws InterruptedIOException if the calling thread is interrupted 
+	 *                                while waiting for room in the queue.
+	 * @throws IOException if the data writer is stopped or if an I/O error 
+	 *                     occurs while writing the data.
+	 * @throws NullPointerException if {@code data == null} or 
+	 *                              if {@code priority == null}.
+	 * 
+	 * @see WritePriority
+	 */
+	public void writeData(byte[] data, WritePriority priority) throws IOException {
+		if (data == null)
+			throw new NullPointerException("Data cannot be null.");
+		if (priority == null)
+			throw new NullPointerException("Priority cannot be null.");
+		
+		WriteRequest request = new WriteRequest(data);
+		synchronized (lock) {
+			LinkedList<WriteRequest> queue = queues.get(priority.getID());
+			while (!stopped && queue.size() >= queueCapacity) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for room in the write queue.");
+				}
+			}
+			if (stopped)
+				throw new IOException("Data writer stopped.");
+			
+			request.queueTime = System.currentTimeMillis();
+			queue.addLast(request);
+			lock.notifyAll();
+		}
+		request.waitWritten();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Thread#run()
+	 */
+	@Override
+	public void run() {
+		logger.debug(connectionInterface.toString() + "Data writer started.");
+		running = true;
+		try {
+			ArrayList<WriteRequest> batch = new ArrayList<WriteRequest>(MAX_BATCH_FRAMES);
+			while (true) {
+				WriteRequest request = null;
+				batch.clear();
+				synchronized (lock) {
+					while (!stopped && (request = pollNextRequest()) == null)
+						lock.wait();
+					if (stopped)
+						break;
+					// Take the rest of the queued frames in priority order.
+					do {
+						batch.add(request);
+					} while (batch.size() < MAX_BATCH_FRAMES && (request = pollNextRequest()) != null);
+					// Wake up the callers waiting for room in the queue.
+					lock.notifyAll();
+				}
+				writeBatch(batch);
+			}
+		} catch (InterruptedException e) {
+			logger.error(e.getMessage(), e);
+		} finally {
+			running = false;
+			failPendingRequests();
+		}
+	}
+	
+	/**
+	 * Writes the given requests in the connection interface and wakes up 
+	 * their callers.
+	 * 
+	 * <p>Runtime exceptions of the connection interface are reported to the 
+	 * callers wrapped in an {@code IOException}, so none of them is left 
+	 * waiting and the data writer keeps running.</p>
+	 * 
+	 * @param batch The requests to write, in order.
+	 */
+	private void writeBatch(ArrayList<WriteRequest> batch) {
+		if (batch.size() == 1 || !(connectionInterface instanceof IGatheringConnectionInterface)) {
+			for (WriteRequest request : batch) {
+				try {
+					connectionInterface.writeData(request.data);
+					request.written(null);
+				} catch (IOException e) {
+					request.written(e);
+				} catch (RuntimeException e) {
+					request.written(new IOException("Error writing in the connection interface.", e));
+				}
+			}
+			return;
+		}
+		
+		IOException error = null;
+		try {
+			ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+			for (int i = 0; i < buffers.length; i++)
+				buffers[i] = ByteBuffer.wrap(batch.get(i).data);
+			((IGatheringConnectionInterface)connectionInterface).writeData(buffers);
+		} catch (IOException e) {
+			error = e;
+		} catch (RuntimeException e) {
+			error = new IOException("Error writing in the connection interface.", e);
+		}
+		for (WriteRequest request : batch)
+			request.written(error);
+	}
+	
+	/**
+	 * Removes and returns the next request to write.
+	 * 
+	 * <p>The next request is the head of the queue with the lowest effective 
+	 * class, which is the class of the queue minus the number of aging 
+	 * intervals its head has been waiting. Ties are resolved in favor of the 
+	 * higher priority class.</p>
+	 * 
+	 * <p>The calling thread must own the lock of the data writer.</p>
+	 * 
+	 * @return The next request to write, {@code null} if all the queues are 
+	 *         empty.
+	 */
+	private WriteRequest pollNextRequest() {
+		long now = System.currentTimeMillis();
+		int selected = -1;
+		long selectedClass = Long.MAX_VALUE;
+		for (int i = 0; i < queues.size(); i++) {
+			WriteRequest head = queues.get(i).peek();
+			if (head == null)
+				continue;
+			long effectiveClass = i - Math.max(0, now - head.queueTime) / agingInterval;
+			if (effectiveClass < selectedClass) {
+				selected = i;
+				selectedClass = effectiveClass;
+			}
+		}
+		if (selected == -1)
+			return null;
+		return queues.get(selected).poll();
+	}
+	
+	/**
+	 * Fails all the queued requests because the data writer is stopped.
+	 */
+	private void failPendingRequests() {
+		LinkedList<WriteRequest> pending = new LinkedList<WriteRequest>();
+		synchronized (lock) {
+			stopped = true;
+			for (LinkedList<WriteRequest> queue : queues) {
+				pending.addAll(queue);
+				queue.clear();
+			}
+			lock.notifyAll();
+		}
+		for (WriteRequest request : pending)
+			request.written(new IOException("Data writer stopped."));
+	}
+	
+	/**
+	 * Returns the number of frames waiting to be written with the given 
+	 * priority.
+	 * 
+	 * @param priority The priority class.
+	 * 
+	 * @return The number of queued frames of the priority class.
+	 * 
+	 * @throws NullPointerException if {@code priority == null}.
+	 * 
+	 * @see WritePriority
+	 */
+	public int getQueuedFrames(WritePriority priority) {
+		if (priority == null)
+			throw new NullPointerException("Priority cannot be null.");
+		
+		synchronized (lock) {
+			return queues.get(priority.getID()).size();
+		}
+	}
+	
+	/**
+	 * Returns the maximum number of frames queued per priority class.
+	 * 
+	 * @return The queue capacity of every priority class.
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+	
+	/**
+	 * Returns the time a frame must wait to be promoted one priority class.
+	 * 
+	 * @return The aging interval in milliseconds.
+	 */
+	public int getAgingInterval() {
+		return agingInterval;
+	}
+	
+	/**
+	 * Returns whether the Data writer is running or not.
+	 * 
+	 * @return {@code true} if the Data writer is running, {@code false} 
+	 *         otherwise.
+	 * 
+	 * @see #stopWriter()
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * Stops the Data writer thread.
+	 * 
+	 * <p>The frames that are still queued are not written and their callers 
+	 * receive an {@code IOException}.</p>
+	 * 
+	 * @see #isRunning()
+	 */
+	public void stopWriter() {
+		synchronized (lock) {
+			stopped = true;
+			lock.notifyAll();
+		}
+		if (!isAlive())
+			failPendingRequests();
+		logger.debug(connectionInterface.toString() + "Data writer stopped.");
+	}
+	
+	/**
+	 * Helper class that holds the data of a caller until it is written.
+	 */
+	private static class WriteRequest {
+		
+		// Variables.
+		private final byte[] data;
+		
+		private long queueTime;
+		
+		private boolean written = false;
+		private IOException error;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code WriteRequest} object 
+		 * for the given data.
+		 * 
+		 * @param data The data to write.
+		 */
+		private WriteRequest(byte[] data) {
+			this.data = data;
+		}
+		
+		/**
+		 * Marks this request as written and wakes up its caller.
+		 * 
+		 * @param error The error produced while writing, {@code null} if 
+		 *              the data was written.
+		 */
+		private synchronized void written(IOException error) {
+			if (written)
+				return;
+			this.written = true;
+			this.error = error;
+			notifyAll();
+		}
+		
+		/**
+		 * Blocks until this request is written.
+		 * 
+		 * <p>Interrupting the caller does not abort the wait because the 
+		 * data may be already queued; the interrupted status is restored 
+		 * once the request is written.</p>
+		 * 
+		 * @throws IOException if an error occurred while writing the data.
+		 */
+		private synchronized void waitWritten() throws IOException {
+			boolean interrupted = false;
+			while (!written) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			if (error != null)
+				throw error;
+		}
+	}
+}
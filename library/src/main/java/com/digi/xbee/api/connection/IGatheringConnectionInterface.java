@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.connection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * This interface represents a connection with an XBee device that can write 
+ * several buffers with a single gather write.
+ * 
+ * <p>Implementing it is optional. It allows to write frame headers, shared 
+ * payloads or several queued frames together without concatenating them 
+ * first. Connection interfaces that do not implement it are written one 
+ * frame at a time.</p>
+ * 
+ * @see IConnectionInterface
+ * @see DataWriter
+ */
+public interface IGatheringConnectionInterface extends IConnectionInterface {
+	
+	/**
+	 * Writes the remaining bytes of the given buffers in the connection 
+	 * interface, in order, as a single write.
+	 * 
+	 * <p>The position of every buffer is advanced to its limit once it is 
+	 * written.</p>
+	 * 
+	 * @param buffers The buffers to be written in the connection interface.
+	 * 
+	 * @throws IOException if there is any problem writing to the output stream.
+	 * @throws NullPointerException if {@code buffers == null} or 
+	 *                              if any of the buffers is {@code null}.
+	 * 
+	 * @see #writeData(byte[])
+	 * @see #writeData(byte[], int, int)
+	 * @see java.nio.ByteBuffer
+	 */
+	public void writeData(ByteBuffer... buffers) throws IOException;
+}
@@ -12,18 +12,21 @@
 package com.digi.xbee.api.connection.serial;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.digi.xbee.api.connection.IConnectionInterface;
+import com.digi.xbee.api.connection.IGatheringConnectionInterface;
 import com.digi.xbee.api.exceptions.ConnectionException;
 import com.digi.xbee.api.exceptions.InvalidConfigurationException;
 
 /**
  * Abstract class that provides common functionality to work with serial ports.
  */
-public abstract class AbstractSerialPort implements IConnectionInterface {
+public abstract class AbstractSerialPort implements IGatheringConnectionInterface {
 	
 	// Constants.
 	/**
@@ -58,6 +61,8 @@ public abstract class AbstractSerialPort implements IConnectionInterface {
 	
 	protected static final String PORT_ALIAS = "Serial Port";
 	
+	private static final int CTS_POLL_INTERVAL = 5;
+	
 	// Variables.
 	protected String port;
 	
@@ -68,6 +73,8 @@ public abstract class AbstractSerialPort implements IConnectionInterface {
 	
 	protected boolean connectionOpen = false;
 	
+	private volatile SerialWritePacer writePacer;
+	
 	private Logger logger;
 	
 	/**
@@ -398,6 +405,11 @@ public abstract class AbstractSerialPort implements IConnectionInterface {
 			throw new NullPointerException("Data to be sent cannot be null.");
 		
 		if (getOutputStream() != null) {
+			if (writePacer != null) {
+				writePaced(data, 0, data.length);
+				return;
+			}
+			
 			// Writing data in ports without any device connected and configured with 
 			// hardware flow-control causes the majority of serial libraries to hang.
 			
@@ -442,6 +454,11 @@ public abstract class AbstractSerialPort implements IConnectionInterface {
 			throw new IllegalArgumentException("Offset + length cannot be great than the data length.");
 		
 		if (getOutputStream() != null) {
+			if (writePacer != null) {
+				writePaced(data, offset, length);
+				return;
+			}
+			
 			// Writing data in ports without any device connected and configured with 
 			// hardware flow-control causes the majority of serial libraries to hang.
 			
@@ -468,6 +485,138 @@ public abstract class AbstractSerialPort implements IConnectionInterface {
 		}
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see com.digi.xbee.api.connection.IGatheringConnectionInterface#writeData(java.nio.ByteBuffer[])
+	 */
+	@Override
+	public void writeData(ByteBuffer... buffers) throws IOException {
+		if (buffers == null)
+			throw new NullPointerException("Buffers to be sent cannot be null.");
+		
+		int length = 0;
+		int nonEmpty = 0;
+		ByteBuffer single = null;
+		for (ByteBuffer buffer : buffers) {
+			if (buffer == null)
+				throw new NullPointerException("Buffers to be sent cannot be null.");
+			if (buffer.hasRemaining()) {
+				length += buffer.remaining();
+				nonEmpty++;
+				single = buffer;
+			}
+		}
+		if (length == 0)
+			return;
+		
+		// A single buffer backed by an array is written without copying it. 
+		// Otherwise the buffers are gathered so they are written and flushed 
+		// at once.
+		if (nonEmpty == 1 && single.hasArray()) {
+			writeData(single.array(), single.arrayOffset() + single.position(), length);
+			single.position(single.limit());
+			return;
+		}
+		
+		byte[] data = new byte[length];
+		int offset = 0;
+		for (ByteBuffer buffer : buffers) {
+			int remaining = buffer.remaining();
+			buffer.duplicate().get(data, offset, remaining);
+			offset += remaining;
+		}
+		writeData(data);
+		for (ByteBuffer buffer : buffers)
+			buffer.position(buffer.limit());
+	}
+	
+	/**
+	 * Writes the given data in chunks that fit in the serial receive buffer 
+	 * of the module, waiting for the CTS line if hardware flow control is 
+	 * enabled or for the estimated wire time otherwise.
+	 * 
+	 * @param data The data to be written.
+	 * @param offset The start offset in the data to write.
+	 * @param length The number of bytes to write.
+	 * 
+	 * @throws InterruptedIOException if the calling thread is interrupted 
+	 *                                while waiting.
+	 * @throws IOException if the CTS line is not ready or there is any 
+	 *                     problem writing to the output stream.
+	 * 
+	 * @see #getWritePacer()
+	 */
+	private void writePaced(byte[] data, int offset, int length) throws IOException {
+		SerialWritePacer pacer = writePacer;
+		SerialPortParameters portParameters = getPortParameters();
+		while (length > 0) {
+			int chunkSize = Math.min(length, pacer.getBufferSize());
+			if (isHardwareFlowControl())
+				waitForCTS(pacer.getCTSTimeout());
+			else
+				pacer.waitForRoom(chunkSize, portParameters);
+			getOutputStream().write(data, offset, chunkSize);
+			getOutputStream().flush();
+			offset += chunkSize;
+			length -= chunkSize;
+		}
+	}
+	
+	/**
+	 * Waits until the CTS line is high.
+	 * 
+	 * @param timeout Maximum time to wait in milliseconds.
+	 * 
+	 * @throws InterruptedIOException if the calling thread is interrupted 
+	 *                                while waiting.
+	 * @throws IOException if the CTS line is not high after the timeout.
+	 */
+	private void waitForCTS(int timeout) throws IOException {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (!isCTS()) {
+			if (System.currentTimeMillis() >= deadline)
+				throw new IOException("CTS line is not ready to receive data.");
+			try {
+				Thread.sleep(CTS_POLL_INTERVAL);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the CTS line.");
+			}
+		}
+	}
+	
+	/**
+	 * Returns the pacer that meters the writes of this serial port.
+	 * 
+	 * @return The write pacer, {@code null} if writes are not paced.
+	 * 
+	 * @see #setWritePacer(SerialWritePacer)
+	 * @see SerialWritePacer
+	 */
+	public SerialWritePacer getWritePacer() {
+		return writePacer;
+	}
+	
+	/**
+	 * Sets the pacer that meters the writes of this serial port so that 
+	 * they do not overflow the serial receive buffer of the module.
+	 * 
+	 * <p>When a pacer is configured, writes are split in chunks of the 
+	 * buffer size. Without hardware flow control, every chunk waits for the 
+	 * estimated wire time of the previous ones. With hardware flow control, 
+	 * every chunk waits for the CTS line, and an {@code IOException} is 
+	 * thrown if it is not ready in time, instead of dropping the data.</p>
+	 * 
+	 * @param writePacer The write pacer, {@code null} to write the data as 
+	 *                   fast as the operating system accepts it.
+	 * 
+	 * @see #getWritePacer()
+	 * @see SerialWritePacer
+	 */
+	public void setWritePacer(SerialWritePacer writePacer) {
+		this.writePacer = writePacer;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see com.digi.xbee.api.connection.IConnectionInterface#readData(byte[])
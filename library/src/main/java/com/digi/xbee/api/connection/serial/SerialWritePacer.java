@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.connection.serial;
+
+import java.io.InterruptedIOException;
+
+/**
+ * This class meters the writes of a serial port so that the bytes pending to 
+ * be clocked out on the wire never exceed the serial receive buffer of the 
+ * XBee module.
+ * 
+ * <p>The operating system accepts written bytes much faster than the UART 
+ * sends them. Without hardware flow control, a large burst at a low baud 
+ * rate overflows the buffer of the module and frames are lost silently. The 
+ * pacer estimates the wire time of every byte from the serial port 
+ * parameters (start bit, data bits, parity bit and stop bits at the 
+ * configured baud rate) and delays a write until the bytes written before 
+ * it plus the new ones fit in the buffer. Since the budget drains at the 
+ * wire rate, sustained writes reach the maximum throughput of the link.</p>
+ * 
+ * <p>Writes larger than the buffer are split by the serial port in chunks of 
+ * the buffer size. When hardware flow control is enabled, the serial port 
+ * waits for the CTS line before every chunk instead of estimating the wire 
+ * time.</p>
+ * 
+ * @see AbstractSerialPort#setWritePacer(SerialWritePacer)
+ */
+public class SerialWritePacer {
+	
+	// Constants.
+	/**
+	 * Default size of the serial receive buffer of the module in bytes 
+	 * (value: {@value}).
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 128;
+	
+	/**
+	 * Default time to wait for the CTS line in milliseconds 
+	 * (value: {@value}).
+	 */
+	public static final int DEFAULT_CTS_TIMEOUT = 300;
+	
+	private static final int STOP_BITS_1_5 = 3;
+	
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	private static final long NANOS_PER_MILLI = 1000000L;
+	
+	// Variables.
+	private final int bufferSize;
+	
+	private int ctsTimeout = DEFAULT_CTS_TIMEOUT;
+	
+	private double pendingBytes = 0;
+	
+	private long lastUpdate = System.nanoTime();
+	
+	private long pacedTime = 0;
+	
+	/**
+	 * Class constructor. Instantiates a new {@code SerialWritePacer} object 
+	 * for a module with the default buffer size.
+	 * 
+	 * @see #DEFAULT_BUFFER_SIZE
+	 */
+	public SerialWritePacer() {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+	
+	/**
+	 * Class constructor. Instantiates a new {@code SerialWritePacer} object 
+	 * for a module with the given buffer size.
+	 * 
+	 * @param bufferSize The size of the serial receive buffer of the module 
+	 *                   in bytes.
+	 * 
+	 * @throws IllegalArgumentException if {@code bufferSize < 1}.
+	 */
+	public SerialWritePacer(int bufferSize) {
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("Buffer size must be greater than 0.");
+		
+		this.bufferSize = bufferSize;
+	}
+	
+	/**
+	 * Returns the size of the serial receive buffer of the module.
+	 * 
+	 * @return The buffer size in bytes.
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+	
+	/**
+	 * Returns the time to wait for the CTS line before every chunk when 
+	 * hardware flow control is enabled.
+	 * 
+	 * @return The CTS timeout in milliseconds.
+	 * 
+	 * @see #setCTSTimeout(int)
+	 */
+	public synchronized int getCTSTimeout() {
+		return ctsTimeout;
+	}
+	
+	/**
+	 * Sets the time to wait for the CTS line before every chunk when 
+	 * hardware flow control is enabled.
+	 * 
+	 * @param ctsTimeout The CTS timeout in milliseconds.
+	 * 
+	 * @throws IllegalArgumentException if {@code ctsTimeout < 0}.
+	 * 
+	 * @see #getCTSTimeout()
+	 */
+	public synchronized void setCTSTimeout(int ctsTimeout) {
+		if (ctsTimeout < 0)
+			throw new IllegalArgumentException("CTS timeout cannot be less than 0.");
+		
+		this.ctsTimeout = ctsTimeout;
+	}
+	
+	/**
+	 * Returns the number of bits sent on the wire for every byte with the 
+	 * given serial port parameters.
+	 * 
+	 * @param parameters The serial port parameters.
+	 * 
+	 * @return The number of bits per byte, including the start, parity and 
+	 *         stop bits.
+	 * 
+	 * @throws NullPointerException if {@code parameters == null}.
+	 */
+	public static double getBitsPerByte(SerialPortParameters parameters) {
+		if (parameters == null)
+			throw new NullPointerException("Serial port parameters cannot be null.");
+		
+		double stopBits = parameters.stopBits == STOP_BITS_1_5 ? 1.5 : parameters.stopBits;
+		return 1 + parameters.dataBits + (parameters.parity != 0 ? 1 : 0) + stopBits;
+	}
+	
+	/**
+	 * Returns the time needed to send the given number of bytes on the wire 
+	 * with the given serial port parameters.
+	 * 
+	 * @param length The number of bytes.
+	 * @param parameters The serial port parameters.
+	 * 
+	 * @return The wire time in nanoseconds, {@code 0} if the baud rate is 
+	 *         unknown.
+	 * 
+	 * @throws NullPointerException if {@code parameters == null}.
+	 */
+	public static long getWireTime(int length, SerialPortParameters parameters) {
+		double bitsPerByte = getBitsPerByte(parameters);
+		if (parameters.baudrate == 0)
+			return 0;
+		return (long)(length * bitsPerByte * NANOS_PER_SECOND / parameters.baudrate);
+	}
+	
+	/**
+	 * Waits until the given number of bytes fit in the buffer of the module 
+	 * and accounts them as pending to be sent on the wire.
+	 * 
+	 * <p>A write larger than the buffer waits until the buffer is empty.</p>
+	 * 
+	 * @param length The number of bytes to write.
+	 * @param parameters The serial port parameters.
+	 * 
+	 * @throws InterruptedIOException if the calling thread is interrupted 
+	 *                                while waiting.
+	 * @throws NullPointerException if {@code parameters == null}.
+	 */
+	public synchronized void waitForRoom(int length, SerialPortParameters parameters) throws InterruptedIOException {
+		double bytesPerNano = parameters.baudrate / getBitsPerByte(parameters) / NANOS_PER_SECOND;
+		if (bytesPerNano <= 0)
+			return;
+		
+		long now = drain(bytesPerNano);
+		double excess = pendingBytes + length - bufferSize;
+		if (pendingBytes > 0 && excess > 0) {
+			long delay = (long)Math.ceil(Math.min(excess, pendingBytes) / bytesPerNano);
+			try {
+				// Sleep while holding the lock so the writes keep their order.
+				Thread.sleep(delay / NANOS_PER_MILLI, (int)(delay % NANOS_PER_MILLI));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while pacing the serial port writes.");
+			}
+			pacedTime += (System.nanoTime() - now) / NANOS_PER_MILLI;
+			drain(bytesPerNano);
+		}
+		pendingBytes += length;
+	}
+	
+	/**
+	 * Discards the bytes pending to be sent on the wire, for example when 
+	 * the serial port is opened again.
+	 */
+	public synchronized void reset() {
+		pendingBytes = 0;
+		lastUpdate = System.nanoTime();
+	}
+	
+	/**
+	 * Returns the total time writes were delayed to stay within the buffer 
+	 * of the module.
+	 * 
+	 * @return The paced time in milliseconds.
+	 */
+	public synchronized long getPacedTime() {
+		return pacedTime;
+	}
+	
+	/**
+	 * Removes the bytes sent on the wire since the last update.
+	 * 
+	 * <p>The calling thread must own the lock of this pacer.</p>
+	 * 
+	 * @param bytesPerNano The wire rate in bytes per nanosecond.
+	 * 
+	 * @return The current value of {@link System#nanoTime()}.
+	 */
+	private long drain(double bytesPerNano) {
+		long now = System.nanoTime();
+		pendingBytes = Math.max(0, pendingBytes - (now - lastUpdate) * bytesPerNano);
+		lastUpdate = now;
+		return now;
+	}
+}
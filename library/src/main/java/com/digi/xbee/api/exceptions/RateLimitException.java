@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.exceptions;
+
+/**
+ * This exception will be thrown when a transmission exceeds the configured 
+ * rate limits and it is rejected instead of being queued.
+ * 
+ * @see CommunicationException
+ * @see com.digi.xbee.api.models.TransmitRateLimiter
+ */
+public class RateLimitException extends CommunicationException {
+	
+	// Constants
+	private static final long serialVersionUID = 1L;
+	private static final String DEFAULT_MESSAGE = "The transmission exceeds the configured rate limits.";
+	
+	/**
+	 * Creates a {@code RateLimitException} with {@value #DEFAULT_MESSAGE} as 
+	 * its error detail message.
+	 */
+	public RateLimitException() {
+		super(DEFAULT_MESSAGE);
+	}
+	
+	/**
+	 * Creates a {@code RateLimitException} with the specified message.
+	 * 
+	 * @param message The associated message.
+	 */
+	public RateLimitException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import com.digi.xbee.api.models.XBeeProtocol;
+
+/**
+ * This class converts the raw ADC values (counts) of IO samples to volts or
+ * to engineering units.
+ * 
+ * <p>XBee devices use a 10-bit ADC, so a value of {@value #MAX_ADC_VALUE}
+ * counts corresponds to the ADC reference voltage. ZigBee, ZNet and Smart
+ * Energy devices use an internal reference of
+ * {@value #INTERNAL_REFERENCE_VOLTAGE} V, while the rest of protocols use
+ * the voltage applied to the VREF pin.</p>
+ * 
+ * <p>Each analog line can have a calibration polynomial that transforms the
+ * voltage of the line into engineering units:</p>
+ * 
+ * <p>{@code units = c0 + c1 * volts + c2 * volts^2 + ... + cn * volts^n}</p>
+ * 
+ * <p>Lines without calibration are converted to volts. The batch conversion
+ * methods work over primitive arrays, so the values returned by
+ * {@link IOSampleHistory#getAnalogValues(IOLine, long, long, long[], int[])}
+ * can be converted in a single call.</p>
+ * 
+ * <p>This class is thread-safe.</p>
+ * 
+ * @see IOSample#getAnalogValue(IOLine)
+ * @see IOSampleHistory
+ */
+public class ADCConverter {
+	
+	// Constants.
+	/**
+	 * Maximum value of the ADC of XBee devices.
+	 */
+	public static final int MAX_ADC_VALUE = 1023;
+	
+	/**
+	 * Internal reference voltage used by ZigBee, ZNet and Smart Energy
+	 * devices (volts).
+	 */
+	public static final double INTERNAL_REFERENCE_VOLTAGE = 1.2;
+	
+	// Variables.
+	private final double referenceVoltage;
+	
+	// Coefficients to convert the counts to volts.
+	private final double[] voltsCoefficients;
+	
+	// Calibration coefficients of each line applied directly to the counts,
+	// from lowest to highest degree. A null entry means no calibration.
+	private final double[][] countCoefficients = new double[IOSampleDecoder.MAX_ANALOG_LINES][];
+	
+	/**
+	 * Class constructor. Instantiates a new {@code ADCConverter} object with
+	 * the given reference voltage.
+	 * 
+	 * @param referenceVoltage The ADC reference voltage in volts.
+	 * 
+	 * @throws IllegalArgumentException if {@code referenceVoltage <= 0}.
+	 * 
+	 * @see #ADCConverter(XBeeProtocol, double)
+	 */
+	public ADCConverter(double referenceVoltage) {
+		if (!(referenceVoltage > 0))
+			throw new IllegalArgumentException("Reference voltage must be greater than 0.");
+		
+		this.referenceVoltage = referenceVoltage;
+		this.voltsCoefficients = new double[]{0, referenceVoltage / MAX_ADC_VALUE};
+	}
+	
+	/**
+	 * Class constructor. Instantiates a new {@code ADCConverter} object for
+	 * the given protocol.
+	 * 
+	 * @param protocol The protocol of the XBee devices whose samples will be
+	 *                 converted.
+	 * @param vrefVoltage The voltage applied to the VREF pin in volts. It is
+	 *                    ignored if the protocol uses the internal reference.
+	 * 
+	 * @throws IllegalArgumentException if the protocol uses the VREF pin and
+	 *                                  {@code vrefVoltage <= 0}.
+	 * @throws NullPointerException if {@code protocol == null}.
+	 * 
+	 * @see #getReferenceVoltage(XBeeProtocol, double)
+	 * @see com.digi.xbee.api.models.XBeeProtocol
+	 */
+	public ADCConverter(XBeeProtocol protocol, double vrefVoltage) {
+		this(getReferenceVoltage(protocol, vrefVoltage));
+	}
+	
+	/**
+	 * Returns the ADC reference voltage used by the devices of the given
+	 * protocol.
+	 * 
+	 * @param protocol The protocol of the XBee devices.
+	 * @param vrefVoltage The voltage applied to the VREF pin in volts.
+	 * 
+	 * @return {@value #INTERNAL_REFERENCE_VOLTAGE} if the protocol uses the
+	 *         internal reference, {@code vrefVoltage} otherwise.
+	 * 
+	 * @throws NullPointerException if {@code protocol == null}.
+	 * 
+	 * @see com.digi.xbee.api.models.XBeeProtocol
+	 */
+	public static double getReferenceVoltage(XBeeProtocol protocol, double vrefVoltage) {
+		if (protocol == null)
+			throw new NullPointerException("Protocol cannot be null.");
+		
+		switch (protocol) {
+		case ZIGBEE:
+		case ZNET:
+		case SMART_ENERGY:
+			return INTERNAL_REFERENCE_VOLTAGE;
+		default:
+			return vrefVoltage;
+		}
+	}
+	
+	/**
+	 * Returns the ADC reference voltage of this converter.
+	 * 
+	 * @return The reference voltage in volts.
+	 */
+	public double getReferenceVoltage() {
+		return referenceVoltage;
+	}
+	
+	/**
+	 * Sets a linear calibration for the given analog line.
+	 * 
+	 * <p>{@code units = offset + gain * volts}</p>
+	 * 
+	 * @param ioLine The analog IO line.
+	 * @param gain Units per volt.
+	 * @param offset Units at 0 volts.
+	 * 
+	 * @throws IllegalArgumentException if {@code ioLine} cannot be an analog line.
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 * 
+	 * @see #setPolynomialCalibration(IOLine, double...)
+	 */
+	public void setLinearCalibration(IOLine ioLine, double gain, double offset) {
+		setPolynomialCalibration(ioLine, offset, gain);
+	}
+	
+	/**
+	 * Sets a polynomial calibration for the given analog line.
+	 * 
+	 * <p>{@code units = c0 + c1 * volts + c2 * volts^2 + ... + cn * volts^n}</p>
+	 * 
+	 * @param ioLine The analog IO line.
+	 * @param coefficients The polynomial coefficients from lowest to highest
+	 *                     degree ({@code c0, c1, ..., cn}). An empty list
+	 *                     removes the calibration of the line.
+	 * 
+	 * @throws IllegalArgumentException if {@code ioLine} cannot be an analog line.
+	 * @throws NullPointerException if {@code ioLine == null} or
+	 *                              if {@code coefficients == null}.
+	 * 
+	 * @see #setLinearCalibration(IOLine, double, double)
+	 * @see #removeCalibration(IOLine)
+	 */
+	public void setPolynomialCalibration(IOLine ioLine, double... coefficients) {
+		int index = checkAnalogLine(ioLine);
+		if (coefficients == null)
+			throw new NullPointerException("Coefficients cannot be null.");
+		
+		if (coefficients.length == 0) {
+			removeCalibration(ioLine);
+			return;
+		}
+		
+		// Scale the coefficients so the polynomial is evaluated directly over
+		// the counts: cn * (counts * scale)^n = (cn * scale^n) * counts^n.
+		double scale = referenceVoltage / MAX_ADC_VALUE;
+		double[] scaled = new double[coefficients.length];
+		double factor = 1;
+		for (int i = 0; i < coefficients.length; i++) {
+			scaled[i] = coefficients[i] * factor;
+			factor *= scale;
+		}
+		synchronized (countCoefficients) {
+			countCoefficients[index] = scaled;
+		}
+	}
+	
+	/**
+	 * Removes the calibration of the given analog line, so its values are
+	 * converted to volts.
+	 * 
+	 * @param ioLine The analog IO line.
+	 * 
+	 * @throws IllegalArgumentException if {@code ioLine} cannot be an analog line.
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 * 
+	 * @see #setPolynomialCalibration(IOLine, double...)
+	 */
+	public void removeCalibration(IOLine ioLine) {
+		int index = checkAnalogLine(ioLine);
+		synchronized (countCoefficients) {
+			countCoefficients[index] = null;
+		}
+	}
+	
+	/**
+	 * Converts the given raw ADC value of an analog line.
+	 * 
+	 * @param ioLine The analog IO line the value belongs to.
+	 * @param counts The raw ADC value.
+	 * 
+	 * @return The value in engineering units, or in volts if the line has
+	 *         not calibration.
+	 * 
+	 * @throws IllegalArgumentException if {@code ioLine} cannot be an analog line.
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 * 
+	 * @see #convert(IOLine, int[], int, double[], int, int)
+	 */
+	public double convert(IOLine ioLine, int counts) {
+		double[] c = getCoefficients(ioLine);
+		double result = c[c.length - 1];
+		for (int k = c.length - 2; k >= 0; k--)
+			result = result * counts + c[k];
+		return result;
+	}
+	
+	/**
+	 * Converts a batch of raw ADC values of an analog line.
+	 * 
+	 * <p>The conversion is done with one tight loop per polynomial degree
+	 * over the whole batch, without branches nor method calls inside the
+	 * loops, so the JIT compiler can unroll and vectorize them.</p>
+	 * 
+	 * @param ioLine The analog IO line the values belong to.
+	 * @param counts Array containing the raw ADC values.
+	 * @param countsOffset Index of the first value to convert.
+	 * @param output Array to store the converted values.
+	 * @param outputOffset Index of {@code output} to store the first
+	 *                     converted value.
+	 * @param length Number of values to convert.
+	 * 
+	 * @throws IllegalArgumentException if {@code ioLine} cannot be an analog line or
+	 *                                  if {@code length < 0}.
+	 * @throws ArrayIndexOutOfBoundsException if any of the offsets or the
+	 *                                        length exceed the bounds of
+	 *                                        the arrays.
+	 * @throws NullPointerException if {@code ioLine == null} or
+	 *                              if {@code counts == null} or
+	 *                              if {@code output == null}.
+	 * 
+	 * @see #convert(IOLine, int)
+	 */
+	public void convert(IOLine ioLine, int[] counts, int countsOffset, double[] output, int outputOffset, int length) {
+		double[] c = getCoefficients(ioLine);
+		if (counts == null)
+			throw new NullPointerException("Counts array cannot be null.");
+		if (output == null)
+			throw new NullPointerException("Output array cannot be null.");
+		if (length < 0)
+			throw new IllegalArgumentException("Length cannot be less than 0.");
+		if (countsOffset < 0 || countsOffset + length > counts.length)
+			throw new ArrayIndexOutOfBoundsException("Counts offset and length exceed the array bounds.");
+		if (outputOffset < 0 || outputOffset + length > output.length)
+			throw new ArrayIndexOutOfBoundsException("Output offset and length exceed the array bounds.");
+		
+		int degree = c.length - 1;
+		if (degree == 0) {
+			double c0 = c[0];
+			for (int i = 0; i < length; i++)
+				output[outputOffset + i] = c0;
+			return;
+		}
+		
+		// Linear part, it covers the most common calibrations in one pass.
+		double a = c[degree - 1];
+		double b = c[degree];
+		for (int i = 0; i < length; i++)
+			output[outputOffset + i] = a + b * counts[countsOffset + i];
+		
+		// Rest of degrees using Horner's method, one pass per degree.
+		for (int k = degree - 2; k >= 0; k--) {
+			double ck = c[k];
+			for (int i = 0; i < length; i++)
+				output[outputOffset + i] = output[outputOffset + i] * counts[countsOffset + i] + ck;
+		}
+	}
+	
+	/**
+	 * Returns the coefficients to apply to the counts of the given line.
+	 * 
+	 * @param ioLine The analog IO line.
+	 * 
+	 * @return The coefficients from lowest to highest degree.
+	 * 
+	 * @throws IllegalArgumentException if {@code ioLine} cannot be an analog line.
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	private double[] getCoefficients(IOLine ioLine) {
+		int index = checkAnalogLine(ioLine);
+		double[] c;
+		synchronized (countCoefficients) {
+			c = countCoefficients[index];
+		}
+		if (c == null)
+			return voltsCoefficients;
+		return c;
+	}
+	
+	/**
+	 * Checks that the given IO line can be an analog line.
+	 * 
+	 * @param ioLine The IO line.
+	 * 
+	 * @return The index of the line.
+	 * 
+	 * @throws IllegalArgumentException if {@code ioLine} cannot be an analog line.
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	private int checkAnalogLine(IOLine ioLine) {
+		if (ioLine == null)
+			throw new NullPointerException("IO line cannot be null.");
+		if (ioLine.getIndex() >= IOSampleDecoder.MAX_ANALOG_LINES)
+			throw new IllegalArgumentException("IO line " + ioLine.getName() + " is not an analog line.");
+		return ioLine.getIndex();
+	}
+}
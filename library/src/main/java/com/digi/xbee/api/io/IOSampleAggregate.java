@@ -0,0 +1,330 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+
+/**
+ * This class represents the aggregate of the IO samples received from a 
+ * remote XBee device during a window of time.
+ * 
+ * <p>For every analog line it contains the number of values, the minimum, 
+ * maximum, sum, average and last value. For every digital line it contains 
+ * the number of values, the number of {@code HIGH} values and the last 
+ * value.</p>
+ * 
+ * @see IOSampleAggregator
+ */
+public class IOSampleAggregate {
+	
+	// Variables.
+	private final RemoteXBeeDevice remoteDevice;
+	
+	private final long startTime;
+	private final long endTime;
+	
+	private final int[] analogCount = new int[IOSampleDecoder.MAX_ANALOG_LINES];
+	private final int[] analogMin = new int[IOSampleDecoder.MAX_ANALOG_LINES];
+	private final int[] analogMax = new int[IOSampleDecoder.MAX_ANALOG_LINES];
+	private final int[] analogLast = new int[IOSampleDecoder.MAX_ANALOG_LINES];
+	
+	private final long[] analogSum = new long[IOSampleDecoder.MAX_ANALOG_LINES];
+	
+	private final int[] digitalCount = new int[IOSampleDecoder.MAX_DIGITAL_LINES];
+	private final int[] digitalHighCount = new int[IOSampleDecoder.MAX_DIGITAL_LINES];
+	
+	private int digitalLast;
+	
+	/**
+	 * Class constructor. Instantiates a new {@code IOSampleAggregate} object 
+	 * with the given parameters.
+	 * 
+	 * @param remoteDevice The remote XBee device that sent the samples.
+	 * @param startTime Start of the window (inclusive) in milliseconds.
+	 * @param endTime End of the window (exclusive) in milliseconds.
+	 */
+	IOSampleAggregate(RemoteXBeeDevice remoteDevice, long startTime, long endTime) {
+		this.remoteDevice = remoteDevice;
+		this.startTime = startTime;
+		this.endTime = endTime;
+	}
+	
+	/**
+	 * Merges the given analog values into this aggregate. Values must be 
+	 * merged from the oldest to the newest.
+	 * 
+	 * @param index Index of the analog line.
+	 * @param count Number of values.
+	 * @param min Minimum value.
+	 * @param max Maximum value.
+	 * @param sum Sum of the values.
+	 * @param last Last value.
+	 */
+	void mergeAnalog(int index, int count, int min, int max, long sum, int last) {
+		if (count == 0)
+			return;
+		if (analogCount[index] == 0 || min < analogMin[index])
+			analogMin[index] = min;
+		if (analogCount[index] == 0 || max > analogMax[index])
+			analogMax[index] = max;
+		analogCount[index] += count;
+		analogSum[index] += sum;
+		analogLast[index] = last;
+	}
+	
+	/**
+	 * Merges the given digital values into this aggregate. Values must be 
+	 * merged from the oldest to the newest.
+	 * 
+	 * @param index Index of the digital line.
+	 * @param count Number of values.
+	 * @param highCount Number of {@code HIGH} values.
+	 * @param last Last value, {@code 1} for {@code HIGH}.
+	 */
+	void mergeDigital(int index, int count, int highCount, int last) {
+		if (count == 0)
+			return;
+		digitalCount[index] += count;
+		digitalHighCount[index] += highCount;
+		if (last == 0)
+			digitalLast &= ~(1 << index);
+		else
+			digitalLast |= 1 << index;
+	}
+	
+	/**
+	 * Returns the remote XBee device that sent the aggregated samples.
+	 * 
+	 * @return The remote XBee device.
+	 * 
+	 * @see com.digi.xbee.api.RemoteXBeeDevice
+	 */
+	public RemoteXBeeDevice getRemoteDevice() {
+		return remoteDevice;
+	}
+	
+	/**
+	 * Returns the start of the window.
+	 * 
+	 * @return The start of the window (inclusive) in milliseconds.
+	 * 
+	 * @see #getEndTime()
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+	
+	/**
+	 * Returns the end of the window.
+	 * 
+	 * @return The end of the window (exclusive) in milliseconds.
+	 * 
+	 * @see #getStartTime()
+	 */
+	public long getEndTime() {
+		return endTime;
+	}
+	
+	/**
+	 * Returns the number of analog values of the given line in the window.
+	 * 
+	 * @param ioLine The analog IO line.
+	 * 
+	 * @return The number of analog values, {@code 0} if the line is not an 
+	 *         analog line.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	public int getAnalogCount(IOLine ioLine) {
+		int index = getAnalogIndex(ioLine);
+		return index < 0 ? 0 : analogCount[index];
+	}
+	
+	/**
+	 * Returns the minimum analog value of the given line in the window.
+	 * 
+	 * @param ioLine The analog IO line.
+	 * 
+	 * @return The minimum analog value, {@code -1} if there are no analog 
+	 *         values of the line.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	public int getAnalogMin(IOLine ioLine) {
+		int index = getAnalogIndex(ioLine);
+		return index < 0 || analogCount[index] == 0 ? -1 : analogMin[index];
+	}
+	
+	/**
+	 * Returns the maximum analog value of the given line in the window.
+	 * 
+	 * @param ioLine The analog IO line.
+	 * 
+	 * @return The maximum analog value, {@code -1} if there are no analog 
+	 *         values of the line.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	public int getAnalogMax(IOLine ioLine) {
+		int index = getAnalogIndex(ioLine);
+		return index < 0 || analogCount[index] == 0 ? -1 : analogMax[index];
+	}
+	
+	/**
+	 * Returns the sum of the analog values of the given line in the window.
+	 * 
+	 * @param ioLine The analog IO line.
+	 * 
+	 * @return The sum of the analog values.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	public long getAnalogSum(IOLine ioLine) {
+		int index = getAnalogIndex(ioLine);
+		return index < 0 ? 0 : analogSum[index];
+	}
+	
+	/**
+	 * Returns the average of the analog values of the given line in the 
+	 * window.
+	 * 
+	 * @param ioLine The analog IO line.
+	 * 
+	 * @return The average analog value, {@code Double.NaN} if there are no 
+	 *         analog values of the line.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	public double getAnalogAverage(IOLine ioLine) {
+		int index = getAnalogIndex(ioLine);
+		if (index < 0 || analogCount[index] == 0)
+			return Double.NaN;
+		return (double)analogSum[index] / analogCount[index];
+	}
+	
+	/**
+	 * Returns the last analog value of the given line in the window.
+	 * 
+	 * @param ioLine The analog IO line.
+	 * 
+	 * @return The last analog value, {@code -1} if there are no analog values 
+	 *         of the line.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	public int getAnalogLast(IOLine ioLine) {
+		int index = getAnalogIndex(ioLine);
+		return index < 0 || analogCount[index] == 0 ? -1 : analogLast[index];
+	}
+	
+	/**
+	 * Returns the number of digital values of the given line in the window.
+	 * 
+	 * @param ioLine The digital IO line.
+	 * 
+	 * @return The number of digital values.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	public int getDigitalCount(IOLine ioLine) {
+		int index = getDigitalIndex(ioLine);
+		return index < 0 ? 0 : digitalCount[index];
+	}
+	
+	/**
+	 * Returns the number of {@code HIGH} digital values of the given line in 
+	 * the window.
+	 * 
+	 * @param ioLine The digital IO line.
+	 * 
+	 * @return The number of {@code HIGH} digital values.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	public int getDigitalHighCount(IOLine ioLine) {
+		int index = getDigitalIndex(ioLine);
+		return index < 0 ? 0 : digitalHighCount[index];
+	}
+	
+	/**
+	 * Returns the last digital value of the given line in the window.
+	 * 
+	 * @param ioLine The digital IO line.
+	 * 
+	 * @return The last digital value, {@code null} if there are no digital 
+	 *         values of the line.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 * 
+	 * @see IOValue
+	 */
+	public IOValue getDigitalLast(IOLine ioLine) {
+		int index = getDigitalIndex(ioLine);
+		if (index < 0 || digitalCount[index] == 0)
+			return null;
+		return (digitalLast & (1 << index)) != 0 ? IOValue.HIGH : IOValue.LOW;
+	}
+	
+	/**
+	 * Returns the analog index of the given line.
+	 * 
+	 * @param ioLine The IO line.
+	 * 
+	 * @return The analog index, {@code -1} if the line is not an analog line.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	private int getAnalogIndex(IOLine ioLine) {
+		if (ioLine == null)
+			throw new NullPointerException("IO line cannot be null.");
+		
+		int index = ioLine.getIndex();
+		return index < IOSampleDecoder.MAX_ANALOG_LINES ? index : -1;
+	}
+	
+	/**
+	 * Returns the digital index of the given line.
+	 * 
+	 * @param ioLine The IO line.
+	 * 
+	 * @return The digital index, {@code -1} if the line cannot be included in 
+	 *         the digital values of a sample.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	private int getDigitalIndex(IOLine ioLine) {
+		if (ioLine == null)
+			throw new NullPointerException("IO line cannot be null.");
+		
+		int index = ioLine.getIndex();
+		return index < IOSampleDecoder.MAX_DIGITAL_LINES ? index : -1;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{[" + startTime + ", " + endTime + ")");
+		for (int i = 0; i < IOSampleDecoder.MAX_ANALOG_LINES; i++) {
+			if (analogCount[i] > 0)
+				sb.append(", AD" + i + ": [" + analogCount[i] + ", " + analogMin[i] + ", " + analogMax[i] 
+						+ ", " + analogLast[i] + "]");
+		}
+		for (int i = 0; i < IOSampleDecoder.MAX_DIGITAL_LINES; i++) {
+			if (digitalCount[i] > 0)
+				sb.append(", DIO" + i + ": [" + digitalCount[i] + ", " + digitalHighCount[i] + "]");
+		}
+		return sb.append("}").toString();
+	}
+}
@@ -0,0 +1,409 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+import com.digi.xbee.api.listeners.IIOSampleAggregateListener;
+
+/**
+ * This class aggregates the IO samples received from remote XBee devices 
+ * into windows of time, keeping the count, minimum, maximum, sum and last 
+ * value of every line.
+ * 
+ * <p>Windows are aligned to multiples of the slide. If the window size and 
+ * the slide are the same, windows are tumbling: every sample belongs to 
+ * exactly one window. If the window size is a multiple of the slide, 
+ * windows are sliding: a window is emitted every slide, covering the last 
+ * window size milliseconds.</p>
+ * 
+ * <p>Samples are accumulated per remote device and per slide (pane) in 
+ * primitive arrays, so adding a sample does not create any object once the 
+ * state of the remote device has been created. A window is emitted when the 
+ * first sample after its end is received from the same remote device, or 
+ * when {@link #flush()} is called. Windows without samples are not emitted.
+ * </p>
+ * 
+ * @see com.digi.xbee.api.XBeeDevice#setIOSampleAggregator(IOSampleAggregator)
+ * @see IOSampleAggregate
+ * @see com.digi.xbee.api.listeners.IIOSampleAggregateListener
+ */
+public class IOSampleAggregator {
+	
+	// Constants.
+	private static final int ANALOG_LINES = IOSampleDecoder.MAX_ANALOG_LINES;
+	private static final int DIGITAL_LINES = IOSampleDecoder.MAX_DIGITAL_LINES;
+	
+	// Variables.
+	private final long windowSize;
+	private final long slide;
+	
+	private final int panes;
+	
+	private final List<IIOSampleAggregateListener> aggregateListeners = new ArrayList<IIOSampleAggregateListener>();
+	
+	private final Map<RemoteXBeeDevice, WindowState> states = new WeakHashMap<RemoteXBeeDevice, WindowState>();
+	
+	/**
+	 * Class constructor. Instantiates a new {@code IOSampleAggregator} object 
+	 * with tumbling windows of the given size.
+	 * 
+	 * @param windowSize The window size in milliseconds.
+	 * 
+	 * @throws IllegalArgumentException if {@code windowSize < 1}.
+	 */
+	public IOSampleAggregator(long windowSize) {
+		this(windowSize, windowSize);
+	}
+	
+	/**
+	 * Class constructor. Instantiates a new {@code IOSampleAggregator} object 
+	 * with sliding windows of the given size, emitted every {@code slide} 
+	 * milliseconds.
+	 * 
+	 * @param windowSize The window size in milliseconds.
+	 * @param slide The time between two windows in milliseconds.
+	 * 
+	 * @throws IllegalArgumentException if {@code slide < 1} or 
+	 *                                  if {@code windowSize < slide} or 
+	 *                                  if {@code windowSize} is not a multiple of {@code slide}.
+	 */
+	public IOSampleAggregator(long windowSize, long slide) {
+		if (slide < 1)
+			throw new IllegalArgumentException("Slide must be greater than 0.");
+		if (windowSize < slide)
+			throw new IllegalArgumentException("Window size cannot be less than the slide.");
+		if (windowSize % slide != 0)
+			throw new IllegalArgumentException("Window size must be a multiple of the slide.");
+		if (windowSize / slide > Short.MAX_VALUE)
+			throw new IllegalArgumentException("Window size cannot be greater than " + Short.MAX_VALUE + " slides.");
+		
+		this.windowSize = windowSize;
+		this.slide = slide;
+		this.panes = (int)(windowSize / slide);
+	}
+	
+	/**
+	 * Returns the window size.
+	 * 
+	 * @return The window size in milliseconds.
+	 */
+	public long getWindowSize() {
+		return windowSize;
+	}
+	
+	/**
+	 * Returns the time between two windows.
+	 * 
+	 * @return The slide in milliseconds.
+	 */
+	public long getSlide() {
+		return slide;
+	}
+	
+	/**
+	 * Adds the provided listener to the list of listeners to be notified 
+	 * when a window is closed.
+	 * 
+	 * <p>If the listener has been already added, this method does nothing.</p>
+	 * 
+	 * @param listener Listener to be notified when a window is closed.
+	 * 
+	 * @throws NullPointerException if {@code listener == null}.
+	 * 
+	 * @see #removeAggregateListener(IIOSampleAggregateListener)
+	 * @see com.digi.xbee.api.listeners.IIOSampleAggregateListener
+	 */
+	public void addAggregateListener(IIOSampleAggregateListener listener) {
+		if (listener == null)
+			throw new NullPointerException("Listener cannot be null.");
+		
+		synchronized (aggregateListeners) {
+			if (!aggregateListeners.contains(listener))
+				aggregateListeners.add(listener);
+		}
+	}
+	
+	/**
+	 * Removes the provided listener from the list of aggregate listeners.
+	 * 
+	 * <p>If the listener was not in the list this method does nothing.</p>
+	 * 
+	 * @param listener Listener to be removed from the list of listeners.
+	 * 
+	 * @throws NullPointerException if {@code listener == null}.
+	 * 
+	 * @see #addAggregateListener(IIOSampleAggregateListener)
+	 * @see com.digi.xbee.api.listeners.IIOSampleAggregateListener
+	 */
+	public void removeAggregateListener(IIOSampleAggregateListener listener) {
+		if (listener == null)
+			throw new NullPointerException("Listener cannot be null.");
+		
+		synchronized (aggregateListeners) {
+			aggregateListeners.remove(listener);
+		}
+	}
+	
+	/**
+	 * Returns the listeners to be notified when a window is closed.
+	 * 
+	 * <p><b>This is only for internal use.</b></p>
+	 * 
+	 * @return The list of aggregate listeners.
+	 * 
+	 * @see #addAggregateListener(IIOSampleAggregateListener)
+	 */
+	public List<IIOSampleAggregateListener> getAggregateListeners() {
+		synchronized (aggregateListeners) {
+			return new ArrayList<IIOSampleAggregateListener>(aggregateListeners);
+		}
+	}
+	
+	/**
+	 * Adds the last sample decoded by the given decoder to the open window 
+	 * of the remote XBee device.
+	 * 
+	 * <p>Samples older than the open window are added to it.</p>
+	 * 
+	 * <p><b>This is only for internal use.</b></p>
+	 * 
+	 * @param remoteDevice The remote XBee device that sent the sample.
+	 * @param timestamp The reception time of the sample in milliseconds.
+	 * @param decoder Decoder containing the values of the sample.
+	 * 
+	 * @return The aggregates of the windows closed by the sample, empty if no 
+	 *         window was closed.
+	 * 
+	 * @throws NullPointerException if {@code remoteDevice == null} or 
+	 *                              if {@code decoder == null}.
+	 * 
+	 * @see IOSampleAggregate
+	 * @see IOSampleDecoder
+	 */
+	public synchronized List<IOSampleAggregate> addSample(RemoteXBeeDevice remoteDevice, long timestamp, IOSampleDecoder decoder) {
+		if (remoteDevice == null)
+			throw new NullPointerException("Remote XBee device cannot be null.");
+		if (decoder == null)
+			throw new NullPointerException("Decoder cannot be null.");
+		
+		long pane = timestamp / slide;
+		List<IOSampleAggregate> aggregates = null;
+		
+		WindowState state = states.get(remoteDevice);
+		if (state == null) {
+			state = new WindowState(panes);
+			state.pane = pane;
+			states.put(remoteDevice, state);
+		}
+		
+		// Close the windows ending before the pane of the sample.
+		while (state.pane < pane) {
+			if (aggregates == null)
+				aggregates = new ArrayList<IOSampleAggregate>();
+			aggregates.add(createAggregate(remoteDevice, state));
+			state.pane++;
+			state.clear(slot(state.pane));
+			// Skip the windows without samples.
+			if (state.isEmpty()) {
+				state.pane = pane;
+				break;
+			}
+		}
+		
+		state.add(slot(state.pane), decoder);
+		
+		if (aggregates == null)
+			return Collections.emptyList();
+		return aggregates;
+	}
+	
+	/**
+	 * Closes the open window of every remote XBee device and returns their 
+	 * aggregates.
+	 * 
+	 * <p>The state of the remote devices is discarded, so the next windows 
+	 * only contain the samples received after this call.</p>
+	 * 
+	 * @return The aggregates of the open windows.
+	 * 
+	 * @see IOSampleAggregate
+	 */
+	public synchronized List<IOSampleAggregate> flush() {
+		List<IOSampleAggregate> aggregates = new ArrayList<IOSampleAggregate>();
+		for (Map.Entry<RemoteXBeeDevice, WindowState> entry:states.entrySet())
+			aggregates.add(createAggregate(entry.getKey(), entry.getValue()));
+		states.clear();
+		return aggregates;
+	}
+	
+	/**
+	 * Discards the open window of every remote XBee device.
+	 */
+	public synchronized void reset() {
+		states.clear();
+	}
+	
+	/**
+	 * Returns the slot of the given pane in the state arrays.
+	 * 
+	 * @param pane The pane number.
+	 * 
+	 * @return The slot of the pane.
+	 */
+	private int slot(long pane) {
+		int slot = (int)(pane % panes);
+		return slot < 0 ? slot + panes : slot;
+	}
+	
+	/**
+	 * Creates the aggregate of the window ending at the current pane of the 
+	 * given state.
+	 * 
+	 * @param remoteDevice The remote XBee device.
+	 * @param state The state of the remote device.
+	 * 
+	 * @return The aggregate of the window.
+	 */
+	private IOSampleAggregate createAggregate(RemoteXBeeDevice remoteDevice, WindowState state) {
+		long endTime = (state.pane + 1) * slide;
+		IOSampleAggregate aggregate = new IOSampleAggregate(remoteDevice, endTime - windowSize, endTime);
+		// Merge the panes from the oldest to the newest.
+		for (long pane = state.pane - panes + 1; pane <= state.pane; pane++) {
+			int slot = slot(pane);
+			for (int i = 0; i < ANALOG_LINES; i++) {
+				int index = slot * ANALOG_LINES + i;
+				aggregate.mergeAnalog(i, state.analogCount[index], state.analogMin[index], 
+						state.analogMax[index], state.analogSum[index], state.analogLast[index]);
+			}
+			for (int i = 0; i < DIGITAL_LINES; i++) {
+				int index = slot * DIGITAL_LINES + i;
+				aggregate.mergeDigital(i, state.digitalCount[index], state.digitalHighCount[index], 
+						(state.digitalLast[slot] >>> i) & 1);
+			}
+		}
+		return aggregate;
+	}
+	
+	/**
+	 * Helper class that stores the accumulators of every pane of the open 
+	 * window of a remote XBee device.
+	 */
+	private static class WindowState {
+		
+		// Variables.
+		private long pane;
+		
+		private final int[] analogCount;
+		private final int[] analogMin;
+		private final int[] analogMax;
+		private final int[] analogLast;
+		
+		private final long[] analogSum;
+		
+		private final int[] digitalCount;
+		private final int[] digitalHighCount;
+		private final int[] digitalLast;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code WindowState} object 
+		 * with the given number of panes.
+		 * 
+		 * @param panes The number of panes of a window.
+		 */
+		private WindowState(int panes) {
+			analogCount = new int[panes * ANALOG_LINES];
+			analogMin = new int[panes * ANALOG_LINES];
+			analogMax = new int[panes * ANALOG_LINES];
+			analogLast = new int[panes * ANALOG_LINES];
+			analogSum = new long[panes * ANALOG_LINES];
+			digitalCount = new int[panes * DIGITAL_LINES];
+			digitalHighCount = new int[panes * DIGITAL_LINES];
+			digitalLast = new int[panes];
+		}
+		
+		/**
+		 * Adds the values of the given decoder to the given slot.
+		 * 
+		 * @param slot The slot of the pane.
+		 * @param decoder Decoder containing the values of the sample.
+		 */
+		private void add(int slot, IOSampleDecoder decoder) {
+			int analogMask = decoder.getAnalogMask();
+			for (int i = 0; i < ANALOG_LINES; i++) {
+				if ((analogMask & (1 << i)) == 0)
+					continue;
+				int index = slot * ANALOG_LINES + i;
+				int value = decoder.getAnalogValue(i);
+				if (analogCount[index] == 0 || value < analogMin[index])
+					analogMin[index] = value;
+				if (analogCount[index] == 0 || value > analogMax[index])
+					analogMax[index] = value;
+				analogCount[index]++;
+				analogSum[index] += value;
+				analogLast[index] = value;
+			}
+			
+			int digitalMask = decoder.getDigitalMask();
+			int digitalValues = decoder.getDigitalValues();
+			for (int i = 0; i < DIGITAL_LINES; i++) {
+				if ((digitalMask & (1 << i)) == 0)
+					continue;
+				int index = slot * DIGITAL_LINES + i;
+				digitalCount[index]++;
+				if ((digitalValues & (1 << i)) != 0)
+					digitalHighCount[index]++;
+			}
+			digitalLast[slot] = (digitalLast[slot] & ~digitalMask) | (digitalValues & digitalMask);
+		}
+		
+		/**
+		 * Clears the accumulators of the given slot.
+		 * 
+		 * @param slot The slot of the pane.
+		 */
+		private void clear(int slot) {
+			for (int i = slot * ANALOG_LINES; i < (slot + 1) * ANALOG_LINES; i++) {
+				analogCount[i] = 0;
+				analogSum[i] = 0;
+			}
+			for (int i = slot * DIGITAL_LINES; i < (slot + 1) * DIGITAL_LINES; i++) {
+				digitalCount[i] = 0;
+				digitalHighCount[i] = 0;
+			}
+			digitalLast[slot] = 0;
+		}
+		
+		/**
+		 * Returns whether there are no samples in any pane.
+		 * 
+		 * @return {@code true} if there are no samples, {@code false} 
+		 *         otherwise.
+		 */
+		private boolean isEmpty() {
+			for (int i = 0; i < analogCount.length; i++) {
+				if (analogCount[i] != 0)
+					return false;
+			}
+			for (int i = 0; i < digitalCount.length; i++) {
+				if (digitalCount[i] != 0)
+					return false;
+			}
+			return true;
+		}
+	}
+}
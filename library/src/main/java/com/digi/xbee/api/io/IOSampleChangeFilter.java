@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+
+/**
+ * This class filters the IO samples received from remote XBee devices so
+ * that only the samples containing changes are delivered to the IO sample
+ * listeners.
+ * 
+ * <p>The filter keeps the previous state of every line for each remote XBee
+ * device. A sample is accepted if:</p>
+ * <ul>
+ * <li>It is the first sample received from the remote device.</li>
+ * <li>The set of digital or analog lines included in the sample changed.</li>
+ * <li>Any digital line has a rising or falling edge.</li>
+ * <li>The value of any analog line differs from the last delivered value
+ * of that line by more than the line deadband.</li>
+ * </ul>
+ * 
+ * <p>Analog values are compared against the last delivered value, so a slow
+ * drift is delivered once it exceeds the deadband. The power supply value is
+ * not taken into account.</p>
+ * 
+ * <p>Deciding whether a sample must be delivered does not create any object
+ * once the state of the remote device has been created.</p>
+ * 
+ * @see com.digi.xbee.api.XBeeDevice#setIOSampleChangeFilter(IOSampleChangeFilter)
+ * @see IOSampleDecoder
+ */
+public class IOSampleChangeFilter {
+	
+	// Variables.
+	private final int[] analogDeadbands = new int[IOSampleDecoder.MAX_ANALOG_LINES];
+	
+	private final Map<RemoteXBeeDevice, LineState> states = new WeakHashMap<RemoteXBeeDevice, LineState>();
+	
+	/**
+	 * Class constructor. Instantiates a new {@code IOSampleChangeFilter}
+	 * object that delivers every digital edge and every analog change.
+	 */
+	public IOSampleChangeFilter() {
+	}
+	
+	/**
+	 * Sets the deadband of the given analog line.
+	 * 
+	 * <p>Analog changes smaller than or equal to the deadband are not
+	 * delivered. The default deadband of every line is {@code 0}.</p>
+	 * 
+	 * @param ioLine The analog IO line.
+	 * @param deadband Deadband in ADC counts.
+	 * 
+	 * @throws IllegalArgumentException if {@code deadband < 0} or
+	 *                                  if {@code ioLine} cannot be an analog line.
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 * 
+	 * @see #getAnalogDeadband(IOLine)
+	 * @see IOLine
+	 */
+	public synchronized void setAnalogDeadband(IOLine ioLine, int deadband) {
+		if (ioLine == null)
+			throw new NullPointerException("IO line cannot be null.");
+		if (ioLine.getIndex() >= IOSampleDecoder.MAX_ANALOG_LINES)
+			throw new IllegalArgumentException("IO line " + ioLine.getName() + " is not an analog line.");
+		if (deadband < 0)
+			throw new IllegalArgumentException("Deadband cannot be less than 0.");
+		
+		analogDeadbands[ioLine.getIndex()] = deadband;
+	}
+	
+	/**
+	 * Returns the deadband of the given analog line.
+	 * 
+	 * @param ioLine The analog IO line.
+	 * 
+	 * @return The deadband in ADC counts.
+	 * 
+	 * @throws IllegalArgumentException if {@code ioLine} cannot be an analog line.
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 * 
+	 * @see #setAnalogDeadband(IOLine, int)
+	 * @see IOLine
+	 */
+	public synchronized int getAnalogDeadband(IOLine ioLine) {
+		if (ioLine == null)
+			throw new NullPointerException("IO line cannot be null.");
+		if (ioLine.getIndex() >= IOSampleDecoder.MAX_ANALOG_LINES)
+			throw new IllegalArgumentException("IO line " + ioLine.getName() + " is not an analog line.");
+		
+		return analogDeadbands[ioLine.getIndex()];
+	}
+	
+	/**
+	 * Returns whether the last sample decoded by the given decoder must be
+	 * delivered to the IO sample listeners, updating the stored state of the
+	 * remote XBee device.
+	 * 
+	 * @param remoteDevice The remote XBee device that sent the sample.
+	 * @param decoder Decoder containing the values of the sample.
+	 * 
+	 * @return {@code true} if the sample contains changes and must be
+	 *         delivered, {@code false} otherwise.
+	 * 
+	 * @throws NullPointerException if {@code remoteDevice == null} or
+	 *                              if {@code decoder == null}.
+	 * 
+	 * @see IOSampleDecoder
+	 */
+	public synchronized boolean accept(RemoteXBeeDevice remoteDevice, IOSampleDecoder decoder) {
+		if (remoteDevice == null)
+			throw new NullPointerException("Remote XBee device cannot be null.");
+		if (decoder == null)
+			throw new NullPointerException("Decoder cannot be null.");
+		
+		int digitalMask = decoder.getDigitalMask();
+		int digitalValues = decoder.getDigitalValues() & digitalMask;
+		int analogMask = decoder.getAnalogMask();
+		
+		LineState state = states.get(remoteDevice);
+		if (state == null) {
+			state = new LineState();
+			states.put(remoteDevice, state);
+			state.update(digitalMask, digitalValues, analogMask, decoder);
+			return true;
+		}
+		
+		boolean changed = digitalMask != state.digitalMask
+				|| analogMask != state.analogMask
+				|| digitalValues != state.digitalValues;
+		for (int i = 0; !changed && i < IOSampleDecoder.MAX_ANALOG_LINES; i++) {
+			if ((analogMask & (1 << i)) != 0
+					&& Math.abs(decoder.getAnalogValue(i) - state.analogValues[i]) > analogDeadbands[i])
+				changed = true;
+		}
+		
+		if (changed)
+			state.update(digitalMask, digitalValues, analogMask, decoder);
+		return changed;
+	}
+	
+	/**
+	 * Discards the stored state of every remote XBee device, so the next
+	 * sample of each device is always delivered.
+	 * 
+	 * @see #reset(RemoteXBeeDevice)
+	 */
+	public synchronized void reset() {
+		states.clear();
+	}
+	
+	/**
+	 * Discards the stored state of the given remote XBee device, so its next
+	 * sample is always delivered.
+	 * 
+	 * @param remoteDevice The remote XBee device.
+	 * 
+	 * @throws NullPointerException if {@code remoteDevice == null}.
+	 * 
+	 * @see #reset()
+	 */
+	public synchronized void reset(RemoteXBeeDevice remoteDevice) {
+		if (remoteDevice == null)
+			throw new NullPointerException("Remote XBee device cannot be null.");
+		
+		states.remove(remoteDevice);
+	}
+	
+	/**
+	 * Helper class that stores the last delivered state of the lines of a
+	 * remote XBee device.
+	 */
+	private static class LineState {
+		
+		// Variables.
+		private int digitalMask;
+		private int digitalValues;
+		private int analogMask;
+		
+		private final int[] analogValues = new int[IOSampleDecoder.MAX_ANALOG_LINES];
+		
+		/**
+		 * Updates the state with the given values.
+		 * 
+		 * @param digitalMask Digital mask of the sample.
+		 * @param digitalValues Digital values of the sample.
+		 * @param analogMask Analog mask of the sample.
+		 * @param decoder Decoder containing the analog values.
+		 */
+		private void update(int digitalMask, int digitalValues, int analogMask, IOSampleDecoder decoder) {
+			this.digitalMask = digitalMask;
+			this.digitalValues = digitalValues;
+			this.analogMask = analogMask;
+			for (int i = 0; i < IOSampleDecoder.MAX_ANALOG_LINES; i++) {
+				if ((analogMask & (1 << i)) != 0)
+					analogValues[i] = decoder.getAnalogValue(i);
+			}
+		}
+	}
+}
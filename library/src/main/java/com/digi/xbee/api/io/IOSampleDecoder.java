@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+/**
+ * This class decodes IO sample payloads into primitive values.
+ * 
+ * <p>Unlike {@link IOSample}, a decoder does not create any object while
+ * decoding a payload: the same instance can be reused to decode any number
+ * of samples, keeping the values of the last decoded one. This makes it
+ * suitable for the IO sample receive path, where every sample must be
+ * inspected but only some of them need to be converted to an
+ * {@code IOSample}.</p>
+ * 
+ * <p>The payload format is the same one accepted by {@link IOSample}.
+ * Masks are normalized so that both 802.15.4 and the rest of protocols
+ * use the same bit layout:</p>
+ * <ul>
+ * <li>Digital mask and values: bit {@code n} corresponds to the IO line
+ * with index {@code n}.</li>
+ * <li>Analog mask: bit {@code n} (from 0 to 5) corresponds to the ADC line
+ * with index {@code n}. The power supply value is not included in the
+ * mask, see {@link #hasPowerSupplyValue()}.</li>
+ * </ul>
+ * 
+ * <p>Instances of this class are not thread-safe.</p>
+ * 
+ * @see IOSample
+ */
+public class IOSampleDecoder {
+	
+	// Constants.
+	/**
+	 * Maximum number of analog lines a sample can contain.
+	 */
+	public static final int MAX_ANALOG_LINES = 6;
+	
+	/**
+	 * Maximum number of digital lines a sample can contain.
+	 */
+	public static final int MAX_DIGITAL_LINES = 16;
+	
+	private static final int POWER_SUPPLY_INDEX = 7;
+	
+	// Variables.
+	private int digitalMask;
+	private int digitalValues;
+	private int analogMask;
+	private int powerSupplyValue;
+	
+	private boolean powerSupply;
+	
+	private final int[] analogValues = new int[MAX_ANALOG_LINES];
+	
+	/**
+	 * Decodes the given IO sample payload.
+	 * 
+	 * <p>The previously decoded values are discarded even if the payload is
+	 * not valid.</p>
+	 * 
+	 * @param ioSamplePayload The payload corresponding to an IO sample.
+	 * 
+	 * @return {@code true} if the payload was decoded, {@code false} if it
+	 *         is {@code null} or shorter than 5 bytes.
+	 * 
+	 * @see IOSample#IOSample(byte[])
+	 */
+	public boolean decode(byte[] ioSamplePayload) {
+		digitalMask = 0;
+		digitalValues = 0;
+		analogMask = 0;
+		powerSupply = false;
+		powerSupplyValue = 0;
+		
+		if (ioSamplePayload == null || ioSamplePayload.length < 5)
+			return false;
+		
+		if (ioSamplePayload.length % 2 != 0)
+			decodeRawIOSample(ioSamplePayload);
+		else
+			decodeIOSample(ioSamplePayload);
+		return true;
+	}
+	
+	/**
+	 * Decodes an 802.15.4 IO sample payload.
+	 * 
+	 * @param payload The IO sample payload.
+	 */
+	private void decodeRawIOSample(byte[] payload) {
+		int dataIndex = 3;
+		
+		digitalMask = ((payload[1] & 0x01) << 8) + (payload[2] & 0xFF);
+		int mask = (((payload[1] << 8) + (payload[2] & 0xFF)) & 0x7E00) >> 9;
+		
+		if (digitalMask > 0) {
+			digitalValues = ((payload[3] & 0x7F) << 8) + (payload[4] & 0xFF);
+			dataIndex += 2;
+		}
+		
+		int adcIndex = 0;
+		while ((payload.length - dataIndex) > 1 && adcIndex < MAX_ANALOG_LINES) {
+			if ((mask & (1 << adcIndex)) != 0) {
+				analogValues[adcIndex] = ((payload[dataIndex] & 0xFF) << 8) + (payload[dataIndex + 1] & 0xFF);
+				analogMask |= 1 << adcIndex;
+				dataIndex += 2;
+			}
+			adcIndex += 1;
+		}
+	}
+	
+	/**
+	 * Decodes an IO sample payload of any protocol other than 802.15.4.
+	 * 
+	 * @param payload The IO sample payload.
+	 */
+	private void decodeIOSample(byte[] payload) {
+		int dataIndex = 4;
+		
+		digitalMask = ((payload[1] & 0x7F) << 8) + (payload[2] & 0xFF);
+		int mask = payload[3] & 0xBF;
+		
+		if (digitalMask > 0) {
+			digitalValues = ((payload[4] & 0x7F) << 8) + (payload[5] & 0xFF);
+			dataIndex += 2;
+		}
+		
+		int adcIndex = 0;
+		while ((payload.length - dataIndex) > 1 && adcIndex <= POWER_SUPPLY_INDEX) {
+			if ((mask & (1 << adcIndex)) != 0) {
+				int value = ((payload[dataIndex] & 0xFF) << 8) + (payload[dataIndex + 1] & 0xFF);
+				if (adcIndex == POWER_SUPPLY_INDEX) {
+					powerSupply = true;
+					powerSupplyValue = value;
+				} else {
+					analogValues[adcIndex] = value;
+					analogMask |= 1 << adcIndex;
+				}
+				dataIndex += 2;
+			}
+			adcIndex += 1;
+		}
+	}
+	
+	/**
+	 * Returns the digital mask of the last decoded sample.
+	 * 
+	 * @return The digital mask. Bit {@code n} corresponds to the IO line
+	 *         with index {@code n}.
+	 * 
+	 * @see #getDigitalValues()
+	 */
+	public int getDigitalMask() {
+		return digitalMask;
+	}
+	
+	/**
+	 * Returns the digital values of the last decoded sample.
+	 * 
+	 * <p>Only the bits enabled in the digital mask are meaningful.</p>
+	 * 
+	 * @return The digital values. Bit {@code n} is set if the IO line with
+	 *         index {@code n} is {@link IOValue#HIGH}.
+	 * 
+	 * @see #getDigitalMask()
+	 */
+	public int getDigitalValues() {
+		return digitalValues;
+	}
+	
+	/**
+	 * Returns whether the last decoded sample contains a digital value for the
+	 * given IO line index.
+	 * 
+	 * @param index The IO line index.
+	 * 
+	 * @return {@code true} if the sample contains a digital value for the
+	 *         line, {@code false} otherwise.
+	 */
+	public boolean hasDigitalValue(int index) {
+		return (digitalMask & (1 << index)) != 0;
+	}
+	
+	/**
+	 * Returns the analog mask of the last decoded sample.
+	 * 
+	 * @return The analog mask. Bit {@code n} corresponds to the ADC line
+	 *         with index {@code n}.
+	 * 
+	 * @see #getAnalogValue(int)
+	 */
+	public int getAnalogMask() {
+		return analogMask;
+	}
+	
+	/**
+	 * Returns whether the last decoded sample contains an analog value for the
+	 * given IO line index.
+	 * 
+	 * @param index The IO line index.
+	 * 
+	 * @return {@code true} if the sample contains an analog value for the
+	 *         line, {@code false} otherwise.
+	 */
+	public boolean hasAnalogValue(int index) {
+		return index < MAX_ANALOG_LINES && (analogMask & (1 << index)) != 0;
+	}
+	
+	/**
+	 * Returns the analog value of the given IO line index in the last decoded
+	 * sample.
+	 * 
+	 * @param index The IO line index.
+	 * 
+	 * @return The analog value, only meaningful if
+	 *         {@link #hasAnalogValue(int)} returns {@code true}.
+	 * 
+	 * @throws ArrayIndexOutOfBoundsException if {@code index < 0} or
+	 *                                        if {@code index >= }{@link #MAX_ANALOG_LINES}.
+	 */
+	public int getAnalogValue(int index) {
+		return analogValues[index];
+	}
+	
+	/**
+	 * Returns whether the last decoded sample contains the power supply value.
+	 * 
+	 * @return {@code true} if the sample contains the power supply value,
+	 *         {@code false} otherwise.
+	 * 
+	 * @see #getPowerSupplyValue()
+	 */
+	public boolean hasPowerSupplyValue() {
+		return powerSupply;
+	}
+	
+	/**
+	 * Returns the power supply value of the last decoded sample.
+	 * 
+	 * @return The power supply value, only meaningful if
+	 *         {@link #hasPowerSupplyValue()} returns {@code true}.
+	 * 
+	 * @see #hasPowerSupplyValue()
+	 */
+	public int getPowerSupplyValue() {
+		return powerSupplyValue;
+	}
+}
@@ -0,0 +1,378 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import java.util.Arrays;
+
+/**
+ * This class stores the last IO samples received from a remote XBee device.
+ * 
+ * <p>Samples are kept in a fixed capacity ring buffer using one primitive
+ * array per column (timestamp, digital mask, digital values, analog mask and
+ * one array per analog line), so storing a sample does not create any object
+ * and range queries read contiguous memory. When the history is full, the
+ * oldest sample is overwritten.</p>
+ * 
+ * <p>Timestamps are expressed in milliseconds and are expected to be
+ * non-decreasing. A sample with a timestamp older than the latest stored one
+ * is stored with the latest timestamp.</p>
+ * 
+ * <p>This class is thread-safe.</p>
+ * 
+ * @see IOSample
+ * @see IOSampleDecoder
+ */
+public class IOSampleHistory {
+	
+	// Constants.
+	private static final int POWER_SUPPLY_FLAG = 0x80;
+	private static final int MAX_DIGITAL_LINES = 16;
+	
+	// Variables.
+	private final int capacity;
+	
+	private final long[] timestamps;
+	private final int[] digitalMasks;
+	private final int[] digitalValues;
+	private final int[] analogMasks;
+	private final int[] powerSupplyValues;
+	private final int[][] analogValues;
+	
+	// Sequence numbers of the last sample containing each line.
+	private final long[] lastDigitalSequence = new long[MAX_DIGITAL_LINES];
+	private final long[] lastAnalogSequence = new long[IOSampleDecoder.MAX_ANALOG_LINES];
+	private long lastPowerSupplySequence = -1;
+	
+	// Number of samples added since the creation or the last clear.
+	private long count = 0;
+	
+	/**
+	 * Class constructor. Instantiates a new {@code IOSampleHistory} object
+	 * able to store the given number of samples.
+	 * 
+	 * @param capacity Maximum number of samples to keep.
+	 * 
+	 * @throws IllegalArgumentException if {@code capacity < 1}.
+	 */
+	public IOSampleHistory(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be greater than 0.");
+		
+		this.capacity = capacity;
+		timestamps = new long[capacity];
+		digitalMasks = new int[capacity];
+		digitalValues = new int[capacity];
+		analogMasks = new int[capacity];
+		powerSupplyValues = new int[capacity];
+		analogValues = new int[IOSampleDecoder.MAX_ANALOG_LINES][capacity];
+		clear();
+	}
+	
+	/**
+	 * Adds the last sample decoded by the given decoder to the history.
+	 * 
+	 * <p><b>This is only for internal use.</b></p>
+	 * 
+	 * @param timestamp Reception time of the sample in milliseconds.
+	 * @param decoder Decoder containing the values of the sample.
+	 * 
+	 * @throws NullPointerException if {@code decoder == null}.
+	 * 
+	 * @see IOSampleDecoder
+	 */
+	public synchronized void addSample(long timestamp, IOSampleDecoder decoder) {
+		if (decoder == null)
+			throw new NullPointerException("Decoder cannot be null.");
+		
+		int slot = (int)(count % capacity);
+		if (count > 0 && timestamp < timestamps[(int)((count - 1) % capacity)])
+			timestamp = timestamps[(int)((count - 1) % capacity)];
+		
+		int digitalMask = decoder.getDigitalMask();
+		int analogMask = decoder.getAnalogMask();
+		
+		timestamps[slot] = timestamp;
+		digitalMasks[slot] = digitalMask;
+		digitalValues[slot] = decoder.getDigitalValues();
+		for (int i = 0; i < IOSampleDecoder.MAX_ANALOG_LINES; i++) {
+			if ((analogMask & (1 << i)) != 0) {
+				analogValues[i][slot] = decoder.getAnalogValue(i);
+				lastAnalogSequence[i] = count;
+			}
+		}
+		for (int i = 0; i < MAX_DIGITAL_LINES; i++) {
+			if ((digitalMask & (1 << i)) != 0)
+				lastDigitalSequence[i] = count;
+		}
+		if (decoder.hasPowerSupplyValue()) {
+			analogMask |= POWER_SUPPLY_FLAG;
+			powerSupplyValues[slot] = decoder.getPowerSupplyValue();
+			lastPowerSupplySequence = count;
+		}
+		analogMasks[slot] = analogMask;
+		count += 1;
+	}
+	
+	/**
+	 * Removes all the samples from the history.
+	 */
+	public synchronized void clear() {
+		count = 0;
+		Arrays.fill(lastDigitalSequence, -1);
+		Arrays.fill(lastAnalogSequence, -1);
+		lastPowerSupplySequence = -1;
+	}
+	
+	/**
+	 * Returns the maximum number of samples this history can keep.
+	 * 
+	 * @return The capacity of the history.
+	 * 
+	 * @see #size()
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * Returns the number of samples currently stored.
+	 * 
+	 * @return The number of stored samples.
+	 * 
+	 * @see #getCapacity()
+	 */
+	public synchronized int size() {
+		return (int)Math.min(count, capacity);
+	}
+	
+	/**
+	 * Returns the timestamp of the latest stored sample.
+	 * 
+	 * @return The timestamp of the latest sample in milliseconds, {@code -1}
+	 *         if the history is empty.
+	 */
+	public synchronized long getLatestTimestamp() {
+		if (count == 0)
+			return -1;
+		return timestamps[(int)((count - 1) % capacity)];
+	}
+	
+	/**
+	 * Returns the latest digital value of the given IO line.
+	 * 
+	 * @param ioLine The IO line to get its latest digital value.
+	 * 
+	 * @return The latest digital value of the line, {@code null} if no stored
+	 *         sample contains a digital value for it.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 * 
+	 * @see IOLine
+	 * @see IOValue
+	 */
+	public synchronized IOValue getLatestDigitalValue(IOLine ioLine) {
+		if (ioLine == null)
+			throw new NullPointerException("IO line cannot be null.");
+		
+		int index = ioLine.getIndex();
+		if (index >= MAX_DIGITAL_LINES || !isStored(lastDigitalSequence[index]))
+			return null;
+		int slot = (int)(lastDigitalSequence[index] % capacity);
+		return (digitalValues[slot] & (1 << index)) != 0 ? IOValue.HIGH : IOValue.LOW;
+	}
+	
+	/**
+	 * Returns the latest analog value of the given IO line.
+	 * 
+	 * @param ioLine The IO line to get its latest analog value.
+	 * 
+	 * @return The latest analog value of the line, {@code -1} if no stored
+	 *         sample contains an analog value for it.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 * 
+	 * @see IOLine
+	 */
+	public synchronized int getLatestAnalogValue(IOLine ioLine) {
+		if (ioLine == null)
+			throw new NullPointerException("IO line cannot be null.");
+		
+		int index = ioLine.getIndex();
+		if (index >= IOSampleDecoder.MAX_ANALOG_LINES || !isStored(lastAnalogSequence[index]))
+			return -1;
+		return analogValues[index][(int)(lastAnalogSequence[index] % capacity)];
+	}
+	
+	/**
+	 * Returns the latest power supply value.
+	 * 
+	 * @return The latest power supply value, {@code -1} if no stored sample
+	 *         contains it.
+	 */
+	public synchronized int getLatestPowerSupplyValue() {
+		if (!isStored(lastPowerSupplySequence))
+			return -1;
+		return powerSupplyValues[(int)(lastPowerSupplySequence % capacity)];
+	}
+	
+	/**
+	 * Copies the analog values of the given IO line received within the
+	 * given time range into the provided arrays, from oldest to newest.
+	 * 
+	 * <p>Only samples containing an analog value for the line are copied. If
+	 * there are more matching samples than room in the arrays, the oldest
+	 * ones are copied.</p>
+	 * 
+	 * @param ioLine The IO line to get its analog values.
+	 * @param from Start of the time range in milliseconds (inclusive).
+	 * @param to End of the time range in milliseconds (inclusive).
+	 * @param timestamps Array to store the timestamp of each value, it may
+	 *                   be {@code null}.
+	 * @param values Array to store the analog values.
+	 * 
+	 * @return The number of values copied.
+	 * 
+	 * @throws IllegalArgumentException if {@code timestamps != null} and
+	 *                                  {@code timestamps.length < values.length}.
+	 * @throws NullPointerException if {@code ioLine == null} or
+	 *                              if {@code values == null}.
+	 * 
+	 * @see #getDigitalValues(IOLine, long, long, long[], int[])
+	 * @see IOLine
+	 */
+	public synchronized int getAnalogValues(IOLine ioLine, long from, long to, long[] timestamps, int[] values) {
+		checkRangeArguments(ioLine, timestamps, values);
+		
+		int index = ioLine.getIndex();
+		if (index >= IOSampleDecoder.MAX_ANALOG_LINES)
+			return 0;
+		
+		int[] column = analogValues[index];
+		int bit = 1 << index;
+		int copied = 0;
+		for (long seq = findFirst(from); seq < count && copied < values.length; seq++) {
+			int slot = (int)(seq % capacity);
+			if (this.timestamps[slot] > to)
+				break;
+			if ((analogMasks[slot] & bit) == 0)
+				continue;
+			if (timestamps != null)
+				timestamps[copied] = this.timestamps[slot];
+			values[copied++] = column[slot];
+		}
+		return copied;
+	}
+	
+	/**
+	 * Copies the digital values of the given IO line received within the
+	 * given time range into the provided arrays, from oldest to newest.
+	 * 
+	 * <p>Each value is stored as {@code 1} for {@link IOValue#HIGH} and
+	 * {@code 0} for {@link IOValue#LOW}. Only samples containing a digital
+	 * value for the line are copied. If there are more matching samples than
+	 * room in the arrays, the oldest ones are copied.</p>
+	 * 
+	 * @param ioLine The IO line to get its digital values.
+	 * @param from Start of the time range in milliseconds (inclusive).
+	 * @param to End of the time range in milliseconds (inclusive).
+	 * @param timestamps Array to store the timestamp of each value, it may
+	 *                   be {@code null}.
+	 * @param values Array to store the digital values.
+	 * 
+	 * @return The number of values copied.
+	 * 
+	 * @throws IllegalArgumentException if {@code timestamps != null} and
+	 *                                  {@code timestamps.length < values.length}.
+	 * @throws NullPointerException if {@code ioLine == null} or
+	 *                              if {@code values == null}.
+	 * 
+	 * @see #getAnalogValues(IOLine, long, long, long[], int[])
+	 * @see IOLine
+	 */
+	public synchronized int getDigitalValues(IOLine ioLine, long from, long to, long[] timestamps, int[] values) {
+		checkRangeArguments(ioLine, timestamps, values);
+		
+		int index = ioLine.getIndex();
+		if (index >= MAX_DIGITAL_LINES)
+			return 0;
+		
+		int bit = 1 << index;
+		int copied = 0;
+		for (long seq = findFirst(from); seq < count && copied < values.length; seq++) {
+			int slot = (int)(seq % capacity);
+			if (this.timestamps[slot] > to)
+				break;
+			if ((digitalMasks[slot] & bit) == 0)
+				continue;
+			if (timestamps != null)
+				timestamps[copied] = this.timestamps[slot];
+			values[copied++] = (digitalValues[slot] & bit) != 0 ? 1 : 0;
+		}
+		return copied;
+	}
+	
+	/**
+	 * Checks the arguments of a range query.
+	 * 
+	 * @param ioLine The IO line.
+	 * @param timestamps Timestamps array.
+	 * @param values Values array.
+	 * 
+	 * @throws IllegalArgumentException if {@code timestamps != null} and
+	 *                                  {@code timestamps.length < values.length}.
+	 * @throws NullPointerException if {@code ioLine == null} or
+	 *                              if {@code values == null}.
+	 */
+	private void checkRangeArguments(IOLine ioLine, long[] timestamps, int[] values) {
+		if (ioLine == null)
+			throw new NullPointerException("IO line cannot be null.");
+		if (values == null)
+			throw new NullPointerException("Values array cannot be null.");
+		if (timestamps != null && timestamps.length < values.length)
+			throw new IllegalArgumentException("Timestamps array cannot be shorter than values array.");
+	}
+	
+	/**
+	 * Returns the sequence number of the oldest stored sample whose timestamp
+	 * is equal or greater than the given one.
+	 * 
+	 * @param from Timestamp in milliseconds.
+	 * 
+	 * @return The sequence number of the sample, {@code count} if there is
+	 *         not any.
+	 */
+	private long findFirst(long from) {
+		long low = Math.max(0, count - capacity);
+		long high = count;
+		// Timestamps are non-decreasing, so a binary search can be used.
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			if (timestamps[(int)(mid % capacity)] < from)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+	
+	/**
+	 * Returns whether the sample with the given sequence number is still
+	 * stored.
+	 * 
+	 * @param sequence Sequence number of the sample.
+	 * 
+	 * @return {@code true} if the sample is stored, {@code false} otherwise.
+	 */
+	private boolean isStored(long sequence) {
+		return sequence >= 0 && sequence >= count - capacity;
+	}
+}
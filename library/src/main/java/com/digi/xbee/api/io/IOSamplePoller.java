@@ -0,0 +1,452 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+import com.digi.xbee.api.exceptions.InterfaceNotOpenException;
+import com.digi.xbee.api.exceptions.XBeeException;
+import com.digi.xbee.api.listeners.IIOSamplePollListener;
+
+/**
+ * Helper class used to periodically read the IO samples of a set of remote 
+ * XBee devices.
+ * 
+ * <p>Remote devices are polled concurrently, up to the configured maximum 
+ * number of concurrent polls (see {@link #setMaxConcurrentPolls(int)}). Each 
+ * poll is an {@code IS} command waiting for its own response frame, so the 
+ * limit is bounded by the number of available frame IDs.</p>
+ * 
+ * <p>The first poll of every device is spread over the polling period and 
+ * every poll is randomly delayed up to the configured jitter (see 
+ * {@link #setJitter(int)}) to avoid bursts of requests. Devices that do not 
+ * respond are polled less often: after every consecutive failure the delay 
+ * until the next poll of the device is doubled, up to 
+ * {@link #MAX_BACKOFF_PERIODS} polling periods.</p>
+ * 
+ * <p>Results are delivered asynchronously to the 
+ * {@link IIOSamplePollListener}s from the polling threads.</p>
+ * 
+ * @see com.digi.xbee.api.listeners.IIOSamplePollListener
+ */
+public class IOSamplePoller {
+	
+	// Constants.
+	/**
+	 * Default maximum number of concurrent polls.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_POLLS = 4;
+	
+	/**
+	 * Maximum number of concurrent polls. Half of the 255 frame IDs, so the 
+	 * rest of the traffic of the local device can still be sent while polling.
+	 */
+	public static final int MAX_CONCURRENT_POLLS = 127;
+	
+	/**
+	 * Default jitter as a percentage of the polling period.
+	 */
+	public static final int DEFAULT_JITTER = 10;
+	
+	/**
+	 * Maximum number of polling periods between two polls of a device that 
+	 * does not respond.
+	 */
+	public static final int MAX_BACKOFF_PERIODS = 16;
+	
+	// Variables.
+	private final List<IIOSamplePollListener> pollListeners = new ArrayList<IIOSamplePollListener>();
+	
+	private final Map<RemoteXBeeDevice, PollTask> pollTasks = new HashMap<RemoteXBeeDevice, PollTask>();
+	
+	private final Random random = new Random();
+	
+	private int maxConcurrentPolls = DEFAULT_MAX_CONCURRENT_POLLS;
+	private int jitter = DEFAULT_JITTER;
+	
+	private ScheduledThreadPoolExecutor executor;
+	
+	private Logger logger;
+	
+	/**
+	 * Class constructor. Instantiates a new {@code IOSamplePoller} object.
+	 */
+	public IOSamplePoller() {
+		this.logger = LoggerFactory.getLogger(IOSamplePoller.class);
+	}
+	
+	/**
+	 * Adds the provided listener to the list of listeners to be notified 
+	 * about the result of the polls.
+	 * 
+	 * <p>If the listener has been already added, this method does nothing.</p>
+	 * 
+	 * @param listener Listener to be notified about the result of the polls.
+	 * 
+	 * @throws NullPointerException if {@code listener == null}.
+	 * 
+	 * @see #removePollListener(IIOSamplePollListener)
+	 * @see com.digi.xbee.api.listeners.IIOSamplePollListener
+	 */
+	public void addPollListener(IIOSamplePollListener listener) {
+		if (listener == null)
+			throw new NullPointerException("Listener cannot be null.");
+		
+		synchronized (pollListeners) {
+			if (!pollListeners.contains(listener))
+				pollListeners.add(listener);
+		}
+	}
+	
+	/**
+	 * Removes the provided listener from the list of poll listeners.
+	 * 
+	 * <p>If the listener was not in the list this method does nothing.</p>
+	 * 
+	 * @param listener Listener to be removed from the list of listeners.
+	 * 
+	 * @throws NullPointerException if {@code listener == null}.
+	 * 
+	 * @see #addPollListener(IIOSamplePollListener)
+	 * @see com.digi.xbee.api.listeners.IIOSamplePollListener
+	 */
+	public void removePollListener(IIOSamplePollListener listener) {
+		if (listener == null)
+			throw new NullPointerException("Listener cannot be null.");
+		
+		synchronized (pollListeners) {
+			pollListeners.remove(listener);
+		}
+	}
+	
+	/**
+	 * Returns the maximum number of concurrent polls.
+	 * 
+	 * @return The maximum number of concurrent polls.
+	 * 
+	 * @see #setMaxConcurrentPolls(int)
+	 */
+	public synchronized int getMaxConcurrentPolls() {
+		return maxConcurrentPolls;
+	}
+	
+	/**
+	 * Sets the maximum number of concurrent polls.
+	 * 
+	 * <p>If the poller is running, the new value applies immediately.</p>
+	 * 
+	 * @param maxConcurrentPolls The maximum number of concurrent polls.
+	 * 
+	 * @throws IllegalArgumentException if {@code maxConcurrentPolls < 1} or 
+	 *                                  if {@code maxConcurrentPolls > MAX_CONCURRENT_POLLS}.
+	 * 
+	 * @see #getMaxConcurrentPolls()
+	 * @see #MAX_CONCURRENT_POLLS
+	 */
+	public synchronized void setMaxConcurrentPolls(int maxConcurrentPolls) {
+		if (maxConcurrentPolls < 1 || maxConcurrentPolls > MAX_CONCURRENT_POLLS)
+			throw new IllegalArgumentException("Maximum concurrent polls must be between 1 and " + MAX_CONCURRENT_POLLS + ".");
+		
+		this.maxConcurrentPolls = maxConcurrentPolls;
+		if (executor != null)
+			executor.setCorePoolSize(maxConcurrentPolls);
+	}
+	
+	/**
+	 * Returns the jitter of the polls as a percentage of the polling period.
+	 * 
+	 * @return The jitter percentage.
+	 * 
+	 * @see #setJitter(int)
+	 */
+	public synchronized int getJitter() {
+		return jitter;
+	}
+	
+	/**
+	 * Sets the jitter of the polls as a percentage of the polling period.
+	 * 
+	 * <p>Every poll is randomly delayed between {@code 0} and the given 
+	 * percentage of the polling period.</p>
+	 * 
+	 * @param jitter The jitter percentage, {@code 0} to disable it.
+	 * 
+	 * @throws IllegalArgumentException if {@code jitter < 0} or 
+	 *                                  if {@code jitter > 100}.
+	 * 
+	 * @see #getJitter()
+	 */
+	public synchronized void setJitter(int jitter) {
+		if (jitter < 0 || jitter > 100)
+			throw new IllegalArgumentException("Jitter must be between 0 and 100.");
+		
+		this.jitter = jitter;
+	}
+	
+	/**
+	 * Starts polling the given remote XBee devices every {@code period} 
+	 * milliseconds.
+	 * 
+	 * @param devices The remote XBee devices to poll.
+	 * @param period The polling period in milliseconds.
+	 * 
+	 * @throws IllegalArgumentException if {@code devices.isEmpty()} or 
+	 *                                  if {@code period < 1}.
+	 * @throws IllegalStateException if the poller is already running.
+	 * @throws NullPointerException if {@code devices == null} or 
+	 *                              if any of the devices is {@code null}.
+	 * 
+	 * @see #stop()
+	 * @see #isRunning()
+	 */
+	public synchronized void start(Collection<RemoteXBeeDevice> devices, long period) {
+		if (devices == null)
+			throw new NullPointerException("Devices cannot be null.");
+		if (devices.isEmpty())
+			throw new IllegalArgumentException("Devices cannot be empty.");
+		if (period < 1)
+			throw new IllegalArgumentException("Period must be greater than 0.");
+		for (RemoteXBeeDevice device:devices) {
+			if (device == null)
+				throw new NullPointerException("Device cannot be null.");
+		}
+		if (isRunning())
+			throw new IllegalStateException("The poller is already running.");
+		
+		executor = new ScheduledThreadPoolExecutor(maxConcurrentPolls, new ThreadFactory() {
+			/*
+			 * (non-Javadoc)
+			 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+			 */
+			@Override
+			public Thread newThread(Runnable runnable) {
+				// Polling threads do not keep the application alive.
+				Thread thread = new Thread(runnable, "XBeeIOSamplePoller");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		pollTasks.clear();
+		
+		// Spread the first poll of the devices over the period.
+		int index = 0;
+		for (RemoteXBeeDevice device:devices) {
+			if (pollTasks.containsKey(device))
+				continue;
+			PollTask task = new PollTask(device, period, executor);
+			pollTasks.put(device, task);
+			schedule(task, period * index / devices.size() + getJitterDelay(period));
+			index++;
+		}
+		
+		logger.debug("Polling {} remote devices every {} ms.", pollTasks.size(), period);
+	}
+	
+	/**
+	 * Stops polling the remote XBee devices.
+	 * 
+	 * <p>Pending polls are discarded. The polls in progress finish and their 
+	 * result is notified.</p>
+	 * 
+	 * @see #start(Collection, long)
+	 * @see #isRunning()
+	 */
+	public synchronized void stop() {
+		if (executor != null)
+			executor.shutdown();
+		executor = null;
+	}
+	
+	/**
+	 * Returns whether the poller is running or not.
+	 * 
+	 * @return {@code true} if the poller is running, {@code false} otherwise.
+	 * 
+	 * @see #start(Collection, long)
+	 * @see #stop()
+	 */
+	public synchronized boolean isRunning() {
+		return executor != null;
+	}
+	
+	/**
+	 * Returns the number of consecutive failed polls of the given remote 
+	 * XBee device.
+	 * 
+	 * @param remoteDevice The polled remote XBee device.
+	 * 
+	 * @return The number of consecutive failed polls, {@code 0} if the last 
+	 *         poll succeeded or the device is not polled.
+	 * 
+	 * @throws NullPointerException if {@code remoteDevice == null}.
+	 */
+	public synchronized int getConsecutiveFailures(RemoteXBeeDevice remoteDevice) {
+		if (remoteDevice == null)
+			throw new NullPointerException("Remote XBee device cannot be null.");
+		
+		PollTask task = pollTasks.get(remoteDevice);
+		if (task == null)
+			return 0;
+		return task.failures;
+	}
+	
+	/**
+	 * Returns a random delay between {@code 0} and the configured jitter of 
+	 * the given period.
+	 * 
+	 * @param period The polling period in milliseconds.
+	 * 
+	 * @return The jitter delay in milliseconds.
+	 */
+	private synchronized long getJitterDelay(long period) {
+		long maxJitter = period * jitter / 100;
+		if (maxJitter < 1)
+			return 0;
+		return (long)(random.nextDouble() * maxJitter);
+	}
+	
+	/**
+	 * Schedules the given poll task after the given delay.
+	 * 
+	 * @param task The poll task.
+	 * @param delay The delay in milliseconds.
+	 */
+	private void schedule(PollTask task, long delay) {
+		try {
+			task.executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// The poller has been stopped.
+		}
+	}
+	
+	/**
+	 * Notifies the poll listeners that an IO sample has been read.
+	 * 
+	 * @param remoteDevice The polled remote XBee device.
+	 * @param ioSample The read IO sample.
+	 */
+	private void notifyIOSamplePolled(RemoteXBeeDevice remoteDevice, IOSample ioSample) {
+		List<IIOSamplePollListener> listeners;
+		synchronized (pollListeners) {
+			listeners = new ArrayList<IIOSamplePollListener>(pollListeners);
+		}
+		for (IIOSamplePollListener listener:listeners) {
+			try {
+				listener.ioSamplePolled(remoteDevice, ioSample);
+			} catch (Exception e) {
+				logger.error(e.getMessage(), e);
+			}
+		}
+	}
+	
+	/**
+	 * Notifies the poll listeners that a poll failed.
+	 * 
+	 * @param remoteDevice The polled remote XBee device.
+	 * @param error The exception thrown while reading the IO sample.
+	 * @param consecutiveFailures The number of consecutive failed polls.
+	 */
+	private void notifyIOSamplePollFailed(RemoteXBeeDevice remoteDevice, XBeeException error, int consecutiveFailures) {
+		List<IIOSamplePollListener> listeners;
+		synchronized (pollListeners) {
+			listeners = new ArrayList<IIOSamplePollListener>(pollListeners);
+		}
+		for (IIOSamplePollListener listener:listeners) {
+			try {
+				listener.ioSamplePollFailed(remoteDevice, error, consecutiveFailures);
+			} catch (Exception e) {
+				logger.error(e.getMessage(), e);
+			}
+		}
+	}
+	
+	/**
+	 * Helper class that polls a remote XBee device and schedules its next 
+	 * poll.
+	 */
+	private class PollTask implements Runnable {
+		
+		// Variables.
+		private final RemoteXBeeDevice remoteDevice;
+		private final long period;
+		private final ScheduledThreadPoolExecutor executor;
+		
+		private volatile int failures = 0;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code PollTask} object with 
+		 * the given parameters.
+		 * 
+		 * @param remoteDevice The remote XBee device to poll.
+		 * @param period The polling period in milliseconds.
+		 * @param executor The executor that runs the polls.
+		 */
+		private PollTask(RemoteXBeeDevice remoteDevice, long period, ScheduledThreadPoolExecutor executor) {
+			this.remoteDevice = remoteDevice;
+			this.period = period;
+			this.executor = executor;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			if (executor.isShutdown())
+				return;
+			
+			IOSample ioSample = null;
+			XBeeException error = null;
+			try {
+				ioSample = remoteDevice.readIOSample();
+			} catch (XBeeException e) {
+				error = e;
+			} catch (InterfaceNotOpenException e) {
+				error = new XBeeException(e.getMessage(), e);
+			} catch (RuntimeException e) {
+				// Report any other error so the device keeps being polled.
+				logger.error(e.getMessage(), e);
+				error = new XBeeException("Error reading the IO sample.", e);
+			}
+			
+			if (error == null) {
+				failures = 0;
+				notifyIOSamplePolled(remoteDevice, ioSample);
+			} else {
+				failures++;
+				logger.debug("Error polling {}: {}", remoteDevice, error.getMessage());
+				notifyIOSamplePollFailed(remoteDevice, error, failures);
+			}
+			
+			// Back off exponentially while the device does not respond.
+			long periods = 1L << Math.min(failures, 30);
+			if (periods > MAX_BACKOFF_PERIODS)
+				periods = MAX_BACKOFF_PERIODS;
+			schedule(this, period * periods + getJitterDelay(period));
+		}
+	}
+}
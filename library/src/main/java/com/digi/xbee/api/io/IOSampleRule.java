@@ -0,0 +1,307 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+
+/**
+ * This class represents a rule evaluated over the IO samples received from
+ * remote XBee devices.
+ * 
+ * <p>A rule checks the value of a single IO line against a condition:</p>
+ * <ul>
+ * <li>{@link #analogAbove(IOLine, int)}: the ADC value is greater than a
+ * threshold.</li>
+ * <li>{@link #analogBelow(IOLine, int)}: the ADC value is less than a
+ * threshold.</li>
+ * <li>{@link #digitalEquals(IOLine, IOValue)}: the digital value is the
+ * given one.</li>
+ * </ul>
+ * 
+ * <p>The rule matches when the condition is met in the configured number of
+ * consecutive samples of the same remote device (see
+ * {@link #setConsecutiveSamples(int)}). Once matched, the rule does not match
+ * again for that device until the condition is no longer met. For analog
+ * rules, the value must cross back the threshold by more than the hysteresis
+ * (see {@link #setHysteresis(int)}) to re-arm the rule.</p>
+ * 
+ * <p>By default rules are evaluated for any remote device. They can be
+ * limited to a group of devices with {@link #setDevices(Collection)}.</p>
+ * 
+ * <p>The configuration of a rule is read when it is added to the device, so
+ * changes made later do not take effect until the rule is added again.</p>
+ * 
+ * @see com.digi.xbee.api.XBeeDevice#addIOSampleRule(IOSampleRule, com.digi.xbee.api.listeners.IIOSampleRuleListener)
+ * @see IOSampleRuleEngine
+ */
+public class IOSampleRule {
+	
+	// Constants.
+	static final int TYPE_ANALOG_ABOVE = 0;
+	static final int TYPE_ANALOG_BELOW = 1;
+	static final int TYPE_DIGITAL_EQUALS = 2;
+	
+	// Variables.
+	private final IOLine ioLine;
+	
+	private final int type;
+	private final int threshold;
+	
+	private int consecutiveSamples = 1;
+	private int hysteresis = 0;
+	
+	private List<RemoteXBeeDevice> devices;
+	
+	/**
+	 * Class constructor. Instantiates a new {@code IOSampleRule} object with
+	 * the given parameters.
+	 * 
+	 * @param ioLine The IO line to evaluate.
+	 * @param type The type of the rule.
+	 * @param threshold The threshold or digital value of the rule.
+	 */
+	private IOSampleRule(IOLine ioLine, int type, int threshold) {
+		this.ioLine = ioLine;
+		this.type = type;
+		this.threshold = threshold;
+	}
+	
+	/**
+	 * Creates a rule that matches when the ADC value of the given line is
+	 * greater than the threshold.
+	 * 
+	 * @param ioLine The analog IO line.
+	 * @param threshold The threshold in ADC counts.
+	 * 
+	 * @return The new rule.
+	 * 
+	 * @throws IllegalArgumentException if {@code ioLine} cannot be an analog line.
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 * 
+	 * @see #analogBelow(IOLine, int)
+	 */
+	public static IOSampleRule analogAbove(IOLine ioLine, int threshold) {
+		checkAnalogLine(ioLine);
+		return new IOSampleRule(ioLine, TYPE_ANALOG_ABOVE, threshold);
+	}
+	
+	/**
+	 * Creates a rule that matches when the ADC value of the given line is
+	 * less than the threshold.
+	 * 
+	 * @param ioLine The analog IO line.
+	 * @param threshold The threshold in ADC counts.
+	 * 
+	 * @return The new rule.
+	 * 
+	 * @throws IllegalArgumentException if {@code ioLine} cannot be an analog line.
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 * 
+	 * @see #analogAbove(IOLine, int)
+	 */
+	public static IOSampleRule analogBelow(IOLine ioLine, int threshold) {
+		checkAnalogLine(ioLine);
+		return new IOSampleRule(ioLine, TYPE_ANALOG_BELOW, threshold);
+	}
+	
+	/**
+	 * Creates a rule that matches when the digital value of the given line is
+	 * the provided one.
+	 * 
+	 * @param ioLine The digital IO line.
+	 * @param ioValue The digital value.
+	 * 
+	 * @return The new rule.
+	 * 
+	 * @throws NullPointerException if {@code ioLine == null} or
+	 *                              if {@code ioValue == null}.
+	 */
+	public static IOSampleRule digitalEquals(IOLine ioLine, IOValue ioValue) {
+		if (ioLine == null)
+			throw new NullPointerException("IO line cannot be null.");
+		if (ioValue == null)
+			throw new NullPointerException("IO value cannot be null.");
+		
+		return new IOSampleRule(ioLine, TYPE_DIGITAL_EQUALS, ioValue == IOValue.HIGH ? 1 : 0);
+	}
+	
+	/**
+	 * Checks that the given IO line can be an analog line.
+	 * 
+	 * @param ioLine The IO line.
+	 * 
+	 * @throws IllegalArgumentException if {@code ioLine} cannot be an analog line.
+	 * @throws NullPointerException if {@code ioLine == null}.
+	 */
+	private static void checkAnalogLine(IOLine ioLine) {
+		if (ioLine == null)
+			throw new NullPointerException("IO line cannot be null.");
+		if (ioLine.getIndex() >= IOSampleDecoder.MAX_ANALOG_LINES)
+			throw new IllegalArgumentException("IO line " + ioLine.getName() + " is not an analog line.");
+	}
+	
+	/**
+	 * Returns the IO line evaluated by this rule.
+	 * 
+	 * @return The IO line.
+	 * 
+	 * @see IOLine
+	 */
+	public IOLine getIOLine() {
+		return ioLine;
+	}
+	
+	/**
+	 * Returns whether this rule evaluates an analog value.
+	 * 
+	 * @return {@code true} if the rule evaluates an analog value,
+	 *         {@code false} if it evaluates a digital value.
+	 */
+	public boolean isAnalog() {
+		return type != TYPE_DIGITAL_EQUALS;
+	}
+	
+	/**
+	 * Returns the type of this rule.
+	 * 
+	 * @return The type of the rule.
+	 */
+	int getType() {
+		return type;
+	}
+	
+	/**
+	 * Returns the threshold of this rule.
+	 * 
+	 * @return The threshold in ADC counts for analog rules, {@code 1}
+	 *         ({@code HIGH}) or {@code 0} ({@code LOW}) for digital rules.
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+	
+	/**
+	 * Returns the number of consecutive samples that must meet the condition
+	 * for this rule to match.
+	 * 
+	 * @return The number of consecutive samples.
+	 * 
+	 * @see #setConsecutiveSamples(int)
+	 */
+	public int getConsecutiveSamples() {
+		return consecutiveSamples;
+	}
+	
+	/**
+	 * Sets the number of consecutive samples that must meet the condition
+	 * for this rule to match.
+	 * 
+	 * @param consecutiveSamples The number of consecutive samples. Default
+	 *                           is {@code 1}.
+	 * 
+	 * @throws IllegalArgumentException if {@code consecutiveSamples < 1}.
+	 * 
+	 * @see #getConsecutiveSamples()
+	 */
+	public void setConsecutiveSamples(int consecutiveSamples) {
+		if (consecutiveSamples < 1)
+			throw new IllegalArgumentException("Consecutive samples must be greater than 0.");
+		
+		this.consecutiveSamples = consecutiveSamples;
+	}
+	
+	/**
+	 * Returns the hysteresis of this rule.
+	 * 
+	 * @return The hysteresis in ADC counts.
+	 * 
+	 * @see #setHysteresis(int)
+	 */
+	public int getHysteresis() {
+		return hysteresis;
+	}
+	
+	/**
+	 * Sets the hysteresis of this analog rule.
+	 * 
+	 * <p>After matching, the rule is re-armed when the value crosses back the
+	 * threshold by more than the hysteresis. It is ignored for digital rules.
+	 * </p>
+	 * 
+	 * @param hysteresis The hysteresis in ADC counts. Default is {@code 0}.
+	 * 
+	 * @throws IllegalArgumentException if {@code hysteresis < 0}.
+	 * 
+	 * @see #getHysteresis()
+	 */
+	public void setHysteresis(int hysteresis) {
+		if (hysteresis < 0)
+			throw new IllegalArgumentException("Hysteresis cannot be less than 0.");
+		
+		this.hysteresis = hysteresis;
+	}
+	
+	/**
+	 * Returns the group of remote devices this rule is evaluated for.
+	 * 
+	 * @return The list of remote devices, {@code null} if the rule is
+	 *         evaluated for any remote device.
+	 * 
+	 * @see #setDevices(Collection)
+	 */
+	public List<RemoteXBeeDevice> getDevices() {
+		return devices;
+	}
+	
+	/**
+	 * Limits this rule to the given group of remote devices.
+	 * 
+	 * <p>Devices are matched by instance or by 64-bit address.</p>
+	 * 
+	 * @param devices The group of remote devices, {@code null} to evaluate
+	 *                the rule for any remote device.
+	 * 
+	 * @see #getDevices()
+	 */
+	public void setDevices(Collection<RemoteXBeeDevice> devices) {
+		if (devices == null)
+			this.devices = null;
+		else
+			this.devices = Collections.unmodifiableList(new ArrayList<RemoteXBeeDevice>(devices));
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		String condition;
+		switch (type) {
+		case TYPE_ANALOG_ABOVE:
+			condition = " > " + threshold;
+			break;
+		case TYPE_ANALOG_BELOW:
+			condition = " < " + threshold;
+			break;
+		default:
+			condition = " == " + (threshold == 1 ? IOValue.HIGH : IOValue.LOW).getName();
+			break;
+		}
+		return ioLine.getName() + condition + " (" + consecutiveSamples + " samples)";
+	}
+}
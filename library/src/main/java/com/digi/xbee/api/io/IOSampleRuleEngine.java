@@ -0,0 +1,372 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+import com.digi.xbee.api.listeners.IIOSampleRuleListener;
+import com.digi.xbee.api.models.XBee64BitAddress;
+
+/**
+ * This class evaluates a set of {@link IOSampleRule} over the IO samples
+ * received from remote XBee devices.
+ * 
+ * <p>Every time the set of rules changes, the rules are compiled into
+ * per-line arrays of thresholds, so evaluating a sample only visits the rules
+ * of the lines contained in it. The counting and hysteresis state of each
+ * rule is kept per remote device and is reset when the set of rules
+ * changes.</p>
+ * 
+ * <p>This class is thread-safe.</p>
+ * 
+ * @see IOSampleRule
+ * @see com.digi.xbee.api.listeners.IIOSampleRuleListener
+ */
+public class IOSampleRuleEngine {
+	
+	// Variables.
+	private final List<IOSampleRule> rules = new ArrayList<IOSampleRule>();
+	private final List<IIOSampleRuleListener> listeners = new ArrayList<IIOSampleRuleListener>();
+	
+	private volatile CompiledRules compiledRules = new CompiledRules(rules, listeners);
+	
+	private final Map<RemoteXBeeDevice, RuleState> states = new WeakHashMap<RemoteXBeeDevice, RuleState>();
+	
+	/**
+	 * Adds the given rule to the engine.
+	 * 
+	 * <p>If the rule has been already added, its configuration is read again
+	 * and its listener is replaced.</p>
+	 * 
+	 * @param rule The rule to add.
+	 * @param listener The listener to notify when the rule matches.
+	 * 
+	 * @throws NullPointerException if {@code rule == null} or
+	 *                              if {@code listener == null}.
+	 * 
+	 * @see #removeRule(IOSampleRule)
+	 * @see IOSampleRule
+	 * @see com.digi.xbee.api.listeners.IIOSampleRuleListener
+	 */
+	public void addRule(IOSampleRule rule, IIOSampleRuleListener listener) {
+		if (rule == null)
+			throw new NullPointerException("Rule cannot be null.");
+		if (listener == null)
+			throw new NullPointerException("Listener cannot be null.");
+		
+		synchronized (rules) {
+			int index = rules.indexOf(rule);
+			if (index >= 0) {
+				listeners.set(index, listener);
+			} else {
+				rules.add(rule);
+				listeners.add(listener);
+			}
+			compiledRules = new CompiledRules(rules, listeners);
+		}
+	}
+	
+	/**
+	 * Removes the given rule from the engine.
+	 * 
+	 * <p>If the rule has not been added, this method does nothing.</p>
+	 * 
+	 * @param rule The rule to remove.
+	 * 
+	 * @see #addRule(IOSampleRule, IIOSampleRuleListener)
+	 * @see IOSampleRule
+	 */
+	public void removeRule(IOSampleRule rule) {
+		synchronized (rules) {
+			int index = rules.indexOf(rule);
+			if (index < 0)
+				return;
+			rules.remove(index);
+			listeners.remove(index);
+			compiledRules = new CompiledRules(rules, listeners);
+		}
+	}
+	
+	/**
+	 * Returns the rules of this engine.
+	 * 
+	 * @return The list of rules.
+	 * 
+	 * @see IOSampleRule
+	 */
+	public List<IOSampleRule> getRules() {
+		synchronized (rules) {
+			return new ArrayList<IOSampleRule>(rules);
+		}
+	}
+	
+	/**
+	 * Discards the counting and hysteresis state of every remote device.
+	 */
+	public void reset() {
+		synchronized (states) {
+			states.clear();
+		}
+	}
+	
+	/**
+	 * Evaluates the rules over the last sample decoded by the given decoder.
+	 * 
+	 * <p><b>This is only for internal use.</b></p>
+	 * 
+	 * @param remoteDevice The remote XBee device that sent the sample.
+	 * @param decoder Decoder containing the values of the sample.
+	 * 
+	 * @return The list of rule matches, empty if no rule matched.
+	 * 
+	 * @throws NullPointerException if {@code remoteDevice == null} or
+	 *                              if {@code decoder == null}.
+	 * 
+	 * @see IOSampleDecoder
+	 * @see IOSampleRuleMatch
+	 */
+	public List<IOSampleRuleMatch> evaluate(RemoteXBeeDevice remoteDevice, IOSampleDecoder decoder) {
+		if (remoteDevice == null)
+			throw new NullPointerException("Remote XBee device cannot be null.");
+		if (decoder == null)
+			throw new NullPointerException("Decoder cannot be null.");
+		
+		CompiledRules c = compiledRules;
+		int analogMask = decoder.getAnalogMask() & c.analogLines;
+		int digitalMask = decoder.getDigitalMask() & c.digitalLines;
+		if (analogMask == 0 && digitalMask == 0)
+			return Collections.emptyList();
+		
+		List<IOSampleRuleMatch> matches = null;
+		synchronized (states) {
+			RuleState state = states.get(remoteDevice);
+			if (state == null || state.compiledRules != c) {
+				state = new RuleState(c);
+				states.put(remoteDevice, state);
+			}
+			
+			for (int line = 0; analogMask != 0; line++, analogMask >>>= 1) {
+				if ((analogMask & 1) == 0)
+					continue;
+				int value = decoder.getAnalogValue(line);
+				int[] ids = c.analogRules[line];
+				for (int i = 0; i < ids.length; i++) {
+					int id = ids[i];
+					if (!c.appliesTo(id, remoteDevice))
+						continue;
+					boolean above = c.types[id] == IOSampleRule.TYPE_ANALOG_ABOVE;
+					int threshold = c.thresholds[id];
+					if (state.active[id]) {
+						// Re-arm the rule once the value crosses back the threshold plus the hysteresis.
+						if (above ? value <= threshold - c.hysteresis[id] : value >= threshold + c.hysteresis[id]) {
+							state.active[id] = false;
+							state.counters[id] = 0;
+						}
+						continue;
+					}
+					if (above ? value > threshold : value < threshold)
+						matches = count(c, state, id, remoteDevice, value, matches);
+					else
+						state.counters[id] = 0;
+				}
+			}
+			
+			int digitalValues = decoder.getDigitalValues();
+			for (int line = 0; digitalMask != 0; line++, digitalMask >>>= 1) {
+				if ((digitalMask & 1) == 0)
+					continue;
+				int value = (digitalValues >>> line) & 1;
+				int[] ids = c.digitalRules[line];
+				for (int i = 0; i < ids.length; i++) {
+					int id = ids[i];
+					if (!c.appliesTo(id, remoteDevice))
+						continue;
+					if (value != c.thresholds[id]) {
+						state.active[id] = false;
+						state.counters[id] = 0;
+					} else if (!state.active[id]) {
+						matches = count(c, state, id, remoteDevice, value, matches);
+					}
+				}
+			}
+		}
+		
+		if (matches == null)
+			return Collections.emptyList();
+		return matches;
+	}
+	
+	/**
+	 * Counts a sample meeting the condition of the given rule and adds a match
+	 * if the number of consecutive samples has been reached.
+	 * 
+	 * @param c The compiled rules.
+	 * @param state The state of the remote device.
+	 * @param id The rule index.
+	 * @param remoteDevice The remote XBee device.
+	 * @param value The value of the line.
+	 * @param matches The list of matches, it may be {@code null}.
+	 * 
+	 * @return The list of matches.
+	 */
+	private List<IOSampleRuleMatch> count(CompiledRules c, RuleState state, int id,
+			RemoteXBeeDevice remoteDevice, int value, List<IOSampleRuleMatch> matches) {
+		state.counters[id] += 1;
+		if (state.counters[id] < c.consecutiveSamples[id])
+			return matches;
+		
+		state.active[id] = true;
+		state.counters[id] = 0;
+		if (matches == null)
+			matches = new ArrayList<IOSampleRuleMatch>();
+		matches.add(new IOSampleRuleMatch(remoteDevice, c.rules[id], c.listeners[id], value));
+		return matches;
+	}
+	
+	/**
+	 * Helper class that stores the rules compiled into primitive arrays.
+	 */
+	private static class CompiledRules {
+		
+		// Variables.
+		private final IOSampleRule[] rules;
+		private final IIOSampleRuleListener[] listeners;
+		
+		private final int[] types;
+		private final int[] thresholds;
+		private final int[] hysteresis;
+		private final int[] consecutiveSamples;
+		
+		private final RemoteXBeeDevice[][] devices;
+		
+		// Indexes of the rules of each line.
+		private final int[][] analogRules = new int[IOSampleDecoder.MAX_ANALOG_LINES][];
+		private final int[][] digitalRules = new int[IOSampleDecoder.MAX_DIGITAL_LINES][];
+		
+		// Masks of the lines with rules.
+		private int analogLines = 0;
+		private int digitalLines = 0;
+		
+		/**
+		 * Class constructor. Compiles the given rules.
+		 * 
+		 * @param ruleList The rules to compile.
+		 * @param listenerList The listener of each rule.
+		 */
+		private CompiledRules(List<IOSampleRule> ruleList, List<IIOSampleRuleListener> listenerList) {
+			int size = ruleList.size();
+			rules = ruleList.toArray(new IOSampleRule[size]);
+			listeners = listenerList.toArray(new IIOSampleRuleListener[size]);
+			types = new int[size];
+			thresholds = new int[size];
+			hysteresis = new int[size];
+			consecutiveSamples = new int[size];
+			devices = new RemoteXBeeDevice[size][];
+			
+			int[] analogCount = new int[IOSampleDecoder.MAX_ANALOG_LINES];
+			int[] digitalCount = new int[IOSampleDecoder.MAX_DIGITAL_LINES];
+			for (int i = 0; i < size; i++) {
+				IOSampleRule rule = rules[i];
+				types[i] = rule.getType();
+				thresholds[i] = rule.getThreshold();
+				hysteresis[i] = rule.getHysteresis();
+				consecutiveSamples[i] = rule.getConsecutiveSamples();
+				List<RemoteXBeeDevice> group = rule.getDevices();
+				if (group != null)
+					devices[i] = group.toArray(new RemoteXBeeDevice[group.size()]);
+				int line = rule.getIOLine().getIndex();
+				if (rule.isAnalog())
+					analogCount[line] += 1;
+				else if (line < IOSampleDecoder.MAX_DIGITAL_LINES)
+					digitalCount[line] += 1;
+			}
+			
+			for (int line = 0; line < IOSampleDecoder.MAX_ANALOG_LINES; line++) {
+				analogRules[line] = new int[analogCount[line]];
+				if (analogCount[line] > 0)
+					analogLines |= 1 << line;
+			}
+			for (int line = 0; line < IOSampleDecoder.MAX_DIGITAL_LINES; line++) {
+				digitalRules[line] = new int[digitalCount[line]];
+				if (digitalCount[line] > 0)
+					digitalLines |= 1 << line;
+			}
+			
+			int[] analogNext = new int[IOSampleDecoder.MAX_ANALOG_LINES];
+			int[] digitalNext = new int[IOSampleDecoder.MAX_DIGITAL_LINES];
+			for (int i = 0; i < size; i++) {
+				int line = rules[i].getIOLine().getIndex();
+				if (rules[i].isAnalog())
+					analogRules[line][analogNext[line]++] = i;
+				else if (line < IOSampleDecoder.MAX_DIGITAL_LINES)
+					digitalRules[line][digitalNext[line]++] = i;
+			}
+		}
+		
+		/**
+		 * Returns whether the given rule applies to the given remote device.
+		 * 
+		 * @param id The rule index.
+		 * @param remoteDevice The remote XBee device.
+		 * 
+		 * @return {@code true} if the rule applies to the device,
+		 *         {@code false} otherwise.
+		 */
+		private boolean appliesTo(int id, RemoteXBeeDevice remoteDevice) {
+			RemoteXBeeDevice[] group = devices[id];
+			if (group == null)
+				return true;
+			for (int i = 0; i < group.length; i++) {
+				if (group[i] == remoteDevice)
+					return true;
+			}
+			XBee64BitAddress address = remoteDevice.get64BitAddress();
+			if (address == null || address.equals(XBee64BitAddress.UNKNOWN_ADDRESS))
+				return false;
+			for (int i = 0; i < group.length; i++) {
+				if (address.equals(group[i].get64BitAddress()))
+					return true;
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Helper class that stores the counting and hysteresis state of the
+	 * rules for a remote device.
+	 */
+	private static class RuleState {
+		
+		// Variables.
+		private final CompiledRules compiledRules;
+		
+		private final int[] counters;
+		private final boolean[] active;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code RuleState} object for
+		 * the given compiled rules.
+		 * 
+		 * @param compiledRules The compiled rules.
+		 */
+		private RuleState(CompiledRules compiledRules) {
+			this.compiledRules = compiledRules;
+			counters = new int[compiledRules.rules.length];
+			active = new boolean[compiledRules.rules.length];
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+import com.digi.xbee.api.listeners.IIOSampleRuleListener;
+
+/**
+ * This class represents a match of an IO sample rule produced by the
+ * {@link IOSampleRuleEngine}.
+ * 
+ * <p><b>This is only for internal use.</b></p>
+ * 
+ * @see IOSampleRule
+ * @see IOSampleRuleEngine
+ */
+public class IOSampleRuleMatch {
+	
+	// Variables.
+	private final RemoteXBeeDevice remoteDevice;
+	private final IOSampleRule rule;
+	private final IIOSampleRuleListener listener;
+	private final int value;
+	
+	/**
+	 * Class constructor. Instantiates a new {@code IOSampleRuleMatch} object
+	 * with the given parameters.
+	 * 
+	 * @param remoteDevice The remote XBee device that sent the samples.
+	 * @param rule The matched rule.
+	 * @param listener The listener to notify.
+	 * @param value The value of the rule line.
+	 */
+	IOSampleRuleMatch(RemoteXBeeDevice remoteDevice, IOSampleRule rule, IIOSampleRuleListener listener, int value) {
+		this.remoteDevice = remoteDevice;
+		this.rule = rule;
+		this.listener = listener;
+		this.value = value;
+	}
+	
+	/**
+	 * Returns the remote XBee device that sent the samples.
+	 * 
+	 * @return The remote XBee device.
+	 */
+	public RemoteXBeeDevice getRemoteDevice() {
+		return remoteDevice;
+	}
+	
+	/**
+	 * Returns the matched rule.
+	 * 
+	 * @return The matched rule.
+	 */
+	public IOSampleRule getRule() {
+		return rule;
+	}
+	
+	/**
+	 * Returns the listener to notify about the match.
+	 * 
+	 * @return The rule listener.
+	 */
+	public IIOSampleRuleListener getListener() {
+		return listener;
+	}
+	
+	/**
+	 * Returns the value of the rule line in the sample that triggered the
+	 * match.
+	 * 
+	 * @return The value of the rule line.
+	 */
+	public int getValue() {
+		return value;
+	}
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.listeners;
+
+import com.digi.xbee.api.io.IOSampleAggregate;
+
+/**
+ * This interface defines the required methods that an object should implement
+ * to behave as an IO sample aggregate listener and be notified when an 
+ * aggregation window of the IO samples of a remote XBee device is closed.
+ * 
+ * @see com.digi.xbee.api.io.IOSampleAggregator
+ */
+public interface IIOSampleAggregateListener {
+	
+	/**
+	 * Called when an aggregation window of the IO samples received from a 
+	 * remote XBee device is closed.
+	 * 
+	 * @param aggregate The aggregate of the window.
+	 * 
+	 * @see com.digi.xbee.api.io.IOSampleAggregate
+	 */
+	public void ioSamplesAggregated(IOSampleAggregate aggregate);
+}
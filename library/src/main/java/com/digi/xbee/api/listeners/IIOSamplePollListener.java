@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.listeners;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+import com.digi.xbee.api.exceptions.XBeeException;
+import com.digi.xbee.api.io.IOSample;
+
+/**
+ * This interface defines the required methods that an object should implement
+ * to behave as an IO sample poll listener and be notified about the result 
+ * of the IO sample reads performed by an IO sample poller.
+ * 
+ * @see com.digi.xbee.api.io.IOSamplePoller
+ */
+public interface IIOSamplePollListener {
+	
+	/**
+	 * Called when an IO sample has been read from a polled remote XBee device.
+	 * 
+	 * @param remoteDevice The polled remote XBee device.
+	 * @param ioSample The read IO sample.
+	 * 
+	 * @see com.digi.xbee.api.RemoteXBeeDevice
+	 * @see com.digi.xbee.api.io.IOSample
+	 */
+	public void ioSamplePolled(RemoteXBeeDevice remoteDevice, IOSample ioSample);
+	
+	/**
+	 * Called when reading the IO sample of a polled remote XBee device fails.
+	 * 
+	 * @param remoteDevice The polled remote XBee device.
+	 * @param error The exception thrown while reading the IO sample.
+	 * @param consecutiveFailures The number of consecutive failed polls of 
+	 *                            the remote device, including this one.
+	 * 
+	 * @see com.digi.xbee.api.RemoteXBeeDevice
+	 * @see com.digi.xbee.api.exceptions.XBeeException
+	 */
+	public void ioSamplePollFailed(RemoteXBeeDevice remoteDevice, XBeeException error, int consecutiveFailures);
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.listeners;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+import com.digi.xbee.api.io.IOSampleRule;
+
+/**
+ * This interface defines the required methods that an object should implement
+ * to behave as an IO sample rule listener and be notified when the IO samples
+ * received from a remote XBee device match a rule.
+ * 
+ * @see com.digi.xbee.api.io.IOSampleRule
+ */
+public interface IIOSampleRuleListener {
+	
+	/**
+	 * Called when the IO samples received from a remote XBee device match a 
+	 * rule.
+	 * 
+	 * @param remoteDevice The remote XBee device that sent the samples.
+	 * @param rule The matched rule.
+	 * @param value The value of the rule line in the sample that triggered 
+	 *              the match: the ADC value for analog rules, {@code 1} 
+	 *              ({@code HIGH}) or {@code 0} ({@code LOW}) for digital 
+	 *              rules.
+	 * 
+	 * @see com.digi.xbee.api.RemoteXBeeDevice
+	 * @see com.digi.xbee.api.io.IOSampleRule
+	 */
+	public void ioSampleRuleMatched(RemoteXBeeDevice remoteDevice, IOSampleRule rule, int value);
+}
@@ -0,0 +1,348 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class allocates the frame IDs of the API frames sent by a local XBee 
+ * device, so two frames in flight never share the same frame ID.
+ * 
+ * <p>Frame IDs from {@value #MIN_FRAME_ID} to {@value #MAX_FRAME_ID} are 
+ * handed out in round-robin order skipping the ones still in flight. An 
+ * allocated frame ID is in flight until:</p>
+ * <ul>
+ * <li>A response with that frame ID is received (see 
+ * {@link #responseReceived(int)}).</li>
+ * <li>Its lease time elapses without response, so frames that never get an 
+ * answer do not exhaust the frame IDs.</li>
+ * </ul>
+ * 
+ * <p>Exclusive frame IDs (see {@link #allocateExclusive(int)}) are used by 
+ * operations that receive several responses with the same frame ID. They 
+ * are neither released by responses nor expired, and must be released with 
+ * {@link #release(int)}.</p>
+ * 
+ * <p>Allocating and releasing frame IDs is lock-free. Threads only block 
+ * when all the frame IDs are in flight.</p>
+ * 
+ * @see com.digi.xbee.api.AbstractXBeeDevice#getFrameIDAllocator()
+ */
+public class FrameIDAllocator {
+	
+	// Constants.
+	/**
+	 * Minimum frame ID handed out by the allocator (value: {@value}).
+	 */
+	public static final int MIN_FRAME_ID = 1;
+	
+	/**
+	 * Maximum frame ID handed out by the allocator (value: {@value}).
+	 */
+	public static final int MAX_FRAME_ID = 0xFF;
+	
+	/**
+	 * Default lease time of the allocated frame IDs in milliseconds 
+	 * (value: {@value}).
+	 */
+	public static final int DEFAULT_LEASE_TIME = 10000;
+	
+	/**
+	 * Value returned when no frame ID could be allocated (value: {@value}).
+	 */
+	public static final int NO_FRAME_ID = -1;
+	
+	private static final int FRAME_IDS = MAX_FRAME_ID - MIN_FRAME_ID + 1;
+	
+	private static final long FREE = 0;
+	private static final long EXCLUSIVE = Long.MAX_VALUE;
+	
+	// Variables.
+	// Expiration time of every frame ID lease: FREE, EXCLUSIVE or the time in milliseconds.
+	private final AtomicLongArray leases = new AtomicLongArray(MAX_FRAME_ID + 1);
+	
+	private final AtomicInteger cursor = new AtomicInteger(0);
+	private final AtomicInteger waitingThreads = new AtomicInteger(0);
+	
+	private final Object lock = new Object();
+	
+	private volatile int leaseTime;
+	
+	/**
+	 * Class constructor. Instantiates a new {@code FrameIDAllocator} object 
+	 * with the default lease time.
+	 * 
+	 * @see #DEFAULT_LEASE_TIME
+	 */
+	public FrameIDAllocator() {
+		this(DEFAULT_LEASE_TIME);
+	}
+	
+	/**
+	 * Class constructor. Instantiates a new {@code FrameIDAllocator} object 
+	 * with the given lease time.
+	 * 
+	 * @param leaseTime Time in milliseconds after which a frame ID without 
+	 *                  response is reclaimed.
+	 * 
+	 * @throws IllegalArgumentException if {@code leaseTime < 1}.
+	 */
+	public FrameIDAllocator(int leaseTime) {
+		setLeaseTime(leaseTime);
+	}
+	
+	/**
+	 * Allocates a frame ID that is not in flight, waiting if necessary until 
+	 * a frame ID is released or its lease expires.
+	 * 
+	 * <p>If the thread is interrupted while waiting, the interruption is 
+	 * deferred until a frame ID is allocated.</p>
+	 * 
+	 * @return The allocated frame ID.
+	 * 
+	 * @see #allocate(int)
+	 * @see #tryAllocate()
+	 */
+	public int allocate() {
+		boolean interrupted = false;
+		int frameID;
+		while ((frameID = allocate(leaseTime)) == NO_FRAME_ID) {
+			if (Thread.interrupted())
+				interrupted = true;
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		return frameID;
+	}
+	
+	/**
+	 * Allocates a frame ID that is not in flight, waiting up to the given 
+	 * timeout if all the frame IDs are in flight.
+	 * 
+	 * @param timeout Maximum time in milliseconds to wait for a frame ID. 
+	 *                0 to fail immediately.
+	 * 
+	 * @return The allocated frame ID, {@link #NO_FRAME_ID} if all the frame 
+	 *         IDs remained in flight during the timeout or the thread was 
+	 *         interrupted.
+	 * 
+	 * @see #allocate()
+	 * @see #tryAllocate()
+	 */
+	public int allocate(int timeout) {
+		return allocate(timeout, false);
+	}
+	
+	/**
+	 * Allocates a frame ID that is not in flight without waiting.
+	 * 
+	 * @return The allocated frame ID, {@link #NO_FRAME_ID} if all the frame 
+	 *         IDs are in flight.
+	 * 
+	 * @see #allocate()
+	 * @see #allocate(int)
+	 */
+	public int tryAllocate() {
+		return allocate(0, false);
+	}
+	
+	/**
+	 * Allocates an exclusive frame ID, waiting up to the given timeout if all 
+	 * the frame IDs are in flight.
+	 * 
+	 * <p>Exclusive frame IDs are not released by responses and do not expire. 
+	 * They must be released with {@link #release(int)}.</p>
+	 * 
+	 * @param timeout Maximum time in milliseconds to wait for a frame ID. 
+	 *                0 to fail immediately.
+	 * 
+	 * @return The allocated frame ID, {@link #NO_FRAME_ID} if all the frame 
+	 *         IDs remained in flight during the timeout or the thread was 
+	 *         interrupted.
+	 * 
+	 * @see #release(int)
+	 */
+	public int allocateExclusive(int timeout) {
+		return allocate(timeout, true);
+	}
+	
+	/**
+	 * Allocates a frame ID, waiting up to the given timeout if all the frame 
+	 * IDs are in flight.
+	 * 
+	 * @param timeout Maximum time in milliseconds to wait for a frame ID.
+	 * @param exclusive {@code true} to allocate an exclusive frame ID.
+	 * 
+	 * @return The allocated frame ID, {@link #NO_FRAME_ID} if no frame ID was 
+	 *         allocated.
+	 */
+	private int allocate(int timeout, boolean exclusive) {
+		long now = System.currentTimeMillis();
+		long nextExpiration = tryAcquire(now, exclusive);
+		if (nextExpiration < 0)
+			return (int)-nextExpiration;
+		if (timeout <= 0)
+			return NO_FRAME_ID;
+		
+		long deadLine = now + timeout;
+		waitingThreads.incrementAndGet();
+		try {
+			synchronized (lock) {
+				while (true) {
+					now = System.currentTimeMillis();
+					// Retry once registered as waiting, so no release is missed.
+					nextExpiration = tryAcquire(now, exclusive);
+					if (nextExpiration < 0)
+						return (int)-nextExpiration;
+					long remaining = Math.min(deadLine, nextExpiration) - now;
+					if (now >= deadLine)
+						return NO_FRAME_ID;
+					try {
+						lock.wait(Math.max(1, remaining));
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return NO_FRAME_ID;
+					}
+				}
+			}
+		} finally {
+			waitingThreads.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * Tries to acquire a free or expired frame ID.
+	 * 
+	 * @param now The current time in milliseconds.
+	 * @param exclusive {@code true} to acquire an exclusive frame ID.
+	 * 
+	 * @return The acquired frame ID as a negative number, or the earliest 
+	 *         lease expiration time if no frame ID is available.
+	 */
+	private long tryAcquire(long now, boolean exclusive) {
+		long lease = exclusive ? EXCLUSIVE : now + leaseTime;
+		long nextExpiration = EXCLUSIVE;
+		for (int i = 0; i < FRAME_IDS; i++) {
+			int frameID = MIN_FRAME_ID + (cursor.getAndIncrement() & Integer.MAX_VALUE) % FRAME_IDS;
+			long expiration = leases.get(frameID);
+			if (expiration <= now && leases.compareAndSet(frameID, expiration, lease))
+				return -frameID;
+			if (expiration < nextExpiration)
+				nextExpiration = expiration;
+		}
+		return nextExpiration;
+	}
+	
+	/**
+	 * Notifies that a response with the given frame ID was received, 
+	 * releasing it unless it is exclusive.
+	 * 
+	 * @param frameID The frame ID of the received response.
+	 * 
+	 * @see #release(int)
+	 */
+	public void responseReceived(int frameID) {
+		if (frameID < MIN_FRAME_ID || frameID > MAX_FRAME_ID)
+			return;
+		long expiration = leases.get(frameID);
+		if (expiration != FREE && expiration != EXCLUSIVE && leases.compareAndSet(frameID, expiration, FREE))
+			signalWaitingThreads();
+	}
+	
+	/**
+	 * Releases the given frame ID, including exclusive ones.
+	 * 
+	 * <p>Only the owner of the frame ID should release it.</p>
+	 * 
+	 * @param frameID The frame ID to release.
+	 * 
+	 * @see #allocateExclusive(int)
+	 * @see #responseReceived(int)
+	 */
+	public void release(int frameID) {
+		if (frameID < MIN_FRAME_ID || frameID > MAX_FRAME_ID)
+			return;
+		if (leases.getAndSet(frameID, FREE) != FREE)
+			signalWaitingThreads();
+	}
+	
+	/**
+	 * Wakes up the threads waiting for a frame ID, if any.
+	 */
+	private void signalWaitingThreads() {
+		if (waitingThreads.get() == 0)
+			return;
+		synchronized (lock) {
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Returns whether the given frame ID is in flight.
+	 * 
+	 * @param frameID The frame ID to check.
+	 * 
+	 * @return {@code true} if the frame ID is allocated and its lease has not 
+	 *         expired, {@code false} otherwise.
+	 */
+	public boolean isInFlight(int frameID) {
+		if (frameID < MIN_FRAME_ID || frameID > MAX_FRAME_ID)
+			return false;
+		long expiration = leases.get(frameID);
+		return expiration != FREE && expiration > System.currentTimeMillis();
+	}
+	
+	/**
+	 * Returns the number of frame IDs in flight.
+	 * 
+	 * @return The number of frame IDs in flight.
+	 */
+	public int getInFlightCount() {
+		int count = 0;
+		for (int i = MIN_FRAME_ID; i <= MAX_FRAME_ID; i++) {
+			if (isInFlight(i))
+				count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the lease time of the allocated frame IDs.
+	 * 
+	 * @return The lease time in milliseconds.
+	 * 
+	 * @see #setLeaseTime(int)
+	 */
+	public int getLeaseTime() {
+		return leaseTime;
+	}
+	
+	/**
+	 * Sets the lease time of the allocated frame IDs. Frame IDs without 
+	 * response are reclaimed once their lease time elapses.
+	 * 
+	 * <p>The new lease time applies to the frame IDs allocated afterwards.</p>
+	 * 
+	 * @param leaseTime The lease time in milliseconds.
+	 * 
+	 * @throws IllegalArgumentException if {@code leaseTime < 1}.
+	 * 
+	 * @see #getLeaseTime()
+	 */
+	public void setLeaseTime(int leaseTime) {
+		if (leaseTime < 1)
+			throw new IllegalArgumentException("Lease time must be greater than 0.");
+		
+		this.leaseTime = leaseTime;
+	}
+}
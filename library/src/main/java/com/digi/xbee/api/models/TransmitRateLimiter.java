@@ -0,0 +1,457 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * This class represents a set of token-bucket rate limits applied to the 
+ * transmissions of a local XBee device.
+ * 
+ * <p>Limits are expressed in messages per second and bytes per second and 
+ * can be configured at three levels. A transmission must fit in all the 
+ * limits that apply to it:</p>
+ * <ul>
+ * <li>A global limit for all the transmissions (see 
+ * {@link #setGlobalLimit(double, int)}).</li>
+ * <li>A limit per group of destinations (see 
+ * {@link #setGroupLimit(String, double, int)} and 
+ * {@link #setGroup(Object, String)}).</li>
+ * <li>A limit per destination (see 
+ * {@link #setDestinationLimit(Object, double, int)}).</li>
+ * </ul>
+ * 
+ * <p>Every bucket holds up to one second of tokens, so short bursts up to 
+ * the configured rate are sent without delay. A transmission larger than the 
+ * byte bucket is sent once the bucket is full, and the following ones are 
+ * delayed until the excess is paid back.</p>
+ * 
+ * <p>Transmissions over the limits are queued: the calling thread reserves 
+ * the tokens and waits until they are available, so queued transmissions 
+ * keep their order. If {@link #setRejectWhenLimited(boolean)} is enabled, 
+ * they are rejected instead.</p>
+ * 
+ * <p>Destinations are the 64-bit or 16-bit addresses of the remote devices. 
+ * Broadcast transmissions use a {@code null} destination and are only 
+ * limited by the global limit.</p>
+ * 
+ * @see com.digi.xbee.api.XBeeDevice#setTransmitRateLimiter(TransmitRateLimiter)
+ */
+public class TransmitRateLimiter {
+	
+	// Constants.
+	/**
+	 * Value of a rate that is not limited (value: {@value}).
+	 */
+	public static final int UNLIMITED = 0;
+	
+	// Variables.
+	private Bucket globalBucket;
+	
+	private final HashMap<String, Bucket> groupBuckets = new HashMap<String, Bucket>();
+	
+	private final HashMap<Object, Bucket> destinationBuckets = new HashMap<Object, Bucket>();
+	
+	private final HashMap<Object, String> groups = new HashMap<Object, String>();
+	
+	private final HashMap<Object, Statistics> statistics = new HashMap<Object, Statistics>();
+	
+	private boolean rejectWhenLimited = false;
+	
+	private final Object lock = new Object();
+	
+	/**
+	 * Class constructor. Instantiates a new {@code TransmitRateLimiter} 
+	 * object without any limit.
+	 */
+	public TransmitRateLimiter() {
+	}
+	
+	/**
+	 * Sets the limit of all the transmissions.
+	 * 
+	 * @param messagesPerSecond Maximum number of messages per second, 
+	 *                          {@link #UNLIMITED} not to limit them.
+	 * @param bytesPerSecond Maximum number of payload bytes per second, 
+	 *                       {@link #UNLIMITED} not to limit them.
+	 * 
+	 * @throws IllegalArgumentException if {@code messagesPerSecond < 0} or 
+	 *                                  if {@code bytesPerSecond < 0}.
+	 */
+	public void setGlobalLimit(double messagesPerSecond, int bytesPerSecond) {
+		Bucket bucket = createBucket(messagesPerSecond, bytesPerSecond);
+		synchronized (lock) {
+			globalBucket = bucket;
+		}
+	}
+	
+	/**
+	 * Sets the limit of the transmissions to the given group of destinations.
+	 * 
+	 * @param group The name of the group.
+	 * @param messagesPerSecond Maximum number of messages per second, 
+	 *                          {@link #UNLIMITED} not to limit them.
+	 * @param bytesPerSecond Maximum number of payload bytes per second, 
+	 *                       {@link #UNLIMITED} not to limit them.
+	 * 
+	 * @throws IllegalArgumentException if {@code messagesPerSecond < 0} or 
+	 *                                  if {@code bytesPerSecond < 0}.
+	 * @throws NullPointerException if {@code group == null}.
+	 * 
+	 * @see #setGroup(Object, String)
+	 */
+	public void setGroupLimit(String group, double messagesPerSecond, int bytesPerSecond) {
+		if (group == null)
+			throw new NullPointerException("Group cannot be null.");
+		
+		Bucket bucket = createBucket(messagesPerSecond, bytesPerSecond);
+		synchronized (lock) {
+			if (bucket == null)
+				groupBuckets.remove(group);
+			else
+				groupBuckets.put(group, bucket);
+		}
+	}
+	
+	/**
+	 * Sets the limit of the transmissions to the given destination.
+	 * 
+	 * @param destination The 64-bit or 16-bit address of the destination.
+	 * @param messagesPerSecond Maximum number of messages per second, 
+	 *                          {@link #UNLIMITED} not to limit them.
+	 * @param bytesPerSecond Maximum number of payload bytes per second, 
+	 *                       {@link #UNLIMITED} not to limit them.
+	 * 
+	 * @throws IllegalArgumentException if {@code messagesPerSecond < 0} or 
+	 *                                  if {@code bytesPerSecond < 0}.
+	 * @throws NullPointerException if {@code destination == null}.
+	 */
+	public void setDestinationLimit(Object destination, double messagesPerSecond, int bytesPerSecond) {
+		if (destination == null)
+			throw new NullPointerException("Destination cannot be null.");
+		
+		Bucket bucket = createBucket(messagesPerSecond, bytesPerSecond);
+		synchronized (lock) {
+			if (bucket == null)
+				destinationBuckets.remove(destination);
+			else
+				destinationBuckets.put(destination, bucket);
+		}
+	}
+	
+	/**
+	 * Adds the given destination to a group, removing it from its previous 
+	 * group.
+	 * 
+	 * @param destination The 64-bit or 16-bit address of the destination.
+	 * @param group The name of the group, {@code null} to remove the 
+	 *              destination from its group.
+	 * 
+	 * @throws NullPointerException if {@code destination == null}.
+	 * 
+	 * @see #getGroup(Object)
+	 * @see #setGroupLimit(String, double, int)
+	 */
+	public void setGroup(Object destination, String group) {
+		if (destination == null)
+			throw new NullPointerException("Destination cannot be null.");
+		
+		synchronized (lock) {
+			if (group == null)
+				groups.remove(destination);
+			else
+				groups.put(destination, group);
+		}
+	}
+	
+	/**
+	 * Returns the group of the given destination.
+	 * 
+	 * @param destination The 64-bit or 16-bit address of the destination.
+	 * 
+	 * @return The name of the group, {@code null} if the destination does 
+	 *         not belong to any group.
+	 * 
+	 * @see #setGroup(Object, String)
+	 */
+	public String getGroup(Object destination) {
+		synchronized (lock) {
+			return groups.get(destination);
+		}
+	}
+	
+	/**
+	 * Returns whether transmissions over the limits are rejected instead of 
+	 * queued.
+	 * 
+	 * @return {@code true} if they are rejected, {@code false} if they are 
+	 *         queued.
+	 * 
+	 * @see #setRejectWhenLimited(boolean)
+	 */
+	public boolean isRejectWhenLimited() {
+		synchronized (lock) {
+			return rejectWhenLimited;
+		}
+	}
+	
+	/**
+	 * Configures whether transmissions over the limits are rejected 
+	 * immediately instead of queued.
+	 * 
+	 * @param rejectWhenLimited {@code true} to reject them, {@code false} to 
+	 *                          queue them. Default is {@code false}.
+	 * 
+	 * @see #isRejectWhenLimited()
+	 */
+	public void setRejectWhenLimited(boolean rejectWhenLimited) {
+		synchronized (lock) {
+			this.rejectWhenLimited = rejectWhenLimited;
+		}
+	}
+	
+	/**
+	 * Acquires the tokens of a transmission to the given destination, 
+	 * waiting until they are available.
+	 * 
+	 * <p>The tokens are reserved before waiting, so transmissions are 
+	 * released in the same order they were queued.</p>
+	 * 
+	 * @param destination The destination of the transmission, {@code null} 
+	 *                    for broadcast or unknown destinations.
+	 * @param size The size of the payload in bytes.
+	 * @param timeout Maximum time in milliseconds to wait for the tokens. 0 
+	 *                to fail immediately if they are not available.
+	 * 
+	 * @return {@code true} if the transmission can be sent, {@code false} if 
+	 *         it was rejected because the wait exceeds the timeout, 
+	 *         transmissions over the limits are rejected or the thread was 
+	 *         interrupted.
+	 * 
+	 * @see #isRejectWhenLimited()
+	 */
+	public boolean acquire(Object destination, int size, int timeout) {
+		long delay = 0;
+		synchronized (lock) {
+			ArrayList<Bucket> buckets = new ArrayList<Bucket>(3);
+			if (globalBucket != null)
+				buckets.add(globalBucket);
+			if (destination != null) {
+				String group = groups.get(destination);
+				if (group != null && groupBuckets.containsKey(group))
+					buckets.add(groupBuckets.get(group));
+				if (destinationBuckets.containsKey(destination))
+					buckets.add(destinationBuckets.get(destination));
+			}
+			
+			long now = System.nanoTime();
+			for (Bucket bucket : buckets) {
+				bucket.refill(now);
+				delay = Math.max(delay, bucket.getDelay(size));
+			}
+			if (delay > 0 && (rejectWhenLimited || delay > timeout)) {
+				getStatistics(destination).rejected++;
+				return false;
+			}
+			for (Bucket bucket : buckets)
+				bucket.consume(size);
+			if (delay > 0)
+				getStatistics(destination).throttledTime += delay;
+		}
+		
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the total time the transmissions to the given destination were 
+	 * delayed by the rate limits.
+	 * 
+	 * @param destination The destination, {@code null} for broadcast or 
+	 *                    unknown destinations.
+	 * 
+	 * @return The throttled time in milliseconds.
+	 * 
+	 * @see #getRejectedCount(Object)
+	 * @see #resetStatistics()
+	 */
+	public long getThrottledTime(Object destination) {
+		synchronized (lock) {
+			Statistics destinationStatistics = statistics.get(destination);
+			return destinationStatistics == null ? 0 : destinationStatistics.throttledTime;
+		}
+	}
+	
+	/**
+	 * Returns the number of transmissions to the given destination rejected 
+	 * by the rate limits.
+	 * 
+	 * @param destination The destination, {@code null} for broadcast or 
+	 *                    unknown destinations.
+	 * 
+	 * @return The number of rejected transmissions.
+	 * 
+	 * @see #getThrottledTime(Object)
+	 * @see #resetStatistics()
+	 */
+	public int getRejectedCount(Object destination) {
+		synchronized (lock) {
+			Statistics destinationStatistics = statistics.get(destination);
+			return destinationStatistics == null ? 0 : destinationStatistics.rejected;
+		}
+	}
+	
+	/**
+	 * Discards the throttled time and rejected transmissions of every 
+	 * destination.
+	 * 
+	 * @see #getRejectedCount(Object)
+	 * @see #getThrottledTime(Object)
+	 */
+	public void resetStatistics() {
+		synchronized (lock) {
+			statistics.clear();
+		}
+	}
+	
+	/**
+	 * Returns the statistics of the given destination, creating them if 
+	 * needed.
+	 * 
+	 * <p>The calling thread must own the lock of this rate limiter.</p>
+	 * 
+	 * @param destination The destination.
+	 * 
+	 * @return The statistics of the destination.
+	 */
+	private Statistics getStatistics(Object destination) {
+		Statistics destinationStatistics = statistics.get(destination);
+		if (destinationStatistics == null) {
+			destinationStatistics = new Statistics();
+			statistics.put(destination, destinationStatistics);
+		}
+		return destinationStatistics;
+	}
+	
+	/**
+	 * Creates a bucket with the given rates.
+	 * 
+	 * @param messagesPerSecond Maximum number of messages per second.
+	 * @param bytesPerSecond Maximum number of payload bytes per second.
+	 * 
+	 * @return The new bucket, {@code null} if both rates are unlimited.
+	 * 
+	 * @throws IllegalArgumentException if {@code messagesPerSecond < 0} or 
+	 *                                  if {@code bytesPerSecond < 0}.
+	 */
+	private static Bucket createBucket(double messagesPerSecond, int bytesPerSecond) {
+		if (messagesPerSecond < 0 || Double.isNaN(messagesPerSecond))
+			throw new IllegalArgumentException("Messages per second cannot be less than 0.");
+		if (bytesPerSecond < 0)
+			throw new IllegalArgumentException("Bytes per second cannot be less than 0.");
+		
+		if (messagesPerSecond == UNLIMITED && bytesPerSecond == UNLIMITED)
+			return null;
+		return new Bucket(messagesPerSecond, bytesPerSecond);
+	}
+	
+	/**
+	 * Helper class that stores the message and byte tokens of a rate limit.
+	 */
+	private static class Bucket {
+		
+		// Variables.
+		private final double messagesPerSecond;
+		private final double messageCapacity;
+		private double messageTokens;
+		
+		private final int bytesPerSecond;
+		private double byteTokens;
+		
+		private long lastRefill = System.nanoTime();
+		
+		/**
+		 * Class constructor. Instantiates a new full {@code Bucket} with the 
+		 * given rates.
+		 * 
+		 * @param messagesPerSecond Maximum number of messages per second.
+		 * @param bytesPerSecond Maximum number of payload bytes per second.
+		 */
+		private Bucket(double messagesPerSecond, int bytesPerSecond) {
+			this.messagesPerSecond = messagesPerSecond;
+			this.messageCapacity = Math.max(1, messagesPerSecond);
+			this.messageTokens = messageCapacity;
+			this.bytesPerSecond = bytesPerSecond;
+			this.byteTokens = bytesPerSecond;
+		}
+		
+		/**
+		 * Adds the tokens accumulated since the last refill.
+		 * 
+		 * @param now The current value of {@link System#nanoTime()}.
+		 */
+		private void refill(long now) {
+			double seconds = (now - lastRefill) / 1e9;
+			lastRefill = now;
+			if (messagesPerSecond != UNLIMITED)
+				messageTokens = Math.min(messageCapacity, messageTokens + seconds * messagesPerSecond);
+			if (bytesPerSecond != UNLIMITED)
+				byteTokens = Math.min(bytesPerSecond, byteTokens + seconds * bytesPerSecond);
+		}
+		
+		/**
+		 * Returns the time to wait until a message of the given size fits in 
+		 * the bucket.
+		 * 
+		 * @param size The size of the payload in bytes.
+		 * 
+		 * @return The delay in milliseconds, {@code 0} if it fits now.
+		 */
+		private long getDelay(int size) {
+			double seconds = 0;
+			if (messagesPerSecond != UNLIMITED)
+				seconds = Math.max(seconds, (1 - messageTokens) / messagesPerSecond);
+			if (bytesPerSecond != UNLIMITED)
+				seconds = Math.max(seconds, (Math.min(size, bytesPerSecond) - byteTokens) / bytesPerSecond);
+			return (long)Math.ceil(seconds * 1000);
+		}
+		
+		/**
+		 * Takes the tokens of a message of the given size. The bucket may be 
+		 * left in debt.
+		 * 
+		 * @param size The size of the payload in bytes.
+		 */
+		private void consume(int size) {
+			messageTokens--;
+			byteTokens -= size;
+		}
+	}
+	
+	/**
+	 * Helper class that stores the rate limit statistics of a destination.
+	 */
+	private static class Statistics {
+		
+		// Variables.
+		private long throttledTime = 0;
+		private int rejected = 0;
+	}
+}
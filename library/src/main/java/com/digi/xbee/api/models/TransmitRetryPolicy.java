@@ -0,0 +1,348 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import java.util.EnumSet;
+import java.util.Random;
+
+/**
+ * This class represents the policy used to retry the asynchronous 
+ * transmissions that fail.
+ * 
+ * <p>A transmission is retried when its transmit status is retryable (see 
+ * {@link #setRetryable(XBeeTransmitStatus, boolean)}) or when no status is 
+ * received and {@link #isRetryOnTimeout()} is enabled. By default, the 
+ * following statuses are retryable:</p>
+ * <ul>
+ * <li>{@link XBeeTransmitStatus#NO_ACK}</li>
+ * <li>{@link XBeeTransmitStatus#CCA_FAILURE}</li>
+ * <li>{@link XBeeTransmitStatus#NETWORK_ACK_FAILURE}</li>
+ * <li>{@link XBeeTransmitStatus#ADDRESS_NOT_FOUND}</li>
+ * <li>{@link XBeeTransmitStatus#ROUTE_NOT_FOUND}</li>
+ * <li>{@link XBeeTransmitStatus#RESOURCE_ERROR}</li>
+ * <li>{@link XBeeTransmitStatus#RESOURCE_ERROR_BIS}</li>
+ * </ul>
+ * 
+ * <p>Retries wait an exponential backoff with jitter: the n-th retry waits 
+ * a random time between half and all of 
+ * {@code min(initialBackoff * 2^(n-1), maxBackoff)}. Retries stop after the 
+ * maximum number of attempts or when the next one would start after the 
+ * deadline.</p>
+ * 
+ * @see com.digi.xbee.api.XBeeDevice#setTransmitRetryPolicy(TransmitRetryPolicy)
+ */
+public class TransmitRetryPolicy {
+	
+	// Constants.
+	/**
+	 * Default maximum number of attempts of a transmission ({@value}).
+	 */
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+	
+	/**
+	 * Default backoff of the first retry ({@value} ms).
+	 */
+	public static final int DEFAULT_INITIAL_BACKOFF = 250;
+	
+	/**
+	 * Default maximum backoff of a retry ({@value} ms).
+	 */
+	public static final int DEFAULT_MAX_BACKOFF = 8000;
+	
+	/**
+	 * Value of the deadline when transmissions are only limited by the 
+	 * maximum number of attempts ({@value}).
+	 */
+	public static final int NO_DEADLINE = 0;
+	
+	// Variables.
+	private final EnumSet<XBeeTransmitStatus> retryableStatuses = EnumSet.of(
+			XBeeTransmitStatus.NO_ACK, 
+			XBeeTransmitStatus.CCA_FAILURE, 
+			XBeeTransmitStatus.NETWORK_ACK_FAILURE, 
+			XBeeTransmitStatus.ADDRESS_NOT_FOUND, 
+			XBeeTransmitStatus.ROUTE_NOT_FOUND, 
+			XBeeTransmitStatus.RESOURCE_ERROR, 
+			XBeeTransmitStatus.RESOURCE_ERROR_BIS);
+	
+	private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private int deadline = NO_DEADLINE;
+	
+	private int initialBackoff = DEFAULT_INITIAL_BACKOFF;
+	private int maxBackoff = DEFAULT_MAX_BACKOFF;
+	
+	private boolean retryOnTimeout = true;
+	
+	private final Random random = new Random();
+	
+	private final Object lock = new Object();
+	
+	/**
+	 * Class constructor. Instantiates a new {@code TransmitRetryPolicy} 
+	 * object with the default values.
+	 */
+	public TransmitRetryPolicy() {
+	}
+	
+	/**
+	 * Class constructor. Instantiates a new {@code TransmitRetryPolicy} 
+	 * object with the given parameters.
+	 * 
+	 * @param maxAttempts Maximum number of attempts of a transmission, 
+	 *                    including the first one.
+	 * @param initialBackoff Backoff of the first retry in milliseconds.
+	 * @param maxBackoff Maximum backoff of a retry in milliseconds.
+	 * 
+	 * @throws IllegalArgumentException if {@code maxAttempts < 1} or 
+	 *                                  if {@code initialBackoff < 1} or 
+	 *                                  if {@code maxBackoff < initialBackoff}.
+	 */
+	public TransmitRetryPolicy(int maxAttempts, int initialBackoff, int maxBackoff) {
+		setMaxAttempts(maxAttempts);
+		setBackoff(initialBackoff, maxBackoff);
+	}
+	
+	/**
+	 * Returns the maximum number of attempts of a transmission.
+	 * 
+	 * @return The maximum number of attempts, including the first one.
+	 * 
+	 * @see #setMaxAttempts(int)
+	 */
+	public int getMaxAttempts() {
+		synchronized (lock) {
+			return maxAttempts;
+		}
+	}
+	
+	/**
+	 * Sets the maximum number of attempts of a transmission.
+	 * 
+	 * @param maxAttempts The maximum number of attempts, including the first 
+	 *                    one.
+	 * 
+	 * @throws IllegalArgumentException if {@code maxAttempts < 1}.
+	 * 
+	 * @see #getMaxAttempts()
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		if (maxAttempts < 1)
+			throw new IllegalArgumentException("Maximum attempts must be greater than 0.");
+		
+		synchronized (lock) {
+			this.maxAttempts = maxAttempts;
+		}
+	}
+	
+	/**
+	 * Returns the time since the first attempt after which a transmission 
+	 * is not retried.
+	 * 
+	 * @return The deadline in milliseconds, {@link #NO_DEADLINE} if there is 
+	 *         no deadline.
+	 * 
+	 * @see #setDeadline(int)
+	 */
+	public int getDeadline() {
+		synchronized (lock) {
+			return deadline;
+		}
+	}
+	
+	/**
+	 * Sets the time since the first attempt after which a transmission is 
+	 * not retried.
+	 * 
+	 * @param deadline The deadline in milliseconds, {@link #NO_DEADLINE} 
+	 *                 not to use a deadline.
+	 * 
+	 * @throws IllegalArgumentException if {@code deadline < 0}.
+	 * 
+	 * @see #getDeadline()
+	 */
+	public void setDeadline(int deadline) {
+		if (deadline < 0)
+			throw new IllegalArgumentException("Deadline cannot be less than 0.");
+		
+		synchronized (lock) {
+			this.deadline = deadline;
+		}
+	}
+	
+	/**
+	 * Returns the backoff of the first retry.
+	 * 
+	 * @return The initial backoff in milliseconds.
+	 * 
+	 * @see #setBackoff(int, int)
+	 */
+	public int getInitialBackoff() {
+		synchronized (lock) {
+			return initialBackoff;
+		}
+	}
+	
+	/**
+	 * Returns the maximum backoff of a retry.
+	 * 
+	 * @return The maximum backoff in milliseconds.
+	 * 
+	 * @see #setBackoff(int, int)
+	 */
+	public int getMaxBackoff() {
+		synchronized (lock) {
+			return maxBackoff;
+		}
+	}
+	
+	/**
+	 * Sets the backoff of the retries.
+	 * 
+	 * @param initialBackoff Backoff of the first retry in milliseconds.
+	 * @param maxBackoff Maximum backoff of a retry in milliseconds.
+	 * 
+	 * @throws IllegalArgumentException if {@code initialBackoff < 1} or 
+	 *                                  if {@code maxBackoff < initialBackoff}.
+	 * 
+	 * @see #getInitialBackoff()
+	 * @see #getMaxBackoff()
+	 */
+	public void setBackoff(int initialBackoff, int maxBackoff) {
+		if (initialBackoff < 1)
+			throw new IllegalArgumentException("Initial backoff must be greater than 0.");
+		if (maxBackoff < initialBackoff)
+			throw new IllegalArgumentException("Maximum backoff cannot be less than the initial backoff.");
+		
+		synchronized (lock) {
+			this.initialBackoff = initialBackoff;
+			this.maxBackoff = maxBackoff;
+		}
+	}
+	
+	/**
+	 * Returns whether the transmissions without transmit status are retried.
+	 * 
+	 * @return {@code true} if the transmissions that time out are retried, 
+	 *         {@code false} otherwise.
+	 * 
+	 * @see #setRetryOnTimeout(boolean)
+	 */
+	public boolean isRetryOnTimeout() {
+		synchronized (lock) {
+			return retryOnTimeout;
+		}
+	}
+	
+	/**
+	 * Configures whether the transmissions without transmit status are 
+	 * retried.
+	 * 
+	 * @param retryOnTimeout {@code true} to retry the transmissions that 
+	 *                       time out, {@code false} otherwise. Default is 
+	 *                       {@code true}.
+	 * 
+	 * @see #isRetryOnTimeout()
+	 */
+	public void setRetryOnTimeout(boolean retryOnTimeout) {
+		synchronized (lock) {
+			this.retryOnTimeout = retryOnTimeout;
+		}
+	}
+	
+	/**
+	 * Returns whether the transmissions with the given status are retried.
+	 * 
+	 * @param transmitStatus The transmit status.
+	 * 
+	 * @return {@code true} if the status is retryable, {@code false} 
+	 *         otherwise.
+	 * 
+	 * @throws NullPointerException if {@code transmitStatus == null}.
+	 * 
+	 * @see #setRetryable(XBeeTransmitStatus, boolean)
+	 */
+	public boolean isRetryable(XBeeTransmitStatus transmitStatus) {
+		if (transmitStatus == null)
+			throw new NullPointerException("Transmit status cannot be null.");
+		
+		synchronized (lock) {
+			return retryableStatuses.contains(transmitStatus);
+		}
+	}
+	
+	/**
+	 * Configures whether the transmissions with the given status are 
+	 * retried.
+	 * 
+	 * @param transmitStatus The transmit status.
+	 * @param retryable {@code true} to retry the transmissions with the 
+	 *                  status, {@code false} otherwise.
+	 * 
+	 * @throws IllegalArgumentException if {@code transmitStatus == XBeeTransmitStatus.SUCCESS}.
+	 * @throws NullPointerException if {@code transmitStatus == null}.
+	 * 
+	 * @see #isRetryable(XBeeTransmitStatus)
+	 */
+	public void setRetryable(XBeeTransmitStatus transmitStatus, boolean retryable) {
+		if (transmitStatus == null)
+			throw new NullPointerException("Transmit status cannot be null.");
+		if (transmitStatus == XBeeTransmitStatus.SUCCESS)
+			throw new IllegalArgumentException("Successful transmissions cannot be retried.");
+		
+		synchronized (lock) {
+			if (retryable)
+				retryableStatuses.add(transmitStatus);
+			else
+				retryableStatuses.remove(transmitStatus);
+		}
+	}
+	
+	/**
+	 * Returns the time to wait before the given retry.
+	 * 
+	 * @param retry The number of the retry, starting at {@code 1}.
+	 * 
+	 * @return The backoff in milliseconds, a random value between half and 
+	 *         all of {@code min(initialBackoff * 2^(retry-1), maxBackoff)}.
+	 * 
+	 * @throws IllegalArgumentException if {@code retry < 1}.
+	 */
+	public long getBackoff(int retry) {
+		if (retry < 1)
+			throw new IllegalArgumentException("Retry must be greater than 0.");
+		
+		synchronized (lock) {
+			long backoff = initialBackoff;
+			for (int i = 1; i < retry && backoff < maxBackoff; i++)
+				backoff *= 2;
+			backoff = Math.min(backoff, maxBackoff);
+			return backoff / 2 + (long)(random.nextDouble() * (backoff - backoff / 2 + 1));
+		}
+	}
+	
+	/**
+	 * Returns whether a transmission can be retried after the given number 
+	 * of attempts.
+	 * 
+	 * @param attempts The number of attempts made.
+	 * @param elapsed The time since the first attempt in milliseconds, 
+	 *                including the backoff of the next retry.
+	 * 
+	 * @return {@code true} if there are attempts left and the deadline is 
+	 *         not exceeded, {@code false} otherwise.
+	 */
+	public boolean canRetry(int attempts, long elapsed) {
+		synchronized (lock) {
+			return attempts < maxAttempts && (deadline == NO_DEADLINE || elapsed <= deadline);
+		}
+	}
+}
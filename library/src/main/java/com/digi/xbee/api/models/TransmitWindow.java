@@ -0,0 +1,427 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import java.util.HashMap;
+
+/**
+ * This class represents an adaptive window that limits the number of 
+ * outstanding transmissions of a local XBee device.
+ * 
+ * <p>The window follows an additive increase, multiplicative decrease 
+ * (AIMD) policy:</p>
+ * <ul>
+ * <li>Every successful transmission grows the window by {@code 1 / size}, 
+ * that is, about one frame per window of successful transmissions.</li>
+ * <li>A failed transmission, a transmission without status or a successful 
+ * transmission that needed at least {@link #getRetryThreshold()} retries 
+ * halves the window, down to one frame.</li>
+ * </ul>
+ * 
+ * <p>The window is decreased at most once per window of transmissions: 
+ * failures of transmissions started before the last decrease do not 
+ * decrease it again.</p>
+ * 
+ * <p>Optionally, every destination has its own window besides the global 
+ * one (see {@link #setPerDestination(boolean)}), so a slow or unreachable 
+ * node does not throttle the transmissions to the rest of the network.</p>
+ * 
+ * @see com.digi.xbee.api.XBeeDevice#setTransmitWindow(TransmitWindow)
+ */
+public class TransmitWindow {
+	
+	// Constants.
+	/**
+	 * Default initial size of the window (value: {@value}).
+	 */
+	public static final int DEFAULT_INITIAL_SIZE = 4;
+	
+	/**
+	 * Default maximum size of the window (value: {@value}).
+	 */
+	public static final int DEFAULT_MAX_SIZE = 32;
+	
+	/**
+	 * Default number of retries from which a successful transmission 
+	 * decreases the window (value: {@value}).
+	 */
+	public static final int DEFAULT_RETRY_THRESHOLD = 3;
+	
+	/**
+	 * Value returned when no transmission slot could be acquired 
+	 * (value: {@value}).
+	 */
+	public static final long NO_TICKET = -1;
+	
+	private static final int MIN_SIZE = 1;
+	
+	// Variables.
+	private final int initialSize;
+	private final int maxSize;
+	
+	private int retryThreshold = DEFAULT_RETRY_THRESHOLD;
+	
+	private boolean perDestination = false;
+	
+	private long tickets = 0;
+	
+	private final Window globalWindow;
+	
+	private final HashMap<Object, Window> destinationWindows = new HashMap<Object, Window>();
+	
+	private final Object lock = new Object();
+	
+	/**
+	 * Class constructor. Instantiates a new {@code TransmitWindow} object 
+	 * with the default initial and maximum sizes.
+	 * 
+	 * @see #DEFAULT_INITIAL_SIZE
+	 * @see #DEFAULT_MAX_SIZE
+	 */
+	public TransmitWindow() {
+		this(DEFAULT_INITIAL_SIZE, DEFAULT_MAX_SIZE);
+	}
+	
+	/**
+	 * Class constructor. Instantiates a new {@code TransmitWindow} object 
+	 * with the given initial and maximum sizes.
+	 * 
+	 * @param initialSize The initial number of outstanding transmissions.
+	 * @param maxSize The maximum number of outstanding transmissions.
+	 * 
+	 * @throws IllegalArgumentException if {@code initialSize < 1} or 
+	 *                                  if {@code maxSize < initialSize}.
+	 */
+	public TransmitWindow(int initialSize, int maxSize) {
+		if (initialSize < MIN_SIZE)
+			throw new IllegalArgumentException("Initial size must be greater than 0.");
+		if (maxSize < initialSize)
+			throw new IllegalArgumentException("Maximum size cannot be less than the initial size.");
+		
+		this.initialSize = initialSize;
+		this.maxSize = maxSize;
+		this.globalWindow = new Window(initialSize);
+	}
+	
+	/**
+	 * Acquires a transmission slot for the given destination, waiting up to 
+	 * the given timeout if the window is full.
+	 * 
+	 * @param destination The destination of the transmission, used when 
+	 *                    windows are kept per destination. {@code null} for 
+	 *                    broadcast or unknown destinations.
+	 * @param timeout Maximum time in milliseconds to wait for a slot. 0 to 
+	 *                fail immediately.
+	 * 
+	 * @return The ticket of the transmission to pass to 
+	 *         {@link #transmitCompleted(long, Object, XBeeTransmitStatus, int)} 
+	 *         or {@link #transmitAborted(Object)}, {@link #NO_TICKET} if the 
+	 *         window remained full during the timeout or the thread was 
+	 *         interrupted.
+	 */
+	public long acquire(Object destination, int timeout) {
+		synchronized (lock) {
+			long deadLine = System.currentTimeMillis() + timeout;
+			long remaining = timeout;
+			while (true) {
+				Window destinationWindow = getDestinationWindow(destination, true);
+				if (globalWindow.hasRoom() && (destinationWindow == null || destinationWindow.hasRoom())) {
+					globalWindow.outstanding++;
+					if (destinationWindow != null)
+						destinationWindow.outstanding++;
+					return ++tickets;
+				}
+				if (remaining <= 0)
+					return NO_TICKET;
+				try {
+					lock.wait(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return NO_TICKET;
+				}
+				remaining = deadLine - System.currentTimeMillis();
+			}
+		}
+	}
+	
+	/**
+	 * Releases the slot of a completed transmission and adapts the window to 
+	 * its result.
+	 * 
+	 * @param ticket The ticket returned by {@link #acquire(Object, int)}.
+	 * @param destination The destination used to acquire the slot.
+	 * @param transmitStatus The transmit status of the transmission, 
+	 *                       {@code null} if no status was received.
+	 * @param retryCount The number of retries of the transmission.
+	 */
+	public void transmitCompleted(long ticket, Object destination, XBeeTransmitStatus transmitStatus, int retryCount) {
+		boolean congested = transmitStatus != XBeeTransmitStatus.SUCCESS || retryCount >= retryThreshold;
+		synchronized (lock) {
+			globalWindow.update(ticket, congested);
+			Window destinationWindow = getDestinationWindow(destination, false);
+			if (destinationWindow != null) {
+				destinationWindow.update(ticket, congested);
+				discardIdleWindow(destination, destinationWindow);
+			}
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Releases the slot of a transmission that was not sent or whose result 
+	 * is unknown, without adapting the window.
+	 * 
+	 * @param destination The destination used to acquire the slot.
+	 */
+	public void transmitAborted(Object destination) {
+		synchronized (lock) {
+			globalWindow.release();
+			Window destinationWindow = getDestinationWindow(destination, false);
+			if (destinationWindow != null) {
+				destinationWindow.release();
+				discardIdleWindow(destination, destinationWindow);
+			}
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Returns the window of the given destination.
+	 * 
+	 * <p>The calling thread must own the lock of the window.</p>
+	 * 
+	 * @param destination The destination.
+	 * @param create {@code true} to create the window if it does not exist.
+	 * 
+	 * @return The window of the destination, {@code null} if windows are not 
+	 *         kept per destination, the destination is {@code null} or the 
+	 *         window does not exist and it is not created.
+	 */
+	private Window getDestinationWindow(Object destination, boolean create) {
+		if (!perDestination || destination == null)
+			return null;
+		Window window = destinationWindows.get(destination);
+		if (window == null && create) {
+			window = new Window(initialSize);
+			destinationWindows.put(destination, window);
+		}
+		return window;
+	}
+	
+	/**
+	 * Discards the window of the given destination if it has no outstanding 
+	 * transmissions and it is not throttled, as a new window would behave 
+	 * the same.
+	 * 
+	 * <p>The calling thread must own the lock of the window.</p>
+	 * 
+	 * @param destination The destination.
+	 * @param window The window of the destination.
+	 */
+	private void discardIdleWindow(Object destination, Window window) {
+		if (window.outstanding == 0 && window.getSize() >= initialSize)
+			destinationWindows.remove(destination);
+	}
+	
+	/**
+	 * Returns the current size of the global window.
+	 * 
+	 * @return The number of transmissions that can be outstanding.
+	 */
+	public int getSize() {
+		synchronized (lock) {
+			return globalWindow.getSize();
+		}
+	}
+	
+	/**
+	 * Returns the current size of the window of the given destination.
+	 * 
+	 * @param destination The destination.
+	 * 
+	 * @return The number of transmissions to the destination that can be 
+	 *         outstanding, the size of the global window if windows are not 
+	 *         kept per destination or there were no transmissions to the 
+	 *         destination.
+	 */
+	public int getSize(Object destination) {
+		synchronized (lock) {
+			Window window = getDestinationWindow(destination, false);
+			return window == null ? globalWindow.getSize() : window.getSize();
+		}
+	}
+	
+	/**
+	 * Returns the number of outstanding transmissions.
+	 * 
+	 * @return The number of outstanding transmissions.
+	 */
+	public int getOutstanding() {
+		synchronized (lock) {
+			return globalWindow.outstanding;
+		}
+	}
+	
+	/**
+	 * Returns the initial size of the window.
+	 * 
+	 * @return The initial size of the window.
+	 */
+	public int getInitialSize() {
+		return initialSize;
+	}
+	
+	/**
+	 * Returns the maximum size of the window.
+	 * 
+	 * @return The maximum size of the window.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+	
+	/**
+	 * Returns the number of retries from which a successful transmission 
+	 * decreases the window.
+	 * 
+	 * @return The retry threshold.
+	 * 
+	 * @see #setRetryThreshold(int)
+	 */
+	public int getRetryThreshold() {
+		synchronized (lock) {
+			return retryThreshold;
+		}
+	}
+	
+	/**
+	 * Sets the number of retries from which a successful transmission 
+	 * decreases the window.
+	 * 
+	 * @param retryThreshold The retry threshold. Default is 
+	 *                       {@value #DEFAULT_RETRY_THRESHOLD}.
+	 * 
+	 * @throws IllegalArgumentException if {@code retryThreshold < 1}.
+	 * 
+	 * @see #getRetryThreshold()
+	 */
+	public void setRetryThreshold(int retryThreshold) {
+		if (retryThreshold < 1)
+			throw new IllegalArgumentException("Retry threshold must be greater than 0.");
+		
+		synchronized (lock) {
+			this.retryThreshold = retryThreshold;
+		}
+	}
+	
+	/**
+	 * Returns whether every destination has its own window.
+	 * 
+	 * @return {@code true} if windows are kept per destination, 
+	 *         {@code false} otherwise.
+	 * 
+	 * @see #setPerDestination(boolean)
+	 */
+	public boolean isPerDestination() {
+		synchronized (lock) {
+			return perDestination;
+		}
+	}
+	
+	/**
+	 * Configures whether every destination has its own window besides the 
+	 * global one.
+	 * 
+	 * <p>It should be configured before starting transmissions.</p>
+	 * 
+	 * @param perDestination {@code true} to keep a window per destination, 
+	 *                       {@code false} otherwise. Default is 
+	 *                       {@code false}.
+	 * 
+	 * @see #isPerDestination()
+	 */
+	public void setPerDestination(boolean perDestination) {
+		synchronized (lock) {
+			this.perDestination = perDestination;
+			if (!perDestination)
+				destinationWindows.clear();
+		}
+	}
+	
+	/**
+	 * Helper class that stores the state of a window.
+	 */
+	private class Window {
+		
+		// Variables.
+		private double size;
+		
+		private int outstanding = 0;
+		
+		private long recoveryTicket = 0;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code Window} object with 
+		 * the given size.
+		 * 
+		 * @param size The initial size of the window.
+		 */
+		private Window(int size) {
+			this.size = size;
+		}
+		
+		/**
+		 * Returns whether a new transmission fits in the window.
+		 * 
+		 * @return {@code true} if there is room in the window, {@code false} 
+		 *         otherwise.
+		 */
+		private boolean hasRoom() {
+			return outstanding < getSize();
+		}
+		
+		/**
+		 * Returns the number of transmissions that can be outstanding.
+		 * 
+		 * @return The size of the window.
+		 */
+		private int getSize() {
+			return (int)size;
+		}
+		
+		/**
+		 * Releases a slot and adapts the size of the window.
+		 * 
+		 * @param ticket The ticket of the transmission.
+		 * @param congested {@code true} to decrease the window, {@code false} 
+		 *                  to increase it.
+		 */
+		private void update(long ticket, boolean congested) {
+			release();
+			if (!congested)
+				size = Math.min(maxSize, size + 1 / size);
+			else if (ticket > recoveryTicket) {
+				size = Math.max(MIN_SIZE, size / 2);
+				// Ignore the failures of the transmissions already in flight.
+				recoveryTicket = tickets;
+			}
+		}
+		
+		/**
+		 * Releases a slot without adapting the window.
+		 */
+		private void release() {
+			if (outstanding > 0)
+				outstanding--;
+		}
+	}
+}
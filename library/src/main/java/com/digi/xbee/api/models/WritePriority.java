@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import com.digi.xbee.api.packet.APIFrameType;
+import com.digi.xbee.api.packet.XBeeAPIPacket;
+import com.digi.xbee.api.packet.XBeePacket;
+
+/**
+ * Enumerates the priority classes of the XBee packets written by the data 
+ * writer. Packets of a class with a lower ID are written first.
+ * 
+ * @see com.digi.xbee.api.connection.DataWriter
+ */
+public enum WritePriority {
+	
+	// Enumeration types
+	LOCAL_COMMAND(0, "Local command"),
+	REMOTE_COMMAND(1, "Remote command"),
+	UNICAST_DATA(2, "Unicast data"),
+	BROADCAST_DATA(3, "Broadcast data");
+	
+	// Variables
+	private final int id;
+	
+	private final String name;
+	
+	/**
+	 * Class constructor. Instantiates a new {@code WritePriority} 
+	 * enumeration entry with the given parameters.
+	 * 
+	 * @param id Write priority ID.
+	 * @param name Write priority name.
+	 */
+	private WritePriority(int id, String name) {
+		this.id = id;
+		this.name = name;
+	}
+	
+	/**
+	 * Returns the write priority ID.
+	 * 
+	 * @return Write priority ID.
+	 */
+	public int getID() {
+		return id;
+	}
+	
+	/**
+	 * Returns the write priority name.
+	 * 
+	 * @return Write priority name.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * Returns the priority class of the given XBee packet.
+	 * 
+	 * <p>Remote AT command requests are {@link #REMOTE_COMMAND}, transmit 
+	 * requests are {@link #UNICAST_DATA} or {@link #BROADCAST_DATA} depending 
+	 * on their destination and any other packet is {@link #LOCAL_COMMAND}.</p>
+	 * 
+	 * @param packet The XBee packet to get its priority class.
+	 * 
+	 * @return The priority class of the packet.
+	 * 
+	 * @throws NullPointerException if {@code packet == null}.
+	 * 
+	 * @see XBeePacket
+	 */
+	public static WritePriority get(XBeePacket packet) {
+		if (packet == null)
+			throw new NullPointerException("Packet cannot be null.");
+		if (!(packet instanceof XBeeAPIPacket))
+			return LOCAL_COMMAND;
+		
+		XBeeAPIPacket apiPacket = (XBeeAPIPacket)packet;
+		APIFrameType frameType = apiPacket.getFrameType();
+		if (frameType == null)
+			return LOCAL_COMMAND;
+		
+		switch (frameType) {
+		case REMOTE_AT_COMMAND_REQUEST:
+			return REMOTE_COMMAND;
+		case TX_64:
+		case TX_16:
+		case TRANSMIT_REQUEST:
+			return apiPacket.isBroadcast() ? BROADCAST_DATA : UNICAST_DATA;
+		default:
+			return LOCAL_COMMAND;
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Enum#toString()
+	 */
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+import com.digi.xbee.api.io.IOSample;
+
+/**
+ * This class represents an IO sample message containing the remote XBee 
+ * device that sent the sample and the IO sample itself.
+ * 
+ * <p>This class is used within the XBee Java Library to read IO samples sent 
+ * by remote devices.</p>
+ * 
+ * @see com.digi.xbee.api.XBeeDevice#readIOSamples(java.util.Collection, int, int)
+ */
+public class XBeeIOSampleMessage {
+	
+	// Variables.
+	private final RemoteXBeeDevice remoteXBeeDevice;
+	private final IOSample ioSample;
+	
+	/**
+	 * Class constructor. Instantiates a new object of type 
+	 * {@code XBeeIOSampleMessage} with the given parameters.
+	 * 
+	 * @param remoteXBeeDevice The remote XBee device that sent the sample.
+	 * @param ioSample The received IO sample.
+	 * 
+	 * @throws NullPointerException if {@code remoteXBeeDevice == null} or
+	 *                              if {@code ioSample == null}.
+	 * 
+	 * @see com.digi.xbee.api.RemoteXBeeDevice
+	 * @see com.digi.xbee.api.io.IOSample
+	 */
+	public XBeeIOSampleMessage(RemoteXBeeDevice remoteXBeeDevice, IOSample ioSample) {
+		if (remoteXBeeDevice == null)
+			throw new NullPointerException("Remote XBee device cannot be null.");
+		if (ioSample == null)
+			throw new NullPointerException("IO sample cannot be null.");
+		
+		this.remoteXBeeDevice = remoteXBeeDevice;
+		this.ioSample = ioSample;
+	}
+	
+	/**
+	 * Returns the remote XBee device that sent the IO sample.
+	 * 
+	 * @return The remote XBee device that sent the IO sample.
+	 * 
+	 * @see com.digi.xbee.api.RemoteXBeeDevice
+	 */
+	public RemoteXBeeDevice getDevice() {
+		return remoteXBeeDevice;
+	}
+	
+	/**
+	 * Returns the received IO sample.
+	 * 
+	 * @return The received IO sample.
+	 * 
+	 * @see com.digi.xbee.api.io.IOSample
+	 */
+	public IOSample getIOSample() {
+		return ioSample;
+	}
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class splits the data sent to remote XBee devices into fragments 
+ * that fit in the maximum RF payload of the XBee module, and configures 
+ * how the fragments are reassembled by the receiver.
+ * 
+ * <p>Every fragment starts with a header of {@value #HEADER_SIZE} bytes:</p>
+ * <ul>
+ * <li>Marker byte ({@code 0xF5}).</li>
+ * <li>Message ID, shared by all the fragments of the message.</li>
+ * <li>Index of the fragment, starting at {@code 0}.</li>
+ * <li>Number of fragments of the message.</li>
+ * </ul>
+ * 
+ * <p>Data that fits in a single frame is sent as is, unless it starts with 
+ * the marker byte; in that case it is sent as a message of a single 
+ * fragment so the receiver does not confuse it with a fragment.</p>
+ * 
+ * <p>Fragmentation must be enabled in both the sender and the receiver.</p>
+ * 
+ * @see com.digi.xbee.api.XBeeDevice#setMessageFragmenter(XBeeMessageFragmenter)
+ * @see XBeeMessageReassembler
+ */
+public class XBeeMessageFragmenter {
+	
+	// Constants.
+	/**
+	 * Size of the fragment header in bytes ({@value}).
+	 */
+	public static final int HEADER_SIZE = 4;
+	
+	/**
+	 * Maximum number of fragments of a message ({@value}).
+	 */
+	public static final int MAX_FRAGMENTS = 255;
+	
+	/**
+	 * Default time to complete the reassembly of a message ({@value} ms).
+	 */
+	public static final int DEFAULT_REASSEMBLY_TIMEOUT = 10000;
+	
+	/**
+	 * Default maximum number of bytes being reassembled per remote device 
+	 * ({@value}).
+	 */
+	public static final int DEFAULT_MAX_REASSEMBLY_SIZE = 32768;
+	
+	/**
+	 * Default number of times a failed fragment is sent again ({@value}).
+	 */
+	public static final int DEFAULT_MAX_RETRANSMISSIONS = 2;
+	
+	static final byte MARKER = (byte)0xF5;
+	
+	static final int INDEX_MESSAGE_ID = 1;
+	static final int INDEX_FRAGMENT = 2;
+	static final int INDEX_COUNT = 3;
+	
+	// Variables.
+	private final int maxPayloadSize;
+	
+	private volatile int reassemblyTimeout = DEFAULT_REASSEMBLY_TIMEOUT;
+	private volatile int maxReassemblySize = DEFAULT_MAX_REASSEMBLY_SIZE;
+	private volatile int maxRetransmissions = DEFAULT_MAX_RETRANSMISSIONS;
+	
+	private final AtomicInteger messageID = new AtomicInteger();
+	
+	/**
+	 * Class constructor. Instantiates a new {@code XBeeMessageFragmenter} 
+	 * object with the given maximum payload size.
+	 * 
+	 * @param maxPayloadSize Maximum RF payload size of the XBee module in 
+	 *                       bytes, that is, the value of the {@code NP} 
+	 *                       parameter.
+	 * 
+	 * @throws IllegalArgumentException if {@code maxPayloadSize <= HEADER_SIZE}.
+	 * 
+	 * @see #HEADER_SIZE
+	 */
+	public XBeeMessageFragmenter(int maxPayloadSize) {
+		if (maxPayloadSize <= HEADER_SIZE)
+			throw new IllegalArgumentException("Maximum payload size must be greater than " + HEADER_SIZE + ".");
+		
+		this.maxPayloadSize = maxPayloadSize;
+	}
+	
+	/**
+	 * Returns whether the given data must be encoded before sending it.
+	 * 
+	 * @param data The data to send.
+	 * 
+	 * @return {@code true} if the data does not fit in a single frame or 
+	 *         if it starts with the marker byte, {@code false} if it can be 
+	 *         sent as is.
+	 * 
+	 * @throws NullPointerException if {@code data == null}.
+	 * 
+	 * @see #encode(byte[])
+	 */
+	public boolean needsEncoding(byte[] data) {
+		if (data == null)
+			throw new NullPointerException("Data cannot be null.");
+		
+		return data.length > maxPayloadSize || (data.length > 0 && data[0] == MARKER);
+	}
+	
+	/**
+	 * Splits the given data into fragments with a new message ID.
+	 * 
+	 * @param data The data to send.
+	 * 
+	 * @return The payloads of the fragments, including their header.
+	 * 
+	 * @throws IllegalArgumentException if the data needs more than 
+	 *                                  {@value #MAX_FRAGMENTS} fragments.
+	 * @throws NullPointerException if {@code data == null}.
+	 * 
+	 * @see #needsEncoding(byte[])
+	 */
+	public List<byte[]> encode(byte[] data) {
+		if (data == null)
+			throw new NullPointerException("Data cannot be null.");
+		
+		int fragmentSize = maxPayloadSize - HEADER_SIZE;
+		int count = Math.max(1, (data.length + fragmentSize - 1) / fragmentSize);
+		if (count > MAX_FRAGMENTS)
+			throw new IllegalArgumentException("Data cannot be split in more than " + MAX_FRAGMENTS + " fragments.");
+		
+		byte id = (byte)messageID.getAndIncrement();
+		List<byte[]> fragments = new ArrayList<byte[]>(count);
+		for (int i = 0; i < count; i++) {
+			int offset = i * fragmentSize;
+			int length = Math.min(fragmentSize, data.length - offset);
+			byte[] fragment = new byte[HEADER_SIZE + length];
+			fragment[0] = MARKER;
+			fragment[INDEX_MESSAGE_ID] = id;
+			fragment[INDEX_FRAGMENT] = (byte)i;
+			fragment[INDEX_COUNT] = (byte)count;
+			System.arraycopy(data, offset, fragment, HEADER_SIZE, length);
+			fragments.add(fragment);
+		}
+		return fragments;
+	}
+	
+	/**
+	 * Creates a new reassembler using the configuration of this fragmenter.
+	 * 
+	 * @return The new reassembler.
+	 * 
+	 * @see XBeeMessageReassembler
+	 */
+	public XBeeMessageReassembler createReassembler() {
+		return new XBeeMessageReassembler(this);
+	}
+	
+	/**
+	 * Returns the maximum RF payload size of the XBee module.
+	 * 
+	 * @return The maximum payload size in bytes.
+	 */
+	public int getMaxPayloadSize() {
+		return maxPayloadSize;
+	}
+	
+	/**
+	 * Returns the time to complete the reassembly of a message.
+	 * 
+	 * @return The reassembly timeout in milliseconds.
+	 * 
+	 * @see #setReassemblyTimeout(int)
+	 */
+	public int getReassemblyTimeout() {
+		return reassemblyTimeout;
+	}
+	
+	/**
+	 * Sets the time to complete the reassembly of a message. Messages with 
+	 * missing fragments after this time are discarded.
+	 * 
+	 * @param reassemblyTimeout The reassembly timeout in milliseconds.
+	 * 
+	 * @throws IllegalArgumentException if {@code reassemblyTimeout < 1}.
+	 * 
+	 * @see #getReassemblyTimeout()
+	 */
+	public void setReassemblyTimeout(int reassemblyTimeout) {
+		if (reassemblyTimeout < 1)
+			throw new IllegalArgumentException("Reassembly timeout must be greater than 0.");
+		
+		this.reassemblyTimeout = reassemblyTimeout;
+	}
+	
+	/**
+	 * Returns the maximum number of bytes being reassembled per remote 
+	 * device.
+	 * 
+	 * @return The maximum reassembly size in bytes.
+	 * 
+	 * @see #setMaxReassemblySize(int)
+	 */
+	public int getMaxReassemblySize() {
+		return maxReassemblySize;
+	}
+	
+	/**
+	 * Sets the maximum number of bytes being reassembled per remote device. 
+	 * When it is exceeded, the oldest incomplete messages of the device are 
+	 * discarded.
+	 * 
+	 * @param maxReassemblySize The maximum reassembly size in bytes.
+	 * 
+	 * @throws IllegalArgumentException if {@code maxReassemblySize < 1}.
+	 * 
+	 * @see #getMaxReassemblySize()
+	 */
+	public void setMaxReassemblySize(int maxReassemblySize) {
+		if (maxReassemblySize < 1)
+			throw new IllegalArgumentException("Maximum reassembly size must be greater than 0.");
+		
+		this.maxReassemblySize = maxReassemblySize;
+	}
+	
+	/**
+	 * Returns the number of times a fragment that fails is sent again.
+	 * 
+	 * @return The maximum number of retransmissions.
+	 * 
+	 * @see #setMaxRetransmissions(int)
+	 */
+	public int getMaxRetransmissions() {
+		return maxRetransmissions;
+	}
+	
+	/**
+	 * Sets the number of times a fragment that fails is sent again. Only the 
+	 * fragments whose transmit status is not a success are sent again.
+	 * 
+	 * @param maxRetransmissions The maximum number of retransmissions.
+	 * 
+	 * @throws IllegalArgumentException if {@code maxRetransmissions < 0}.
+	 * 
+	 * @see #getMaxRetransmissions()
+	 */
+	public void setMaxRetransmissions(int maxRetransmissions) {
+		if (maxRetransmissions < 0)
+			throw new IllegalArgumentException("Maximum retransmissions cannot be less than 0.");
+		
+		this.maxRetransmissions = maxRetransmissions;
+	}
+}
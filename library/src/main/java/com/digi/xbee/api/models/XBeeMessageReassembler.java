@@ -0,0 +1,328 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+
+/**
+ * This class reassembles the messages fragmented by the 
+ * {@link XBeeMessageFragmenter} of a remote XBee device.
+ * 
+ * <p>Fragments are stored per remote device until all the fragments of the 
+ * message are received. Incomplete messages are discarded when the 
+ * reassembly timeout expires or when the bytes stored for the device exceed 
+ * the maximum reassembly size, starting with the oldest message.</p>
+ * 
+ * <p>Repeated fragments, such as the ones sent again after a failed 
+ * transmit status, are ignored. Completed messages are remembered during 
+ * the reassembly timeout, so a fragment repeated after its message was 
+ * delivered is dropped instead of starting a new message that could be 
+ * merged with a later message using the same ID.</p>
+ * 
+ * @see XBeeMessageFragmenter
+ */
+public class XBeeMessageReassembler {
+	
+	// Constants.
+	private static final Object UNKNOWN_SOURCE = new Object();
+	
+	// Variables.
+	private final XBeeMessageFragmenter fragmenter;
+	
+	private final HashMap<Object, LinkedHashMap<Integer, PartialMessage>> sources = 
+			new HashMap<Object, LinkedHashMap<Integer, PartialMessage>>();
+	
+	private final HashMap<Object, HashMap<Integer, CompletedMessage>> completedSources = 
+			new HashMap<Object, HashMap<Integer, CompletedMessage>>();
+	
+	/**
+	 * Class constructor. Instantiates a new {@code XBeeMessageReassembler} 
+	 * object with the configuration of the given fragmenter.
+	 * 
+	 * @param fragmenter The fragmenter with the reassembly configuration.
+	 * 
+	 * @see XBeeMessageFragmenter#createReassembler()
+	 */
+	XBeeMessageReassembler(XBeeMessageFragmenter fragmenter) {
+		this.fragmenter = fragmenter;
+	}
+	
+	/**
+	 * Returns the fragmenter with the configuration of this reassembler.
+	 * 
+	 * @return The fragmenter.
+	 */
+	public XBeeMessageFragmenter getFragmenter() {
+		return fragmenter;
+	}
+	
+	/**
+	 * Processes the data received from the given remote XBee device.
+	 * 
+	 * @param remoteDevice The remote XBee device that sent the data.
+	 * @param payload The received data.
+	 * 
+	 * @return The received data if it is not a fragment, the data of the 
+	 *         message if the payload is its last missing fragment, or 
+	 *         {@code null} if the message is not complete yet.
+	 * 
+	 * @throws NullPointerException if {@code payload == null}.
+	 */
+	public synchronized byte[] decode(RemoteXBeeDevice remoteDevice, byte[] payload) {
+		if (payload == null)
+			throw new NullPointerException("Payload cannot be null.");
+		if (payload.length < XBeeMessageFragmenter.HEADER_SIZE || payload[0] != XBeeMessageFragmenter.MARKER)
+			return payload;
+		
+		int id = payload[XBeeMessageFragmenter.INDEX_MESSAGE_ID] & 0xFF;
+		int index = payload[XBeeMessageFragmenter.INDEX_FRAGMENT] & 0xFF;
+		int count = payload[XBeeMessageFragmenter.INDEX_COUNT] & 0xFF;
+		// Not a valid header, so the data was not fragmented.
+		if (count == 0 || index >= count)
+			return payload;
+		if (count == 1)
+			return Arrays.copyOfRange(payload, XBeeMessageFragmenter.HEADER_SIZE, payload.length);
+		
+		long now = System.currentTimeMillis();
+		removeExpiredMessages(now);
+		
+		Object source = getSource(remoteDevice);
+		HashMap<Integer, CompletedMessage> completedMessages = completedSources.get(source);
+		if (completedMessages != null && completedMessages.containsKey(id)) {
+			// Drop the repeated fragments of a delivered message. Any other 
+			// fragment belongs to a new message reusing the ID.
+			if (completedMessages.get(id).isRepeated(index, count, payload))
+				return null;
+			completedMessages.remove(id);
+			if (completedMessages.isEmpty())
+				completedSources.remove(source);
+		}
+		
+		LinkedHashMap<Integer, PartialMessage> messages = sources.get(source);
+		if (messages == null) {
+			messages = new LinkedHashMap<Integer, PartialMessage>();
+			sources.put(source, messages);
+		}
+		
+		PartialMessage message = messages.get(id);
+		// A different message with the same ID replaces the old one.
+		if (message != null && message.fragments.length != count) {
+			messages.remove(id);
+			message = null;
+		}
+		if (message == null) {
+			message = new PartialMessage(count, now);
+			messages.put(id, message);
+		}
+		message.addFragment(index, payload);
+		
+		if (message.received == count) {
+			messages.remove(id);
+			if (messages.isEmpty())
+				sources.remove(source);
+			if (completedMessages == null) {
+				completedMessages = new HashMap<Integer, CompletedMessage>();
+				completedSources.put(source, completedMessages);
+			}
+			completedMessages.put(id, new CompletedMessage(message.hashes, now));
+			return message.getData();
+		}
+		
+		// Discard the oldest messages of the device if it exceeds the limit.
+		int size = 0;
+		for (PartialMessage partial : messages.values())
+			size += partial.size;
+		Iterator<PartialMessage> iterator = messages.values().iterator();
+		while (size > fragmenter.getMaxReassemblySize() && iterator.hasNext()) {
+			size -= iterator.next().size;
+			iterator.remove();
+		}
+		if (messages.isEmpty())
+			sources.remove(source);
+		return null;
+	}
+	
+	/**
+	 * Returns the number of messages being reassembled.
+	 * 
+	 * @return The number of incomplete messages.
+	 */
+	public synchronized int getPendingMessages() {
+		removeExpiredMessages(System.currentTimeMillis());
+		int pending = 0;
+		for (LinkedHashMap<Integer, PartialMessage> messages : sources.values())
+			pending += messages.size();
+		return pending;
+	}
+	
+	/**
+	 * Discards all the messages being reassembled.
+	 */
+	public synchronized void clear() {
+		sources.clear();
+		completedSources.clear();
+	}
+	
+	/**
+	 * Discards the incomplete messages whose reassembly timeout has expired 
+	 * and forgets the messages completed more than the reassembly timeout 
+	 * ago.
+	 * 
+	 * <p>The calling thread must own the lock of the reassembler.</p>
+	 * 
+	 * @param now The current time in milliseconds.
+	 */
+	private void removeExpiredMessages(long now) {
+		int timeout = fragmenter.getReassemblyTimeout();
+		Iterator<LinkedHashMap<Integer, PartialMessage>> sourcesIterator = sources.values().iterator();
+		while (sourcesIterator.hasNext()) {
+			LinkedHashMap<Integer, PartialMessage> messages = sourcesIterator.next();
+			Iterator<Map.Entry<Integer, PartialMessage>> iterator = messages.entrySet().iterator();
+			while (iterator.hasNext()) {
+				if (now - iterator.next().getValue().startTime >= timeout)
+					iterator.remove();
+			}
+			if (messages.isEmpty())
+				sourcesIterator.remove();
+		}
+		
+		Iterator<HashMap<Integer, CompletedMessage>> completedIterator = completedSources.values().iterator();
+		while (completedIterator.hasNext()) {
+			HashMap<Integer, CompletedMessage> messages = completedIterator.next();
+			Iterator<Map.Entry<Integer, CompletedMessage>> iterator = messages.entrySet().iterator();
+			while (iterator.hasNext()) {
+				if (now - iterator.next().getValue().completionTime >= timeout)
+					iterator.remove();
+			}
+			if (messages.isEmpty())
+				completedIterator.remove();
+		}
+	}
+	
+	/**
+	 * Returns the key that identifies the given remote device.
+	 * 
+	 * @param remoteDevice The remote XBee device.
+	 * 
+	 * @return The 64-bit address of the device, or its 16-bit address if the 
+	 *         64-bit one is unknown.
+	 */
+	private Object getSource(RemoteXBeeDevice remoteDevice) {
+		if (remoteDevice == null)
+			return UNKNOWN_SOURCE;
+		if (remoteDevice.get64BitAddress() != null)
+			return remoteDevice.get64BitAddress();
+		if (remoteDevice.get16BitAddress() != null)
+			return remoteDevice.get16BitAddress();
+		return remoteDevice;
+	}
+	
+	/**
+	 * Helper class that stores the fragments received of a message.
+	 */
+	private static class PartialMessage {
+		
+		// Variables.
+		private final byte[][] fragments;
+		private final int[] hashes;
+		private final long startTime;
+		
+		private int received = 0;
+		private int size = 0;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code PartialMessage} object 
+		 * with the given parameters.
+		 * 
+		 * @param count Number of fragments of the message.
+		 * @param startTime Time the first fragment was received.
+		 */
+		private PartialMessage(int count, long startTime) {
+			this.fragments = new byte[count][];
+			this.hashes = new int[count];
+			this.startTime = startTime;
+		}
+		
+		/**
+		 * Stores the data of the given fragment if it was not received yet.
+		 * 
+		 * @param index Index of the fragment.
+		 * @param payload Payload of the fragment, including its header.
+		 */
+		private void addFragment(int index, byte[] payload) {
+			if (fragments[index] != null)
+				return;
+			fragments[index] = Arrays.copyOfRange(payload, XBeeMessageFragmenter.HEADER_SIZE, payload.length);
+			hashes[index] = Arrays.hashCode(payload);
+			received++;
+			size += fragments[index].length;
+		}
+		
+		/**
+		 * Returns the data of the complete message.
+		 * 
+		 * @return The data of all the fragments in order.
+		 */
+		private byte[] getData() {
+			byte[] data = new byte[size];
+			int offset = 0;
+			for (byte[] fragment : fragments) {
+				System.arraycopy(fragment, 0, data, offset, fragment.length);
+				offset += fragment.length;
+			}
+			return data;
+		}
+	}
+	
+	/**
+	 * Helper class that remembers the fragments of a delivered message.
+	 */
+	private static class CompletedMessage {
+		
+		// Variables.
+		private final int[] hashes;
+		private final long completionTime;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code CompletedMessage} 
+		 * object with the given parameters.
+		 * 
+		 * @param hashes Hash codes of the fragments of the message.
+		 * @param completionTime Time the message was completed.
+		 */
+		private CompletedMessage(int[] hashes, long completionTime) {
+			this.hashes = hashes;
+			this.completionTime = completionTime;
+		}
+		
+		/**
+		 * Returns whether the given fragment is a repetition of a fragment 
+		 * of this message.
+		 * 
+		 * @param index Index of the fragment.
+		 * @param count Number of fragments of its message.
+		 * @param payload Payload of the fragment, including its header.
+		 * 
+		 * @return {@code true} if the fragment was already received, 
+		 *         {@code false} if it belongs to a different message.
+		 */
+		private boolean isRepeated(int index, int count, byte[] payload) {
+			return hashes.length == count && hashes[index] == Arrays.hashCode(payload);
+		}
+	}
+}
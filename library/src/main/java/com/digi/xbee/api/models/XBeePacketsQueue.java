@@ -11,7 +11,10 @@
  */
 package com.digi.xbee.api.models;
 
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import com.digi.xbee.api.RemoteXBeeDevice;
 import com.digi.xbee.api.packet.APIFrameType;
@@ -31,6 +34,26 @@ import com.digi.xbee.api.packet.raw.RX64Packet;
  * <p>The class provides some methods to get specific packet types from 
  * different source nodes.</p>
  * 
+ * <p>The queue is thread-safe. Readers waiting for a packet are woken up as 
+ * soon as a new packet is added to the queue.</p>
+ * 
+ * <p>Besides the global arrival order, packets are indexed by frame category 
+ * (data, IO and AT command responses) and by source address, so getting the 
+ * first packet of a category or from a remote device does not scan the whole 
+ * queue. Packets are always returned in arrival order.</p>
+ * 
+ * <p>When a packet is added and the queue is full, the configured 
+ * {@link QueueOverflowPolicy} decides which packet is dropped. Dropped 
+ * packets are counted by frame type (see 
+ * {@link #getDroppedPacketsByFrameType()}).</p>
+ * 
+ * <p>Optionally, a {@link XBeePacketsSpool} can be attached to the queue 
+ * (see {@link #setSpool(XBeePacketsSpool)}). Then, packets received while 
+ * the queue is full are appended to the disk spool instead of applying the 
+ * overflow policy, and they are moved back to the queue in arrival order as 
+ * the queue is drained. The overflow policy only applies when the spool is 
+ * also full.</p>
+ * 
  * @see com.digi.xbee.api.packet.XBeePacket
  */
 public class XBeePacketsQueue {
@@ -42,10 +65,45 @@ public class XBeePacketsQueue {
 	 */
 	public static final int DEFAULT_MAX_LENGTH = 50;
 	
+	/**
+	 * Default policy applied when the queue is full 
+	 * ({@link QueueOverflowPolicy#DROP_OLDEST}).
+	 */
+	public static final QueueOverflowPolicy DEFAULT_OVERFLOW_POLICY = QueueOverflowPolicy.DROP_OLDEST;
+	
+	private static final int CATEGORY_DATA = 0;
+	private static final int CATEGORY_IO = 1;
+	private static final int CATEGORY_AT_RESPONSE = 2;
+	private static final int CATEGORY_OTHER = 3;
+	private static final int CATEGORIES = 4;
+	
+	private static final int LINK_QUEUE = 0;
+	private static final int LINK_CATEGORY = 1;
+	private static final int LINK_SOURCE_64 = 2;
+	private static final int LINK_SOURCE_16 = 3;
+	private static final int LINKS = 4;
+	
 	// Variables.
 	private int maxLength = DEFAULT_MAX_LENGTH;
+	private int size = 0;
+	private int blockTimeout = 0;
+	private int waitingWriters = 0;
 	
-	private LinkedList<XBeePacket> packetsList;
+	private long sequence = 0;
+	private long totalDroppedPackets = 0;
+	
+	private final long[] droppedPackets = new long[APIFrameType.values().length];
+	
+	private QueueOverflowPolicy overflowPolicy = DEFAULT_OVERFLOW_POLICY;
+	
+	private XBeePacketsSpool spool;
+	
+	private final PacketChain packetsChain = new PacketChain(LINK_QUEUE, null);
+	private final PacketChain[] categoryChains = new PacketChain[CATEGORIES];
+	
+	private final HashMap<SourceKey, PacketChain> sourceChains = new HashMap<SourceKey, PacketChain>();
+	
+	private final Object lock = new Object();
 	
 	/**
 	 * Class constructor. Instantiates a new object of type 
@@ -62,34 +120,104 @@ public class XBeePacketsQueue {
 	 * @param maxLength Maximum length of the queue.
 	 * 
 	 * @throws IllegalArgumentException if {@code maxLength < 1}.
+	 * 
+	 * @see #XBeePacketsQueue(int, QueueOverflowPolicy, int)
 	 */
 	public XBeePacketsQueue(int maxLength) {
+		this(maxLength, DEFAULT_OVERFLOW_POLICY, 0);
+	}
+	
+	/**
+	 * Class constructor. Instantiates a new object of type 
+	 * {@code XBeePacketsQueue} with the given maximum length and overflow 
+	 * policy.
+	 * 
+	 * @param maxLength Maximum length of the queue.
+	 * @param overflowPolicy Policy to apply when a packet is added and the 
+	 *                       queue is full.
+	 * @param blockTimeout Maximum time in milliseconds to wait for free 
+	 *                     space when the policy is 
+	 *                     {@link QueueOverflowPolicy#BLOCK}. The packet is 
+	 *                     dropped if the queue is still full after this 
+	 *                     time. Ignored by the other policies.
+	 * 
+	 * @throws IllegalArgumentException if {@code maxLength < 1} or 
+	 *                                  if {@code blockTimeout < 0}.
+	 * @throws NullPointerException if {@code overflowPolicy == null}.
+	 * 
+	 * @see QueueOverflowPolicy
+	 */
+	public XBeePacketsQueue(int maxLength, QueueOverflowPolicy overflowPolicy, int blockTimeout) {
 		if (maxLength < 1)
 			throw new IllegalArgumentException("Queue length must be greater than 0.");
+		if (overflowPolicy == null)
+			throw new NullPointerException("Overflow policy cannot be null.");
+		if (blockTimeout < 0)
+			throw new IllegalArgumentException("Block timeout cannot be less than 0.");
 		
 		this.maxLength = maxLength;
-		packetsList = new LinkedList<XBeePacket>();
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeout = blockTimeout;
+		for (int i = 0; i < CATEGORIES; i++)
+			categoryChains[i] = new PacketChain(LINK_CATEGORY, null);
 	}
 	
 	/**
 	 * Adds the provided packet to the list of packets. If the queue is full 
-	 * the first packet will be discarded to add the given one.
+	 * the overflow policy of the queue is applied: the first packet is 
+	 * discarded to add the given one, the given packet is discarded, or the 
+	 * method waits up to the block timeout for free space.
 	 * 
 	 * @param xbeePacket The XBee packet to be added to the list.
 	 * 
+	 * @see #getOverflowPolicy()
 	 * @see com.digi.xbee.api.packet.XBeePacket
 	 */
 	public void addPacket(XBeePacket xbeePacket) {
-		if (packetsList.size() == maxLength)
-			packetsList.removeFirst();
-		packetsList.add(xbeePacket);
+		synchronized (lock) {
+			// Keep the arrival order: once spooling, every packet goes to the spool.
+			if (spool != null && (size == maxLength || !spool.isEmpty())) {
+				if (spool.addPacket(xbeePacket)) {
+					refillFromSpool();
+					return;
+				}
+				if (size == maxLength) {
+					countDroppedPacket(xbeePacket);
+					return;
+				}
+			}
+			if (size == maxLength) {
+				switch (overflowPolicy) {
+				case DROP_NEWEST:
+					countDroppedPacket(xbeePacket);
+					return;
+				case BLOCK:
+					if (!waitForSpace()) {
+						countDroppedPacket(xbeePacket);
+						return;
+					}
+					break;
+				default:
+					countDroppedPacket(removeNode(packetsChain.head));
+					break;
+				}
+			}
+			addNode(xbeePacket);
+			// Wake up the readers waiting for a packet.
+			lock.notifyAll();
+		}
 	}
 	
 	/**
 	 * Clears the list of packets.
+	 * 
+	 * <p>The packets stored in the spool, if any, are kept.</p>
 	 */
 	public void clearQueue() {
-		packetsList.clear();
+		synchronized (lock) {
+			while (packetsChain.head != null)
+				removeNode(packetsChain.head);
+		}
 	}
 	
 	/**
@@ -104,18 +232,23 @@ public class XBeePacketsQueue {
 	 * @see com.digi.xbee.api.packet.XBeePacket
 	 */
 	public XBeePacket getFirstPacket(int timeout) {
-		if (timeout > 0) {
-			XBeePacket xbeePacket = getFirstPacket(0);
-			// Wait for a timeout or until an XBee packet is read.
-			Long deadLine = System.currentTimeMillis() + timeout;
-			while (xbeePacket == null && deadLine > System.currentTimeMillis()) {
-				sleep(100);
-				xbeePacket = getFirstPacket(0);
-			}
-			return xbeePacket;
-		} else if (!packetsList.isEmpty())
-			return packetsList.pop();
-		return null;
+		synchronized (lock) {
+			if (timeout > 0) {
+				XBeePacket xbeePacket = getFirstPacket(0);
+				// Wait for a timeout or until an XBee packet is read.
+				long deadLine = System.currentTimeMillis() + timeout;
+				long remaining = timeout;
+				while (xbeePacket == null && remaining > 0) {
+					if (!waitForPacket(remaining))
+						break;
+					xbeePacket = getFirstPacket(0);
+					remaining = deadLine - System.currentTimeMillis();
+				}
+				return xbeePacket;
+			} else if (packetsChain.head != null)
+				return takeNode(packetsChain.head);
+			return null;
+		}
 	}
 	
 	/**
@@ -140,23 +273,28 @@ public class XBeePacketsQueue {
 	 * @see com.digi.xbee.api.packet.XBeePacket
 	 */
 	public XBeePacket getFirstPacketFrom(RemoteXBeeDevice remoteXBeeDevice, int timeout) {
-		if (timeout > 0) {
-			XBeePacket xbeePacket = getFirstPacketFrom(remoteXBeeDevice, 0);
-			// Wait for a timeout or until an XBee packet from remoteXBeeDevice is read.
-			Long deadLine = System.currentTimeMillis() + timeout;
-			while (xbeePacket == null && deadLine > System.currentTimeMillis()) {
-				sleep(100);
-				xbeePacket = getFirstPacketFrom(remoteXBeeDevice, 0);
-			}
-			return xbeePacket;
-		} else {
-			for (int i = 0; i < packetsList.size(); i++) {
-				XBeePacket xbeePacket = packetsList.get(i);
-				if (addressesMatch(xbeePacket, remoteXBeeDevice))
-					return packetsList.remove(i);
+		synchronized (lock) {
+			if (timeout > 0) {
+				XBeePacket xbeePacket = getFirstPacketFrom(remoteXBeeDevice, 0);
+				// Wait for a timeout or until an XBee packet from remoteXBeeDevice is read.
+				long deadLine = System.currentTimeMillis() + timeout;
+				long remaining = timeout;
+				while (xbeePacket == null && remaining > 0) {
+					if (!waitForPacket(remaining))
+						break;
+					xbeePacket = getFirstPacketFrom(remoteXBeeDevice, 0);
+					remaining = deadLine - System.currentTimeMillis();
+				}
+				return xbeePacket;
+			} else {
+				PacketNode node = null;
+				for (int i = 0; i < CATEGORIES; i++)
+					node = getEarliestNode(node, getFirstNodeFrom(remoteXBeeDevice, i));
+				if (node != null)
+					return takeNode(node);
 			}
+			return null;
 		}
-		return null;
 	}
 	
 	/**
@@ -174,23 +312,25 @@ public class XBeePacketsQueue {
 	 * @see com.digi.xbee.api.packet.XBeePacket
 	 */
 	public XBeePacket getFirstDataPacket(int timeout) {
-		if (timeout > 0) {
-			XBeePacket xbeePacket = getFirstDataPacket(0);
-			// Wait for a timeout or until a data XBee packet is read.
-			Long deadLine = System.currentTimeMillis() + timeout;
-			while (xbeePacket == null && deadLine > System.currentTimeMillis()) {
-				sleep(100);
-				xbeePacket = getFirstDataPacket(0);
-			}
-			return xbeePacket;
-		} else {
-			for (int i = 0; i < packetsList.size(); i++) {
-				XBeePacket xbeePacket = packetsList.get(i);
-				if (isDataPacket(xbeePacket))
-					return packetsList.remove(i);
+		synchronized (lock) {
+			if (timeout > 0) {
+				XBeePacket xbeePacket = getFirstDataPacket(0);
+				// Wait for a timeout or until a data XBee packet is read.
+				long deadLine = System.currentTimeMillis() + timeout;
+				long remaining = timeout;
+				while (xbeePacket == null && remaining > 0) {
+					if (!waitForPacket(remaining))
+						break;
+					xbeePacket = getFirstDataPacket(0);
+					remaining = deadLine - System.currentTimeMillis();
+				}
+				return xbeePacket;
+			} else {
+				if (categoryChains[CATEGORY_DATA].head != null)
+					return takeNode(categoryChains[CATEGORY_DATA].head);
 			}
+			return null;
 		}
-		return null;
 	}
 	
 	/**
@@ -217,23 +357,104 @@ public class XBeePacketsQueue {
 	 * @see com.digi.xbee.api.packet.XBeePacket
 	 */
 	public XBeePacket getFirstDataPacketFrom(RemoteXBeeDevice remoteXBeeDevice, int timeout) {
-		if (timeout > 0) {
-			XBeePacket xbeePacket = getFirstDataPacketFrom(remoteXBeeDevice, 0);
-			// Wait for a timeout or until an XBee packet from remoteXBeeDevice is read.
-			Long deadLine = System.currentTimeMillis() + timeout;
-			while (xbeePacket == null && deadLine > System.currentTimeMillis()) {
-				sleep(100);
-				xbeePacket = getFirstDataPacketFrom(remoteXBeeDevice, 0);
+		synchronized (lock) {
+			if (timeout > 0) {
+				XBeePacket xbeePacket = getFirstDataPacketFrom(remoteXBeeDevice, 0);
+				// Wait for a timeout or until an XBee packet from remoteXBeeDevice is read.
+				long deadLine = System.currentTimeMillis() + timeout;
+				long remaining = timeout;
+				while (xbeePacket == null && remaining > 0) {
+					if (!waitForPacket(remaining))
+						break;
+					xbeePacket = getFirstDataPacketFrom(remoteXBeeDevice, 0);
+					remaining = deadLine - System.currentTimeMillis();
+				}
+				return xbeePacket;
+			} else {
+				PacketNode node = getFirstNodeFrom(remoteXBeeDevice, CATEGORY_DATA);
+				if (node != null)
+					return takeNode(node);
+			}
+			return null;
+		}
+	}
+	
+	/**
+	 * Removes up to the given number of data packets from the queue and adds 
+	 * them to the provided collection, waiting up to the specified timeout if 
+	 * necessary for the first data packet to become available.
+	 * 
+	 * <p>All the available data packets are removed in a single operation, 
+	 * in arrival order.</p>
+	 * 
+	 * @param xbeePackets The collection to add the data packets to.
+	 * @param maxPackets The maximum number of data packets to remove.
+	 * @param timeout The time in milliseconds to wait for a data packet to 
+	 *                become available. 0 to return immediately.
+	 * 
+	 * @return The number of data packets added to the collection.
+	 * 
+	 * @see #getFirstDataPacket(int)
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	public int drainDataPackets(Collection<XBeePacket> xbeePackets, int maxPackets, int timeout) {
+		return drainPackets(CATEGORY_DATA, xbeePackets, maxPackets, timeout);
+	}
+	
+	/**
+	 * Removes up to the given number of IO sample packets from the queue and 
+	 * adds them to the provided collection, waiting up to the specified 
+	 * timeout if necessary for the first IO sample packet to become 
+	 * available.
+	 * 
+	 * <p>All the available IO sample packets are removed in a single 
+	 * operation, in arrival order.</p>
+	 * 
+	 * @param xbeePackets The collection to add the IO sample packets to.
+	 * @param maxPackets The maximum number of IO sample packets to remove.
+	 * @param timeout The time in milliseconds to wait for an IO sample packet 
+	 *                to become available. 0 to return immediately.
+	 * 
+	 * @return The number of IO sample packets added to the collection.
+	 * 
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	public int drainIOPackets(Collection<XBeePacket> xbeePackets, int maxPackets, int timeout) {
+		return drainPackets(CATEGORY_IO, xbeePackets, maxPackets, timeout);
+	}
+	
+	/**
+	 * Removes up to the given number of packets of the given category from 
+	 * the queue and adds them to the provided collection, waiting up to the 
+	 * specified timeout if necessary for the first packet to become 
+	 * available.
+	 * 
+	 * @param category The category of the packets to remove.
+	 * @param xbeePackets The collection to add the packets to.
+	 * @param maxPackets The maximum number of packets to remove.
+	 * @param timeout The time in milliseconds to wait for a packet to become 
+	 *                available. 0 to return immediately.
+	 * 
+	 * @return The number of packets added to the collection.
+	 */
+	private int drainPackets(int category, Collection<XBeePacket> xbeePackets, int maxPackets, int timeout) {
+		synchronized (lock) {
+			PacketChain chain = categoryChains[category];
+			// Wait for a timeout or until a packet of the category is added.
+			long deadLine = System.currentTimeMillis() + timeout;
+			long remaining = timeout;
+			while (chain.head == null && remaining > 0) {
+				if (!waitForPacket(remaining))
+					break;
+				remaining = deadLine - System.currentTimeMillis();
 			}
-			return xbeePacket;
-		} else {
-			for (int i = 0; i < packetsList.size(); i++) {
-				XBeePacket xbeePacket = packetsList.get(i);
-				if (isDataPacket(xbeePacket) && addressesMatch(xbeePacket, remoteXBeeDevice))
-					return packetsList.remove(i);
+			int count = 0;
+			while (count < maxPackets && chain.head != null) {
+				xbeePackets.add(takeNode(chain.head));
+				count++;
 			}
+			return count;
 		}
-		return null;
 	}
 	
 	/**
@@ -252,42 +473,267 @@ public class XBeePacketsQueue {
 	 * @see com.digi.xbee.api.packet.XBeePacket
 	 */
 	private boolean addressesMatch(XBeePacket xbeePacket, RemoteXBeeDevice remoteXBeeDevice) {
-		if (!(xbeePacket instanceof XBeeAPIPacket))
-			return false;
-		APIFrameType packetType = ((XBeeAPIPacket)xbeePacket).getFrameType();
+		XBee64BitAddress sourceAddress64 = get64BitSourceAddress(xbeePacket);
+		if (sourceAddress64 != null && sourceAddress64.equals(remoteXBeeDevice.get64BitAddress()))
+			return true;
+		XBee16BitAddress sourceAddress16 = get16BitSourceAddress(xbeePacket);
+		return sourceAddress16 != null && sourceAddress16.equals(remoteXBeeDevice.get16BitAddress());
+	}
+	
+	/**
+	 * Returns the 64-bit source address of the given XBee packet.
+	 * 
+	 * @param xbeePacket The XBee packet to get its 64-bit source address.
+	 * 
+	 * @return The 64-bit source address of the packet, {@code null} if the 
+	 *         packet does not have it.
+	 * 
+	 * @see XBee64BitAddress
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	private XBee64BitAddress get64BitSourceAddress(XBeePacket xbeePacket) {
+		APIFrameType packetType = getFrameType(xbeePacket);
+		if (packetType == null)
+			return null;
 		switch (packetType) {
 		case RECEIVE_PACKET:
-			if (remoteXBeeDevice.get64BitAddress() != null && ((ReceivePacket)xbeePacket).get64bitSourceAddress().equals(remoteXBeeDevice.get64BitAddress()))
-				return true;
-			if (remoteXBeeDevice.get16BitAddress() != null && ((ReceivePacket)xbeePacket).get16bitSourceAddress().equals(remoteXBeeDevice.get16BitAddress()))
-				return true;
-			break;
+			return ((ReceivePacket)xbeePacket).get64bitSourceAddress();
 		case REMOTE_AT_COMMAND_RESPONSE:
-			if (remoteXBeeDevice.get64BitAddress() != null && ((RemoteATCommandResponsePacket)xbeePacket).get64bitSourceAddress().equals(remoteXBeeDevice.get64BitAddress()))
-				return true;
-			if (remoteXBeeDevice.get16BitAddress() != null && ((RemoteATCommandResponsePacket)xbeePacket).get16bitSourceAddress().equals(remoteXBeeDevice.get16BitAddress()))
-				return true;
-			break;
-		case RX_16:
-			if (((RX16Packet)xbeePacket).get16bitSourceAddress().equals(remoteXBeeDevice.get16BitAddress()))
-				return true;
-			break;
+			return ((RemoteATCommandResponsePacket)xbeePacket).get64bitSourceAddress();
 		case RX_64:
-			if (((RX64Packet)xbeePacket).get64bitSourceAddress().equals(remoteXBeeDevice.get64BitAddress()))
-				return true;
-			break;
+			return ((RX64Packet)xbeePacket).get64bitSourceAddress();
+		case RX_IO_64:
+			return ((RX64IOPacket)xbeePacket).get64bitSourceAddress();
+		default:
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the 16-bit source address of the given XBee packet.
+	 * 
+	 * @param xbeePacket The XBee packet to get its 16-bit source address.
+	 * 
+	 * @return The 16-bit source address of the packet, {@code null} if the 
+	 *         packet does not have it.
+	 * 
+	 * @see XBee16BitAddress
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	private XBee16BitAddress get16BitSourceAddress(XBeePacket xbeePacket) {
+		APIFrameType packetType = getFrameType(xbeePacket);
+		if (packetType == null)
+			return null;
+		switch (packetType) {
+		case RECEIVE_PACKET:
+			return ((ReceivePacket)xbeePacket).get16bitSourceAddress();
+		case REMOTE_AT_COMMAND_RESPONSE:
+			return ((RemoteATCommandResponsePacket)xbeePacket).get16bitSourceAddress();
+		case RX_16:
+			return ((RX16Packet)xbeePacket).get16bitSourceAddress();
+		case RX_IO_16:
+			return ((RX16IOPacket)xbeePacket).get16bitSourceAddress();
+		default:
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the frame type of the given XBee packet.
+	 * 
+	 * @param xbeePacket The XBee packet to get its frame type.
+	 * 
+	 * @return The frame type of the packet, {@code null} if it is not an API 
+	 *         packet.
+	 * 
+	 * @see com.digi.xbee.api.packet.APIFrameType
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	private APIFrameType getFrameType(XBeePacket xbeePacket) {
+		if (!(xbeePacket instanceof XBeeAPIPacket))
+			return null;
+		return ((XBeeAPIPacket)xbeePacket).getFrameType();
+	}
+	
+	/**
+	 * Returns the category of the given XBee packet.
+	 * 
+	 * @param xbeePacket The XBee packet to get its category.
+	 * 
+	 * @return The category of the packet.
+	 * 
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	private int getCategory(XBeePacket xbeePacket) {
+		APIFrameType packetType = getFrameType(xbeePacket);
+		if (packetType == null)
+			return CATEGORY_OTHER;
+		if (isDataPacket(xbeePacket))
+			return CATEGORY_DATA;
+		switch (packetType) {
+		case IO_DATA_SAMPLE_RX_INDICATOR:
 		case RX_IO_16:
-			if (((RX16IOPacket)xbeePacket).get16bitSourceAddress().equals(remoteXBeeDevice.get16BitAddress()))
-				return true;
-			break;
 		case RX_IO_64:
-			if (((RX64IOPacket)xbeePacket).get64bitSourceAddress().equals(remoteXBeeDevice.get64BitAddress()))
-				return true;
-			break;
+			return CATEGORY_IO;
+		case AT_COMMAND_RESPONSE:
+		case REMOTE_AT_COMMAND_RESPONSE:
+			return CATEGORY_AT_RESPONSE;
 		default:
-			return false;
+			return CATEGORY_OTHER;
+		}
+	}
+	
+	/**
+	 * Adds the given XBee packet at the end of the queue and of its category 
+	 * and source indexes.
+	 * 
+	 * <p>The calling thread must own the lock of the queue.</p>
+	 * 
+	 * @param xbeePacket The XBee packet to add.
+	 * 
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	private void addNode(XBeePacket xbeePacket) {
+		int category = getCategory(xbeePacket);
+		PacketNode node = new PacketNode(xbeePacket, sequence++);
+		
+		packetsChain.append(node);
+		categoryChains[category].append(node);
+		XBee64BitAddress sourceAddress64 = get64BitSourceAddress(xbeePacket);
+		if (sourceAddress64 != null)
+			getSourceChain(new SourceKey(sourceAddress64, category), LINK_SOURCE_64).append(node);
+		XBee16BitAddress sourceAddress16 = get16BitSourceAddress(xbeePacket);
+		if (sourceAddress16 != null)
+			getSourceChain(new SourceKey(sourceAddress16, category), LINK_SOURCE_16).append(node);
+		size++;
+	}
+	
+	/**
+	 * Removes the given node from the queue and from all its indexes.
+	 * 
+	 * <p>The calling thread must own the lock of the queue.</p>
+	 * 
+	 * @param node The node to remove.
+	 * 
+	 * @return The XBee packet of the removed node.
+	 * 
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	private XBeePacket removeNode(PacketNode node) {
+		for (int i = 0; i < LINKS; i++) {
+			PacketChain chain = node.chains[i];
+			if (chain == null)
+				continue;
+			chain.remove(node);
+			// Discard the empty source indexes.
+			if (chain.head == null && chain.key != null)
+				sourceChains.remove(chain.key);
 		}
-		return false;
+		size--;
+		// Wake up the writers waiting for free space.
+		if (waitingWriters > 0)
+			lock.notifyAll();
+		return node.xbeePacket;
+	}
+	
+	/**
+	 * Removes the given node from the queue to return its packet to a reader 
+	 * and moves the packets of the spool to the freed space.
+	 * 
+	 * <p>The calling thread must own the lock of the queue.</p>
+	 * 
+	 * @param node The node to remove.
+	 * 
+	 * @return The XBee packet of the removed node.
+	 * 
+	 * @see #refillFromSpool()
+	 */
+	private XBeePacket takeNode(PacketNode node) {
+		XBeePacket xbeePacket = removeNode(node);
+		refillFromSpool();
+		return xbeePacket;
+	}
+	
+	/**
+	 * Moves packets from the spool to the queue until the queue is full or 
+	 * the spool is empty.
+	 * 
+	 * <p>The calling thread must own the lock of the queue.</p>
+	 */
+	private void refillFromSpool() {
+		if (spool == null)
+			return;
+		boolean added = false;
+		while (size < maxLength && !spool.isEmpty()) {
+			XBeePacket xbeePacket = spool.getFirstPacket();
+			if (xbeePacket == null)
+				break;
+			addNode(xbeePacket);
+			added = true;
+		}
+		// Wake up the readers waiting for a packet.
+		if (added)
+			lock.notifyAll();
+	}
+	
+	/**
+	 * Returns the source index with the given key, creating it if it does not 
+	 * exist.
+	 * 
+	 * @param key The key of the source index.
+	 * @param link The link used by the source index.
+	 * 
+	 * @return The source index.
+	 */
+	private PacketChain getSourceChain(SourceKey key, int link) {
+		PacketChain chain = sourceChains.get(key);
+		if (chain == null) {
+			chain = new PacketChain(link, key);
+			sourceChains.put(key, chain);
+		}
+		return chain;
+	}
+	
+	/**
+	 * Returns the first node of the given category whose source address 
+	 * matches the address of the provided remote XBee device.
+	 * 
+	 * @param remoteXBeeDevice The remote XBee device.
+	 * @param category The category of the packet.
+	 * 
+	 * @return The first matching node, {@code null} if there is not any.
+	 * 
+	 * @see com.digi.xbee.api.RemoteXBeeDevice
+	 */
+	private PacketNode getFirstNodeFrom(RemoteXBeeDevice remoteXBeeDevice, int category) {
+		PacketNode node = null;
+		if (remoteXBeeDevice.get64BitAddress() != null) {
+			PacketChain chain = sourceChains.get(new SourceKey(remoteXBeeDevice.get64BitAddress(), category));
+			if (chain != null)
+				node = chain.head;
+		}
+		if (remoteXBeeDevice.get16BitAddress() != null) {
+			PacketChain chain = sourceChains.get(new SourceKey(remoteXBeeDevice.get16BitAddress(), category));
+			if (chain != null)
+				node = getEarliestNode(node, chain.head);
+		}
+		return node;
+	}
+	
+	/**
+	 * Returns the node that was added first to the queue.
+	 * 
+	 * @param node1 The first node, may be {@code null}.
+	 * @param node2 The second node, may be {@code null}.
+	 * 
+	 * @return The node added first, {@code null} if both are {@code null}.
+	 */
+	private static PacketNode getEarliestNode(PacketNode node1, PacketNode node2) {
+		if (node1 == null)
+			return node2;
+		if (node2 == null || node1.sequence < node2.sequence)
+			return node1;
+		return node2;
 	}
 	
 	/**
@@ -315,15 +761,100 @@ public class XBeePacketsQueue {
 	}
 	
 	/**
-	 * Sleeps the thread for the given number of milliseconds.
+	 * Waits until a new packet is added to the queue or the given number of 
+	 * milliseconds elapses.
+	 * 
+	 * <p>The calling thread must own the lock of the queue.</p>
+	 * 
+	 * @param milliseconds The maximum number of milliseconds to wait.
+	 * 
+	 * @return {@code true} if the wait finished, {@code false} if the thread 
+	 *         was interrupted while waiting.
+	 */
+	private boolean waitForPacket(long milliseconds) {
+		try {
+			lock.wait(milliseconds);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * Waits up to the block timeout until there is free space in the queue.
+	 * 
+	 * <p>The calling thread must own the lock of the queue.</p>
 	 * 
-	 * @param milliseconds The number of milliseconds that the thread should 
-	 *        be sleeping.
+	 * @return {@code true} if there is free space in the queue, 
+	 *         {@code false} otherwise.
 	 */
-	private void sleep(int milliseconds) {
+	private boolean waitForSpace() {
+		long deadLine = System.currentTimeMillis() + blockTimeout;
+		long remaining = blockTimeout;
+		waitingWriters++;
 		try {
-			Thread.sleep(milliseconds);
-		} catch (InterruptedException e) { }
+			while (size == maxLength && remaining > 0) {
+				try {
+					lock.wait(remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				remaining = deadLine - System.currentTimeMillis();
+			}
+		} finally {
+			waitingWriters--;
+		}
+		return size < maxLength;
+	}
+	
+	/**
+	 * Counts the given XBee packet as dropped.
+	 * 
+	 * <p>The calling thread must own the lock of the queue.</p>
+	 * 
+	 * @param xbeePacket The dropped XBee packet.
+	 */
+	private void countDroppedPacket(XBeePacket xbeePacket) {
+		totalDroppedPackets++;
+		APIFrameType frameType = getFrameType(xbeePacket);
+		if (frameType != null)
+			droppedPackets[frameType.ordinal()]++;
+	}
+	
+	/**
+	 * Attaches the given disk spool to the queue to store the packets 
+	 * received while the queue is full.
+	 * 
+	 * <p>The packets already stored in the spool, for example the ones 
+	 * recovered after a crash, are moved to the queue as soon as there is 
+	 * free space.</p>
+	 * 
+	 * @param spool The disk spool, {@code null} to detach the current one.
+	 * 
+	 * @see #getSpool()
+	 * @see XBeePacketsSpool
+	 */
+	public void setSpool(XBeePacketsSpool spool) {
+		synchronized (lock) {
+			this.spool = spool;
+			refillFromSpool();
+		}
+	}
+	
+	/**
+	 * Returns the disk spool attached to the queue.
+	 * 
+	 * @return The disk spool, {@code null} if the queue has no spool.
+	 * 
+	 * @see #setSpool(XBeePacketsSpool)
+	 * @see XBeePacketsSpool
+	 */
+	public XBeePacketsSpool getSpool() {
+		synchronized (lock) {
+			return spool;
+		}
 	}
 	
 	/**
@@ -341,6 +872,237 @@ public class XBeePacketsQueue {
 	 * @return The current size of the XBee packets queue.
 	 */
 	public int getCurrentSize() {
-		return packetsList.size();
+		synchronized (lock) {
+			return size;
+		}
+	}
+	
+	/**
+	 * Returns the policy applied when a packet is added and the queue is 
+	 * full.
+	 * 
+	 * @return The overflow policy of the queue.
+	 * 
+	 * @see QueueOverflowPolicy
+	 */
+	public QueueOverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+	
+	/**
+	 * Returns the maximum time to wait for free space when the overflow 
+	 * policy is {@link QueueOverflowPolicy#BLOCK}.
+	 * 
+	 * @return The block timeout in milliseconds.
+	 */
+	public int getBlockTimeout() {
+		return blockTimeout;
+	}
+	
+	/**
+	 * Returns the total number of packets dropped because the queue was full.
+	 * 
+	 * @return The number of dropped packets.
+	 * 
+	 * @see #getDroppedPackets(APIFrameType)
+	 * @see #getDroppedPacketsByFrameType()
+	 * @see #resetDroppedPackets()
+	 */
+	public long getDroppedPackets() {
+		synchronized (lock) {
+			return totalDroppedPackets;
+		}
+	}
+	
+	/**
+	 * Returns the number of packets of the given frame type dropped because 
+	 * the queue was full.
+	 * 
+	 * @param frameType The frame type.
+	 * 
+	 * @return The number of dropped packets of the given frame type.
+	 * 
+	 * @throws NullPointerException if {@code frameType == null}.
+	 * 
+	 * @see #getDroppedPackets()
+	 * @see com.digi.xbee.api.packet.APIFrameType
+	 */
+	public long getDroppedPackets(APIFrameType frameType) {
+		if (frameType == null)
+			throw new NullPointerException("Frame type cannot be null.");
+		
+		synchronized (lock) {
+			return droppedPackets[frameType.ordinal()];
+		}
+	}
+	
+	/**
+	 * Returns the number of packets dropped because the queue was full 
+	 * grouped by frame type.
+	 * 
+	 * @return A map with the number of dropped packets of every frame type 
+	 *         with at least one dropped packet.
+	 * 
+	 * @see #getDroppedPackets()
+	 * @see com.digi.xbee.api.packet.APIFrameType
+	 */
+	public Map<APIFrameType, Long> getDroppedPacketsByFrameType() {
+		Map<APIFrameType, Long> counters = new LinkedHashMap<APIFrameType, Long>();
+		synchronized (lock) {
+			for (APIFrameType frameType : APIFrameType.values()) {
+				if (droppedPackets[frameType.ordinal()] > 0)
+					counters.put(frameType, droppedPackets[frameType.ordinal()]);
+			}
+		}
+		return counters;
+	}
+	
+	/**
+	 * Resets the counters of dropped packets.
+	 * 
+	 * @see #getDroppedPackets()
+	 */
+	public void resetDroppedPackets() {
+		synchronized (lock) {
+			totalDroppedPackets = 0;
+			for (int i = 0; i < droppedPackets.length; i++)
+				droppedPackets[i] = 0;
+		}
+	}
+	
+	/**
+	 * Helper class that stores a packet of the queue and its links in the 
+	 * queue and in the category and source indexes.
+	 */
+	private static class PacketNode {
+		
+		// Variables.
+		private final XBeePacket xbeePacket;
+		private final long sequence;
+		
+		private final PacketChain[] chains = new PacketChain[LINKS];
+		private final PacketNode[] previous = new PacketNode[LINKS];
+		private final PacketNode[] next = new PacketNode[LINKS];
+		
+		/**
+		 * Class constructor. Instantiates a new {@code PacketNode} object 
+		 * with the given parameters.
+		 * 
+		 * @param xbeePacket The XBee packet.
+		 * @param sequence The arrival order of the packet.
+		 */
+		private PacketNode(XBeePacket xbeePacket, long sequence) {
+			this.xbeePacket = xbeePacket;
+			this.sequence = sequence;
+		}
+	}
+	
+	/**
+	 * Helper class that represents a doubly linked list of nodes in arrival 
+	 * order. Each chain uses its own link of the nodes, so a node can belong 
+	 * to several chains and be removed from all of them in constant time.
+	 */
+	private static class PacketChain {
+		
+		// Variables.
+		private final int link;
+		private final SourceKey key;
+		
+		private PacketNode head;
+		private PacketNode tail;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code PacketChain} object 
+		 * with the given parameters.
+		 * 
+		 * @param link The link of the nodes used by this chain.
+		 * @param key The key of the source index, {@code null} if this is 
+		 *            not a source index.
+		 */
+		private PacketChain(int link, SourceKey key) {
+			this.link = link;
+			this.key = key;
+		}
+		
+		/**
+		 * Appends the given node at the end of the chain.
+		 * 
+		 * @param node The node to append.
+		 */
+		private void append(PacketNode node) {
+			node.chains[link] = this;
+			node.previous[link] = tail;
+			node.next[link] = null;
+			if (tail == null)
+				head = node;
+			else
+				tail.next[link] = node;
+			tail = node;
+		}
+		
+		/**
+		 * Removes the given node from the chain.
+		 * 
+		 * @param node The node to remove.
+		 */
+		private void remove(PacketNode node) {
+			PacketNode previousNode = node.previous[link];
+			PacketNode nextNode = node.next[link];
+			if (previousNode == null)
+				head = nextNode;
+			else
+				previousNode.next[link] = nextNode;
+			if (nextNode == null)
+				tail = previousNode;
+			else
+				nextNode.previous[link] = previousNode;
+			node.chains[link] = null;
+			node.previous[link] = null;
+			node.next[link] = null;
+		}
+	}
+	
+	/**
+	 * Helper class used as key of the source indexes. It combines a 64-bit or 
+	 * 16-bit source address with a packet category.
+	 */
+	private static class SourceKey {
+		
+		// Variables.
+		private final Object address;
+		private final int category;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code SourceKey} object with 
+		 * the given parameters.
+		 * 
+		 * @param address The 64-bit or 16-bit source address.
+		 * @param category The category of the packets.
+		 */
+		private SourceKey(Object address, int category) {
+			this.address = address;
+			this.category = category;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof SourceKey))
+				return false;
+			SourceKey key = (SourceKey)obj;
+			return category == key.category && address.equals(key.address);
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return 31 * address.hashCode() + category;
+		}
 	}
 }
@@ -0,0 +1,726 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.digi.xbee.api.exceptions.InvalidPacketException;
+import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.XBeePacketParser;
+
+/**
+ * This class represents a disk spool of XBee packets used as overflow tier 
+ * of the {@link XBeePacketsQueue}.
+ * 
+ * <p>Packets are appended as raw API frames to segment files stored in the 
+ * given directory and read back in the same order. Disk usage 
+ * is bounded by the size and the maximum number of segments: when all the 
+ * segments are in use, new packets are rejected. Segments are deleted as 
+ * soon as all their packets have been read.</p>
+ * 
+ * <p>Every segment starts with a header containing the write and read 
+ * positions protected by a checksum, and every packet is stored with its 
+ * length and checksum. When a spool is created over a directory containing 
+ * segments, for example after a crash, the pending packets are recovered: 
+ * a segment with a corrupted header is replayed from its beginning, and 
+ * packets written after the last header update are recovered if their 
+ * checksum is valid.</p>
+ * 
+ * <p>Data is written to the files as soon as it is added, so it survives a 
+ * crash of the application. Segments are only forced to the storage device when they are 
+ * completed or the spool is closed.</p>
+ * 
+ * @see XBeePacketsQueue#setSpool(XBeePacketsSpool)
+ * @see com.digi.xbee.api.XBeeDevice#setPacketsSpool(XBeePacketsSpool)
+ */
+public class XBeePacketsSpool {
+	
+	// Constants.
+	/**
+	 * Minimum size of a segment file in bytes (value: {@value}).
+	 */
+	public static final int MIN_SEGMENT_SIZE = 1024;
+	
+	private static final String SEGMENT_PREFIX = "xbee-spool-";
+	private static final String SEGMENT_SUFFIX = ".seg";
+	
+	private static final int MAGIC = 0x58425350;
+	private static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE = 32;
+	private static final int HEADER_CHECKSUM_OFFSET = 24;
+	private static final int RECORD_OVERHEAD = 8;
+	
+	// Variables.
+	private final File directory;
+	
+	private final int segmentSize;
+	private final int maxSegments;
+	
+	private final LinkedList<Segment> segments = new LinkedList<Segment>();
+	
+	private final XBeePacketParser parser = new XBeePacketParser();
+	
+	private long nextSequence = 0;
+	
+	private int size = 0;
+	
+	private boolean closed = false;
+	
+	private Logger logger;
+	
+	/**
+	 * Class constructor. Instantiates a new {@code XBeePacketsSpool} object 
+	 * storing its segments in the given directory and recovers the packets 
+	 * pending in the existing segments.
+	 * 
+	 * @param directory The directory to store the segment files. It is 
+	 *                  created if it does not exist.
+	 * @param segmentSize The size of every segment file in bytes.
+	 * @param maxSegments The maximum number of segment files.
+	 * 
+	 * @throws IllegalArgumentException if {@code segmentSize < MIN_SEGMENT_SIZE} or 
+	 *                                  if {@code maxSegments < 1}.
+	 * @throws IOException if the directory cannot be created or an existing 
+	 *                     segment cannot be opened.
+	 * @throws NullPointerException if {@code directory == null}.
+	 */
+	public XBeePacketsSpool(File directory, int segmentSize, int maxSegments) throws IOException {
+		if (directory == null)
+			throw new NullPointerException("Directory cannot be null.");
+		if (segmentSize < MIN_SEGMENT_SIZE)
+			throw new IllegalArgumentException("Segment size must be at least " + MIN_SEGMENT_SIZE + " bytes.");
+		if (maxSegments < 1)
+			throw new IllegalArgumentException("Maximum number of segments must be greater than 0.");
+		
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxSegments = maxSegments;
+		this.logger = LoggerFactory.getLogger(XBeePacketsSpool.class);
+		
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Could not create the spool directory " + directory + ".");
+		
+		recoverSegments();
+	}
+	
+	/**
+	 * Opens the segments stored in the directory of the spool in sequence 
+	 * order, recovering their pending packets.
+	 * 
+	 * @throws IOException if a segment cannot be opened.
+	 */
+	private void recoverSegments() throws IOException {
+		File[] files = directory.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isFile() && getSequence(file) >= 0;
+			}
+		});
+		if (files == null)
+			throw new IOException("Could not list the spool directory " + directory + ".");
+		
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File file1, File file2) {
+				long sequence1 = getSequence(file1);
+				long sequence2 = getSequence(file2);
+				return sequence1 < sequence2 ? -1 : (sequence1 == sequence2 ? 0 : 1);
+			}
+		});
+		
+		for (int i = 0; i < files.length; i++) {
+			long sequence = getSequence(files[i]);
+			nextSequence = sequence + 1;
+			Segment segment = Segment.open(files[i], sequence);
+			if (segment == null) {
+				logger.warn("Discarding invalid spool segment " + files[i] + ".");
+				deleteFile(files[i]);
+				continue;
+			}
+			// Keep the last segment to continue appending packets.
+			if (segment.isConsumed() && i < files.length - 1) {
+				deleteSegment(segment);
+				continue;
+			}
+			segments.add(segment);
+			size += segment.countRecords();
+		}
+	}
+	
+	/**
+	 * Adds the provided packet at the end of the spool.
+	 * 
+	 * @param xbeePacket The XBee packet to be added to the spool.
+	 * 
+	 * @return {@code true} if the packet was added, {@code false} if the 
+	 *         spool is full, it is closed or the packet could not be written.
+	 * 
+	 * @throws NullPointerException if {@code xbeePacket == null}.
+	 * 
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	public synchronized boolean addPacket(XBeePacket xbeePacket) {
+		if (xbeePacket == null)
+			throw new NullPointerException("XBee packet cannot be null.");
+		if (closed)
+			return false;
+		
+		byte[] frame = xbeePacket.generateByteArray();
+		if (frame.length + RECORD_OVERHEAD > segmentSize - HEADER_SIZE)
+			return false;
+		
+		Segment segment = segments.isEmpty() ? null : segments.getLast();
+		try {
+			if (segment == null || !segment.append(frame)) {
+				if (segments.size() >= maxSegments)
+					return false;
+				if (segment != null)
+					segment.force();
+				segment = Segment.create(new File(directory, getFileName(nextSequence)), nextSequence, segmentSize);
+				nextSequence++;
+				segments.add(segment);
+				if (!segment.append(frame))
+					return false;
+			}
+		} catch (IOException e) {
+			logger.error("Error writing spool segment: " + e.getMessage(), e);
+			return false;
+		}
+		size++;
+		return true;
+	}
+	
+	/**
+	 * Returns and removes the first packet of the spool.
+	 * 
+	 * @return The first packet of the spool, {@code null} if it is empty or 
+	 *         closed.
+	 * 
+	 * @see com.digi.xbee.api.packet.XBeePacket
+	 */
+	public synchronized XBeePacket getFirstPacket() {
+		while (!closed && !segments.isEmpty()) {
+			Segment segment = segments.getFirst();
+			byte[] frame;
+			try {
+				frame = segment.read();
+			} catch (IOException e) {
+				// The pending packets of the segment are lost.
+				logger.error("Error reading spool segment: " + e.getMessage(), e);
+				segment.skip();
+				frame = null;
+			}
+			// Delete the segments already read, except the one being written.
+			if (segment.isConsumed() && segments.size() > 1) {
+				segments.removeFirst();
+				deleteSegment(segment);
+			}
+			if (frame == null) {
+				// Corrupted records may have been skipped.
+				if (segments.size() == 1 && segments.getFirst().isConsumed()) {
+					size = 0;
+					return null;
+				}
+				continue;
+			}
+			size--;
+			try {
+				return parser.parsePacket(frame, OperatingMode.API);
+			} catch (InvalidPacketException e) {
+				logger.error("Discarding invalid spooled packet: " + e.getMessage(), e);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the number of packets stored in the spool.
+	 * 
+	 * @return The number of packets in the spool.
+	 */
+	public synchronized int getCurrentSize() {
+		return size;
+	}
+	
+	/**
+	 * Returns whether the spool does not contain any packet.
+	 * 
+	 * @return {@code true} if the spool is empty, {@code false} otherwise.
+	 */
+	public synchronized boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Returns the disk space used by the segments of the spool.
+	 * 
+	 * @return The disk usage in bytes.
+	 */
+	public synchronized long getDiskUsage() {
+		long usage = 0;
+		for (Segment segment : segments)
+			usage += segment.capacity;
+		return usage;
+	}
+	
+	/**
+	 * Returns the directory where the segments of the spool are stored.
+	 * 
+	 * @return The spool directory.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * Returns the size of every segment file.
+	 * 
+	 * @return The segment size in bytes.
+	 */
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+	
+	/**
+	 * Returns the maximum number of segment files.
+	 * 
+	 * @return The maximum number of segments.
+	 */
+	public int getMaxSegments() {
+		return maxSegments;
+	}
+	
+	/**
+	 * Removes all the packets of the spool and deletes its segments.
+	 */
+	public synchronized void clear() {
+		while (!segments.isEmpty())
+			deleteSegment(segments.removeFirst());
+		size = 0;
+	}
+	
+	/**
+	 * Closes the spool, forcing the pending packets to the storage device. 
+	 * The packets are recovered by the next spool created over the same 
+	 * directory.
+	 */
+	public synchronized void close() {
+		if (closed)
+			return;
+		closed = true;
+		for (Segment segment : segments) {
+			try {
+				segment.force();
+				segment.close();
+			} catch (IOException e) {
+				logger.error("Error closing spool segment: " + e.getMessage(), e);
+			}
+		}
+		segments.clear();
+	}
+	
+	/**
+	 * Closes and deletes the given segment.
+	 * 
+	 * @param segment The segment to delete.
+	 */
+	private void deleteSegment(Segment segment) {
+		try {
+			segment.close();
+		} catch (IOException e) {
+			logger.error("Error closing spool segment: " + e.getMessage(), e);
+		}
+		deleteFile(segment.file);
+	}
+	
+	/**
+	 * Deletes the given file.
+	 * 
+	 * @param file The file to delete.
+	 */
+	private void deleteFile(File file) {
+		if (!file.delete())
+			logger.warn("Could not delete spool segment " + file + ".");
+	}
+	
+	/**
+	 * Returns the name of the segment file with the given sequence number.
+	 * 
+	 * @param sequence The sequence number of the segment.
+	 * 
+	 * @return The name of the segment file.
+	 */
+	private static String getFileName(long sequence) {
+		return SEGMENT_PREFIX + String.format("%016x", sequence) + SEGMENT_SUFFIX;
+	}
+	
+	/**
+	 * Returns the sequence number of the given segment file.
+	 * 
+	 * @param file The segment file.
+	 * 
+	 * @return The sequence number of the segment, {@code -1} if the file is 
+	 *         not a segment file.
+	 */
+	private static long getSequence(File file) {
+		String name = file.getName();
+		if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX))
+			return -1;
+		try {
+			return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()), 16);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Helper class that represents a segment file of the spool.
+	 * 
+	 * <p>The header of the segment contains the magic number, the version, 
+	 * the sequence number, the write position, the read position and the 
+	 * CRC32 of the previous fields. Every record contains the length of the 
+	 * frame, the frame and its CRC32.</p>
+	 * 
+	 * <p>The file is accessed with positional reads and writes instead of 
+	 * being memory-mapped, because a mapped file cannot be deleted on some 
+	 * platforms until the mapping is garbage collected.</p>
+	 */
+	private static class Segment {
+		
+		// Variables.
+		private final File file;
+		private final RandomAccessFile randomAccessFile;
+		private final FileChannel channel;
+		
+		private final long sequence;
+		private final int capacity;
+		
+		private int writePosition = HEADER_SIZE;
+		private int readPosition = HEADER_SIZE;
+		
+		/**
+		 * Class constructor. Instantiates a new {@code Segment} object for 
+		 * the given file.
+		 * 
+		 * @param file The segment file.
+		 * @param randomAccessFile The opened segment file.
+		 * @param sequence The sequence number of the segment.
+		 * @param capacity The size of the segment in bytes.
+		 */
+		private Segment(File file, RandomAccessFile randomAccessFile, long sequence, int capacity) {
+			this.file = file;
+			this.randomAccessFile = randomAccessFile;
+			this.channel = randomAccessFile.getChannel();
+			this.sequence = sequence;
+			this.capacity = capacity;
+		}
+		
+		/**
+		 * Creates a new empty segment file.
+		 * 
+		 * @param file The segment file.
+		 * @param sequence The sequence number of the segment.
+		 * @param capacity The size of the segment in bytes.
+		 * 
+		 * @return The created segment.
+		 * 
+		 * @throws IOException if the file cannot be created.
+		 */
+		private static Segment create(File file, long sequence, int capacity) throws IOException {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				randomAccessFile.setLength(capacity);
+				Segment segment = new Segment(file, randomAccessFile, sequence, capacity);
+				segment.writeHeader();
+				return segment;
+			} catch (IOException e) {
+				randomAccessFile.close();
+				throw e;
+			}
+		}
+		
+		/**
+		 * Opens an existing segment file recovering its positions.
+		 * 
+		 * @param file The segment file.
+		 * @param sequence The sequence number of the segment.
+		 * 
+		 * @return The opened segment, {@code null} if the file is too small 
+		 *         to be a segment.
+		 * 
+		 * @throws IOException if the file cannot be opened.
+		 */
+		private static Segment open(File file, long sequence) throws IOException {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				long length = randomAccessFile.length();
+				if (length < MIN_SEGMENT_SIZE || length > Integer.MAX_VALUE) {
+					randomAccessFile.close();
+					return null;
+				}
+				Segment segment = new Segment(file, randomAccessFile, sequence, (int)length);
+				segment.recover();
+				return segment;
+			} catch (IOException e) {
+				randomAccessFile.close();
+				throw e;
+			}
+		}
+		
+		/**
+		 * Recovers the write and read positions from the header. If the 
+		 * header is corrupted the segment is replayed from its beginning. 
+		 * Valid records written after the last header update are recovered.
+		 * 
+		 * @throws IOException if the file cannot be read or written.
+		 */
+		private void recover() throws IOException {
+			ByteBuffer header = readFully(0, HEADER_SIZE);
+			int write = header.getInt(16);
+			int read = header.getInt(20);
+			boolean validHeader = header.getInt(0) == MAGIC && header.getInt(4) == VERSION 
+					&& header.getLong(8) == sequence && header.getInt(HEADER_CHECKSUM_OFFSET) == getHeaderChecksum(header) 
+					&& HEADER_SIZE <= read && read <= write && write <= capacity;
+			if (validHeader) {
+				writePosition = write;
+				readPosition = read;
+			}
+			int next;
+			while ((next = getRecordEnd(writePosition)) > 0)
+				writePosition = next;
+			writeHeader();
+		}
+		
+		/**
+		 * Appends the given frame to the segment.
+		 * 
+		 * @param frame The frame to append.
+		 * 
+		 * @return {@code true} if the frame was appended, {@code false} if 
+		 *         there is not enough space in the segment.
+		 * 
+		 * @throws IOException if the file cannot be written.
+		 */
+		private boolean append(byte[] frame) throws IOException {
+			if (writePosition + RECORD_OVERHEAD + frame.length > capacity)
+				return false;
+			CRC32 crc = new CRC32();
+			crc.update(frame);
+			ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + frame.length);
+			record.putInt(frame.length);
+			record.put(frame);
+			record.putInt((int)crc.getValue());
+			record.flip();
+			writeFully(record, writePosition);
+			writePosition += RECORD_OVERHEAD + frame.length;
+			writeHeader();
+			return true;
+		}
+		
+		/**
+		 * Reads the next frame of the segment.
+		 * 
+		 * @return The next frame, {@code null} if all the frames have been 
+		 *         read or the next record is corrupted.
+		 * 
+		 * @throws IOException if the file cannot be read or written.
+		 */
+		private byte[] read() throws IOException {
+			if (readPosition >= writePosition)
+				return null;
+			byte[] frame = readRecord(readPosition);
+			if (frame == null || readPosition + RECORD_OVERHEAD + frame.length > writePosition) {
+				// Skip the rest of the segment.
+				skip();
+				writeHeader();
+				return null;
+			}
+			readPosition += RECORD_OVERHEAD + frame.length;
+			writeHeader();
+			return frame;
+		}
+		
+		/**
+		 * Skips all the frames pending to be read.
+		 */
+		private void skip() {
+			readPosition = writePosition;
+		}
+		
+		/**
+		 * Returns whether all the frames of the segment have been read.
+		 * 
+		 * @return {@code true} if all the frames have been read, 
+		 *         {@code false} otherwise.
+		 */
+		private boolean isConsumed() {
+			return readPosition >= writePosition;
+		}
+		
+		/**
+		 * Returns the number of records pending to be read.
+		 * 
+		 * @return The number of pending records.
+		 * 
+		 * @throws IOException if the file cannot be read.
+		 */
+		private int countRecords() throws IOException {
+			int count = 0;
+			int position = readPosition;
+			while (position < writePosition) {
+				position = getRecordEnd(position);
+				if (position < 0)
+					break;
+				count++;
+			}
+			return count;
+		}
+		
+		/**
+		 * Returns the end position of the record starting at the given 
+		 * position.
+		 * 
+		 * @param position The start position of the record.
+		 * 
+		 * @return The end position of the record, {@code -1} if there is not 
+		 *         a valid record at the given position.
+		 * 
+		 * @throws IOException if the file cannot be read.
+		 */
+		private int getRecordEnd(int position) throws IOException {
+			byte[] frame = readRecord(position);
+			if (frame == null)
+				return -1;
+			return position + RECORD_OVERHEAD + frame.length;
+		}
+		
+		/**
+		 * Returns the frame of the record starting at the given position.
+		 * 
+		 * @param position The start position of the record.
+		 * 
+		 * @return The frame of the record, {@code null} if there is not a 
+		 *         valid record at the given position.
+		 * 
+		 * @throws IOException if the file cannot be read.
+		 */
+		private byte[] readRecord(int position) throws IOException {
+			if (position + RECORD_OVERHEAD > capacity)
+				return null;
+			int length = readFully(position, 4).getInt();
+			if (length <= 0 || length > capacity - position - RECORD_OVERHEAD)
+				return null;
+			ByteBuffer record = readFully(position + 4, length + 4);
+			byte[] frame = new byte[length];
+			record.get(frame);
+			CRC32 crc = new CRC32();
+			crc.update(frame);
+			if (record.getInt() != (int)crc.getValue())
+				return null;
+			return frame;
+		}
+		
+		/**
+		 * Writes the header of the segment with the current positions.
+		 * 
+		 * @throws IOException if the file cannot be written.
+		 */
+		private void writeHeader() throws IOException {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(0, MAGIC);
+			header.putInt(4, VERSION);
+			header.putLong(8, sequence);
+			header.putInt(16, writePosition);
+			header.putInt(20, readPosition);
+			header.putInt(HEADER_CHECKSUM_OFFSET, getHeaderChecksum(header));
+			writeFully(header, 0);
+		}
+		
+		/**
+		 * Returns the CRC32 of the fields of the given header.
+		 * 
+		 * @param header The header of the segment.
+		 * 
+		 * @return The checksum of the header.
+		 */
+		private static int getHeaderChecksum(ByteBuffer header) {
+			CRC32 crc = new CRC32();
+			crc.update(header.array(), 0, HEADER_CHECKSUM_OFFSET);
+			return (int)crc.getValue();
+		}
+		
+		/**
+		 * Reads the given number of bytes at the given position of the file.
+		 * 
+		 * @param position The position to read from.
+		 * @param length The number of bytes to read.
+		 * 
+		 * @return The read bytes, ready to be consumed.
+		 * 
+		 * @throws IOException if the file cannot be read or it ends before 
+		 *                     the requested bytes.
+		 */
+		private ByteBuffer readFully(int position, int length) throws IOException {
+			ByteBuffer data = ByteBuffer.allocate(length);
+			while (data.hasRemaining()) {
+				if (channel.read(data, position + data.position()) < 0)
+					throw new EOFException("Unexpected end of spool segment " + file + ".");
+			}
+			data.flip();
+			return data;
+		}
+		
+		/**
+		 * Writes the given bytes at the given position of the file.
+		 * 
+		 * @param data The bytes to write, from its current position.
+		 * @param position The position to write to.
+		 * 
+		 * @throws IOException if the file cannot be written.
+		 */
+		private void writeFully(ByteBuffer data, int position) throws IOException {
+			int offset = position - data.position();
+			while (data.hasRemaining())
+				channel.write(data, offset + data.position());
+		}
+		
+		/**
+		 * Forces the content of the segment to the storage device.
+		 * 
+		 * @throws IOException if the content cannot be forced.
+		 */
+		private void force() throws IOException {
+			channel.force(false);
+		}
+		
+		/**
+		 * Closes the segment file.
+		 * 
+		 * @throws IOException if the file cannot be closed.
+		 */
+		private void close() throws IOException {
+			randomAccessFile.close();
+		}
+	}
+}
@@ -0,0 +1,350 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * This class compresses the data sent to remote XBee devices and 
+ * decompresses the data received from them.
+ * 
+ * <p>Data is compressed with raw deflate, optionally using a preset 
+ * dictionary shared by both ends. Compressed payloads start with a header of 
+ * {@value #HEADER_SIZE} bytes: a marker byte ({@code 0xF6}) and the ID of the 
+ * dictionary, {@link #NO_DICTIONARY} if no dictionary was used.</p>
+ * 
+ * <p>Data is compressed only when it saves bytes; otherwise it is sent as 
+ * is. Uncompressed data that starts with the marker byte is sent with the 
+ * header {@code 0xF6 0xFF}, so the receiver does not confuse it with 
+ * compressed data.</p>
+ * 
+ * <p>Every destination may use its own dictionary (see 
+ * {@link #setDestinationDictionary(XBee64BitAddress, int)}). The receiver 
+ * must have the dictionaries of its senders registered with the same 
+ * IDs.</p>
+ * 
+ * @see com.digi.xbee.api.XBeeDevice#setPayloadCodec(XBeePayloadCodec)
+ */
+public class XBeePayloadCodec {
+	
+	// Constants.
+	/**
+	 * Size of the header of compressed payloads in bytes ({@value}).
+	 */
+	public static final int HEADER_SIZE = 2;
+	
+	/**
+	 * Dictionary ID of the data compressed without dictionary ({@value}).
+	 */
+	public static final int NO_DICTIONARY = 0;
+	
+	/**
+	 * Maximum ID of a dictionary ({@value}).
+	 */
+	public static final int MAX_DICTIONARY_ID = 254;
+	
+	/**
+	 * Default maximum size of decompressed data ({@value} bytes).
+	 */
+	public static final int DEFAULT_MAX_DECODED_SIZE = 65536;
+	
+	static final byte MARKER = (byte)0xF6;
+	
+	private static final int ID_UNCOMPRESSED = 0xFF;
+	
+	// Variables.
+	private final HashMap<Integer, byte[]> dictionaries = new HashMap<Integer, byte[]>();
+	private final HashMap<XBee64BitAddress, Integer> destinationDictionaries = new HashMap<XBee64BitAddress, Integer>();
+	
+	private int defaultDictionary = NO_DICTIONARY;
+	private int maxDecodedSize = DEFAULT_MAX_DECODED_SIZE;
+	
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+	private final Inflater inflater = new Inflater(true);
+	
+	private final Object lock = new Object();
+	
+	/**
+	 * Class constructor. Instantiates a new {@code XBeePayloadCodec} object 
+	 * that compresses data without dictionary.
+	 */
+	public XBeePayloadCodec() {
+	}
+	
+	/**
+	 * Registers a preset dictionary with the given ID.
+	 * 
+	 * <p>A good dictionary contains the strings that appear most often in 
+	 * the data, with the most frequent ones at the end.</p>
+	 * 
+	 * @param id The ID of the dictionary.
+	 * @param dictionary The dictionary.
+	 * 
+	 * @throws IllegalArgumentException if {@code id < 1} or 
+	 *                                  if {@code id > MAX_DICTIONARY_ID}.
+	 * @throws NullPointerException if {@code dictionary == null}.
+	 * 
+	 * @see #removeDictionary(int)
+	 * @see #MAX_DICTIONARY_ID
+	 */
+	public void addDictionary(int id, byte[] dictionary) {
+		checkDictionaryID(id);
+		if (dictionary == null)
+			throw new NullPointerException("Dictionary cannot be null.");
+		
+		synchronized (lock) {
+			dictionaries.put(id, Arrays.copyOf(dictionary, dictionary.length));
+		}
+	}
+	
+	/**
+	 * Unregisters the dictionary with the given ID.
+	 * 
+	 * <p>Destinations using the dictionary are sent data compressed without 
+	 * dictionary.</p>
+	 * 
+	 * @param id The ID of the dictionary.
+	 * 
+	 * @see #addDictionary(int, byte[])
+	 */
+	public void removeDictionary(int id) {
+		synchronized (lock) {
+			dictionaries.remove(id);
+		}
+	}
+	
+	/**
+	 * Sets the dictionary used for the destinations without their own 
+	 * dictionary.
+	 * 
+	 * @param id The ID of the dictionary, {@link #NO_DICTIONARY} not to use 
+	 *           any dictionary.
+	 * 
+	 * @throws IllegalArgumentException if {@code id < 0} or 
+	 *                                  if {@code id > MAX_DICTIONARY_ID}.
+	 * 
+	 * @see #addDictionary(int, byte[])
+	 * @see #getDefaultDictionary()
+	 */
+	public void setDefaultDictionary(int id) {
+		if (id != NO_DICTIONARY)
+			checkDictionaryID(id);
+		
+		synchronized (lock) {
+			defaultDictionary = id;
+		}
+	}
+	
+	/**
+	 * Returns the dictionary used for the destinations without their own 
+	 * dictionary.
+	 * 
+	 * @return The ID of the dictionary, {@link #NO_DICTIONARY} if no 
+	 *         dictionary is used.
+	 * 
+	 * @see #setDefaultDictionary(int)
+	 */
+	public int getDefaultDictionary() {
+		synchronized (lock) {
+			return defaultDictionary;
+		}
+	}
+	
+	/**
+	 * Sets the dictionary used to compress the data sent to the given 
+	 * destination.
+	 * 
+	 * @param address The 64-bit address of the destination.
+	 * @param id The ID of the dictionary, {@link #NO_DICTIONARY} not to use 
+	 *           any dictionary, or {@code -1} to use the default one.
+	 * 
+	 * @throws IllegalArgumentException if {@code id < -1} or 
+	 *                                  if {@code id > MAX_DICTIONARY_ID}.
+	 * @throws NullPointerException if {@code address == null}.
+	 * 
+	 * @see #addDictionary(int, byte[])
+	 * @see #setDefaultDictionary(int)
+	 */
+	public void setDestinationDictionary(XBee64BitAddress address, int id) {
+		if (address == null)
+			throw new NullPointerException("Address cannot be null.");
+		if (id != -1 && id != NO_DICTIONARY)
+			checkDictionaryID(id);
+		
+		synchronized (lock) {
+			if (id == -1)
+				destinationDictionaries.remove(address);
+			else
+				destinationDictionaries.put(address, id);
+		}
+	}
+	
+	/**
+	 * Returns the maximum size of decompressed data.
+	 * 
+	 * @return The maximum decoded size in bytes.
+	 * 
+	 * @see #setMaxDecodedSize(int)
+	 */
+	public int getMaxDecodedSize() {
+		synchronized (lock) {
+			return maxDecodedSize;
+		}
+	}
+	
+	/**
+	 * Sets the maximum size of decompressed data. Payloads that decompress 
+	 * to more bytes are discarded.
+	 * 
+	 * @param maxDecodedSize The maximum decoded size in bytes.
+	 * 
+	 * @throws IllegalArgumentException if {@code maxDecodedSize < 1}.
+	 * 
+	 * @see #getMaxDecodedSize()
+	 */
+	public void setMaxDecodedSize(int maxDecodedSize) {
+		if (maxDecodedSize < 1)
+			throw new IllegalArgumentException("Maximum decoded size must be greater than 0.");
+		
+		synchronized (lock) {
+			this.maxDecodedSize = maxDecodedSize;
+		}
+	}
+	
+	/**
+	 * Compresses the data to send to the given destination if it saves 
+	 * bytes.
+	 * 
+	 * @param destination The 64-bit address of the destination, 
+	 *                    {@code null} to use the default dictionary.
+	 * @param data The data to send.
+	 * 
+	 * @return The payload to send: the compressed data with its header, 
+	 *         or the data as is if compression does not save bytes.
+	 * 
+	 * @throws NullPointerException if {@code data == null}.
+	 * 
+	 * @see #decode(byte[])
+	 */
+	public byte[] encode(XBee64BitAddress destination, byte[] data) {
+		if (data == null)
+			throw new NullPointerException("Data cannot be null.");
+		
+		synchronized (lock) {
+			Integer id = destination == null ? null : destinationDictionaries.get(destination);
+			int dictionaryID = id == null ? defaultDictionary : id;
+			byte[] dictionary = dictionaries.get(dictionaryID);
+			if (dictionary == null)
+				dictionaryID = NO_DICTIONARY;
+			
+			// The compressed payload must be smaller than the data.
+			byte[] payload = new byte[Math.max(HEADER_SIZE, data.length)];
+			deflater.reset();
+			if (dictionary != null)
+				deflater.setDictionary(dictionary);
+			deflater.setInput(data);
+			deflater.finish();
+			int length = HEADER_SIZE;
+			while (!deflater.finished() && length < payload.length - 1) {
+				int written = deflater.deflate(payload, length, payload.length - 1 - length);
+				if (written == 0)
+					break;
+				length += written;
+			}
+			if (deflater.finished()) {
+				payload[0] = MARKER;
+				payload[1] = (byte)dictionaryID;
+				return Arrays.copyOf(payload, length);
+			}
+		}
+		
+		if (data.length == 0 || data[0] != MARKER)
+			return data;
+		byte[] payload = new byte[HEADER_SIZE + data.length];
+		payload[0] = MARKER;
+		payload[1] = (byte)ID_UNCOMPRESSED;
+		System.arraycopy(data, 0, payload, HEADER_SIZE, data.length);
+		return payload;
+	}
+	
+	/**
+	 * Decompresses the given received payload.
+	 * 
+	 * @param payload The received payload.
+	 * 
+	 * @return The data of the payload, or {@code null} if the payload is 
+	 *         corrupted, its dictionary is not registered or it exceeds the 
+	 *         maximum decoded size.
+	 * 
+	 * @throws NullPointerException if {@code payload == null}.
+	 * 
+	 * @see #encode(XBee64BitAddress, byte[])
+	 */
+	public byte[] decode(byte[] payload) {
+		if (payload == null)
+			throw new NullPointerException("Payload cannot be null.");
+		if (payload.length < HEADER_SIZE || payload[0] != MARKER)
+			return payload;
+		
+		int dictionaryID = payload[1] & 0xFF;
+		if (dictionaryID == ID_UNCOMPRESSED)
+			return Arrays.copyOfRange(payload, HEADER_SIZE, payload.length);
+		
+		synchronized (lock) {
+			byte[] dictionary = null;
+			if (dictionaryID != NO_DICTIONARY) {
+				dictionary = dictionaries.get(dictionaryID);
+				if (dictionary == null)
+					return null;
+			}
+			
+			inflater.reset();
+			if (dictionary != null)
+				inflater.setDictionary(dictionary);
+			inflater.setInput(payload, HEADER_SIZE, payload.length - HEADER_SIZE);
+			
+			ByteArrayOutputStream data = new ByteArrayOutputStream(payload.length * 4);
+			byte[] buffer = new byte[256];
+			try {
+				while (!inflater.finished()) {
+					int length = inflater.inflate(buffer);
+					if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+						return null;
+					data.write(buffer, 0, length);
+					if (data.size() > maxDecodedSize)
+						return null;
+				}
+			} catch (DataFormatException e) {
+				return null;
+			}
+			return data.toByteArray();
+		}
+	}
+	
+	/**
+	 * Checks that the given dictionary ID is valid.
+	 * 
+	 * @param id The ID of the dictionary.
+	 * 
+	 * @throws IllegalArgumentException if {@code id < 1} or 
+	 *                                  if {@code id > MAX_DICTIONARY_ID}.
+	 */
+	private static void checkDictionaryID(int id) {
+		if (id < 1 || id > MAX_DICTIONARY_ID)
+			throw new IllegalArgumentException("Dictionary ID must be between 1 and " + MAX_DICTIONARY_ID + ".");
+	}
+}
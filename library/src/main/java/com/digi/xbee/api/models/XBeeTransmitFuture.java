@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.digi.xbee.api.exceptions.XBeeException;
+import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.common.TransmitStatusPacket;
+import com.digi.xbee.api.packet.raw.TXStatusPacket;
+
+/**
+ * This class represents the pending result of an asynchronous transmission. 
+ * It is completed when the transmit status frame with the frame ID of the 
+ * transmission is received.
+ * 
+ * <p>The result of the future is the transmit status reported by the local 
+ * XBee device, including failure statuses. If no transmit status is 
+ * received, {@link #get()} throws an {@code ExecutionException} whose cause 
+ * is the {@link XBeeException} that prevented the transmission from 
+ * completing, such as a {@link com.digi.xbee.api.exceptions.TimeoutException}.
+ * </p>
+ * 
+ * <p>The transmit retry count and the discovery status are only reported 
+ * by the transmit status frames of ZigBee and DigiMesh protocols.</p>
+ * 
+ * @see com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(com.digi.xbee.api.RemoteXBeeDevice, byte[])
+ * @see XBeeTransmitStatus
+ */
+public class XBeeTransmitFuture implements Future<XBeeTransmitStatus> {
+	
+	// Variables.
+	private XBeeTransmitStatus transmitStatus;
+	private XBeeDiscoveryStatus discoveryStatus;
+	
+	private int transmitRetryCount = 0;
+	
+	private XBeeException exception;
+	
+	private boolean done = false;
+	private boolean cancelled = false;
+	
+	private final Object lock = new Object();
+	
+	/**
+	 * Class constructor. Instantiates a new {@code XBeeTransmitFuture} object 
+	 * pending to be completed.
+	 */
+	public XBeeTransmitFuture() {
+	}
+	
+	/**
+	 * Completes this future with the given transmit status packet.
+	 * 
+	 * <p><b>This is only for internal use.</b></p>
+	 * 
+	 * @param statusPacket The received {@code TransmitStatusPacket} or 
+	 *                     {@code TXStatusPacket}.
+	 * 
+	 * @return {@code true} if this call completed the future, {@code false} 
+	 *         if it was already done or the packet is not a transmit status 
+	 *         packet.
+	 * 
+	 * @see com.digi.xbee.api.packet.common.TransmitStatusPacket
+	 * @see com.digi.xbee.api.packet.raw.TXStatusPacket
+	 */
+	public boolean complete(XBeePacket statusPacket) {
+		synchronized (lock) {
+			if (done)
+				return false;
+			if (statusPacket instanceof TransmitStatusPacket) {
+				TransmitStatusPacket packet = (TransmitStatusPacket)statusPacket;
+				transmitStatus = packet.getTransmitStatus();
+				transmitRetryCount = packet.getTransmitRetryCount();
+				discoveryStatus = packet.getDiscoveryStatus();
+			} else if (statusPacket instanceof TXStatusPacket)
+				transmitStatus = ((TXStatusPacket)statusPacket).getTransmitStatus();
+			else
+				return false;
+			done = true;
+			lock.notifyAll();
+			return true;
+		}
+	}
+	
+	/**
+	 * Completes this future with the given exception.
+	 * 
+	 * <p><b>This is only for internal use.</b></p>
+	 * 
+	 * @param exception The exception that prevented the transmission from 
+	 *                  completing.
+	 * 
+	 * @return {@code true} if this call completed the future, {@code false} 
+	 *         if it was already done.
+	 * 
+	 * @throws NullPointerException if {@code exception == null}.
+	 */
+	public boolean fail(XBeeException exception) {
+		if (exception == null)
+			throw new NullPointerException("Exception cannot be null.");
+		
+		synchronized (lock) {
+			if (done)
+				return false;
+			this.exception = exception;
+			done = true;
+			lock.notifyAll();
+			return true;
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.Future#cancel(boolean)
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized (lock) {
+			if (done)
+				return false;
+			cancelled = true;
+			done = true;
+			lock.notifyAll();
+			return true;
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.Future#isCancelled()
+	 */
+	@Override
+	public boolean isCancelled() {
+		synchronized (lock) {
+			return cancelled;
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.Future#isDone()
+	 */
+	@Override
+	public boolean isDone() {
+		synchronized (lock) {
+			return done;
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.Future#get()
+	 */
+	@Override
+	public XBeeTransmitStatus get() throws InterruptedException, ExecutionException {
+		synchronized (lock) {
+			while (!done)
+				lock.wait();
+			return getResult();
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.concurrent.Future#get(long, java.util.concurrent.TimeUnit)
+	 */
+	@Override
+	public XBeeTransmitStatus get(long timeout, TimeUnit unit) throws InterruptedException, 
+			ExecutionException, java.util.concurrent.TimeoutException {
+		synchronized (lock) {
+			long deadLine = System.currentTimeMillis() + unit.toMillis(timeout);
+			long remaining = unit.toMillis(timeout);
+			while (!done && remaining > 0) {
+				lock.wait(remaining);
+				remaining = deadLine - System.currentTimeMillis();
+			}
+			if (!done)
+				throw new java.util.concurrent.TimeoutException();
+			return getResult();
+		}
+	}
+	
+	/**
+	 * Returns the result of this future once it is done.
+	 * 
+	 * <p>The calling thread must own the lock of the future.</p>
+	 * 
+	 * @return The transmit status.
+	 * 
+	 * @throws CancellationException if the future was cancelled.
+	 * @throws ExecutionException if the future completed with an exception.
+	 */
+	private XBeeTransmitStatus getResult() throws ExecutionException {
+		if (cancelled)
+			throw new CancellationException();
+		if (exception != null)
+			throw new ExecutionException(exception);
+		return transmitStatus;
+	}
+	
+	/**
+	 * Returns whether the transmission completed with success status.
+	 * 
+	 * @return {@code true} if the transmit status was received and it is 
+	 *         {@link XBeeTransmitStatus#SUCCESS}, {@code false} otherwise.
+	 */
+	public boolean isSuccess() {
+		synchronized (lock) {
+			return done && transmitStatus == XBeeTransmitStatus.SUCCESS;
+		}
+	}
+	
+	/**
+	 * Returns the transmit status without waiting for the future to be 
+	 * completed.
+	 * 
+	 * @return The transmit status, {@code null} if the future is not 
+	 *         completed with a transmit status.
+	 * 
+	 * @see #get()
+	 */
+	public XBeeTransmitStatus getTransmitStatus() {
+		synchronized (lock) {
+			return transmitStatus;
+		}
+	}
+	
+	/**
+	 * Returns the number of application transmission retries reported by the 
+	 * transmit status.
+	 * 
+	 * @return The transmit retry count, {@code 0} if it is not reported or 
+	 *         the future is not completed with a transmit status.
+	 */
+	public int getTransmitRetryCount() {
+		synchronized (lock) {
+			return transmitRetryCount;
+		}
+	}
+	
+	/**
+	 * Returns the discovery status reported by the transmit status.
+	 * 
+	 * @return The discovery status, {@code null} if it is not reported or 
+	 *         the future is not completed with a transmit status.
+	 * 
+	 * @see XBeeDiscoveryStatus
+	 */
+	public XBeeDiscoveryStatus getDiscoveryStatus() {
+		synchronized (lock) {
+			return discoveryStatus;
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		synchronized (lock) {
+			if (!done)
+				return "Pending";
+			if (cancelled)
+				return "Cancelled";
+			if (exception != null)
+				return "Failed: " + exception.getMessage();
+			return transmitStatus + " (" + transmitRetryCount + " retries)";
+		}
+	}
+}
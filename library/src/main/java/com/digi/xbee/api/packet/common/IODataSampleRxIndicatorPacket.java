@@ -53,7 +53,7 @@ public class IODataSampleRxIndicatorPacket extends XBeeAPIPacket {
 	private final XBee64BitAddress sourceAddress64;
 	private final XBee16BitAddress sourceAddress16;
 	
-	private final IOSample ioSample;
+	private IOSample ioSample;
 	
 	private final int receiveOptions;
 	
@@ -145,10 +145,10 @@ public class IODataSampleRxIndicatorPacket extends XBeeAPIPacket {
 		this.sourceAddress16 = sourceAddress16;
 		this.receiveOptions = receiveOptions;
 		this.rfData = rfData;
-		if (rfData != null)
-			ioSample = new IOSample(rfData);
-		else
-			ioSample = null;
+		// The IO sample is created the first time it is requested, so only 
+		// the payload length is checked here.
+		if (rfData != null && rfData.length < 5)
+			throw new IllegalArgumentException("IO sample payload must be longer than 4.");
 		this.logger = LoggerFactory.getLogger(RX64Packet.class);
 	}
 	
@@ -230,7 +230,9 @@ public class IODataSampleRxIndicatorPacket extends XBeeAPIPacket {
 	 * 
 	 * @see com.digi.xbee.api.io.IOSample
 	 */
-	public IOSample getIOSample() {
+	public synchronized IOSample getIOSample() {
+		if (ioSample == null && rfData != null)
+			ioSample = new IOSample(rfData);
 		return ioSample;
 	}
 	
@@ -262,6 +264,7 @@ public class IODataSampleRxIndicatorPacket extends XBeeAPIPacket {
 		parameters.put("64-bit source address", HexUtils.prettyHexString(sourceAddress64.toString()));
 		parameters.put("16-bit source address", HexUtils.prettyHexString(sourceAddress16.toString()));
 		parameters.put("Receive options", HexUtils.prettyHexString(HexUtils.integerToHexString(receiveOptions, 1)));
+		IOSample ioSample = getIOSample();
 		if (ioSample != null) {
 			parameters.put("Number of samples", HexUtils.prettyHexString(HexUtils.integerToHexString(1, 1))); // There is always 1 sample.
 			parameters.put("Digital channel mask", HexUtils.prettyHexString(HexUtils.integerToHexString(ioSample.getDigitalMask(), 2)));
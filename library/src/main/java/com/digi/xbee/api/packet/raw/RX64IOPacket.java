@@ -43,7 +43,7 @@ public class RX64IOPacket extends XBeeAPIPacket {
 	// Variables.
 	private final XBee64BitAddress sourceAddress64;
 	
-	private final IOSample ioSample;
+	private IOSample ioSample;
 	
 	private final int rssi;
 	private final int receiveOptions;
@@ -137,10 +137,10 @@ public class RX64IOPacket extends XBeeAPIPacket {
 		this.rssi = rssi;
 		this.receiveOptions = receiveOptions;
 		this.rfData = rfData;
-		if (rfData != null)
-			ioSample = new IOSample(rfData);
-		else
-			ioSample = null;
+		// The IO sample is created the first time it is requested, so only 
+		// the payload length is checked here.
+		if (rfData != null && rfData.length < 5)
+			throw new IllegalArgumentException("IO sample payload must be longer than 4.");
 		this.logger = LoggerFactory.getLogger(RX64Packet.class);
 	}
 	
@@ -221,7 +221,9 @@ public class RX64IOPacket extends XBeeAPIPacket {
 	 * 
 	 * @see com.digi.xbee.api.io.IOSample
 	 */
-	public IOSample getIOSample() {
+	public synchronized IOSample getIOSample() {
+		if (ioSample == null && rfData != null)
+			ioSample = new IOSample(rfData);
 		return ioSample;
 	}
 	
@@ -253,6 +255,7 @@ public class RX64IOPacket extends XBeeAPIPacket {
 		parameters.put("64-bit source address", HexUtils.prettyHexString(sourceAddress64.toString()));
 		parameters.put("RSSI", HexUtils.prettyHexString(HexUtils.integerToHexString(rssi, 1)));
 		parameters.put("Options", HexUtils.prettyHexString(HexUtils.integerToHexString(receiveOptions, 1)));
+		IOSample ioSample = getIOSample();
 		if (ioSample != null) {
 			parameters.put("Number of samples", HexUtils.prettyHexString(HexUtils.integerToHexString(1, 1))); // There is always 1 sample.
 			parameters.put("Digital channel mask", HexUtils.prettyHexString(HexUtils.integerToHexString(ioSample.getDigitalMask(), 2)));
@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import com.digi.xbee.api.connection.serial.SerialPortRxTx;
+import com.digi.xbee.api.listeners.IPacketReceiveListener;
+import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.packet.raw.RX64IOPacket;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({Raw802Device.class})
+public class ReadIOSample802ConcurrencyTest {
+	
+	// Constants.
+	private static final String METHOD_RECEIVE_RAW_IO_PACKET = "receiveRaw802IOPacket";
+	
+	private static final XBee64BitAddress LOCAL_ADDRESS = new XBee64BitAddress("0013A20040A9E77E");
+	private static final XBee64BitAddress OTHER_ADDRESS = new XBee64BitAddress("0013A20040A9E77F");
+	
+	private static final int THREADS = 4;
+	
+	// Variables.
+	private Raw802Device raw802Device;
+	
+	private volatile IPacketReceiveListener ioPacketListener;
+	
+	private ExecutorService executor;
+	
+	@Before
+	public void setup() throws Exception {
+		// Mock an RxTx IConnectionInterface.
+		SerialPortRxTx mockedPort = Mockito.mock(SerialPortRxTx.class);
+		Mockito.when(mockedPort.isOpen()).thenReturn(true);
+		
+		// Instantiate an Raw802Device object with basic parameters.
+		Raw802Device device = new Raw802Device(mockedPort);
+		Whitebox.setInternalState(device, "xbee64BitAddress", LOCAL_ADDRESS);
+		raw802Device = PowerMockito.spy(device);
+		
+		// Keep the IO packet listener registered by the device.
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				ioPacketListener = (IPacketReceiveListener)invocation.getArguments()[0];
+				return null;
+			}
+		}).when(raw802Device).addPacketListener(Mockito.any(IPacketReceiveListener.class));
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				ioPacketListener = null;
+				return null;
+			}
+		}).when(raw802Device).removePacketListener(Mockito.any(IPacketReceiveListener.class));
+		
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+	
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Creates an 802.15.4 IO packet with the given source address and a 
+	 * payload containing the given value.
+	 * 
+	 * @param sourceAddress Source 64-bit address.
+	 * @param value Value stored in the payload.
+	 * 
+	 * @return The IO packet.
+	 */
+	private RX64IOPacket createIOPacket(XBee64BitAddress sourceAddress, int value) {
+		return new RX64IOPacket(sourceAddress, 40, 0, new byte[]{0x01, 0x00, 0x01, 0x00, (byte)value});
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.Raw802Device#readIOSample()}.
+	 * 
+	 * <p>Verify that an IO packet received before the {@code IS} command 
+	 * returns is not lost.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testIOPacketReceivedBeforeCommandReturns() throws Exception {
+		// Setup the resources for the test.
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				ioPacketListener.packetReceived(createIOPacket(LOCAL_ADDRESS, 7));
+				return null;
+			}
+		}).when(raw802Device).executeParameter("IS");
+		
+		// Call the method under test.
+		byte[] payload = Whitebox.invokeMethod(raw802Device, METHOD_RECEIVE_RAW_IO_PACKET);
+		
+		// Verify the result.
+		assertNotNull(payload);
+		assertEquals(7, payload[4]);
+		assertNull(ioPacketListener);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.Raw802Device#readIOSample()}.
+	 * 
+	 * <p>Verify that IO packets sent by other devices do not complete the 
+	 * request.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testIOPacketFromOtherDevice() throws Exception {
+		// Setup the resources for the test.
+		raw802Device.setReceiveTimeout(200);
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				ioPacketListener.packetReceived(createIOPacket(OTHER_ADDRESS, 7));
+				return null;
+			}
+		}).when(raw802Device).executeParameter("IS");
+		
+		// Call the method under test.
+		byte[] payload = Whitebox.invokeMethod(raw802Device, METHOD_RECEIVE_RAW_IO_PACKET);
+		
+		// Verify the result.
+		assertNull(payload);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.Raw802Device#readIOSample()}.
+	 * 
+	 * <p>Verify that concurrent requests are queued and every IO packet 
+	 * completes exactly one request.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		// Setup the resources for the test. Every IS command is answered 
+		// asynchronously with a different value.
+		final AtomicInteger counter = new AtomicInteger();
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				final int value = counter.incrementAndGet();
+				new Thread() {
+					public void run() {
+						try {
+							Thread.sleep(50);
+						} catch (InterruptedException e) {}
+						ioPacketListener.packetReceived(createIOPacket(LOCAL_ADDRESS, value));
+					}
+				}.start();
+				return null;
+			}
+		}).when(raw802Device).executeParameter("IS");
+		
+		// Call the method under test.
+		List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(executor.submit(new Callable<byte[]>() {
+				public byte[] call() throws Exception {
+					return Whitebox.invokeMethod(raw802Device, METHOD_RECEIVE_RAW_IO_PACKET);
+				}
+			}));
+		}
+		
+		// Verify the result.
+		Set<Byte> values = new HashSet<Byte>();
+		for (Future<byte[]> future:futures) {
+			byte[] payload = future.get();
+			assertNotNull(payload);
+			values.add(payload[4]);
+		}
+		assertEquals(THREADS, values.size());
+		assertNull(ioPacketListener);
+	}
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.digi.xbee.api.connection.serial.SerialPortRxTx;
+import com.digi.xbee.api.exceptions.TimeoutException;
+import com.digi.xbee.api.io.IOSample;
+import com.digi.xbee.api.models.XBeeProtocol;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({XBeeDevice.class})
+public class ReadIOSampleSingleFlightTest {
+	
+	// Constants.
+	private static final String PARAMETER_IS = "IS";
+	
+	private static final byte[] IO_SAMPLE_PAYLOAD = new byte[]{0x01, 0x00, 0x01, 0x02, 0x00, 0x01, 0x01, 0x55};
+	
+	private static final int THREADS = 5;
+	
+	// Variables.
+	private XBeeDevice xbeeDevice;
+	
+	private ExecutorService executor;
+	
+	@Before
+	public void setup() throws Exception {
+		// Mock an RxTx IConnectionInterface.
+		SerialPortRxTx mockedPort = Mockito.mock(SerialPortRxTx.class);
+		Mockito.when(mockedPort.isOpen()).thenReturn(true);
+		
+		// Instantiate an XBeeDevice object with basic parameters.
+		xbeeDevice = PowerMockito.spy(new XBeeDevice(mockedPort));
+		Mockito.doReturn(XBeeProtocol.ZIGBEE).when(xbeeDevice).getXBeeProtocol();
+		
+		executor = Executors.newFixedThreadPool(THREADS);
+	}
+	
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Creates an answer that waits the given time before returning the IO 
+	 * sample payload or throwing the given exception.
+	 * 
+	 * @param delay Time to wait in milliseconds.
+	 * @param exception Exception to throw, {@code null} to return the payload.
+	 * 
+	 * @return The answer.
+	 */
+	private Answer<byte[]> createDelayedAnswer(final long delay, final Exception exception) {
+		return new Answer<byte[]>() {
+			public byte[] answer(InvocationOnMock invocation) throws Throwable {
+				Thread.sleep(delay);
+				if (exception != null)
+					throw exception;
+				return IO_SAMPLE_PAYLOAD;
+			}
+		};
+	}
+	
+	/**
+	 * Calls {@code readIOSample()} from several threads at the same time.
+	 * 
+	 * @return The futures of the calls.
+	 */
+	private List<Future<IOSample>> readConcurrently() {
+		List<Future<IOSample>> futures = new ArrayList<Future<IOSample>>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(executor.submit(new Callable<IOSample>() {
+				public IOSample call() throws Exception {
+					return xbeeDevice.readIOSample();
+				}
+			}));
+		}
+		return futures;
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#readIOSample()}.
+	 * 
+	 * <p>Verify that concurrent reads share a single {@code IS} request.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testConcurrentReadsShareRequest() throws Exception {
+		// Setup the resources for the test.
+		Mockito.doAnswer(createDelayedAnswer(300, null)).when(xbeeDevice).getParameter(PARAMETER_IS);
+		
+		// Call the method under test.
+		List<Future<IOSample>> futures = readConcurrently();
+		
+		// Verify the result.
+		IOSample ioSample = futures.get(0).get();
+		for (Future<IOSample> future:futures)
+			assertSame(ioSample, future.get());
+		Mockito.verify(xbeeDevice, Mockito.times(1)).getParameter(PARAMETER_IS);
+		
+		// A new read once the request finished sends a new request.
+		xbeeDevice.readIOSample();
+		Mockito.verify(xbeeDevice, Mockito.times(2)).getParameter(PARAMETER_IS);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#readIOSample()}.
+	 * 
+	 * <p>Verify that the error of a shared request is thrown to every caller 
+	 * and the next read sends a new request.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testConcurrentReadsShareError() throws Exception {
+		// Setup the resources for the test.
+		Mockito.doAnswer(createDelayedAnswer(300, new TimeoutException())).when(xbeeDevice).getParameter(PARAMETER_IS);
+		
+		// Call the method under test.
+		List<Future<IOSample>> futures = readConcurrently();
+		
+		// Verify the result.
+		for (Future<IOSample> future:futures) {
+			try {
+				future.get();
+				fail("TimeoutException expected.");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof TimeoutException);
+			}
+		}
+		Mockito.verify(xbeeDevice, Mockito.times(1)).getParameter(PARAMETER_IS);
+		
+		Mockito.doReturn(IO_SAMPLE_PAYLOAD).when(xbeeDevice).getParameter(PARAMETER_IS);
+		assertNotNull(xbeeDevice.readIOSample());
+		Mockito.verify(xbeeDevice, Mockito.times(2)).getParameter(PARAMETER_IS);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#setIOSampleCacheTime(long)}.
+	 * 
+	 * <p>Verify that a recent sample answers the reads within the cache time 
+	 * and a new request is sent once it expires.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testCacheTime() throws Exception {
+		// Setup the resources for the test.
+		Mockito.doReturn(IO_SAMPLE_PAYLOAD).when(xbeeDevice).getParameter(PARAMETER_IS);
+		xbeeDevice.setIOSampleCacheTime(200);
+		
+		// Call the method under test.
+		IOSample ioSample = xbeeDevice.readIOSample();
+		
+		// Verify the result.
+		assertSame(ioSample, xbeeDevice.readIOSample());
+		Mockito.verify(xbeeDevice, Mockito.times(1)).getParameter(PARAMETER_IS);
+		
+		Thread.sleep(300);
+		assertNotSame(ioSample, xbeeDevice.readIOSample());
+		Mockito.verify(xbeeDevice, Mockito.times(2)).getParameter(PARAMETER_IS);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#readIOSample()}.
+	 * 
+	 * <p>Verify that every read sends a request when the cache is disabled.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testNoCacheTime() throws Exception {
+		// Setup the resources for the test.
+		Mockito.doReturn(IO_SAMPLE_PAYLOAD).when(xbeeDevice).getParameter(PARAMETER_IS);
+		
+		// Call the method under test.
+		xbeeDevice.readIOSample();
+		xbeeDevice.readIOSample();
+		
+		// Verify the result.
+		assertEquals(0, xbeeDevice.getIOSampleCacheTime());
+		Mockito.verify(xbeeDevice, Mockito.times(2)).getParameter(PARAMETER_IS);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#setIOSampleCacheTime(long)}.
+	 * 
+	 * <p>Verify that the cache time cannot be negative.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testSetNegativeCacheTime() {
+		xbeeDevice.setIOSampleCacheTime(-1);
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.digi.xbee.api.connection.serial.SerialPortRxTx;
+import com.digi.xbee.api.listeners.IPacketReceiveListener;
+import com.digi.xbee.api.models.TransmitRetryPolicy;
+import com.digi.xbee.api.models.XBee16BitAddress;
+import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.models.XBeeDiscoveryStatus;
+import com.digi.xbee.api.models.XBeeTransmitFuture;
+import com.digi.xbee.api.models.XBeeTransmitStatus;
+import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.common.TransmitPacket;
+import com.digi.xbee.api.packet.common.TransmitStatusPacket;
+
+public class SendDataAsyncRetryTest {
+	
+	// Constants.
+	private static final byte[] SEND_DATA_BYTES = "data".getBytes();
+	
+	// Variables.
+	private SerialPortRxTx mockedPort;
+	private ZigBeeDevice xbeeDevice;
+	
+	private RemoteXBeeDevice mockedRemoteDevice;
+	
+	private List<TransmitPacket> sentPackets;
+	private List<Thread> sendingThreads;
+	private List<XBeeTransmitStatus> statuses;
+	
+	@Before
+	public void setup() throws Exception {
+		// Mock an RxTx IConnectionInterface.
+		mockedPort = Mockito.mock(SerialPortRxTx.class);
+		// When checking if the connection is open, return true.
+		Mockito.when(mockedPort.isOpen()).thenReturn(true);
+		
+		xbeeDevice = Mockito.spy(new ZigBeeDevice(mockedPort));
+		xbeeDevice.setTransmitRetryPolicy(new TransmitRetryPolicy(3, 10, 20));
+		
+		mockedRemoteDevice = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(mockedRemoteDevice.get64BitAddress()).thenReturn(new XBee64BitAddress("0013A20040000001"));
+		
+		// Answer every sent packet with the next configured transmit status.
+		sentPackets = Collections.synchronizedList(new ArrayList<TransmitPacket>());
+		sendingThreads = Collections.synchronizedList(new ArrayList<Thread>());
+		statuses = Collections.synchronizedList(new ArrayList<XBeeTransmitStatus>());
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Exception {
+				TransmitPacket packet = (TransmitPacket)invocation.getArguments()[0];
+				IPacketReceiveListener listener = (IPacketReceiveListener)invocation.getArguments()[1];
+				sentPackets.add(packet);
+				sendingThreads.add(Thread.currentThread());
+				XBeeTransmitStatus status = statuses.isEmpty() ? XBeeTransmitStatus.SUCCESS : statuses.remove(0);
+				listener.packetReceived(new TransmitStatusPacket(packet.getFrameID(), 
+						XBee16BitAddress.UNKNOWN_ADDRESS, 0, status, 
+						XBeeDiscoveryStatus.DISCOVERY_STATUS_NO_DISCOVERY_OVERHEAD));
+				return null;
+			}
+		}).when(xbeeDevice).sendXBeePacket(Mockito.any(XBeePacket.class), Mockito.any(IPacketReceiveListener.class));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that a transmission failing with a retryable status is sent 
+	 * again from the transmit timer with a new frame ID and that its future 
+	 * is completed by the successful retry.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetryUntilSuccess() throws Exception {
+		statuses.add(XBeeTransmitStatus.NO_ACK);
+		
+		XBeeTransmitFuture future = xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		
+		assertEquals(XBeeTransmitStatus.SUCCESS, future.get(2, TimeUnit.SECONDS));
+		assertTrue(future.isSuccess());
+		assertEquals(2, sentPackets.size());
+		// The first attempt is sent by the caller and the retry by the timer.
+		assertSame(Thread.currentThread(), sendingThreads.get(0));
+		assertNotSame(Thread.currentThread(), sendingThreads.get(1));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that the transmission is completed with the last failed 
+	 * status once it runs out of attempts.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetryGivesUp() throws Exception {
+		for (int i = 0; i < 5; i++)
+			statuses.add(XBeeTransmitStatus.NO_ACK);
+		
+		XBeeTransmitFuture future = xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		
+		assertEquals(XBeeTransmitStatus.NO_ACK, future.get(2, TimeUnit.SECONDS));
+		assertFalse(future.isSuccess());
+		assertEquals(3, sentPackets.size());
+		assertEquals(0, xbeeDevice.getTransmitWindow().getOutstanding());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that a transmission failing with a status that is not 
+	 * retryable is not sent again.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoRetryForFinalStatus() throws Exception {
+		statuses.add(XBeeTransmitStatus.PAYLOAD_TOO_LARGE);
+		
+		XBeeTransmitFuture future = xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		
+		assertEquals(XBeeTransmitStatus.PAYLOAD_TOO_LARGE, future.get(2, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		assertEquals(1, sentPackets.size());
+	}
+}
@@ -0,0 +1,380 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.reflect.Whitebox;
+
+import com.digi.xbee.api.connection.DataReader;
+import com.digi.xbee.api.connection.serial.SerialPortRxTx;
+import com.digi.xbee.api.exceptions.InterfaceNotOpenException;
+import com.digi.xbee.api.exceptions.TimeoutException;
+import com.digi.xbee.api.exceptions.XBeeException;
+import com.digi.xbee.api.listeners.IPacketReceiveListener;
+import com.digi.xbee.api.models.OperatingMode;
+import com.digi.xbee.api.models.TransmitWindow;
+import com.digi.xbee.api.models.XBee16BitAddress;
+import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.models.XBeeDiscoveryStatus;
+import com.digi.xbee.api.models.XBeeTransmitFuture;
+import com.digi.xbee.api.models.XBeeTransmitStatus;
+import com.digi.xbee.api.packet.XBeeAPIPacket;
+import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.common.TransmitPacket;
+import com.digi.xbee.api.packet.common.TransmitStatusPacket;
+
+public class SendDataAsyncWithStatusTest {
+	
+	// Constants.
+	private static final XBee64BitAddress XBEE_64BIT_ADDRESS = new XBee64BitAddress("0123456789ABCDEF");
+	
+	private static final byte[] SEND_DATA_BYTES = "data".getBytes();
+	
+	// Variables.
+	private SerialPortRxTx mockedPort;
+	private ZigBeeDevice xbeeDevice;
+	private RemoteXBeeDevice mockedRemoteDevice;
+	
+	private ArrayList<XBeeAPIPacket> sentPackets;
+	private ArrayList<IPacketReceiveListener> statusListeners;
+	
+	private volatile XBeeException senderError;
+	
+	@Before
+	public void setup() throws Exception {
+		// Mock an RxTx IConnectionInterface.
+		mockedPort = Mockito.mock(SerialPortRxTx.class);
+		// When checking if the connection is open, return true.
+		Mockito.when(mockedPort.isOpen()).thenReturn(true);
+		
+		xbeeDevice = Mockito.spy(new ZigBeeDevice(mockedPort));
+		
+		mockedRemoteDevice = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(mockedRemoteDevice.get64BitAddress()).thenReturn(XBEE_64BIT_ADDRESS);
+		
+		// Store the sent packets and their status listeners.
+		sentPackets = new ArrayList<XBeeAPIPacket>();
+		statusListeners = new ArrayList<IPacketReceiveListener>();
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Exception {
+				sentPackets.add((XBeeAPIPacket)invocation.getArguments()[0]);
+				statusListeners.add((IPacketReceiveListener)invocation.getArguments()[1]);
+				return null;
+			}
+		}).when(xbeeDevice).sendXBeePacket(Mockito.any(XBeePacket.class), Mockito.any(IPacketReceiveListener.class));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that data cannot be sent when the connection is closed.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test(expected=InterfaceNotOpenException.class)
+	public void testSendDataAsyncWithStatusConnectionClosed() throws Exception {
+		Mockito.when(mockedPort.isOpen()).thenReturn(false);
+		
+		xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that the future is completed with the transmit status, retry 
+	 * count and discovery status of the frame with the same frame ID.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataAsyncWithStatusSuccess() throws Exception {
+		XBeeTransmitFuture future = xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		
+		assertFalse(future.isDone());
+		assertEquals(1, sentPackets.size());
+		assertTrue(sentPackets.get(0) instanceof TransmitPacket);
+		
+		statusListeners.get(0).packetReceived(new TransmitStatusPacket(sentPackets.get(0).getFrameID(), 
+				XBee16BitAddress.UNKNOWN_ADDRESS, 2, XBeeTransmitStatus.SUCCESS, 
+				XBeeDiscoveryStatus.DISCOVERY_STATUS_ROUTE_DISCOVERY));
+		
+		assertTrue(future.isDone());
+		assertTrue(future.isSuccess());
+		assertEquals(XBeeTransmitStatus.SUCCESS, future.get(0, TimeUnit.MILLISECONDS));
+		assertEquals(2, future.getTransmitRetryCount());
+		assertEquals(XBeeDiscoveryStatus.DISCOVERY_STATUS_ROUTE_DISCOVERY, future.getDiscoveryStatus());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that several transmissions can be in flight and each future 
+	 * is completed by its own transmit status.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataAsyncWithStatusInFlight() throws Exception {
+		XBeeTransmitFuture future1 = xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		XBeeTransmitFuture future2 = xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		
+		assertTrue(sentPackets.get(0).getFrameID() != sentPackets.get(1).getFrameID());
+		
+		statusListeners.get(1).packetReceived(new TransmitStatusPacket(sentPackets.get(1).getFrameID(), 
+				XBee16BitAddress.UNKNOWN_ADDRESS, 0, XBeeTransmitStatus.NO_ACK, 
+				XBeeDiscoveryStatus.DISCOVERY_STATUS_NO_DISCOVERY_OVERHEAD));
+		
+		assertFalse(future1.isDone());
+		assertEquals(XBeeTransmitStatus.NO_ACK, future2.get());
+		assertFalse(future2.isSuccess());
+		
+		statusListeners.get(0).packetReceived(new TransmitStatusPacket(sentPackets.get(0).getFrameID(), 
+				XBee16BitAddress.UNKNOWN_ADDRESS, 0, XBeeTransmitStatus.SUCCESS, 
+				XBeeDiscoveryStatus.DISCOVERY_STATUS_NO_DISCOVERY_OVERHEAD));
+		
+		assertEquals(XBeeTransmitStatus.SUCCESS, future1.get());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that the future fails with a timeout exception when the 
+	 * transmit status is not received within the receive timeout.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataAsyncWithStatusTimeout() throws Exception {
+		xbeeDevice.setReceiveTimeout(50);
+		
+		XBeeTransmitFuture future = xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("Future shouldn't have been completed successfully.");
+		} catch (ExecutionException e) {
+			assertEquals(TimeoutException.class, e.getCause().getClass());
+		}
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that an XBee exception is thrown when the packet cannot be 
+	 * written.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataAsyncWithStatusIOError() throws Exception {
+		Mockito.doThrow(new IOException()).when(xbeeDevice).sendXBeePacket(Mockito.any(XBeePacket.class), 
+				Mockito.any(IPacketReceiveListener.class));
+		
+		try {
+			xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+			fail("Data shouldn't have been sent successfully.");
+		} catch (XBeeException e) {
+			assertEquals(IOException.class, e.getCause().getClass());
+		}
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that no more transmissions than the transmit window size are 
+	 * outstanding, and the window slot is released when the transmit status 
+	 * is received.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataAsyncWithStatusWindowFull() throws Exception {
+		xbeeDevice.setTransmitWindow(new TransmitWindow(1, 4));
+		
+		XBeeTransmitFuture future = xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		
+		// The second transmission waits for room in the window.
+		Thread sender = new Thread() {
+			@Override
+			public void run() {
+				try {
+					xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+				} catch (XBeeException e) {
+					senderError = e;
+				}
+			}
+		};
+		sender.start();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (sender.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline)
+			Thread.yield();
+		assertEquals(Thread.State.TIMED_WAITING, sender.getState());
+		assertEquals(1, sentPackets.size());
+		
+		statusListeners.get(0).packetReceived(new TransmitStatusPacket(sentPackets.get(0).getFrameID(), 
+				XBee16BitAddress.UNKNOWN_ADDRESS, 0, XBeeTransmitStatus.SUCCESS, 
+				XBeeDiscoveryStatus.DISCOVERY_STATUS_NO_DISCOVERY_OVERHEAD));
+		sender.join(5000);
+		
+		assertFalse(sender.isAlive());
+		assertNull(senderError);
+		assertTrue(future.isSuccess());
+		assertEquals(2, sentPackets.size());
+		assertEquals(1, xbeeDevice.getTransmitWindow().getOutstanding());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that cancelling the future of a transmission releases its 
+	 * window slot when the transmit status is received, without shrinking 
+	 * the window.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataAsyncWithStatusCancelledStatusReceived() throws Exception {
+		xbeeDevice.setTransmitWindow(new TransmitWindow(2, 4));
+		
+		XBeeTransmitFuture future = xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		assertTrue(future.cancel(false));
+		assertEquals(1, xbeeDevice.getTransmitWindow().getOutstanding());
+		
+		statusListeners.get(0).packetReceived(new TransmitStatusPacket(sentPackets.get(0).getFrameID(), 
+				XBee16BitAddress.UNKNOWN_ADDRESS, 0, XBeeTransmitStatus.SUCCESS, 
+				XBeeDiscoveryStatus.DISCOVERY_STATUS_NO_DISCOVERY_OVERHEAD));
+		
+		assertTrue(future.isCancelled());
+		assertEquals(0, xbeeDevice.getTransmitWindow().getOutstanding());
+		assertEquals(2, xbeeDevice.getTransmitWindow().getSize());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that a cancelled transmission whose status is never received 
+	 * releases its window slot on timeout without shrinking the window.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataAsyncWithStatusCancelledTimeout() throws Exception {
+		xbeeDevice.setTransmitWindow(new TransmitWindow(2, 4));
+		xbeeDevice.setReceiveTimeout(50);
+		
+		XBeeTransmitFuture future = xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		assertTrue(future.cancel(false));
+		
+		long deadline = System.currentTimeMillis() + 5000;
+		while (xbeeDevice.getTransmitWindow().getOutstanding() > 0 && System.currentTimeMillis() < deadline)
+			Thread.sleep(10);
+		
+		assertEquals(0, xbeeDevice.getTransmitWindow().getOutstanding());
+		assertEquals(2, xbeeDevice.getTransmitWindow().getSize());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that a timeout exception is thrown when there is no room in 
+	 * the transmit window within the receive timeout.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test(expected=TimeoutException.class)
+	public void testSendDataAsyncWithStatusWindowTimeout() throws Exception {
+		xbeeDevice.setTransmitWindow(new TransmitWindow(1, 4));
+		xbeeDevice.setReceiveTimeout(50);
+		// Fill the window.
+		xbeeDevice.getTransmitWindow().acquire(null, 0);
+		
+		xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that the transmit status listener is unsubscribed from the 
+	 * data reader when the transmit status is received.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataAsyncWithStatusRemovesListener() throws Exception {
+		// Use a device that receives the transmit status through a real data reader.
+		ZigBeeDevice device = new ZigBeeDevice(mockedPort);
+		DataReader dataReader = new DataReader(mockedPort, OperatingMode.API, device);
+		Whitebox.setInternalState(device, "operatingMode", OperatingMode.API);
+		Whitebox.setInternalState(device, "dataReader", dataReader);
+		Map<?, ?> listeners = (Map<?, ?>)Whitebox.getInternalState(dataReader, "packetReceiveListeners");
+		
+		XBeeTransmitFuture future = device.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		
+		int frameID;
+		synchronized (listeners) {
+			assertEquals(1, listeners.size());
+			frameID = (Integer)listeners.values().iterator().next();
+		}
+		
+		Whitebox.invokeMethod(dataReader, "packetReceived", new TransmitStatusPacket(frameID, 
+				XBee16BitAddress.UNKNOWN_ADDRESS, 0, XBeeTransmitStatus.SUCCESS, 
+				XBeeDiscoveryStatus.DISCOVERY_STATUS_NO_DISCOVERY_OVERHEAD));
+		
+		assertEquals(XBeeTransmitStatus.SUCCESS, future.get(5, TimeUnit.SECONDS));
+		// The listener is removed after the future is completed.
+		long deadline = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < deadline) {
+			synchronized (listeners) {
+				if (listeners.isEmpty())
+					break;
+			}
+			Thread.sleep(1);
+		}
+		synchronized (listeners) {
+			assertTrue(listeners.isEmpty());
+		}
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#close()}.
+	 * 
+	 * <p>Verify that the pending transmissions fail when the device is 
+	 * closed.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testCloseFailsPendingTransmissions() throws Exception {
+		XBeeTransmitFuture future = xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+		
+		xbeeDevice.close();
+		
+		try {
+			future.get(0, TimeUnit.MILLISECONDS);
+			fail("Future shouldn't have been completed successfully.");
+		} catch (ExecutionException e) {
+			assertEquals(XBeeException.class, e.getCause().getClass());
+		}
+	}
+}
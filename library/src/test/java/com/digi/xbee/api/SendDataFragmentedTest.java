@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.digi.xbee.api.connection.serial.SerialPortRxTx;
+import com.digi.xbee.api.exceptions.OperationNotSupportedException;
+import com.digi.xbee.api.exceptions.TransmitException;
+import com.digi.xbee.api.listeners.IPacketReceiveListener;
+import com.digi.xbee.api.models.XBee16BitAddress;
+import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.models.XBeeDiscoveryStatus;
+import com.digi.xbee.api.models.XBeeMessageFragmenter;
+import com.digi.xbee.api.models.XBeeMessageReassembler;
+import com.digi.xbee.api.models.XBeePayloadCodec;
+import com.digi.xbee.api.models.XBeeTransmitStatus;
+import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.common.TransmitPacket;
+import com.digi.xbee.api.packet.common.TransmitStatusPacket;
+
+public class SendDataFragmentedTest {
+	
+	// Constants.
+	private static final XBee64BitAddress XBEE_64BIT_ADDRESS = new XBee64BitAddress("0123456789ABCDEF");
+	
+	private static final int MAX_PAYLOAD_SIZE = 20;
+	
+	// Variables.
+	private SerialPortRxTx mockedPort;
+	private ZigBeeDevice xbeeDevice;
+	private RemoteXBeeDevice mockedRemoteDevice;
+	
+	private ArrayList<TransmitPacket> sentPackets;
+	
+	// Number of transmissions of every fragment index (third byte of the 
+	// payload) that fail.
+	private int[] failures;
+	
+	@Before
+	public void setup() throws Exception {
+		// Mock an RxTx IConnectionInterface.
+		mockedPort = Mockito.mock(SerialPortRxTx.class);
+		// When checking if the connection is open, return true.
+		Mockito.when(mockedPort.isOpen()).thenReturn(true);
+		
+		xbeeDevice = Mockito.spy(new ZigBeeDevice(mockedPort));
+		xbeeDevice.setMessageFragmenter(new XBeeMessageFragmenter(MAX_PAYLOAD_SIZE));
+		
+		mockedRemoteDevice = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(mockedRemoteDevice.get64BitAddress()).thenReturn(XBEE_64BIT_ADDRESS);
+		
+		// Answer every sent fragment with its transmit status.
+		sentPackets = new ArrayList<TransmitPacket>();
+		failures = new int[256];
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Exception {
+				TransmitPacket packet = (TransmitPacket)invocation.getArguments()[0];
+				IPacketReceiveListener listener = (IPacketReceiveListener)invocation.getArguments()[1];
+				sentPackets.add(packet);
+				int index = packet.getRFData()[2] & 0xFF;
+				XBeeTransmitStatus status = XBeeTransmitStatus.SUCCESS;
+				if (failures[index] > 0) {
+					failures[index]--;
+					status = XBeeTransmitStatus.NO_ACK;
+				}
+				listener.packetReceived(new TransmitStatusPacket(packet.getFrameID(), 
+						XBee16BitAddress.UNKNOWN_ADDRESS, 0, status, 
+						XBeeDiscoveryStatus.DISCOVERY_STATUS_NO_DISCOVERY_OVERHEAD));
+				return null;
+			}
+		}).when(xbeeDevice).sendXBeePacket(Mockito.any(XBeePacket.class), Mockito.any(IPacketReceiveListener.class));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendData(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that data bigger than the payload size is sent in fragments 
+	 * that the receiver reassembles into the original data.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataFragmented() throws Exception {
+		byte[] data = new byte[40];
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte)i;
+		
+		xbeeDevice.sendData(mockedRemoteDevice, data);
+		
+		assertEquals(3, sentPackets.size());
+		XBeeMessageReassembler reassembler = xbeeDevice.getMessageFragmenter().createReassembler();
+		byte[] received = null;
+		for (TransmitPacket packet : sentPackets) {
+			assertTrue(packet.getRFData().length <= MAX_PAYLOAD_SIZE);
+			assertEquals(XBEE_64BIT_ADDRESS, packet.get64bitDestinationAddress());
+			received = reassembler.decode(mockedRemoteDevice, packet.getRFData());
+		}
+		assertArrayEquals(data, received);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendData(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that data fitting in a frame is sent as is.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataNotFragmented() throws Exception {
+		byte[] data = new byte[MAX_PAYLOAD_SIZE];
+		
+		xbeeDevice.sendData(mockedRemoteDevice, data);
+		
+		assertEquals(1, sentPackets.size());
+		assertArrayEquals(data, sentPackets.get(0).getRFData());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendData(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that data is compressed before fragmenting it, so 
+	 * repetitive data bigger than the payload size fits in a single frame.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataCompressed() throws Exception {
+		XBeePayloadCodec codec = new XBeePayloadCodec();
+		xbeeDevice.setPayloadCodec(codec);
+		byte[] data = new byte[100];
+		
+		xbeeDevice.sendData(mockedRemoteDevice, data);
+		
+		assertEquals(1, sentPackets.size());
+		byte[] payload = sentPackets.get(0).getRFData();
+		assertTrue(payload.length <= MAX_PAYLOAD_SIZE);
+		assertArrayEquals(data, codec.decode(payload));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}, 
+	 * {@link com.digi.xbee.api.XBeeDevice#sendDataAsync(RemoteXBeeDevice, byte[])} and 
+	 * {@link com.digi.xbee.api.XBeeDevice#sendBroadcastData(byte[])}.
+	 * 
+	 * <p>Verify that the data sent by the other send methods is encoded with 
+	 * the payload codec too, so data starting with its marker byte is 
+	 * received as is.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataOtherMethodsCompressed() throws Exception {
+		final ArrayList<XBeePacket> checkedPackets = new ArrayList<XBeePacket>();
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Exception {
+				checkedPackets.add((XBeePacket)invocation.getArguments()[0]);
+				return null;
+			}
+		}).when(xbeeDevice).sendAndCheckXBeePacket(Mockito.any(XBeePacket.class), Mockito.anyBoolean());
+		xbeeDevice.setMessageFragmenter(null);
+		XBeePayloadCodec codec = new XBeePayloadCodec();
+		xbeeDevice.setPayloadCodec(codec);
+		byte[] data = new byte[] {(byte)0xF6, 0x01, 0x02};
+		
+		xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, data);
+		xbeeDevice.sendDataAsync(mockedRemoteDevice, data);
+		xbeeDevice.sendBroadcastData(data);
+		
+		assertEquals(1, sentPackets.size());
+		assertArrayEquals(data, codec.decode(sentPackets.get(0).getRFData()));
+		assertEquals(2, checkedPackets.size());
+		for (XBeePacket packet : checkedPackets)
+			assertArrayEquals(data, codec.decode(((TransmitPacket)packet).getRFData()));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}, 
+	 * {@link com.digi.xbee.api.XBeeDevice#sendDataAsync(RemoteXBeeDevice, byte[])} and 
+	 * {@link com.digi.xbee.api.XBeeDevice#sendBroadcastData(byte[])}.
+	 * 
+	 * <p>Verify that the other send methods send data starting with the 
+	 * fragment marker as a message of a single fragment, and reject data 
+	 * that does not fit in a single frame.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataOtherMethodsFragmentMarker() throws Exception {
+		final ArrayList<XBeePacket> checkedPackets = new ArrayList<XBeePacket>();
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Exception {
+				checkedPackets.add((XBeePacket)invocation.getArguments()[0]);
+				return null;
+			}
+		}).when(xbeeDevice).sendAndCheckXBeePacket(Mockito.any(XBeePacket.class), Mockito.anyBoolean());
+		byte[] data = new byte[] {(byte)0xF5, 0x00, 0x00, 0x02, 0x04};
+		
+		xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, data);
+		xbeeDevice.sendDataAsync(mockedRemoteDevice, data);
+		
+		XBeeMessageReassembler reassembler = xbeeDevice.getMessageFragmenter().createReassembler();
+		assertEquals(1, sentPackets.size());
+		assertArrayEquals(data, reassembler.decode(mockedRemoteDevice, sentPackets.get(0).getRFData()));
+		assertEquals(1, checkedPackets.size());
+		assertArrayEquals(data, reassembler.decode(mockedRemoteDevice, ((TransmitPacket)checkedPackets.get(0)).getRFData()));
+		
+		try {
+			xbeeDevice.sendBroadcastData(new byte[40]);
+			fail("Data shouldn't have been sent successfully.");
+		} catch (OperationNotSupportedException e) {
+			assertEquals(1, checkedPackets.size());
+		}
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendData(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that only the fragments whose transmission fails are sent 
+	 * again.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataFragmentedSelectiveRetransmission() throws Exception {
+		failures[1] = 2;
+		
+		xbeeDevice.sendData(mockedRemoteDevice, new byte[40]);
+		
+		// 3 fragments plus 2 retransmissions of the second one.
+		assertEquals(5, sentPackets.size());
+		assertEquals(1, sentPackets.get(3).getRFData()[2]);
+		assertEquals(1, sentPackets.get(4).getRFData()[2]);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendData(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that a {@code TransmitException} is thrown when a fragment 
+	 * fails after all the retransmissions.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataFragmentedTransmitError() throws Exception {
+		xbeeDevice.getMessageFragmenter().setMaxRetransmissions(1);
+		failures[2] = 2;
+		
+		try {
+			xbeeDevice.sendData(mockedRemoteDevice, new byte[40]);
+			fail("A TransmitException should have been thrown.");
+		} catch (TransmitException e) {
+			assertEquals(XBeeTransmitStatus.NO_ACK, e.getTransmitStatus());
+		}
+		assertEquals(4, sentPackets.size());
+		assertEquals(0, xbeeDevice.getTransmitWindow().getOutstanding());
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.digi.xbee.api.connection.serial.SerialPortRxTx;
+import com.digi.xbee.api.exceptions.InterfaceNotOpenException;
+import com.digi.xbee.api.listeners.IPacketReceiveListener;
+import com.digi.xbee.api.models.XBee16BitAddress;
+import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.models.XBeeDiscoveryStatus;
+import com.digi.xbee.api.models.XBeeTransmitFuture;
+import com.digi.xbee.api.models.XBeeTransmitStatus;
+import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.common.TransmitPacket;
+import com.digi.xbee.api.packet.common.TransmitStatusPacket;
+
+public class SendDataMulticastTest {
+	
+	// Constants.
+	private static final XBee64BitAddress NO_ACK_ADDRESS = new XBee64BitAddress("0013A20040000002");
+	private static final XBee64BitAddress IO_ERROR_ADDRESS = new XBee64BitAddress("0013A20040000003");
+	
+	private static final byte[] SEND_DATA_BYTES = "data".getBytes();
+	
+	// Variables.
+	private SerialPortRxTx mockedPort;
+	private ZigBeeDevice xbeeDevice;
+	
+	private RemoteXBeeDevice mockedRemoteDevice1;
+	private RemoteXBeeDevice mockedRemoteDevice2;
+	private RemoteXBeeDevice mockedRemoteDevice3;
+	
+	private ArrayList<TransmitPacket> sentPackets;
+	
+	@Before
+	public void setup() throws Exception {
+		// Mock an RxTx IConnectionInterface.
+		mockedPort = Mockito.mock(SerialPortRxTx.class);
+		// When checking if the connection is open, return true.
+		Mockito.when(mockedPort.isOpen()).thenReturn(true);
+		
+		xbeeDevice = Mockito.spy(new ZigBeeDevice(mockedPort));
+		
+		mockedRemoteDevice1 = createRemoteDevice(new XBee64BitAddress("0013A20040000001"));
+		mockedRemoteDevice2 = createRemoteDevice(NO_ACK_ADDRESS);
+		mockedRemoteDevice3 = createRemoteDevice(IO_ERROR_ADDRESS);
+		
+		// Answer every sent packet with its transmit status: NO_ACK for the 
+		// second device, an I/O error for the third one and SUCCESS for the 
+		// rest.
+		sentPackets = new ArrayList<TransmitPacket>();
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Exception {
+				TransmitPacket packet = (TransmitPacket)invocation.getArguments()[0];
+				IPacketReceiveListener listener = (IPacketReceiveListener)invocation.getArguments()[1];
+				if (IO_ERROR_ADDRESS.equals(packet.get64bitDestinationAddress()))
+					throw new IOException("Port error");
+				sentPackets.add(packet);
+				XBeeTransmitStatus status = NO_ACK_ADDRESS.equals(packet.get64bitDestinationAddress()) ? 
+						XBeeTransmitStatus.NO_ACK : XBeeTransmitStatus.SUCCESS;
+				listener.packetReceived(new TransmitStatusPacket(packet.getFrameID(), 
+						XBee16BitAddress.UNKNOWN_ADDRESS, 0, status, 
+						XBeeDiscoveryStatus.DISCOVERY_STATUS_NO_DISCOVERY_OVERHEAD));
+				return null;
+			}
+		}).when(xbeeDevice).sendXBeePacket(Mockito.any(XBeePacket.class), Mockito.any(IPacketReceiveListener.class));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendData(java.util.Collection, byte[])}.
+	 * 
+	 * <p>Verify that data cannot be sent when the connection is closed.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test(expected=InterfaceNotOpenException.class)
+	public void testSendDataMulticastConnectionClosed() throws Exception {
+		Mockito.when(mockedPort.isOpen()).thenReturn(false);
+		
+		xbeeDevice.sendData(Arrays.asList(mockedRemoteDevice1), SEND_DATA_BYTES);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendData(java.util.Collection, byte[])}.
+	 * 
+	 * <p>Verify that a null device in the collection is rejected before 
+	 * sending anything.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataMulticastNullDevice() throws Exception {
+		try {
+			xbeeDevice.sendData(Arrays.asList(mockedRemoteDevice1, null), SEND_DATA_BYTES);
+			fail("A NullPointerException should have been thrown.");
+		} catch (NullPointerException e) {
+			assertEquals("Remote XBee device cannot be null", e.getMessage());
+		}
+		assertTrue(sentPackets.isEmpty());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendData(java.util.Collection, byte[])}.
+	 * 
+	 * <p>Verify that a packet sharing the same data is sent to every device 
+	 * with its own frame ID and that the result of every destination is 
+	 * returned in order.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSendDataMulticastResults() throws Exception {
+		List<RemoteXBeeDevice> devices = Arrays.asList(mockedRemoteDevice1, mockedRemoteDevice2, 
+				mockedRemoteDevice3, mockedRemoteDevice1);
+		
+		Map<RemoteXBeeDevice, XBeeTransmitFuture> results = xbeeDevice.sendData(devices, SEND_DATA_BYTES);
+		
+		// The duplicated device is sent the data once.
+		assertEquals(3, results.size());
+		assertEquals(2, sentPackets.size());
+		assertSame(SEND_DATA_BYTES, sentPackets.get(0).getRFData());
+		assertSame(SEND_DATA_BYTES, sentPackets.get(1).getRFData());
+		assertTrue(sentPackets.get(0).getFrameID() != sentPackets.get(1).getFrameID());
+		
+		Iterator<Map.Entry<RemoteXBeeDevice, XBeeTransmitFuture>> iterator = results.entrySet().iterator();
+		Map.Entry<RemoteXBeeDevice, XBeeTransmitFuture> entry = iterator.next();
+		assertSame(mockedRemoteDevice1, entry.getKey());
+		assertTrue(entry.getValue().isSuccess());
+		
+		entry = iterator.next();
+		assertSame(mockedRemoteDevice2, entry.getKey());
+		assertTrue(entry.getValue().isDone());
+		assertFalse(entry.getValue().isSuccess());
+		assertEquals(XBeeTransmitStatus.NO_ACK, entry.getValue().getTransmitStatus());
+		
+		entry = iterator.next();
+		assertSame(mockedRemoteDevice3, entry.getKey());
+		assertTrue(entry.getValue().isDone());
+		assertFalse(entry.getValue().isSuccess());
+		assertNull(entry.getValue().getTransmitStatus());
+		
+		// All the transmission slots are released.
+		assertEquals(0, xbeeDevice.getTransmitWindow().getOutstanding());
+	}
+	
+	/**
+	 * Creates a mocked remote XBee device with the given 64-bit address.
+	 * 
+	 * @param address The 64-bit address of the remote device.
+	 * 
+	 * @return The mocked remote device.
+	 */
+	private RemoteXBeeDevice createRemoteDevice(XBee64BitAddress address) {
+		RemoteXBeeDevice remoteDevice = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(remoteDevice.get64BitAddress()).thenReturn(address);
+		return remoteDevice;
+	}
+}
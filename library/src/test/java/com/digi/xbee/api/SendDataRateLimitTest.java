@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.digi.xbee.api.connection.serial.SerialPortRxTx;
+import com.digi.xbee.api.exceptions.RateLimitException;
+import com.digi.xbee.api.listeners.IPacketReceiveListener;
+import com.digi.xbee.api.models.TransmitRateLimiter;
+import com.digi.xbee.api.models.XBee16BitAddress;
+import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.models.XBeeDiscoveryStatus;
+import com.digi.xbee.api.models.XBeeTransmitStatus;
+import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.common.TransmitPacket;
+import com.digi.xbee.api.packet.common.TransmitStatusPacket;
+
+public class SendDataRateLimitTest {
+	
+	// Constants.
+	private static final XBee64BitAddress ADDRESS = new XBee64BitAddress("0013A20040000001");
+	
+	private static final byte[] SEND_DATA_BYTES = "data".getBytes();
+	
+	// Variables.
+	private SerialPortRxTx mockedPort;
+	private ZigBeeDevice xbeeDevice;
+	
+	private RemoteXBeeDevice mockedRemoteDevice;
+	
+	private TransmitRateLimiter rateLimiter;
+	
+	private List<XBeePacket> sentPackets;
+	
+	@Before
+	public void setup() throws Exception {
+		// Mock an RxTx IConnectionInterface.
+		mockedPort = Mockito.mock(SerialPortRxTx.class);
+		// When checking if the connection is open, return true.
+		Mockito.when(mockedPort.isOpen()).thenReturn(true);
+		
+		xbeeDevice = Mockito.spy(new ZigBeeDevice(mockedPort));
+		rateLimiter = new TransmitRateLimiter();
+		rateLimiter.setDestinationLimit(ADDRESS, 1, TransmitRateLimiter.UNLIMITED);
+		rateLimiter.setRejectWhenLimited(true);
+		xbeeDevice.setTransmitRateLimiter(rateLimiter);
+		
+		mockedRemoteDevice = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(mockedRemoteDevice.get64BitAddress()).thenReturn(ADDRESS);
+		
+		// Answer every asynchronous packet with a successful transmit status.
+		sentPackets = new ArrayList<XBeePacket>();
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Exception {
+				TransmitPacket packet = (TransmitPacket)invocation.getArguments()[0];
+				IPacketReceiveListener listener = (IPacketReceiveListener)invocation.getArguments()[1];
+				sentPackets.add(packet);
+				listener.packetReceived(new TransmitStatusPacket(packet.getFrameID(), 
+						XBee16BitAddress.UNKNOWN_ADDRESS, 0, XBeeTransmitStatus.SUCCESS, 
+						XBeeDiscoveryStatus.DISCOVERY_STATUS_NO_DISCOVERY_OVERHEAD));
+				return null;
+			}
+		}).when(xbeeDevice).sendXBeePacket(Mockito.any(XBeePacket.class), Mockito.any(IPacketReceiveListener.class));
+		// Capture the packets sent without listener.
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Exception {
+				sentPackets.add((XBeePacket)invocation.getArguments()[0]);
+				return null;
+			}
+		}).when(xbeeDevice).sendXBeePacketAsync(Mockito.any(XBeePacket.class));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that an asynchronous transmission over the destination limit 
+	 * is rejected without being sent.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSendDataAsyncWithStatusRejected() throws Exception {
+		assertTrue(xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES).isSuccess());
+		
+		try {
+			xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES);
+			fail("A RateLimitException should have been thrown.");
+		} catch (RateLimitException e) {
+			// Expected.
+		}
+		assertEquals(1, sentPackets.size());
+		assertEquals(1, rateLimiter.getRejectedCount(ADDRESS));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsync(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that the rate limits are also enforced in the transmissions 
+	 * without transmit status and that the rejected frame ID is released.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSendDataAsyncRejected() throws Exception {
+		xbeeDevice.sendDataAsync(mockedRemoteDevice, SEND_DATA_BYTES);
+		int inFlight = xbeeDevice.getFrameIDAllocator().getInFlightCount();
+		
+		try {
+			xbeeDevice.sendDataAsync(mockedRemoteDevice, SEND_DATA_BYTES);
+			fail("A RateLimitException should have been thrown.");
+		} catch (RateLimitException e) {
+			// Expected.
+		}
+		assertEquals(1, sentPackets.size());
+		assertEquals(inFlight, xbeeDevice.getFrameIDAllocator().getInFlightCount());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#sendDataAsyncWithStatus(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that a transmission over the limit is queued until its tokens 
+	 * are available when the rate limiter does not reject it.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSendDataAsyncWithStatusQueued() throws Exception {
+		rateLimiter.setDestinationLimit(ADDRESS, 10, TransmitRateLimiter.UNLIMITED);
+		rateLimiter.setRejectWhenLimited(false);
+		
+		for (int i = 0; i < 11; i++)
+			assertTrue(xbeeDevice.sendDataAsyncWithStatus(mockedRemoteDevice, SEND_DATA_BYTES).isSuccess());
+		
+		assertEquals(11, sentPackets.size());
+		assertTrue(rateLimiter.getThrottledTime(ADDRESS) > 0);
+	}
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.digi.xbee.api.connection.serial.SerialPortRxTx;
+import com.digi.xbee.api.exceptions.TimeoutException;
+import com.digi.xbee.api.exceptions.XBeeException;
+import com.digi.xbee.api.io.IOLine;
+import com.digi.xbee.api.io.IOMode;
+import com.digi.xbee.api.io.IOValue;
+import com.digi.xbee.api.listeners.IPacketReceiveListener;
+import com.digi.xbee.api.models.ATCommandStatus;
+import com.digi.xbee.api.models.OperatingMode;
+import com.digi.xbee.api.models.XBee16BitAddress;
+import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.models.XBeeProtocol;
+import com.digi.xbee.api.packet.APIFrameType;
+import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.common.ATCommandQueuePacket;
+import com.digi.xbee.api.packet.common.ATCommandResponsePacket;
+import com.digi.xbee.api.packet.common.RemoteATCommandPacket;
+import com.digi.xbee.api.packet.common.RemoteATCommandResponsePacket;
+
+public class SetIOLinesBatchTest {
+	
+	// Variables.
+	private SerialPortRxTx mockedPort;
+	
+	private XBeeDevice xbeeDevice;
+	
+	private IPacketReceiveListener packetListener;
+	
+	private int sentPackets;
+	
+	@Before
+	public void setup() throws Exception {
+		// Mock an RxTx IConnectionInterface.
+		mockedPort = Mockito.mock(SerialPortRxTx.class);
+		Mockito.when(mockedPort.isOpen()).thenReturn(true);
+		
+		// Instantiate an XBeeDevice object with basic parameters.
+		xbeeDevice = Mockito.spy(new XBeeDevice(mockedPort));
+		Mockito.doReturn(OperatingMode.API).when(xbeeDevice).getOperatingMode();
+		Mockito.doNothing().when(xbeeDevice).applyChanges();
+		
+		// Keep the packet listener registered by the device.
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				packetListener = (IPacketReceiveListener)invocation.getArguments()[0];
+				return null;
+			}
+		}).when(xbeeDevice).addPacketListener(Mockito.any(IPacketReceiveListener.class));
+	}
+	
+	/**
+	 * Answers every sent AT command queue packet with the given status, 
+	 * except the command of the given line that is not answered.
+	 * 
+	 * @param status Status of the answers.
+	 * @param unansweredLine IO line without answer, {@code null} to answer 
+	 *                       every line.
+	 * 
+	 * @throws Exception 
+	 */
+	private void answerCommands(final ATCommandStatus status, final IOLine unansweredLine) throws Exception {
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				sentPackets++;
+				XBeePacket packet = (XBeePacket)invocation.getArguments()[0];
+				assertEquals(APIFrameType.AT_COMMAND_QUEUE, ((ATCommandQueuePacket)packet).getFrameType());
+				ATCommandQueuePacket command = (ATCommandQueuePacket)packet;
+				if (unansweredLine == null || !unansweredLine.getConfigurationATCommand().equals(command.getCommand()))
+					packetListener.packetReceived(new ATCommandResponsePacket(command.getFrameID(), status, 
+							command.getCommand(), null));
+				return null;
+			}
+		}).when(xbeeDevice).sendXBeePacketAsync(Mockito.any(XBeePacket.class));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#setIOConfiguration(Map)}.
+	 * 
+	 * <p>Verify that every line is configured with a queued command and the 
+	 * changes are applied only once.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSetIOConfigurationBatch() throws Exception {
+		// Setup the resources for the test.
+		answerCommands(ATCommandStatus.OK, null);
+		Map<IOLine, IOMode> configuration = new LinkedHashMap<IOLine, IOMode>();
+		configuration.put(IOLine.DIO0_AD0, IOMode.DIGITAL_IN);
+		configuration.put(IOLine.DIO1_AD1, IOMode.ADC);
+		configuration.put(IOLine.DIO4_AD4, IOMode.DIGITAL_OUT_HIGH);
+		
+		// Call the method under test.
+		Map<IOLine, ATCommandStatus> result = xbeeDevice.setIOConfiguration(configuration);
+		
+		// Verify the result.
+		assertEquals(3, sentPackets);
+		assertEquals(3, result.size());
+		for (ATCommandStatus status:result.values())
+			assertEquals(ATCommandStatus.OK, status);
+		Mockito.verify(xbeeDevice, Mockito.times(1)).applyChanges();
+		Mockito.verify(xbeeDevice, Mockito.never()).setParameter(Mockito.anyString(), Mockito.any(byte[].class));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#setDIOValues(Map)}.
+	 * 
+	 * <p>Verify that the changes are not applied if the 'apply configuration 
+	 * changes' option is disabled.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSetDIOValuesWithoutApplyChanges() throws Exception {
+		// Setup the resources for the test.
+		answerCommands(ATCommandStatus.OK, null);
+		xbeeDevice.enableApplyConfigurationChanges(false);
+		Map<IOLine, IOValue> values = new LinkedHashMap<IOLine, IOValue>();
+		values.put(IOLine.DIO4_AD4, IOValue.HIGH);
+		values.put(IOLine.DIO5_AD5, IOValue.LOW);
+		
+		// Call the method under test.
+		Map<IOLine, ATCommandStatus> result = xbeeDevice.setDIOValues(values);
+		
+		// Verify the result.
+		assertEquals(2, sentPackets);
+		assertEquals(ATCommandStatus.OK, result.get(IOLine.DIO4_AD4));
+		assertEquals(ATCommandStatus.OK, result.get(IOLine.DIO5_AD5));
+		Mockito.verify(xbeeDevice, Mockito.never()).applyChanges();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#setDIOValues(Map)}.
+	 * 
+	 * <p>Verify that the status of every line is reported, {@code null} for 
+	 * the lines without answer.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSetDIOValuesPartialAnswer() throws Exception {
+		// Setup the resources for the test.
+		answerCommands(ATCommandStatus.INVALID_PARAMETER, IOLine.DIO5_AD5);
+		xbeeDevice.setReceiveTimeout(100);
+		Map<IOLine, IOValue> values = new LinkedHashMap<IOLine, IOValue>();
+		values.put(IOLine.DIO4_AD4, IOValue.HIGH);
+		values.put(IOLine.DIO5_AD5, IOValue.LOW);
+		
+		// Call the method under test.
+		Map<IOLine, ATCommandStatus> result = xbeeDevice.setDIOValues(values);
+		
+		// Verify the result.
+		assertEquals(2, result.size());
+		assertEquals(ATCommandStatus.INVALID_PARAMETER, result.get(IOLine.DIO4_AD4));
+		assertNull(result.get(IOLine.DIO5_AD5));
+		Mockito.verify(xbeeDevice, Mockito.never()).applyChanges();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#setIOConfiguration(Map)}.
+	 * 
+	 * <p>Verify that a timeout exception is thrown if no line is answered.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test(expected=TimeoutException.class)
+	public void testSetIOConfigurationBatchTimeout() throws Exception {
+		// Setup the resources for the test.
+		answerCommands(ATCommandStatus.OK, IOLine.DIO0_AD0);
+		xbeeDevice.setReceiveTimeout(100);
+		Map<IOLine, IOMode> configuration = new LinkedHashMap<IOLine, IOMode>();
+		configuration.put(IOLine.DIO0_AD0, IOMode.DIGITAL_IN);
+		
+		// Call the method under test.
+		xbeeDevice.setIOConfiguration(configuration);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.RemoteXBeeDevice#setDIOValues(Map)}.
+	 * 
+	 * <p>Verify that the answers of a remote device known only by its 16-bit 
+	 * address are matched by their frame ID.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testSetDIOValuesRemote16BitAddress() throws Exception {
+		// Setup the resources for the test.
+		Mockito.doReturn(XBeeProtocol.RAW_802_15_4).when(xbeeDevice).getXBeeProtocol();
+		RemoteRaw802Device remoteDevice = new RemoteRaw802Device(xbeeDevice, new XBee16BitAddress("1234"));
+		remoteDevice.enableApplyConfigurationChanges(false);
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				sentPackets++;
+				RemoteATCommandPacket command = (RemoteATCommandPacket)invocation.getArguments()[0];
+				assertEquals(new XBee16BitAddress("1234"), command.get16bitDestinationAddress());
+				packetListener.packetReceived(new RemoteATCommandResponsePacket(command.getFrameID(), 
+						new XBee64BitAddress("0013A20040A9E77E"), command.get16bitDestinationAddress(), 
+						command.getCommand(), ATCommandStatus.OK, null));
+				return null;
+			}
+		}).when(xbeeDevice).sendXBeePacketAsync(Mockito.any(XBeePacket.class));
+		Map<IOLine, IOValue> values = new LinkedHashMap<IOLine, IOValue>();
+		values.put(IOLine.DIO4_AD4, IOValue.HIGH);
+		values.put(IOLine.DIO5_AD5, IOValue.LOW);
+		
+		// Call the method under test.
+		Map<IOLine, ATCommandStatus> result = remoteDevice.setDIOValues(values);
+		
+		// Verify the result.
+		assertEquals(2, sentPackets);
+		assertEquals(ATCommandStatus.OK, result.get(IOLine.DIO4_AD4));
+		assertEquals(ATCommandStatus.OK, result.get(IOLine.DIO5_AD5));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#setDIOValues(Map)}.
+	 * 
+	 * <p>Verify that null values are not allowed.</p>
+	 * 
+	 * @throws XBeeException 
+	 */
+	@Test(expected=NullPointerException.class)
+	public void testSetDIOValuesNullValue() throws XBeeException {
+		Map<IOLine, IOValue> values = new LinkedHashMap<IOLine, IOValue>();
+		values.put(IOLine.DIO4_AD4, null);
+		
+		xbeeDevice.setDIOValues(values);
+	}
+}
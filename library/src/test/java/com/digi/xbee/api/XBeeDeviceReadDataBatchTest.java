@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.digi.xbee.api.connection.DataReader;
+import com.digi.xbee.api.connection.serial.SerialPortRxTx;
+import com.digi.xbee.api.exceptions.InterfaceNotOpenException;
+import com.digi.xbee.api.io.IOLine;
+import com.digi.xbee.api.io.IOValue;
+import com.digi.xbee.api.models.OperatingMode;
+import com.digi.xbee.api.models.XBee16BitAddress;
+import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.models.XBeeIOSampleMessage;
+import com.digi.xbee.api.models.XBeeMessage;
+import com.digi.xbee.api.models.XBeePacketsQueue;
+import com.digi.xbee.api.models.XBeeReceiveOptions;
+import com.digi.xbee.api.packet.common.IODataSampleRxIndicatorPacket;
+import com.digi.xbee.api.packet.common.ReceivePacket;
+import com.digi.xbee.api.packet.raw.RX64Packet;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({XBeeDevice.class, DataReader.class})
+public class XBeeDeviceReadDataBatchTest {
+	
+	// Constants.
+	private static final XBee64BitAddress ADDRESS_1 = new XBee64BitAddress("0013A20040A820DB");
+	private static final XBee64BitAddress ADDRESS_2 = new XBee64BitAddress("0013A20040A820DC");
+	
+	private static final XBee16BitAddress ADDRESS_16 = new XBee16BitAddress("9634");
+	
+	// DIO0 (HIGH) and AD1 (0x0155).
+	private static final byte[] IO_SAMPLE_PAYLOAD = new byte[]{0x01, 0x00, 0x01, 0x02, 0x00, 0x01, 0x01, 0x55};
+	
+	// Variables.
+	private XBeeDevice xbeeDevice;
+	
+	private SerialPortRxTx mockConnectionInterface;
+	
+	private XBeePacketsQueue xbeePacketsQueue;
+	
+	@Before
+	public void setUp() throws Exception {
+		mockConnectionInterface = Mockito.mock(SerialPortRxTx.class);
+		
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Exception {
+				Mockito.when(mockConnectionInterface.isOpen()).thenReturn(true);
+				return null;
+			}
+		}).when(mockConnectionInterface).open();
+		
+		Mockito.doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Exception {
+				Mockito.when(mockConnectionInterface.isOpen()).thenReturn(false);
+				return null;
+			}
+		}).when(mockConnectionInterface).close();
+		
+		// Use a real queue so packets can be added by the tests.
+		xbeePacketsQueue = new XBeePacketsQueue(10);
+		PowerMockito.whenNew(XBeePacketsQueue.class).withAnyArguments().thenReturn(xbeePacketsQueue);
+		
+		xbeeDevice = PowerMockito.spy(new XBeeDevice(mockConnectionInterface));
+		
+		Mockito.doReturn(OperatingMode.API).when(xbeeDevice).determineOperatingMode();
+		Mockito.doNothing().when(xbeeDevice).readDeviceInfo();
+		
+		xbeeDevice.open();
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		xbeeDevice.close();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#readData(java.util.Collection, int, int)}.
+	 * 
+	 * <p>Verify that the method cannot be called with a null collection.</p>
+	 */
+	@Test(expected=NullPointerException.class)
+	public final void testReadDataBatchNullCollection() {
+		xbeeDevice.readData(null, 10, 0);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#readData(java.util.Collection, int, int)}.
+	 * 
+	 * <p>Verify that the method cannot be called with a maximum number of messages less than 
+	 * 1.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public final void testReadDataBatchInvalidMaxMessages() {
+		xbeeDevice.readData(new ArrayList<XBeeMessage>(), 0, 0);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#readData(java.util.Collection, int, int)}.
+	 * 
+	 * <p>Verify that the method cannot be called if the connection is not open.</p>
+	 */
+	@Test(expected=InterfaceNotOpenException.class)
+	public final void testReadDataBatchInterfaceNotOpen() {
+		Mockito.when(mockConnectionInterface.isOpen()).thenReturn(false);
+		
+		xbeeDevice.readData(new ArrayList<XBeeMessage>(), 10, 0);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#readData(java.util.Collection, int, int)}.
+	 * 
+	 * <p>Verify that the received data messages are read in arrival order up to the maximum 
+	 * number of messages, skipping the IO samples.</p>
+	 */
+	@Test
+	public final void testReadDataBatch() {
+		xbeePacketsQueue.addPacket(new ReceivePacket(ADDRESS_1, ADDRESS_16, XBeeReceiveOptions.NONE, "one".getBytes()));
+		xbeePacketsQueue.addPacket(new IODataSampleRxIndicatorPacket(ADDRESS_1, ADDRESS_16, XBeeReceiveOptions.NONE, IO_SAMPLE_PAYLOAD));
+		xbeePacketsQueue.addPacket(new RX64Packet(ADDRESS_2, 40, 0, "two".getBytes()));
+		xbeePacketsQueue.addPacket(new ReceivePacket(ADDRESS_1, ADDRESS_16, XBeeReceiveOptions.NONE, "three".getBytes()));
+		
+		ArrayList<XBeeMessage> messages = new ArrayList<XBeeMessage>();
+		
+		// Read the first 2 messages.
+		assertEquals(2, xbeeDevice.readData(messages, 2, 0));
+		assertEquals("one", messages.get(0).getDataString());
+		assertEquals(ADDRESS_1, messages.get(0).getDevice().get64BitAddress());
+		assertEquals("two", messages.get(1).getDataString());
+		assertEquals(ADDRESS_2, messages.get(1).getDevice().get64BitAddress());
+		
+		// Read the rest.
+		assertEquals(1, xbeeDevice.readData(messages, 10, 0));
+		assertEquals("three", messages.get(2).getDataString());
+		
+		// Verify that only the IO sample remains in the queue.
+		assertEquals(0, xbeeDevice.readData(messages, 10, 0));
+		assertEquals(1, xbeePacketsQueue.getCurrentSize());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#readIOSamples(java.util.Collection, int, int)}.
+	 * 
+	 * <p>Verify that the received IO samples are read with their source device, skipping the 
+	 * data messages.</p>
+	 */
+	@Test
+	public final void testReadIOSamples() {
+		xbeePacketsQueue.addPacket(new ReceivePacket(ADDRESS_1, ADDRESS_16, XBeeReceiveOptions.NONE, "one".getBytes()));
+		xbeePacketsQueue.addPacket(new IODataSampleRxIndicatorPacket(ADDRESS_1, ADDRESS_16, XBeeReceiveOptions.NONE, IO_SAMPLE_PAYLOAD));
+		xbeePacketsQueue.addPacket(new IODataSampleRxIndicatorPacket(ADDRESS_2, ADDRESS_16, XBeeReceiveOptions.NONE, IO_SAMPLE_PAYLOAD));
+		
+		ArrayList<XBeeIOSampleMessage> samples = new ArrayList<XBeeIOSampleMessage>();
+		assertEquals(2, xbeeDevice.readIOSamples(samples, 10, 0));
+		
+		assertEquals(ADDRESS_1, samples.get(0).getDevice().get64BitAddress());
+		assertEquals(ADDRESS_2, samples.get(1).getDevice().get64BitAddress());
+		assertEquals(IOValue.HIGH, samples.get(0).getIOSample().getDigitalValue(IOLine.DIO0_AD0));
+		assertEquals(Integer.valueOf(0x0155), samples.get(0).getIOSample().getAnalogValue(IOLine.DIO1_AD1));
+		
+		// Verify that the data message remains in the queue.
+		assertEquals(1, xbeePacketsQueue.getCurrentSize());
+	}
+}
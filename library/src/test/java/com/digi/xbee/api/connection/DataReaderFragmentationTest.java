@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.connection;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import com.digi.xbee.api.XBeeDevice;
+import com.digi.xbee.api.listeners.IDataReceiveListener;
+import com.digi.xbee.api.models.OperatingMode;
+import com.digi.xbee.api.models.XBee16BitAddress;
+import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.models.XBeeMessage;
+import com.digi.xbee.api.models.XBeeMessageFragmenter;
+import com.digi.xbee.api.models.XBeePayloadCodec;
+import com.digi.xbee.api.models.XBeeReceiveOptions;
+import com.digi.xbee.api.packet.common.ReceivePacket;
+
+@RunWith(PowerMockRunner.class)
+public class DataReaderFragmentationTest {
+	
+	// Constants.
+	private static final String PACKET_RECEIVED_METHOD = "packetReceived";
+	
+	private static final XBee64BitAddress XBEE_64BIT_ADDRESS = new XBee64BitAddress("0013A20040A9E77E");
+	
+	private static final int MAX_PAYLOAD_SIZE = 20;
+	
+	// Variables.
+	private DataReader dataReader;
+	
+	private XBeeDevice xbeeDevice;
+	
+	private byte[] data;
+	private List<byte[]> fragments;
+	
+	@Before
+	public void setUp() throws Exception {
+		IConnectionInterface mockConnectionInterface = Mockito.mock(IConnectionInterface.class);
+		Mockito.when(mockConnectionInterface.isOpen()).thenReturn(true);
+		
+		xbeeDevice = PowerMockito.spy(new XBeeDevice(mockConnectionInterface));
+		Mockito.when(xbeeDevice.isOpen()).thenReturn(true);
+		xbeeDevice.setMessageFragmenter(new XBeeMessageFragmenter(MAX_PAYLOAD_SIZE));
+		
+		dataReader = PowerMockito.spy(new DataReader(mockConnectionInterface, OperatingMode.API, xbeeDevice));
+		Whitebox.setInternalState(xbeeDevice, "dataReader", dataReader);
+		
+		data = new byte[40];
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte)i;
+		fragments = xbeeDevice.getMessageFragmenter().encode(data);
+	}
+	
+	/**
+	 * Creates a receive packet with the given data.
+	 * 
+	 * @param rfData The received data.
+	 * 
+	 * @return The receive packet.
+	 */
+	private ReceivePacket createPacket(byte[] rfData) {
+		return new ReceivePacket(XBEE_64BIT_ADDRESS, new XBee16BitAddress("1234"), 
+				XBeeReceiveOptions.NONE, rfData);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataReader#packetReceived(com.digi.xbee.api.packet.XBeePacket)}.
+	 * 
+	 * <p>Verify that the data listeners are notified once with the 
+	 * reassembled message when all the fragments are received.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public final void testFragmentsReassembledForListeners() throws Exception {
+		// Setup the resources for the test.
+		IDataReceiveListener listener = Mockito.mock(IDataReceiveListener.class);
+		dataReader.addDataReceiveListener(listener);
+		
+		// Call the method under test.
+		for (byte[] fragment : fragments)
+			Whitebox.invokeMethod(dataReader, PACKET_RECEIVED_METHOD, createPacket(fragment));
+		
+		// Verify the result.
+		ArgumentCaptor<XBeeMessage> message = ArgumentCaptor.forClass(XBeeMessage.class);
+		Mockito.verify(listener, Mockito.timeout(1000).times(1)).dataReceived(message.capture());
+		assertArrayEquals(data, message.getValue().getData());
+		assertEquals(XBEE_64BIT_ADDRESS, message.getValue().getDevice().get64BitAddress());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#readData(int)}.
+	 * 
+	 * <p>Verify that reading data returns the reassembled message and skips 
+	 * the fragments of incomplete messages.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public final void testFragmentsReassembledForReadData() throws Exception {
+		// Setup the resources for the test.
+		for (byte[] fragment : fragments)
+			Whitebox.invokeMethod(dataReader, PACKET_RECEIVED_METHOD, createPacket(fragment));
+		
+		// Call the method under test.
+		XBeeMessage message = xbeeDevice.readData(100);
+		
+		// Verify the result.
+		assertNotNull(message);
+		assertArrayEquals(data, message.getData());
+		assertNull(xbeeDevice.readData(100));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataReader#packetReceived(com.digi.xbee.api.packet.XBeePacket)}.
+	 * 
+	 * <p>Verify that compressed data is decompressed after reassembling its 
+	 * fragments.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public final void testCompressedFragmentsDecodedForListeners() throws Exception {
+		// Setup the resources for the test.
+		IDataReceiveListener listener = Mockito.mock(IDataReceiveListener.class);
+		dataReader.addDataReceiveListener(listener);
+		XBeePayloadCodec codec = new XBeePayloadCodec();
+		xbeeDevice.setPayloadCodec(codec);
+		
+		StringBuilder readings = new StringBuilder();
+		for (int i = 0; i < 10; i++)
+			readings.append("sensor").append(i).append("=2").append(i * 7 % 10).append(".5;");
+		byte[] text = readings.toString().getBytes();
+		byte[] payload = codec.encode(XBEE_64BIT_ADDRESS, text);
+		assertTrue(payload.length > MAX_PAYLOAD_SIZE);
+		assertTrue(payload.length < text.length);
+		
+		// Call the method under test.
+		for (byte[] fragment : xbeeDevice.getMessageFragmenter().encode(payload))
+			Whitebox.invokeMethod(dataReader, PACKET_RECEIVED_METHOD, createPacket(fragment));
+		
+		// Verify the result.
+		ArgumentCaptor<XBeeMessage> message = ArgumentCaptor.forClass(XBeeMessage.class);
+		Mockito.verify(listener, Mockito.timeout(1000).times(1)).dataReceived(message.capture());
+		assertArrayEquals(text, message.getValue().getData());
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.connection;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+import com.digi.xbee.api.XBeeDevice;
+import com.digi.xbee.api.io.IOSample;
+import com.digi.xbee.api.io.IOLine;
+import com.digi.xbee.api.io.IOSampleAggregate;
+import com.digi.xbee.api.io.IOSampleAggregator;
+import com.digi.xbee.api.io.IOSampleChangeFilter;
+import com.digi.xbee.api.listeners.IIOSampleAggregateListener;
+import com.digi.xbee.api.models.OperatingMode;
+import com.digi.xbee.api.models.XBee16BitAddress;
+import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.models.XBeeReceiveOptions;
+import com.digi.xbee.api.packet.common.IODataSampleRxIndicatorPacket;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({DataReader.class})
+public class DataReaderIOSampleAggregatorTest {
+	
+	// Constants.
+	private static final String PACKET_RECEIVED_METHOD = "packetReceived";
+	private static final String NOTIFY_IO_SAMPLE_RECEIVED_METHOD = "notifyIOSampleReceived";
+	
+	private static final XBee64BitAddress XBEE_64BIT_ADDRESS = new XBee64BitAddress("0013A20040A9E77E");
+	
+	// DIO0 (HIGH) and AD1 (0x0155).
+	private static final byte[] IO_SAMPLE_PAYLOAD = new byte[]{0x01, 0x00, 0x01, 0x02, 0x00, 0x01, 0x01, 0x55};
+	// DIO0 (LOW) and AD1 (0x0155).
+	private static final byte[] IO_SAMPLE_PAYLOAD_EDGE = new byte[]{0x01, 0x00, 0x01, 0x02, 0x00, 0x00, 0x01, 0x55};
+	
+	// Variables.
+	private DataReader dataReader;
+	
+	private XBeeDevice xbeeDevice;
+	
+	@Before
+	public void setUp() throws Exception {
+		IConnectionInterface mockConnectionInterface = Mockito.mock(IConnectionInterface.class);
+		
+		xbeeDevice = PowerMockito.spy(new XBeeDevice(mockConnectionInterface));
+		Mockito.when(xbeeDevice.isOpen()).thenReturn(true);
+		
+		dataReader = PowerMockito.spy(new DataReader(mockConnectionInterface, OperatingMode.API, xbeeDevice));
+		PowerMockito.doNothing().when(dataReader, NOTIFY_IO_SAMPLE_RECEIVED_METHOD, 
+				(RemoteXBeeDevice) Mockito.any(), (IOSample) Mockito.any());
+	}
+	
+	/**
+	 * Creates a spied IO Data Sample RX Indicator packet with the given payload.
+	 * 
+	 * @param payload IO sample payload.
+	 * 
+	 * @return The spied packet.
+	 */
+	private IODataSampleRxIndicatorPacket createPacket(byte[] payload) {
+		return Mockito.spy(new IODataSampleRxIndicatorPacket(XBEE_64BIT_ADDRESS, 
+				new XBee16BitAddress("1234"), XBeeReceiveOptions.NONE, payload));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataReader#packetReceived(com.digi.xbee.api.packet.XBeePacket)}.
+	 * 
+	 * <p>Verify that every received IO sample is aggregated, even if it is 
+	 * discarded by the change filter, and the aggregate listeners are 
+	 * notified when a window is closed.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public final void testAggregatedBeforeChangeFilter() throws Exception {
+		// Setup the resources for the test.
+		IIOSampleAggregateListener listener = Mockito.mock(IIOSampleAggregateListener.class);
+		IOSampleAggregator aggregator = new IOSampleAggregator(1);
+		aggregator.addAggregateListener(listener);
+		xbeeDevice.setIOSampleAggregator(aggregator);
+		xbeeDevice.setIOSampleChangeFilter(new IOSampleChangeFilter());
+		
+		// Call the method under test.
+		Whitebox.invokeMethod(dataReader, PACKET_RECEIVED_METHOD, createPacket(IO_SAMPLE_PAYLOAD));
+		Thread.sleep(5);
+		Whitebox.invokeMethod(dataReader, PACKET_RECEIVED_METHOD, createPacket(IO_SAMPLE_PAYLOAD));
+		Thread.sleep(5);
+		Whitebox.invokeMethod(dataReader, PACKET_RECEIVED_METHOD, createPacket(IO_SAMPLE_PAYLOAD_EDGE));
+		
+		// Verify the result.
+		PowerMockito.verifyPrivate(dataReader, Mockito.times(2)).invoke(NOTIFY_IO_SAMPLE_RECEIVED_METHOD, 
+				Mockito.any(RemoteXBeeDevice.class), Mockito.any(IOSample.class));
+		ArgumentCaptor<IOSampleAggregate> captor = ArgumentCaptor.forClass(IOSampleAggregate.class);
+		Mockito.verify(listener, Mockito.timeout(1000).times(2)).ioSamplesAggregated(captor.capture());
+		for (IOSampleAggregate aggregate:captor.getAllValues()) {
+			assertEquals(1, aggregate.getAnalogCount(IOLine.DIO1_AD1));
+			assertEquals(0x0155, aggregate.getAnalogLast(IOLine.DIO1_AD1));
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.connection;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+import com.digi.xbee.api.XBeeDevice;
+import com.digi.xbee.api.io.IOLine;
+import com.digi.xbee.api.io.IOSampleHistory;
+import com.digi.xbee.api.io.IOValue;
+import com.digi.xbee.api.models.OperatingMode;
+import com.digi.xbee.api.models.XBee16BitAddress;
+import com.digi.xbee.api.models.XBee64BitAddress;
+import com.digi.xbee.api.models.XBeeReceiveOptions;
+import com.digi.xbee.api.packet.common.IODataSampleRxIndicatorPacket;
+
+@RunWith(PowerMockRunner.class)
+public class DataReaderIOSampleHistoryTest {
+	
+	// Constants.
+	private static final String PACKET_RECEIVED_METHOD = "packetReceived";
+	
+	private static final XBee64BitAddress XBEE_64BIT_ADDRESS = new XBee64BitAddress("0013A20040A9E77E");
+	
+	// DIO0 (HIGH) and AD1 (0x0155).
+	private static final byte[] IO_SAMPLE_PAYLOAD = new byte[]{0x01, 0x00, 0x01, 0x02, 0x00, 0x01, 0x01, 0x55};
+	
+	// Variables.
+	private DataReader dataReader;
+	
+	private XBeeDevice xbeeDevice;
+	
+	private IODataSampleRxIndicatorPacket packet;
+	
+	@Before
+	public void setUp() {
+		IConnectionInterface mockConnectionInterface = Mockito.mock(IConnectionInterface.class);
+		
+		xbeeDevice = PowerMockito.spy(new XBeeDevice(mockConnectionInterface));
+		Mockito.when(xbeeDevice.isOpen()).thenReturn(true);
+		
+		dataReader = PowerMockito.spy(new DataReader(mockConnectionInterface, OperatingMode.API, xbeeDevice));
+		
+		packet = new IODataSampleRxIndicatorPacket(XBEE_64BIT_ADDRESS, new XBee16BitAddress("1234"), 
+				XBeeReceiveOptions.NONE, IO_SAMPLE_PAYLOAD);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataReader#packetReceived(com.digi.xbee.api.packet.XBeePacket)}.
+	 * 
+	 * <p>Verify that IO samples are not stored when the history is disabled.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public final void testIOSampleHistoryDisabled() throws Exception {
+		// Call the method under test.
+		Whitebox.invokeMethod(dataReader, PACKET_RECEIVED_METHOD, packet);
+		
+		// Verify the result.
+		RemoteXBeeDevice remote = xbeeDevice.getNetwork().getDevice(XBEE_64BIT_ADDRESS);
+		assertNotNull(remote);
+		assertNull(remote.getIOSampleHistory());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataReader#packetReceived(com.digi.xbee.api.packet.XBeePacket)}.
+	 * 
+	 * <p>Verify that received IO samples are stored in the history of the 
+	 * remote device.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public final void testIOSampleHistoryEnabled() throws Exception {
+		// Setup the resources for the test.
+		xbeeDevice.setIOSampleHistoryCapacity(10);
+		
+		// Call the method under test.
+		Whitebox.invokeMethod(dataReader, PACKET_RECEIVED_METHOD, packet);
+		Whitebox.invokeMethod(dataReader, PACKET_RECEIVED_METHOD, packet);
+		
+		// Verify the result.
+		IOSampleHistory history = xbeeDevice.getNetwork().getDevice(XBEE_64BIT_ADDRESS).getIOSampleHistory();
+		assertNotNull(history);
+		assertEquals(10, history.getCapacity());
+		assertEquals(2, history.size());
+		assertEquals(0x0155, history.getLatestAnalogValue(IOLine.DIO1_AD1));
+		assertEquals(IOValue.HIGH, history.getLatestDigitalValue(IOLine.DIO0_AD0));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataReader#packetReceived(com.digi.xbee.api.packet.XBeePacket)}.
+	 * 
+	 * <p>Verify that the history is recreated when the configured capacity 
+	 * changes.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public final void testIOSampleHistoryCapacityChanged() throws Exception {
+		// Setup the resources for the test.
+		xbeeDevice.setIOSampleHistoryCapacity(10);
+		Whitebox.invokeMethod(dataReader, PACKET_RECEIVED_METHOD, packet);
+		xbeeDevice.setIOSampleHistoryCapacity(20);
+		
+		// Call the method under test.
+		Whitebox.invokeMethod(dataReader, PACKET_RECEIVED_METHOD, packet);
+		
+		// Verify the result.
+		IOSampleHistory history = xbeeDevice.getNetwork().getDevice(XBEE_64BIT_ADDRESS).getIOSampleHistory();
+		assertEquals(20, history.getCapacity());
+		assertEquals(1, history.size());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.XBeeDevice#setIOSampleHistoryCapacity(int)}.
+	 * 
+	 * <p>Verify that the capacity cannot be negative.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public final void testSetIOSampleHistoryCapacityNegative() {
+		xbeeDevice.setIOSampleHistoryCapacity(-1);
+	}
+}
@@ -0,0 +1,405 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.connection;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.digi.xbee.api.models.WritePriority;
+
+public class DataWriterTest {
+	
+	// Constants.
+	private static final long WAIT_TIMEOUT = 5000;
+	
+	// Variables.
+	private IGatheringConnectionInterface mockConnectionInterface;
+	
+	private DataWriter dataWriter;
+	
+	private final List<Byte> writtenFrames = Collections.synchronizedList(new ArrayList<Byte>());
+	
+	private final List<Integer> writeCalls = Collections.synchronizedList(new ArrayList<Integer>());
+	
+	private final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+	private final CountDownLatch releaseFirstWrite = new CountDownLatch(1);
+	
+	@Before
+	public void setUp() throws Exception {
+		mockConnectionInterface = Mockito.mock(IGatheringConnectionInterface.class);
+		// The first write blocks until it is released, so the next frames 
+		// are queued in the meantime.
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				byte[] data = (byte[])invocation.getArguments()[0];
+				if (firstWriteStarted.getCount() > 0) {
+					firstWriteStarted.countDown();
+					releaseFirstWrite.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+				}
+				writtenFrames.add(data[0]);
+				writeCalls.add(1);
+				return null;
+			}
+		}).when(mockConnectionInterface).writeData(Mockito.any(byte[].class));
+		// Record the frames written together in a single gather write.
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+				for (Object argument : invocation.getArguments()) {
+					if (argument instanceof ByteBuffer[])
+						buffers.addAll(Arrays.asList((ByteBuffer[])argument));
+					else
+						buffers.add((ByteBuffer)argument);
+				}
+				for (ByteBuffer buffer : buffers)
+					writtenFrames.add(buffer.get(buffer.position()));
+				writeCalls.add(buffers.size());
+				return null;
+			}
+		}).when(mockConnectionInterface).writeData(Mockito.<ByteBuffer>anyVararg());
+	}
+	
+	@After
+	public void tearDown() {
+		releaseFirstWrite.countDown();
+		if (dataWriter != null)
+			dataWriter.stopWriter();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataWriter#writeData(byte[], WritePriority)}.
+	 * 
+	 * <p>Verify that the queued frames are written in order of priority 
+	 * class and in order of arrival within a class.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public final void testWriteDataPriorityOrder() throws Exception {
+		// Setup the resources for the test.
+		dataWriter = new DataWriter(mockConnectionInterface, 10, 60000);
+		dataWriter.start();
+		
+		List<Thread> writers = new ArrayList<Thread>();
+		writers.add(startWrite(0, WritePriority.BROADCAST_DATA));
+		assertTrue(firstWriteStarted.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+		
+		writers.add(startWrite(1, WritePriority.BROADCAST_DATA));
+		waitQueuedFrames(1);
+		writers.add(startWrite(2, WritePriority.UNICAST_DATA));
+		waitQueuedFrames(2);
+		writers.add(startWrite(3, WritePriority.UNICAST_DATA));
+		waitQueuedFrames(3);
+		writers.add(startWrite(4, WritePriority.REMOTE_COMMAND));
+		waitQueuedFrames(4);
+		writers.add(startWrite(5, WritePriority.LOCAL_COMMAND));
+		waitQueuedFrames(5);
+		
+		// Call the method under test.
+		releaseFirstWrite.countDown();
+		for (Thread writer : writers)
+			writer.join(WAIT_TIMEOUT);
+		
+		// Verify the result.
+		assertEquals(6, writtenFrames.size());
+		assertEquals(Byte.valueOf((byte)0), writtenFrames.get(0));
+		assertEquals(Byte.valueOf((byte)5), writtenFrames.get(1));
+		assertEquals(Byte.valueOf((byte)4), writtenFrames.get(2));
+		assertEquals(Byte.valueOf((byte)2), writtenFrames.get(3));
+		assertEquals(Byte.valueOf((byte)3), writtenFrames.get(4));
+		assertEquals(Byte.valueOf((byte)1), writtenFrames.get(5));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataWriter#writeData(byte[], WritePriority)}.
+	 * 
+	 * <p>Verify that the frames queued while a write is in progress are 
+	 * written together in a single gather write.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public final void testWriteDataBatch() throws Exception {
+		// Setup the resources for the test.
+		dataWriter = new DataWriter(mockConnectionInterface, 20, 60000);
+		dataWriter.start();
+		
+		List<Thread> writers = new ArrayList<Thread>();
+		writers.add(startWrite(0, WritePriority.UNICAST_DATA));
+		assertTrue(firstWriteStarted.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+		
+		for (int i = 1; i <= DataWriter.MAX_BATCH_FRAMES + 1; i++) {
+			writers.add(startWrite(i, WritePriority.UNICAST_DATA));
+			waitQueuedFrames(i);
+		}
+		
+		// Call the method under test.
+		releaseFirstWrite.countDown();
+		for (Thread writer : writers)
+			writer.join(WAIT_TIMEOUT);
+		
+		// Verify the result.
+		assertEquals(DataWriter.MAX_BATCH_FRAMES + 2, writtenFrames.size());
+		for (int i = 0; i < writtenFrames.size(); i++)
+			assertEquals(Byte.valueOf((byte)i), writtenFrames.get(i));
+		assertEquals(3, writeCalls.size());
+		assertEquals(Integer.valueOf(1), writeCalls.get(0));
+		assertEquals(Integer.valueOf(DataWriter.MAX_BATCH_FRAMES), writeCalls.get(1));
+		assertEquals(Integer.valueOf(1), writeCalls.get(2));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataWriter#writeData(byte[], WritePriority)}.
+	 * 
+	 * <p>Verify that the queued frames are written one by one when the 
+	 * connection interface does not support gather writes.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public final void testWriteDataBatchWithoutGatherWrites() throws Exception {
+		// Setup the resources for the test.
+		final IConnectionInterface connectionInterface = Mockito.mock(IConnectionInterface.class);
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				// Delegate to the recording mock.
+				mockConnectionInterface.writeData((byte[])invocation.getArguments()[0]);
+				return null;
+			}
+		}).when(connectionInterface).writeData(Mockito.any(byte[].class));
+		dataWriter = new DataWriter(connectionInterface, 20, 60000);
+		dataWriter.start();
+		
+		List<Thread> writers = new ArrayList<Thread>();
+		writers.add(startWrite(0, WritePriority.UNICAST_DATA));
+		assertTrue(firstWriteStarted.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+		for (int i = 1; i <= 3; i++) {
+			writers.add(startWrite(i, WritePriority.UNICAST_DATA));
+			waitQueuedFrames(i);
+		}
+		
+		// Call the method under test.
+		releaseFirstWrite.countDown();
+		for (Thread writer : writers)
+			writer.join(WAIT_TIMEOUT);
+		
+		// Verify the result.
+		assertEquals(4, writtenFrames.size());
+		for (int i = 0; i < writtenFrames.size(); i++)
+			assertEquals(Byte.valueOf((byte)i), writtenFrames.get(i));
+		assertEquals(4, writeCalls.size());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataWriter#writeData(byte[], WritePriority)}.
+	 * 
+	 * <p>Verify that a frame waiting for longer than the aging intervals is 
+	 * written before a frame of a higher priority class.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public final void testWriteDataAging() throws Exception {
+		// Setup the resources for the test.
+		dataWriter = new DataWriter(mockConnectionInterface, 10, 20);
+		dataWriter.start();
+		
+		List<Thread> writers = new ArrayList<Thread>();
+		writers.add(startWrite(0, WritePriority.LOCAL_COMMAND));
+		assertTrue(firstWriteStarted.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+		
+		writers.add(startWrite(1, WritePriority.BROADCAST_DATA));
+		waitQueuedFrames(1);
+		// Broadcast data is promoted above local commands after 4 intervals.
+		Thread.sleep(200);
+		writers.add(startWrite(2, WritePriority.LOCAL_COMMAND));
+		waitQueuedFrames(2);
+		
+		// Call the method under test.
+		releaseFirstWrite.countDown();
+		for (Thread writer : writers)
+			writer.join(WAIT_TIMEOUT);
+		
+		// Verify the result.
+		assertEquals(3, writtenFrames.size());
+		assertEquals(Byte.valueOf((byte)1), writtenFrames.get(1));
+		assertEquals(Byte.valueOf((byte)2), writtenFrames.get(2));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataWriter#writeData(byte[], WritePriority)}.
+	 * 
+	 * <p>Verify that the I/O errors of the connection interface are thrown 
+	 * to the caller.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public final void testWriteDataIOException() throws Exception {
+		// Setup the resources for the test.
+		Mockito.doThrow(new IOException("Port error")).when(mockConnectionInterface).writeData(Mockito.any(byte[].class));
+		dataWriter = new DataWriter(mockConnectionInterface);
+		dataWriter.start();
+		
+		// Call the method under test and verify the result.
+		try {
+			dataWriter.writeData(new byte[]{0x01}, WritePriority.UNICAST_DATA);
+			fail("An IOException should have been thrown.");
+		} catch (IOException e) {
+			assertEquals("Port error", e.getMessage());
+		}
+		assertTrue(dataWriter.isRunning());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataWriter#writeData(byte[], WritePriority)}.
+	 * 
+	 * <p>Verify that the runtime exceptions of the connection interface are 
+	 * thrown to the caller wrapped in an I/O exception and the writer keeps 
+	 * running.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public final void testWriteDataRuntimeException() throws Exception {
+		// Setup the resources for the test.
+		IllegalStateException cause = new IllegalStateException("Port error");
+		Mockito.doThrow(cause).when(mockConnectionInterface).writeData(Mockito.any(byte[].class));
+		dataWriter = new DataWriter(mockConnectionInterface);
+		dataWriter.start();
+		
+		// Call the method under test and verify the result.
+		try {
+			dataWriter.writeData(new byte[]{0x01}, WritePriority.UNICAST_DATA);
+			fail("An IOException should have been thrown.");
+		} catch (IOException e) {
+			assertSame(cause, e.getCause());
+		}
+		assertTrue(dataWriter.isRunning());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.DataWriter#stopWriter()}.
+	 * 
+	 * <p>Verify that the queued frames are not written once the writer is 
+	 * stopped and that new writes are rejected.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public final void testStopWriterFailsPendingWrites() throws Exception {
+		// Setup the resources for the test.
+		dataWriter = new DataWriter(mockConnectionInterface);
+		dataWriter.start();
+		
+		startWrite(0, WritePriority.LOCAL_COMMAND);
+		assertTrue(firstWriteStarted.await(WAIT_TIMEOUT, TimeUnit.MILLISECONDS));
+		
+		final IOException[] error = new IOException[1];
+		Thread pending = new Thread() {
+			@Override
+			public void run() {
+				try {
+					dataWriter.writeData(new byte[]{0x01}, WritePriority.UNICAST_DATA);
+				} catch (IOException e) {
+					error[0] = e;
+				}
+			}
+		};
+		pending.start();
+		waitQueuedFrames(1);
+		
+		// Call the method under test.
+		dataWriter.stopWriter();
+		releaseFirstWrite.countDown();
+		pending.join(WAIT_TIMEOUT);
+		dataWriter.join(WAIT_TIMEOUT);
+		
+		// Verify the result.
+		assertNotNull(error[0]);
+		assertFalse(dataWriter.isRunning());
+		assertEquals(1, writtenFrames.size());
+		try {
+			dataWriter.writeData(new byte[]{0x02}, WritePriority.LOCAL_COMMAND);
+			fail("An IOException should have been thrown.");
+		} catch (IOException e) {
+			assertEquals("Data writer stopped.", e.getMessage());
+		}
+	}
+	
+	/**
+	 * Starts a thread that writes a frame with the given ID and priority.
+	 * 
+	 * @param id The ID of the frame, written as its first byte.
+	 * @param priority The priority of the frame.
+	 * 
+	 * @return The started thread.
+	 */
+	private Thread startWrite(final int id, final WritePriority priority) {
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					dataWriter.writeData(new byte[]{(byte)id}, priority);
+				} catch (IOException e) {
+					// Checked by the tests through the written frames.
+				}
+			}
+		};
+		thread.start();
+		return thread;
+	}
+	
+	/**
+	 * Waits until the given number of frames is queued in the data writer.
+	 * 
+	 * @param count The number of queued frames to wait for.
+	 * 
+	 * @throws InterruptedException
+	 */
+	private void waitQueuedFrames(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+		while (getQueuedFrames() < count && System.currentTimeMillis() < deadline)
+			Thread.sleep(5);
+		assertEquals(count, getQueuedFrames());
+	}
+	
+	/**
+	 * Returns the number of frames queued in all the priority classes.
+	 * 
+	 * @return The number of queued frames.
+	 */
+	private int getQueuedFrames() {
+		int queued = 0;
+		for (WritePriority priority : WritePriority.values())
+			queued += dataWriter.getQueuedFrames(priority);
+		return queued;
+	}
+}
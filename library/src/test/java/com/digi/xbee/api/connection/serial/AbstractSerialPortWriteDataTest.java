@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.connection.serial;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AbstractSerialPortWriteDataTest {
+	
+	// Variables.
+	private MemorySerialPort serialPort;
+	
+	@Before
+	public void setup() {
+		serialPort = new MemorySerialPort(new SerialPortParameters(9600, 8, 1, 0, 0));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.serial.AbstractSerialPort#writeData(ByteBuffer...)}.
+	 * 
+	 * <p>Verify that the remaining bytes of several buffers are written in 
+	 * order with a single write and that their positions are advanced.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testWriteDataGather() throws Exception {
+		ByteBuffer header = ByteBuffer.wrap(new byte[]{0x7E, 0x00, 0x05});
+		ByteBuffer payload = ByteBuffer.allocateDirect(4);
+		payload.put(new byte[]{0x01, 0x02, 0x03, 0x04}).flip();
+		ByteBuffer checksum = ByteBuffer.wrap(new byte[]{0x55, (byte)0xAA}, 1, 1);
+		
+		serialPort.writeData(header, ByteBuffer.allocate(0), payload, checksum);
+		
+		assertArrayEquals(new byte[]{0x7E, 0x00, 0x05, 0x01, 0x02, 0x03, 0x04, (byte)0xAA}, 
+				serialPort.output.toByteArray());
+		assertEquals(1, serialPort.chunks.size());
+		assertFalse(header.hasRemaining());
+		assertFalse(payload.hasRemaining());
+		assertFalse(checksum.hasRemaining());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.serial.AbstractSerialPort#writeData(ByteBuffer...)}.
+	 * 
+	 * <p>Verify that a single buffer backed by an array is written from its 
+	 * position and that empty buffers are not written.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testWriteDataSingleBuffer() throws Exception {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0x00, 0x01, 0x02, 0x03});
+		buffer.position(1);
+		ByteBuffer slice = buffer.slice();
+		
+		serialPort.writeData(slice);
+		serialPort.writeData(ByteBuffer.allocate(0));
+		serialPort.writeData();
+		
+		assertArrayEquals(new byte[]{0x01, 0x02, 0x03}, serialPort.output.toByteArray());
+		assertEquals(1, serialPort.chunks.size());
+		assertFalse(slice.hasRemaining());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.serial.AbstractSerialPort#writeData(ByteBuffer...)}.
+	 * 
+	 * <p>Verify that a null buffer is rejected before writing anything.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testWriteDataNullBuffer() throws Exception {
+		try {
+			serialPort.writeData(ByteBuffer.wrap(new byte[]{0x01}), null);
+			fail("A NullPointerException should have been thrown.");
+		} catch (NullPointerException e) {
+			assertEquals("Buffers to be sent cannot be null.", e.getMessage());
+		}
+		assertEquals(0, serialPort.output.size());
+	}
+}
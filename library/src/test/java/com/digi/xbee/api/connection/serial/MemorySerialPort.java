@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.connection.serial;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper class that implements a serial port writing to memory.
+ */
+class MemorySerialPort extends AbstractSerialPort {
+	
+	// Variables.
+	final ByteArrayOutputStream output = new ByteArrayOutputStream();
+	final List<Integer> chunks = new ArrayList<Integer>();
+	
+	boolean cts = true;
+	
+	private final OutputStream outputStream = new OutputStream() {
+		/*
+		 * (non-Javadoc)
+		 * @see java.io.OutputStream#write(int)
+		 */
+		@Override
+		public void write(int b) throws IOException {
+			output.write(b);
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.io.OutputStream#write(byte[], int, int)
+		 */
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			output.write(b, off, len);
+			chunks.add(len);
+		}
+	};
+	
+	/**
+	 * Class constructor. Instantiates a new {@code MemorySerialPort} object 
+	 * with the given parameters.
+	 * 
+	 * @param parameters Serial port connection parameters.
+	 */
+	MemorySerialPort(SerialPortParameters parameters) {
+		super("test", parameters);
+	}
+	
+	@Override
+	public void open() {
+		connectionOpen = true;
+	}
+	
+	@Override
+	public void close() {
+		connectionOpen = false;
+	}
+	
+	@Override
+	public InputStream getInputStream() {
+		return null;
+	}
+	
+	@Override
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+	
+	@Override
+	public void setDTR(boolean state) {
+	}
+	
+	@Override
+	public void setRTS(boolean state) {
+	}
+	
+	@Override
+	public boolean isCTS() {
+		return cts;
+	}
+	
+	@Override
+	public boolean isDSR() {
+		return true;
+	}
+	
+	@Override
+	public boolean isCD() {
+		return true;
+	}
+	
+	@Override
+	public void setBreak(boolean enabled) {
+	}
+	
+	@Override
+	public void sendBreak(int duration) {
+	}
+	
+	@Override
+	public void setReadTimeout(int timeout) {
+	}
+	
+	@Override
+	public int getReadTimeout() {
+		return 0;
+	}
+}
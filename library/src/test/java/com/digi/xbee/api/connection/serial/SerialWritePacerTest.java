@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.connection.serial;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SerialWritePacerTest {
+	
+	// Constants.
+	private static final SerialPortParameters PARAMETERS_9600_8N1 = new SerialPortParameters(9600, 8, 1, 0, 0);
+	
+	// Variables.
+	private MemorySerialPort serialPort;
+	
+	@Before
+	public void setup() {
+		serialPort = new MemorySerialPort(PARAMETERS_9600_8N1);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.serial.SerialWritePacer#getWireTime(int, SerialPortParameters)}.
+	 * 
+	 * <p>Verify that the wire time takes into account the start, data, parity 
+	 * and stop bits of every byte.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testWireTime() throws Exception {
+		assertEquals(10, SerialWritePacer.getBitsPerByte(PARAMETERS_9600_8N1), 0);
+		assertEquals(12, SerialWritePacer.getBitsPerByte(new SerialPortParameters(9600, 8, 2, 2, 0)), 0);
+		
+		// 960 bytes per second at 9600 8N1.
+		assertEquals(1000000000L, SerialWritePacer.getWireTime(960, PARAMETERS_9600_8N1));
+		assertEquals(0, SerialWritePacer.getWireTime(960, new SerialPortParameters(0, 8, 1, 0, 0)));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.serial.SerialWritePacer#waitForRoom(int, SerialPortParameters)}.
+	 * 
+	 * <p>Verify that writes fitting in the buffer are not delayed and that the 
+	 * next write waits for the wire time of the excess.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testWaitForRoom() throws Exception {
+		SerialWritePacer pacer = new SerialWritePacer(96);
+		
+		long start = System.currentTimeMillis();
+		pacer.waitForRoom(96, PARAMETERS_9600_8N1);
+		assertTrue(System.currentTimeMillis() - start < 50);
+		
+		// 96 bytes take 100 ms at 9600 8N1.
+		pacer.waitForRoom(96, PARAMETERS_9600_8N1);
+		long elapsed = System.currentTimeMillis() - start;
+		assertTrue(elapsed >= 90 && elapsed < 500);
+		assertTrue(pacer.getPacedTime() > 0);
+		
+		pacer.reset();
+		start = System.currentTimeMillis();
+		pacer.waitForRoom(96, PARAMETERS_9600_8N1);
+		assertTrue(System.currentTimeMillis() - start < 50);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.serial.AbstractSerialPort#writeData(byte[])}.
+	 * 
+	 * <p>Verify that paced writes are split in chunks of the buffer size and 
+	 * sent at the wire rate.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testPacedWrite() throws Exception {
+		serialPort.setWritePacer(new SerialWritePacer(48));
+		byte[] data = new byte[144];
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte)i;
+		
+		long start = System.currentTimeMillis();
+		serialPort.writeData(data);
+		long elapsed = System.currentTimeMillis() - start;
+		
+		// 3 chunks of 48 bytes, the last 2 wait 50 ms each.
+		assertEquals(3, serialPort.chunks.size());
+		assertArrayEquals(data, serialPort.output.toByteArray());
+		assertTrue(elapsed >= 90 && elapsed < 1000);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.connection.serial.AbstractSerialPort#writeData(byte[], int, int)}.
+	 * 
+	 * <p>Verify that paced writes with hardware flow control wait for the CTS 
+	 * line instead of the wire time and fail if it is not ready.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testPacedWriteHardwareFlowControl() throws Exception {
+		serialPort = new MemorySerialPort(new SerialPortParameters(9600, 8, 1, 0, AbstractSerialPort.FLOW_CONTROL_HW));
+		SerialWritePacer pacer = new SerialWritePacer(48);
+		pacer.setCTSTimeout(50);
+		serialPort.setWritePacer(pacer);
+		byte[] data = new byte[144];
+		
+		long start = System.currentTimeMillis();
+		serialPort.writeData(data, 0, data.length);
+		assertTrue(System.currentTimeMillis() - start < 50);
+		assertEquals(3, serialPort.chunks.size());
+		
+		serialPort.cts = false;
+		try {
+			serialPort.writeData(data, 0, data.length);
+			fail("An IOException should have been thrown.");
+		} catch (IOException e) {
+			assertEquals("CTS line is not ready to receive data.", e.getMessage());
+		}
+		assertEquals(3, serialPort.chunks.size());
+	}
+}
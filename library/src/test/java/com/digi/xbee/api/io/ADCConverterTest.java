@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.digi.xbee.api.models.XBeeProtocol;
+
+public class ADCConverterTest {
+	
+	// Constants.
+	private static final double DELTA = 1e-9;
+	
+	private static final double VREF = 3.3;
+	
+	// Variables.
+	private ADCConverter converter;
+	
+	private int[] counts;
+	
+	@Before
+	public void setup() {
+		converter = new ADCConverter(VREF);
+		counts = new int[ADCConverter.MAX_ADC_VALUE + 1];
+		for (int i = 0; i < counts.length; i++)
+			counts[i] = i;
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.ADCConverter#getReferenceVoltage(XBeeProtocol, double)}.
+	 * 
+	 * <p>Verify that ZigBee devices use the internal reference and the rest 
+	 * of protocols the VREF pin.</p>
+	 */
+	@Test
+	public void testReferenceVoltageByProtocol() {
+		assertEquals(ADCConverter.INTERNAL_REFERENCE_VOLTAGE, ADCConverter.getReferenceVoltage(XBeeProtocol.ZIGBEE, VREF), DELTA);
+		assertEquals(VREF, ADCConverter.getReferenceVoltage(XBeeProtocol.RAW_802_15_4, VREF), DELTA);
+		assertEquals(ADCConverter.INTERNAL_REFERENCE_VOLTAGE, new ADCConverter(XBeeProtocol.ZIGBEE, 0).getReferenceVoltage(), DELTA);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.ADCConverter#ADCConverter(XBeeProtocol, double)}.
+	 * 
+	 * <p>Verify that protocols using the VREF pin require a valid voltage.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testCreateConverterInvalidVref() {
+		new ADCConverter(XBeeProtocol.RAW_802_15_4, 0);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.ADCConverter#convert(IOLine, int)}.
+	 * 
+	 * <p>Verify that values of lines without calibration are converted to 
+	 * volts.</p>
+	 */
+	@Test
+	public void testConvertToVolts() {
+		assertEquals(0, converter.convert(IOLine.DIO0_AD0, 0), DELTA);
+		assertEquals(VREF, converter.convert(IOLine.DIO0_AD0, ADCConverter.MAX_ADC_VALUE), DELTA);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.ADCConverter#setLinearCalibration(IOLine, double, double)}.
+	 * 
+	 * <p>Verify that linear calibrations are applied over the voltage.</p>
+	 */
+	@Test
+	public void testLinearCalibration() {
+		// TMP36 sensor: 10 mV/C with 500 mV offset.
+		converter.setLinearCalibration(IOLine.DIO1_AD1, 100, -50);
+		
+		double volts = 512 * VREF / ADCConverter.MAX_ADC_VALUE;
+		assertEquals(100 * volts - 50, converter.convert(IOLine.DIO1_AD1, 512), DELTA);
+		// Other lines are not affected.
+		assertEquals(volts, converter.convert(IOLine.DIO0_AD0, 512), DELTA);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.ADCConverter#setPolynomialCalibration(IOLine, double...)}.
+	 * 
+	 * <p>Verify that polynomial calibrations are applied over the voltage.</p>
+	 */
+	@Test
+	public void testPolynomialCalibration() {
+		converter.setPolynomialCalibration(IOLine.DIO2_AD2, 1, 2, 3, 4);
+		
+		double v = 700 * VREF / ADCConverter.MAX_ADC_VALUE;
+		assertEquals(1 + 2 * v + 3 * v * v + 4 * v * v * v, converter.convert(IOLine.DIO2_AD2, 700), 1e-6);
+		
+		converter.removeCalibration(IOLine.DIO2_AD2);
+		assertEquals(v, converter.convert(IOLine.DIO2_AD2, 700), DELTA);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.ADCConverter#convert(IOLine, int[], int, double[], int, int)}.
+	 * 
+	 * <p>Verify that the batch conversion gives the same results as the per 
+	 * sample conversion for every calibration degree.</p>
+	 */
+	@Test
+	public void testBatchSameAsPerSample() {
+		converter.setPolynomialCalibration(IOLine.DIO1_AD1, 5);
+		converter.setLinearCalibration(IOLine.DIO2_AD2, 100, -50);
+		converter.setPolynomialCalibration(IOLine.DIO3_AD3, 0.5, -1, 2, 0.25);
+		
+		double[] output = new double[counts.length + 2];
+		for (int line = 0; line < 4; line++) {
+			IOLine ioLine = IOLine.getDIO(line);
+			converter.convert(ioLine, counts, 0, output, 2, counts.length);
+			for (int i = 0; i < counts.length; i++)
+				assertEquals(converter.convert(ioLine, counts[i]), output[i + 2], 1e-9);
+		}
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.ADCConverter#convert(IOLine, int[], int, double[], int, int)}.
+	 * 
+	 * <p>Verify that the batch conversion checks the array bounds.</p>
+	 */
+	@Test(expected=ArrayIndexOutOfBoundsException.class)
+	public void testBatchOutOfBounds() {
+		converter.convert(IOLine.DIO0_AD0, counts, 1, new double[counts.length], 0, counts.length);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.ADCConverter#setLinearCalibration(IOLine, double, double)}.
+	 * 
+	 * <p>Verify that only analog lines can be calibrated.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testCalibrationNonAnalogLine() {
+		converter.setLinearCalibration(IOLine.DIO8, 1, 0);
+	}
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+
+public class IOSampleAggregatorTest {
+	
+	// Variables.
+	private IOSampleDecoder decoder;
+	
+	private RemoteXBeeDevice remoteDevice;
+	
+	@Before
+	public void setup() {
+		decoder = new IOSampleDecoder();
+		remoteDevice = Mockito.mock(RemoteXBeeDevice.class);
+	}
+	
+	/**
+	 * Decodes a sample with DIO0 as digital line and AD1 as analog line and 
+	 * adds it to the given aggregator.
+	 * 
+	 * @param aggregator The aggregator.
+	 * @param remote Remote device that sent the sample.
+	 * @param timestamp Reception time of the sample.
+	 * @param dio0 {@code true} if DIO0 is HIGH.
+	 * @param ad1 Value of AD1.
+	 * 
+	 * @return The aggregates of the closed windows.
+	 */
+	private List<IOSampleAggregate> add(IOSampleAggregator aggregator, RemoteXBeeDevice remote, 
+			long timestamp, boolean dio0, int ad1) {
+		decoder.decode(new byte[]{0x01, 0x00, 0x01, 0x02, 0x00, (byte)(dio0 ? 0x01 : 0x00), (byte)(ad1 >> 8), (byte)ad1});
+		return aggregator.addSample(remote, timestamp, decoder);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleAggregator#IOSampleAggregator(long, long)}.
+	 * 
+	 * <p>Verify that the window size must be a multiple of the slide.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testCreateWindowNotMultipleOfSlide() {
+		new IOSampleAggregator(1000, 300);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleAggregator#IOSampleAggregator(long, long)}.
+	 * 
+	 * <p>Verify that the window size cannot be less than the slide.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testCreateWindowLessThanSlide() {
+		new IOSampleAggregator(100, 200);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleAggregator#addSample(RemoteXBeeDevice, long, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that tumbling windows aggregate the samples of each window and 
+	 * are emitted when the first sample of the next window arrives.</p>
+	 */
+	@Test
+	public void testTumblingWindow() {
+		IOSampleAggregator aggregator = new IOSampleAggregator(1000);
+		
+		assertTrue(add(aggregator, remoteDevice, 10000, true, 100).isEmpty());
+		assertTrue(add(aggregator, remoteDevice, 10400, false, 300).isEmpty());
+		assertTrue(add(aggregator, remoteDevice, 10999, true, 200).isEmpty());
+		
+		List<IOSampleAggregate> aggregates = add(aggregator, remoteDevice, 11000, false, 1000);
+		
+		assertEquals(1, aggregates.size());
+		IOSampleAggregate aggregate = aggregates.get(0);
+		assertSame(remoteDevice, aggregate.getRemoteDevice());
+		assertEquals(10000, aggregate.getStartTime());
+		assertEquals(11000, aggregate.getEndTime());
+		assertEquals(3, aggregate.getAnalogCount(IOLine.DIO1_AD1));
+		assertEquals(100, aggregate.getAnalogMin(IOLine.DIO1_AD1));
+		assertEquals(300, aggregate.getAnalogMax(IOLine.DIO1_AD1));
+		assertEquals(600, aggregate.getAnalogSum(IOLine.DIO1_AD1));
+		assertEquals(200.0, aggregate.getAnalogAverage(IOLine.DIO1_AD1), 0.0);
+		assertEquals(200, aggregate.getAnalogLast(IOLine.DIO1_AD1));
+		assertEquals(3, aggregate.getDigitalCount(IOLine.DIO0_AD0));
+		assertEquals(2, aggregate.getDigitalHighCount(IOLine.DIO0_AD0));
+		assertEquals(IOValue.HIGH, aggregate.getDigitalLast(IOLine.DIO0_AD0));
+		
+		// Lines not included in the samples.
+		assertEquals(0, aggregate.getAnalogCount(IOLine.DIO2_AD2));
+		assertEquals(-1, aggregate.getAnalogMin(IOLine.DIO2_AD2));
+		assertTrue(Double.isNaN(aggregate.getAnalogAverage(IOLine.DIO2_AD2)));
+		assertNull(aggregate.getDigitalLast(IOLine.DIO1_AD1));
+		assertNull(aggregate.getDigitalLast(IOLine.DIO19));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleAggregator#addSample(RemoteXBeeDevice, long, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that sliding windows are emitted every slide and cover the 
+	 * last window size.</p>
+	 */
+	@Test
+	public void testSlidingWindow() {
+		IOSampleAggregator aggregator = new IOSampleAggregator(3000, 1000);
+		
+		add(aggregator, remoteDevice, 10500, false, 10);
+		List<IOSampleAggregate> aggregates = add(aggregator, remoteDevice, 11500, false, 20);
+		assertEquals(1, aggregates.size());
+		assertEquals(8000, aggregates.get(0).getStartTime());
+		assertEquals(11000, aggregates.get(0).getEndTime());
+		assertEquals(1, aggregates.get(0).getAnalogCount(IOLine.DIO1_AD1));
+		
+		aggregates = add(aggregator, remoteDevice, 12500, false, 30);
+		assertEquals(1, aggregates.size());
+		assertEquals(2, aggregates.get(0).getAnalogCount(IOLine.DIO1_AD1));
+		
+		aggregates = add(aggregator, remoteDevice, 13500, false, 40);
+		assertEquals(1, aggregates.size());
+		assertEquals(10000, aggregates.get(0).getStartTime());
+		assertEquals(13000, aggregates.get(0).getEndTime());
+		assertEquals(3, aggregates.get(0).getAnalogCount(IOLine.DIO1_AD1));
+		assertEquals(10, aggregates.get(0).getAnalogMin(IOLine.DIO1_AD1));
+		assertEquals(30, aggregates.get(0).getAnalogLast(IOLine.DIO1_AD1));
+		
+		// The first pane is out of the window.
+		aggregates = add(aggregator, remoteDevice, 14500, false, 50);
+		assertEquals(3, aggregates.get(0).getAnalogCount(IOLine.DIO1_AD1));
+		assertEquals(20, aggregates.get(0).getAnalogMin(IOLine.DIO1_AD1));
+		assertEquals(40, aggregates.get(0).getAnalogMax(IOLine.DIO1_AD1));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleAggregator#addSample(RemoteXBeeDevice, long, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that windows without samples are not emitted after a gap.</p>
+	 */
+	@Test
+	public void testGapWithoutSamples() {
+		IOSampleAggregator aggregator = new IOSampleAggregator(3000, 1000);
+		
+		add(aggregator, remoteDevice, 10500, false, 10);
+		List<IOSampleAggregate> aggregates = add(aggregator, remoteDevice, 100500, false, 20);
+		
+		// Only the windows containing the first sample.
+		assertEquals(3, aggregates.size());
+		for (IOSampleAggregate aggregate:aggregates)
+			assertEquals(1, aggregate.getAnalogCount(IOLine.DIO1_AD1));
+		assertEquals(13000, aggregates.get(2).getEndTime());
+		
+		aggregates = add(aggregator, remoteDevice, 101500, false, 30);
+		assertEquals(1, aggregates.size());
+		assertEquals(101000, aggregates.get(0).getEndTime());
+		assertEquals(1, aggregates.get(0).getAnalogCount(IOLine.DIO1_AD1));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleAggregator#flush()}.
+	 * 
+	 * <p>Verify that flushing emits the open window of every device and 
+	 * discards their state.</p>
+	 */
+	@Test
+	public void testFlush() {
+		IOSampleAggregator aggregator = new IOSampleAggregator(1000);
+		RemoteXBeeDevice otherDevice = Mockito.mock(RemoteXBeeDevice.class);
+		
+		add(aggregator, remoteDevice, 10100, true, 10);
+		add(aggregator, otherDevice, 10200, true, 20);
+		add(aggregator, otherDevice, 10300, true, 30);
+		
+		List<IOSampleAggregate> aggregates = aggregator.flush();
+		
+		assertEquals(2, aggregates.size());
+		for (IOSampleAggregate aggregate:aggregates) {
+			if (aggregate.getRemoteDevice() == remoteDevice)
+				assertEquals(1, aggregate.getAnalogCount(IOLine.DIO1_AD1));
+			else
+				assertEquals(2, aggregate.getAnalogCount(IOLine.DIO1_AD1));
+		}
+		assertTrue(aggregator.flush().isEmpty());
+		assertTrue(add(aggregator, remoteDevice, 20000, true, 10).isEmpty());
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+
+public class IOSampleChangeFilterTest {
+	
+	// Variables.
+	private IOSampleChangeFilter filter;
+	
+	private IOSampleDecoder decoder;
+	
+	private RemoteXBeeDevice remoteDevice;
+	
+	@Before
+	public void setup() {
+		filter = new IOSampleChangeFilter();
+		decoder = new IOSampleDecoder();
+		remoteDevice = Mockito.mock(RemoteXBeeDevice.class);
+	}
+	
+	/**
+	 * Decodes a sample with DIO0 as digital line and AD1 as analog line and 
+	 * checks if it is accepted by the filter.
+	 * 
+	 * @param remote Remote device that sent the sample.
+	 * @param dio0 {@code true} if DIO0 is HIGH.
+	 * @param ad1 Value of AD1.
+	 * 
+	 * @return {@code true} if the filter accepts the sample.
+	 */
+	private boolean accept(RemoteXBeeDevice remote, boolean dio0, int ad1) {
+		decoder.decode(new byte[]{0x01, 0x00, 0x01, 0x02, 0x00, (byte)(dio0 ? 0x01 : 0x00), (byte)(ad1 >> 8), (byte)ad1});
+		return filter.accept(remote, decoder);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleChangeFilter#accept(RemoteXBeeDevice, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that the first sample of a device is accepted and repeated 
+	 * samples are discarded.</p>
+	 */
+	@Test
+	public void testAcceptFirstAndRepeatedSamples() {
+		assertTrue(accept(remoteDevice, false, 100));
+		assertFalse(accept(remoteDevice, false, 100));
+		assertFalse(accept(remoteDevice, false, 100));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleChangeFilter#accept(RemoteXBeeDevice, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that rising and falling edges are accepted.</p>
+	 */
+	@Test
+	public void testAcceptDigitalEdges() {
+		accept(remoteDevice, false, 100);
+		
+		assertTrue(accept(remoteDevice, true, 100));
+		assertFalse(accept(remoteDevice, true, 100));
+		assertTrue(accept(remoteDevice, false, 100));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleChangeFilter#accept(RemoteXBeeDevice, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that analog changes are only accepted when they exceed the 
+	 * deadband of the line, comparing with the last delivered value.</p>
+	 */
+	@Test
+	public void testAcceptAnalogDeadband() {
+		filter.setAnalogDeadband(IOLine.DIO1_AD1, 10);
+		accept(remoteDevice, false, 100);
+		
+		assertFalse(accept(remoteDevice, false, 105));
+		assertFalse(accept(remoteDevice, false, 110));
+		assertFalse(accept(remoteDevice, false, 90));
+		assertTrue(accept(remoteDevice, false, 111));
+		assertFalse(accept(remoteDevice, false, 120));
+		assertTrue(accept(remoteDevice, false, 122));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleChangeFilter#accept(RemoteXBeeDevice, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that the state is kept per remote device.</p>
+	 */
+	@Test
+	public void testAcceptPerDevice() {
+		RemoteXBeeDevice otherDevice = Mockito.mock(RemoteXBeeDevice.class);
+		
+		assertTrue(accept(remoteDevice, true, 100));
+		assertTrue(accept(otherDevice, true, 100));
+		assertFalse(accept(remoteDevice, true, 100));
+		assertFalse(accept(otherDevice, true, 100));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleChangeFilter#accept(RemoteXBeeDevice, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that a change in the set of lines is accepted.</p>
+	 */
+	@Test
+	public void testAcceptMaskChange() {
+		accept(remoteDevice, true, 100);
+		
+		// Only DIO0, no analog lines.
+		decoder.decode(new byte[]{0x01, 0x00, 0x01, 0x00, 0x00, 0x01});
+		assertTrue(filter.accept(remoteDevice, decoder));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleChangeFilter#reset(RemoteXBeeDevice)}.
+	 * 
+	 * <p>Verify that the next sample is accepted after resetting the state.</p>
+	 */
+	@Test
+	public void testReset() {
+		accept(remoteDevice, true, 100);
+		filter.reset(remoteDevice);
+		
+		assertTrue(accept(remoteDevice, true, 100));
+		
+		filter.reset();
+		assertTrue(accept(remoteDevice, true, 100));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleChangeFilter#setAnalogDeadband(IOLine, int)}.
+	 * 
+	 * <p>Verify that the deadband cannot be set for a non analog line.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testSetDeadbandNonAnalogLine() {
+		filter.setAnalogDeadband(IOLine.DIO7, 10);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleChangeFilter#setAnalogDeadband(IOLine, int)}.
+	 * 
+	 * <p>Verify that the deadband cannot be negative.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testSetDeadbandNegative() {
+		filter.setAnalogDeadband(IOLine.DIO1_AD1, -1);
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class IOSampleDecoderTest {
+	
+	// Constants.
+	private static final byte[] INVALID_IO_DATA = new byte[]{0x00, 0x01, 0x02, 0x03};
+	
+	// DIO0 (HIGH), DIO4 (LOW), DIO9 (HIGH), AD1 (524), AD3 (250) and power supply (1250).
+	private static final byte[] IO_DATA_MIXED = new byte[]{0x01, 0x02, 0x11, (byte)0x8A, 0x02, 0x01, 0x02, 0x0C, 0x00, (byte)0xFA, 0x04, (byte)0xE2};
+	// DIO0 (HIGH), DIO4 (LOW), DIO8 (HIGH), AD1 (524) and AD3 (250).
+	private static final byte[] RAW_IO_DATA_MIXED = new byte[]{0x01, 0x15, 0x11, 0x01, 0x01, 0x02, 0x0C, 0x00, (byte)0xFA};
+	// AD1 (524) and AD3 (250).
+	private static final byte[] RAW_IO_DATA_ONLY_ANALOG = new byte[]{0x01, 0x14, 0x00, 0x02, 0x0C, 0x00, (byte)0xFA};
+	
+	// Variables.
+	private IOSampleDecoder decoder;
+	
+	@Before
+	public void setup() {
+		decoder = new IOSampleDecoder();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleDecoder#decode(byte[])}.
+	 * 
+	 * <p>Verify that invalid payloads are not decoded and the previous values 
+	 * are discarded.</p>
+	 */
+	@Test
+	public void testDecodeInvalidPayload() {
+		assertTrue(decoder.decode(IO_DATA_MIXED));
+		
+		assertFalse(decoder.decode(null));
+		assertEquals(0, decoder.getDigitalMask());
+		assertEquals(0, decoder.getAnalogMask());
+		assertFalse(decoder.hasPowerSupplyValue());
+		
+		assertFalse(decoder.decode(INVALID_IO_DATA));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleDecoder#decode(byte[])}.
+	 * 
+	 * <p>Verify that the decoded values are the same ones parsed by 
+	 * {@code IOSample}.</p>
+	 */
+	@Test
+	public void testDecodeSameAsIOSample() {
+		byte[][] payloads = new byte[][]{IO_DATA_MIXED, RAW_IO_DATA_MIXED, RAW_IO_DATA_ONLY_ANALOG};
+		for (byte[] payload:payloads) {
+			IOSample ioSample = new IOSample(payload);
+			assertTrue(decoder.decode(payload));
+			
+			assertEquals(ioSample.getDigitalMask(), decoder.getDigitalMask());
+			for (int i = 0; i < 16; i++) {
+				IOLine line = IOLine.getDIO(i);
+				assertEquals(ioSample.hasDigitalValue(line), decoder.hasDigitalValue(i));
+				if (ioSample.hasDigitalValue(line))
+					assertEquals(ioSample.getDigitalValue(line) == IOValue.HIGH, (decoder.getDigitalValues() & (1 << i)) != 0);
+			}
+			for (int i = 0; i < IOSampleDecoder.MAX_ANALOG_LINES; i++) {
+				IOLine line = IOLine.getDIO(i);
+				assertEquals(ioSample.hasAnalogValue(line), decoder.hasAnalogValue(i));
+				if (ioSample.hasAnalogValue(line))
+					assertEquals(ioSample.getAnalogValue(line).intValue(), decoder.getAnalogValue(i));
+			}
+			assertEquals(ioSample.hasPowerSupplyValue(), decoder.hasPowerSupplyValue());
+		}
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleDecoder#decode(byte[])}.
+	 * 
+	 * <p>Verify that the analog mask of 802.15.4 samples is normalized.</p>
+	 */
+	@Test
+	public void testDecodeRawSampleAnalogMask() {
+		assertTrue(decoder.decode(RAW_IO_DATA_MIXED));
+		
+		assertEquals(0x0A, decoder.getAnalogMask());
+		assertEquals(524, decoder.getAnalogValue(1));
+		assertEquals(250, decoder.getAnalogValue(3));
+		assertFalse(decoder.hasPowerSupplyValue());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleDecoder#getPowerSupplyValue()}.
+	 * 
+	 * <p>Verify that the power supply value is decoded.</p>
+	 */
+	@Test
+	public void testDecodePowerSupply() {
+		assertTrue(decoder.decode(IO_DATA_MIXED));
+		
+		assertEquals(0x0A, decoder.getAnalogMask());
+		assertTrue(decoder.hasPowerSupplyValue());
+		assertEquals(1250, decoder.getPowerSupplyValue());
+	}
+}
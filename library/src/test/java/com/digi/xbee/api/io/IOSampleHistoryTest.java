@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class IOSampleHistoryTest {
+	
+	// Constants.
+	private static final int CAPACITY = 4;
+	
+	// Variables.
+	private IOSampleHistory history;
+	
+	private IOSampleDecoder decoder;
+	
+	@Before
+	public void setup() {
+		history = new IOSampleHistory(CAPACITY);
+		decoder = new IOSampleDecoder();
+	}
+	
+	/**
+	 * Decodes a sample with DIO0 as digital line and AD1 as analog line and 
+	 * adds it to the history.
+	 * 
+	 * @param timestamp Timestamp of the sample.
+	 * @param dio0 {@code true} if DIO0 is HIGH.
+	 * @param ad1 Value of AD1.
+	 */
+	private void addSample(long timestamp, boolean dio0, int ad1) {
+		decoder.decode(new byte[]{0x01, 0x00, 0x01, 0x02, 0x00, (byte)(dio0 ? 0x01 : 0x00), (byte)(ad1 >> 8), (byte)ad1});
+		history.addSample(timestamp, decoder);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleHistory#IOSampleHistory(int)}.
+	 * 
+	 * <p>Verify that the history cannot be created with an invalid capacity.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testCreateHistoryInvalidCapacity() {
+		new IOSampleHistory(0);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleHistory#getLatestAnalogValue(IOLine)}.
+	 * 
+	 * <p>Verify that an empty history does not return values.</p>
+	 */
+	@Test
+	public void testEmptyHistory() {
+		assertEquals(0, history.size());
+		assertEquals(-1, history.getLatestTimestamp());
+		assertEquals(-1, history.getLatestAnalogValue(IOLine.DIO1_AD1));
+		assertNull(history.getLatestDigitalValue(IOLine.DIO0_AD0));
+		assertEquals(0, history.getAnalogValues(IOLine.DIO1_AD1, 0, Long.MAX_VALUE, null, new int[CAPACITY]));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleHistory#getLatestAnalogValue(IOLine)} and
+	 * {@link com.digi.xbee.api.io.IOSampleHistory#getLatestDigitalValue(IOLine)}.
+	 * 
+	 * <p>Verify that the latest values are returned.</p>
+	 */
+	@Test
+	public void testLatestValues() {
+		addSample(100, true, 10);
+		addSample(200, false, 20);
+		
+		assertEquals(2, history.size());
+		assertEquals(200, history.getLatestTimestamp());
+		assertEquals(20, history.getLatestAnalogValue(IOLine.DIO1_AD1));
+		assertEquals(IOValue.LOW, history.getLatestDigitalValue(IOLine.DIO0_AD0));
+		assertEquals(-1, history.getLatestAnalogValue(IOLine.DIO2_AD2));
+		assertNull(history.getLatestDigitalValue(IOLine.DIO3_AD3));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleHistory#getAnalogValues(IOLine, long, long, long[], int[])}.
+	 * 
+	 * <p>Verify that the oldest samples are overwritten when the history is 
+	 * full and range queries only return the stored samples.</p>
+	 */
+	@Test
+	public void testRangeQueryAfterWrap() {
+		for (int i = 0; i < 10; i++)
+			addSample(i * 100, i % 2 == 0, i);
+		
+		assertEquals(CAPACITY, history.size());
+		
+		long[] timestamps = new long[10];
+		int[] values = new int[10];
+		int count = history.getAnalogValues(IOLine.DIO1_AD1, 0, Long.MAX_VALUE, timestamps, values);
+		
+		assertEquals(CAPACITY, count);
+		for (int i = 0; i < CAPACITY; i++) {
+			assertEquals(6 + i, values[i]);
+			assertEquals((6 + i) * 100, timestamps[i]);
+		}
+		
+		count = history.getAnalogValues(IOLine.DIO1_AD1, 650, 800, timestamps, values);
+		assertEquals(2, count);
+		assertEquals(7, values[0]);
+		assertEquals(8, values[1]);
+		
+		count = history.getDigitalValues(IOLine.DIO0_AD0, 700, 900, null, values);
+		assertEquals(3, count);
+		assertEquals(0, values[0]);
+		assertEquals(1, values[1]);
+		assertEquals(0, values[2]);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleHistory#getAnalogValues(IOLine, long, long, long[], int[])}.
+	 * 
+	 * <p>Verify that range queries stop when the values array is full.</p>
+	 */
+	@Test
+	public void testRangeQueryLimitedArray() {
+		for (int i = 0; i < CAPACITY; i++)
+			addSample(i, true, i);
+		
+		int[] values = new int[2];
+		assertEquals(2, history.getAnalogValues(IOLine.DIO1_AD1, 0, Long.MAX_VALUE, null, values));
+		assertEquals(0, values[0]);
+		assertEquals(1, values[1]);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleHistory#addSample(long, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that out of order timestamps are stored with the latest 
+	 * timestamp.</p>
+	 */
+	@Test
+	public void testOutOfOrderTimestamp() {
+		addSample(500, true, 1);
+		addSample(400, true, 2);
+		
+		assertEquals(500, history.getLatestTimestamp());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleHistory#clear()}.
+	 * 
+	 * <p>Verify that the history is empty after clearing it.</p>
+	 */
+	@Test
+	public void testClear() {
+		addSample(100, true, 10);
+		history.clear();
+		
+		assertEquals(0, history.size());
+		assertEquals(-1, history.getLatestAnalogValue(IOLine.DIO1_AD1));
+	}
+}
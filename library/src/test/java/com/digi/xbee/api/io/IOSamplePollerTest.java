@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+import com.digi.xbee.api.exceptions.TimeoutException;
+import com.digi.xbee.api.exceptions.XBeeException;
+import com.digi.xbee.api.listeners.IIOSamplePollListener;
+
+public class IOSamplePollerTest {
+	
+	// Constants.
+	private static final long READ_TIME = 300;
+	
+	// Variables.
+	private IOSamplePoller poller;
+	
+	private IOSample ioSample;
+	
+	private AtomicInteger inFlight;
+	private AtomicInteger maxInFlight;
+	
+	@Before
+	public void setup() {
+		poller = new IOSamplePoller();
+		poller.setJitter(0);
+		ioSample = Mockito.mock(IOSample.class);
+		inFlight = new AtomicInteger();
+		maxInFlight = new AtomicInteger();
+	}
+	
+	@After
+	public void tearDown() {
+		poller.stop();
+	}
+	
+	/**
+	 * Creates a list of remote devices whose {@code readIOSample()} takes 
+	 * {@link #READ_TIME} milliseconds, recording the number of concurrent 
+	 * reads.
+	 * 
+	 * @param count Number of devices.
+	 * 
+	 * @return The list of remote devices.
+	 * 
+	 * @throws XBeeException 
+	 */
+	private List<RemoteXBeeDevice> createSlowDevices(int count) throws XBeeException {
+		List<RemoteXBeeDevice> devices = new ArrayList<RemoteXBeeDevice>();
+		for (int i = 0; i < count; i++) {
+			RemoteXBeeDevice device = Mockito.mock(RemoteXBeeDevice.class);
+			Mockito.when(device.readIOSample()).thenAnswer(new Answer<IOSample>() {
+				public IOSample answer(InvocationOnMock invocation) throws Throwable {
+					int current = inFlight.incrementAndGet();
+					synchronized (maxInFlight) {
+						if (current > maxInFlight.get())
+							maxInFlight.set(current);
+					}
+					try {
+						Thread.sleep(READ_TIME);
+					} finally {
+						inFlight.decrementAndGet();
+					}
+					return ioSample;
+				}
+			});
+			devices.add(device);
+		}
+		return devices;
+	}
+	
+	/**
+	 * Creates a poll listener that counts down the given latch for every 
+	 * successful poll.
+	 * 
+	 * @param latch The latch.
+	 * 
+	 * @return The poll listener.
+	 */
+	private IIOSamplePollListener createListener(final CountDownLatch latch) {
+		return new IIOSamplePollListener() {
+			public void ioSamplePolled(RemoteXBeeDevice remoteDevice, IOSample ioSample) {
+				latch.countDown();
+			}
+			public void ioSamplePollFailed(RemoteXBeeDevice remoteDevice, XBeeException error, int consecutiveFailures) {}
+		};
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSamplePoller#start(java.util.Collection, long)}.
+	 * 
+	 * <p>Verify that the poller validates its parameters.</p>
+	 * 
+	 * @throws XBeeException 
+	 */
+	@Test
+	public void testStartInvalidParameters() throws XBeeException {
+		try {
+			poller.start(null, 1000);
+			fail("NullPointerException expected.");
+		} catch (NullPointerException e) {}
+		try {
+			poller.start(new ArrayList<RemoteXBeeDevice>(), 1000);
+			fail("IllegalArgumentException expected.");
+		} catch (IllegalArgumentException e) {}
+		try {
+			poller.start(createSlowDevices(1), 0);
+			fail("IllegalArgumentException expected.");
+		} catch (IllegalArgumentException e) {}
+		assertFalse(poller.isRunning());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSamplePoller#start(java.util.Collection, long)}.
+	 * 
+	 * <p>Verify that the poller cannot be started twice.</p>
+	 * 
+	 * @throws XBeeException 
+	 */
+	@Test(expected=IllegalStateException.class)
+	public void testStartTwice() throws XBeeException {
+		List<RemoteXBeeDevice> devices = createSlowDevices(1);
+		poller.start(devices, 10000);
+		
+		assertTrue(poller.isRunning());
+		poller.start(devices, 10000);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSamplePoller#setMaxConcurrentPolls(int)}.
+	 * 
+	 * <p>Verify that the maximum number of concurrent polls is bounded.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testSetMaxConcurrentPollsTooBig() {
+		poller.setMaxConcurrentPolls(IOSamplePoller.MAX_CONCURRENT_POLLS + 1);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSamplePoller#start(java.util.Collection, long)}.
+	 * 
+	 * <p>Verify that the devices are polled concurrently, so a sweep takes 
+	 * less time than reading the devices one after the other.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testConcurrentSweep() throws Exception {
+		// Setup the resources for the test.
+		List<RemoteXBeeDevice> devices = createSlowDevices(4);
+		CountDownLatch latch = new CountDownLatch(4);
+		poller.addPollListener(createListener(latch));
+		poller.setMaxConcurrentPolls(4);
+		
+		// Call the method under test.
+		long start = System.currentTimeMillis();
+		poller.start(devices, 200);
+		
+		// Verify the result.
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(System.currentTimeMillis() - start < 4 * READ_TIME);
+		assertTrue(maxInFlight.get() > 1);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSamplePoller#setMaxConcurrentPolls(int)}.
+	 * 
+	 * <p>Verify that the number of concurrent polls does not exceed the 
+	 * configured maximum.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testConcurrencyLimit() throws Exception {
+		// Setup the resources for the test.
+		List<RemoteXBeeDevice> devices = createSlowDevices(6);
+		CountDownLatch latch = new CountDownLatch(6);
+		poller.addPollListener(createListener(latch));
+		poller.setMaxConcurrentPolls(2);
+		
+		// Call the method under test.
+		poller.start(devices, 10);
+		
+		// Verify the result.
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertEquals(2, maxInFlight.get());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSamplePoller#start(java.util.Collection, long)}.
+	 * 
+	 * <p>Verify that devices that do not respond are polled less often and 
+	 * their failures are notified.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testBackoffUnresponsiveDevice() throws Exception {
+		// Setup the resources for the test.
+		RemoteXBeeDevice device = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(device.readIOSample()).thenThrow(new TimeoutException());
+		IIOSamplePollListener listener = Mockito.mock(IIOSamplePollListener.class);
+		poller.addPollListener(listener);
+		
+		// Call the method under test.
+		poller.start(Arrays.asList(device), 50);
+		Thread.sleep(1000);
+		poller.stop();
+		
+		// Verify the result. Without backoff the device would be polled 20 
+		// times, with backoff it is polled after 0, 100, 300 and 700 ms.
+		int polls = Mockito.mockingDetails(device).getInvocations().size();
+		assertTrue(polls >= 3 && polls <= 5);
+		Mockito.verify(listener).ioSamplePollFailed(Mockito.eq(device), Mockito.any(TimeoutException.class), Mockito.eq(1));
+		Mockito.verify(listener).ioSamplePollFailed(Mockito.eq(device), Mockito.any(TimeoutException.class), Mockito.eq(3));
+		Mockito.verify(listener, Mockito.never()).ioSamplePolled(Mockito.any(RemoteXBeeDevice.class), Mockito.any(IOSample.class));
+		assertTrue(poller.getConsecutiveFailures(device) >= 3);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSamplePoller#start(java.util.Collection, long)}.
+	 * 
+	 * <p>Verify that an unexpected runtime exception is notified as a failed 
+	 * poll and the device keeps being polled from daemon threads.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testRuntimeExceptionKeepsPolling() throws Exception {
+		// Setup the resources for the test.
+		RemoteXBeeDevice device = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(device.readIOSample()).thenThrow(new IllegalStateException("Unexpected")).thenReturn(ioSample);
+		final CountDownLatch polled = new CountDownLatch(1);
+		final boolean[] daemon = new boolean[1];
+		final XBeeException[] failure = new XBeeException[1];
+		poller.addPollListener(new IIOSamplePollListener() {
+			public void ioSamplePolled(RemoteXBeeDevice remoteDevice, IOSample ioSample) {
+				daemon[0] = Thread.currentThread().isDaemon();
+				polled.countDown();
+			}
+			public void ioSamplePollFailed(RemoteXBeeDevice remoteDevice, XBeeException error, int consecutiveFailures) {
+				failure[0] = error;
+			}
+		});
+		
+		// Call the method under test.
+		poller.start(Arrays.asList(device), 20);
+		
+		// Verify the result.
+		assertTrue(polled.await(5, TimeUnit.SECONDS));
+		assertTrue(daemon[0]);
+		assertNotNull(failure[0]);
+		assertEquals(IllegalStateException.class, failure[0].getCause().getClass());
+	}
+}
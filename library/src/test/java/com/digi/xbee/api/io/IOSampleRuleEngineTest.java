@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.io;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+import com.digi.xbee.api.listeners.IIOSampleRuleListener;
+import com.digi.xbee.api.models.XBee64BitAddress;
+
+public class IOSampleRuleEngineTest {
+	
+	// Variables.
+	private IOSampleRuleEngine engine;
+	
+	private IOSampleDecoder decoder;
+	
+	private RemoteXBeeDevice remoteDevice;
+	
+	private IIOSampleRuleListener listener;
+	
+	@Before
+	public void setup() {
+		engine = new IOSampleRuleEngine();
+		decoder = new IOSampleDecoder();
+		remoteDevice = Mockito.mock(RemoteXBeeDevice.class);
+		listener = Mockito.mock(IIOSampleRuleListener.class);
+	}
+	
+	/**
+	 * Decodes a sample with DIO0 as digital line and AD1 as analog line and 
+	 * evaluates the rules of the engine.
+	 * 
+	 * @param remote Remote device that sent the sample.
+	 * @param dio0 {@code true} if DIO0 is HIGH.
+	 * @param ad1 Value of AD1.
+	 * 
+	 * @return The list of matches.
+	 */
+	private List<IOSampleRuleMatch> evaluate(RemoteXBeeDevice remote, boolean dio0, int ad1) {
+		decoder.decode(new byte[]{0x01, 0x00, 0x01, 0x02, 0x00, (byte)(dio0 ? 0x01 : 0x00), (byte)(ad1 >> 8), (byte)ad1});
+		return engine.evaluate(remote, decoder);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleRule#analogAbove(IOLine, int)}.
+	 * 
+	 * <p>Verify that an analog rule cannot be created for a digital only 
+	 * line.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testAnalogRuleDigitalLine() {
+		IOSampleRule.analogAbove(IOLine.DIO8, 100);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleRuleEngine#evaluate(RemoteXBeeDevice, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that no rule matches when the engine is empty.</p>
+	 */
+	@Test
+	public void testEvaluateNoRules() {
+		assertTrue(evaluate(remoteDevice, true, 1000).isEmpty());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleRuleEngine#evaluate(RemoteXBeeDevice, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that an analog rule matches once when the threshold is 
+	 * crossed and it is re-armed when the value goes back below the 
+	 * threshold minus the hysteresis.</p>
+	 */
+	@Test
+	public void testEvaluateAnalogAboveHysteresis() {
+		IOSampleRule rule = IOSampleRule.analogAbove(IOLine.DIO1_AD1, 500);
+		rule.setHysteresis(20);
+		engine.addRule(rule, listener);
+		
+		assertTrue(evaluate(remoteDevice, false, 500).isEmpty());
+		
+		List<IOSampleRuleMatch> matches = evaluate(remoteDevice, false, 501);
+		assertEquals(1, matches.size());
+		assertSame(rule, matches.get(0).getRule());
+		assertSame(listener, matches.get(0).getListener());
+		assertSame(remoteDevice, matches.get(0).getRemoteDevice());
+		assertEquals(501, matches.get(0).getValue());
+		
+		// Still above or inside the hysteresis band.
+		assertTrue(evaluate(remoteDevice, false, 600).isEmpty());
+		assertTrue(evaluate(remoteDevice, false, 490).isEmpty());
+		assertTrue(evaluate(remoteDevice, false, 510).isEmpty());
+		
+		// Re-armed.
+		assertTrue(evaluate(remoteDevice, false, 480).isEmpty());
+		assertEquals(1, evaluate(remoteDevice, false, 510).size());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleRuleEngine#evaluate(RemoteXBeeDevice, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that a rule only matches after the configured number of 
+	 * consecutive samples.</p>
+	 */
+	@Test
+	public void testEvaluateConsecutiveSamples() {
+		IOSampleRule rule = IOSampleRule.analogBelow(IOLine.DIO1_AD1, 100);
+		rule.setConsecutiveSamples(3);
+		engine.addRule(rule, listener);
+		
+		assertTrue(evaluate(remoteDevice, false, 50).isEmpty());
+		assertTrue(evaluate(remoteDevice, false, 50).isEmpty());
+		// The condition is not met, so the count starts again.
+		assertTrue(evaluate(remoteDevice, false, 150).isEmpty());
+		assertTrue(evaluate(remoteDevice, false, 50).isEmpty());
+		assertTrue(evaluate(remoteDevice, false, 50).isEmpty());
+		assertEquals(1, evaluate(remoteDevice, false, 50).size());
+		assertTrue(evaluate(remoteDevice, false, 50).isEmpty());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleRuleEngine#evaluate(RemoteXBeeDevice, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that a digital rule matches on every transition to the 
+	 * configured value.</p>
+	 */
+	@Test
+	public void testEvaluateDigitalEquals() {
+		IOSampleRule rule = IOSampleRule.digitalEquals(IOLine.DIO0_AD0, IOValue.HIGH);
+		engine.addRule(rule, listener);
+		
+		assertTrue(evaluate(remoteDevice, false, 0).isEmpty());
+		assertEquals(1, evaluate(remoteDevice, true, 0).size());
+		assertTrue(evaluate(remoteDevice, true, 0).isEmpty());
+		assertTrue(evaluate(remoteDevice, false, 0).isEmpty());
+		assertEquals(1, evaluate(remoteDevice, true, 0).size());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleRuleEngine#evaluate(RemoteXBeeDevice, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that rules limited to a group of devices are only evaluated 
+	 * for those devices, matched by instance or 64-bit address, and that the 
+	 * state is kept per device.</p>
+	 */
+	@Test
+	public void testEvaluateDeviceGroup() {
+		XBee64BitAddress address = new XBee64BitAddress("0013A20040A9E77E");
+		Mockito.when(remoteDevice.get64BitAddress()).thenReturn(address);
+		RemoteXBeeDevice sameAddressDevice = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(sameAddressDevice.get64BitAddress()).thenReturn(address);
+		RemoteXBeeDevice otherDevice = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(otherDevice.get64BitAddress()).thenReturn(new XBee64BitAddress("0013A20040A9E77F"));
+		
+		IOSampleRule rule = IOSampleRule.analogAbove(IOLine.DIO1_AD1, 500);
+		rule.setDevices(Arrays.asList(remoteDevice));
+		engine.addRule(rule, listener);
+		
+		assertTrue(evaluate(otherDevice, false, 600).isEmpty());
+		assertEquals(1, evaluate(remoteDevice, false, 600).size());
+		assertEquals(1, evaluate(sameAddressDevice, false, 600).size());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleRuleEngine#removeRule(IOSampleRule)}.
+	 * 
+	 * <p>Verify that removed rules are no longer evaluated.</p>
+	 */
+	@Test
+	public void testRemoveRule() {
+		IOSampleRule rule = IOSampleRule.analogAbove(IOLine.DIO1_AD1, 500);
+		engine.addRule(rule, listener);
+		assertEquals(1, engine.getRules().size());
+		
+		engine.removeRule(rule);
+		
+		assertTrue(engine.getRules().isEmpty());
+		assertTrue(evaluate(remoteDevice, false, 600).isEmpty());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.io.IOSampleRuleEngine#evaluate(RemoteXBeeDevice, IOSampleDecoder)}.
+	 * 
+	 * <p>Verify that rules of lines not included in the sample are not 
+	 * evaluated.</p>
+	 */
+	@Test
+	public void testEvaluateLineNotInSample() {
+		engine.addRule(IOSampleRule.analogAbove(IOLine.DIO2_AD2, 0), listener);
+		engine.addRule(IOSampleRule.digitalEquals(IOLine.DIO4_AD4, IOValue.LOW), listener);
+		
+		assertTrue(evaluate(remoteDevice, false, 600).isEmpty());
+	}
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FrameIDAllocatorTest {
+	
+	// Constants.
+	private static final int FRAME_IDS = FrameIDAllocator.MAX_FRAME_ID - FrameIDAllocator.MIN_FRAME_ID + 1;
+	
+	// Variables.
+	private FrameIDAllocator allocator;
+	
+	@Before
+	public void setup() {
+		allocator = new FrameIDAllocator();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.FrameIDAllocator#FrameIDAllocator(int)}.
+	 * 
+	 * <p>Verify that the allocator cannot be created with an invalid lease 
+	 * time.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testCreateAllocatorInvalidLeaseTime() {
+		new FrameIDAllocator(0);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.FrameIDAllocator#tryAllocate()}.
+	 * 
+	 * <p>Verify that all the frame IDs are handed out once while they are in 
+	 * flight, and no frame ID is available when all of them are in flight.</p>
+	 */
+	@Test
+	public void testTryAllocateExhausted() {
+		HashSet<Integer> frameIDs = new HashSet<Integer>();
+		for (int i = 0; i < FRAME_IDS; i++) {
+			int frameID = allocator.tryAllocate();
+			assertTrue(frameID >= FrameIDAllocator.MIN_FRAME_ID && frameID <= FrameIDAllocator.MAX_FRAME_ID);
+			assertTrue(frameIDs.add(frameID));
+		}
+		
+		assertEquals(FRAME_IDS, allocator.getInFlightCount());
+		assertEquals(FrameIDAllocator.NO_FRAME_ID, allocator.tryAllocate());
+		assertEquals(FrameIDAllocator.NO_FRAME_ID, allocator.allocate(20));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.FrameIDAllocator#responseReceived(int)}.
+	 * 
+	 * <p>Verify that a frame ID is available again once its response is 
+	 * received.</p>
+	 */
+	@Test
+	public void testResponseReceivedReleasesFrameID() {
+		for (int i = 0; i < FRAME_IDS; i++)
+			allocator.tryAllocate();
+		
+		allocator.responseReceived(42);
+		
+		assertFalse(allocator.isInFlight(42));
+		assertEquals(42, allocator.tryAllocate());
+		assertTrue(allocator.isInFlight(42));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.FrameIDAllocator#allocateExclusive(int)}.
+	 * 
+	 * <p>Verify that exclusive frame IDs are not released by responses, only 
+	 * by their owner.</p>
+	 */
+	@Test
+	public void testAllocateExclusive() {
+		int frameID = allocator.allocateExclusive(0);
+		
+		allocator.responseReceived(frameID);
+		assertTrue(allocator.isInFlight(frameID));
+		
+		allocator.release(frameID);
+		assertFalse(allocator.isInFlight(frameID));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.FrameIDAllocator#allocate(int)}.
+	 * 
+	 * <p>Verify that frame IDs without response are reclaimed when their lease 
+	 * expires.</p>
+	 */
+	@Test
+	public void testAllocateLeaseExpired() {
+		allocator.setLeaseTime(50);
+		for (int i = 0; i < FRAME_IDS; i++)
+			allocator.tryAllocate();
+		
+		long start = System.currentTimeMillis();
+		int frameID = allocator.allocate(2000);
+		
+		assertTrue(frameID != FrameIDAllocator.NO_FRAME_ID);
+		assertTrue(System.currentTimeMillis() - start < 1000);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.FrameIDAllocator#allocate()}.
+	 * 
+	 * <p>Verify that a thread waiting for a frame ID is woken up when a 
+	 * response releases one.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testAllocateWaitsForRelease() throws Exception {
+		for (int i = 0; i < FRAME_IDS; i++)
+			allocator.tryAllocate();
+		
+		final AtomicInteger allocated = new AtomicInteger(FrameIDAllocator.NO_FRAME_ID);
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				allocated.set(allocator.allocate());
+			}
+		};
+		thread.start();
+		Thread.sleep(50);
+		assertEquals(FrameIDAllocator.NO_FRAME_ID, allocated.get());
+		
+		allocator.responseReceived(7);
+		thread.join(2000);
+		
+		assertEquals(7, allocated.get());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.FrameIDAllocator#tryAllocate()}.
+	 * 
+	 * <p>Verify that concurrent threads never get the same frame ID while it 
+	 * is in flight.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testConcurrentAllocation() throws Exception {
+		final int threads = 5;
+		final int frameIDsPerThread = FRAME_IDS / threads;
+		final int[][] frameIDs = new int[threads][frameIDsPerThread];
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			final int index = i;
+			workers[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < frameIDsPerThread; j++)
+						frameIDs[index][j] = allocator.tryAllocate();
+				}
+			};
+			workers[i].start();
+		}
+		for (Thread worker : workers)
+			worker.join();
+		
+		HashSet<Integer> allocated = new HashSet<Integer>();
+		for (int i = 0; i < threads; i++) {
+			for (int j = 0; j < frameIDsPerThread; j++)
+				assertTrue(allocated.add(frameIDs[i][j]));
+		}
+		assertFalse(allocated.contains(FrameIDAllocator.NO_FRAME_ID));
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransmitRateLimiterTest {
+	
+	// Constants.
+	private static final XBee64BitAddress DESTINATION_1 = new XBee64BitAddress("0013A20040000001");
+	private static final XBee64BitAddress DESTINATION_2 = new XBee64BitAddress("0013A20040000002");
+	
+	// Variables.
+	private TransmitRateLimiter rateLimiter;
+	
+	@Before
+	public void setup() {
+		rateLimiter = new TransmitRateLimiter();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitRateLimiter#acquire(Object, int, int)}.
+	 * 
+	 * <p>Verify that transmissions are not delayed when there are no limits.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testNoLimits() throws Exception {
+		for (int i = 0; i < 100; i++)
+			assertTrue(rateLimiter.acquire(DESTINATION_1, 100, 0));
+		assertEquals(0, rateLimiter.getThrottledTime(DESTINATION_1));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitRateLimiter#acquire(Object, int, int)}.
+	 * 
+	 * <p>Verify that a destination limit allows a burst of one second of 
+	 * messages, delays the next one and does not affect other destinations.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testDestinationMessageLimit() throws Exception {
+		rateLimiter.setDestinationLimit(DESTINATION_1, 10, TransmitRateLimiter.UNLIMITED);
+		
+		for (int i = 0; i < 10; i++)
+			assertTrue(rateLimiter.acquire(DESTINATION_1, 10, 0));
+		// The bucket is empty.
+		assertFalse(rateLimiter.acquire(DESTINATION_1, 10, 0));
+		assertEquals(1, rateLimiter.getRejectedCount(DESTINATION_1));
+		assertTrue(rateLimiter.acquire(DESTINATION_2, 10, 0));
+		
+		// Queue the next message.
+		long start = System.currentTimeMillis();
+		assertTrue(rateLimiter.acquire(DESTINATION_1, 10, 1000));
+		long elapsed = System.currentTimeMillis() - start;
+		assertTrue(elapsed >= 50 && elapsed < 1000);
+		assertTrue(rateLimiter.getThrottledTime(DESTINATION_1) > 0);
+		assertEquals(0, rateLimiter.getThrottledTime(DESTINATION_2));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitRateLimiter#acquire(Object, int, int)}.
+	 * 
+	 * <p>Verify that a message larger than the byte bucket is sent when the 
+	 * bucket is full and delays the following messages.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testByteLimit() throws Exception {
+		rateLimiter.setGlobalLimit(TransmitRateLimiter.UNLIMITED, 100);
+		
+		assertTrue(rateLimiter.acquire(null, 150, 0));
+		assertFalse(rateLimiter.acquire(DESTINATION_1, 1, 0));
+		assertFalse(rateLimiter.acquire(null, 1, 0));
+		assertEquals(1, rateLimiter.getRejectedCount(null));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitRateLimiter#setGroupLimit(String, double, int)}.
+	 * 
+	 * <p>Verify that the destinations of a group share its limit.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testGroupLimit() throws Exception {
+		rateLimiter.setGroupLimit("sleepy", 2, TransmitRateLimiter.UNLIMITED);
+		rateLimiter.setGroup(DESTINATION_1, "sleepy");
+		rateLimiter.setGroup(DESTINATION_2, "sleepy");
+		assertEquals("sleepy", rateLimiter.getGroup(DESTINATION_1));
+		
+		assertTrue(rateLimiter.acquire(DESTINATION_1, 10, 0));
+		assertTrue(rateLimiter.acquire(DESTINATION_2, 10, 0));
+		assertFalse(rateLimiter.acquire(DESTINATION_1, 10, 0));
+		assertFalse(rateLimiter.acquire(DESTINATION_2, 10, 0));
+		
+		// Broadcast transmissions are not limited by the groups.
+		assertTrue(rateLimiter.acquire(null, 10, 0));
+		
+		rateLimiter.setGroup(DESTINATION_2, null);
+		assertTrue(rateLimiter.acquire(DESTINATION_2, 10, 0));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitRateLimiter#setRejectWhenLimited(boolean)}.
+	 * 
+	 * <p>Verify that transmissions over the limits are rejected regardless of 
+	 * the timeout when the rate limiter rejects them.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRejectWhenLimited() throws Exception {
+		rateLimiter.setGlobalLimit(1, TransmitRateLimiter.UNLIMITED);
+		rateLimiter.setRejectWhenLimited(true);
+		
+		assertTrue(rateLimiter.acquire(DESTINATION_1, 10, 0));
+		assertFalse(rateLimiter.acquire(DESTINATION_1, 10, 5000));
+		assertEquals(1, rateLimiter.getRejectedCount(DESTINATION_1));
+		
+		rateLimiter.resetStatistics();
+		assertEquals(0, rateLimiter.getRejectedCount(DESTINATION_1));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitRateLimiter#setDestinationLimit(Object, double, int)}.
+	 * 
+	 * <p>Verify that invalid limits are rejected.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testInvalidLimits() throws Exception {
+		try {
+			rateLimiter.setDestinationLimit(null, 1, 1);
+			fail("A NullPointerException should have been thrown.");
+		} catch (NullPointerException e) {
+			assertEquals("Destination cannot be null.", e.getMessage());
+		}
+		try {
+			rateLimiter.setDestinationLimit(DESTINATION_1, -1, 1);
+			fail("An IllegalArgumentException should have been thrown.");
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+		try {
+			rateLimiter.setGlobalLimit(1, -1);
+			fail("An IllegalArgumentException should have been thrown.");
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TransmitRetryPolicyTest {
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitRetryPolicy#getBackoff(int)}.
+	 * 
+	 * <p>Verify that the backoff doubles with every retry, is jittered 
+	 * between half and all of its value and is bounded by the maximum.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testBackoffBounds() throws Exception {
+		TransmitRetryPolicy policy = new TransmitRetryPolicy(5, 100, 300);
+		
+		for (int i = 0; i < 100; i++) {
+			long backoff = policy.getBackoff(1);
+			assertTrue(backoff >= 50 && backoff <= 100);
+			backoff = policy.getBackoff(2);
+			assertTrue(backoff >= 100 && backoff <= 200);
+			backoff = policy.getBackoff(3);
+			assertTrue(backoff >= 150 && backoff <= 300);
+			backoff = policy.getBackoff(30);
+			assertTrue(backoff >= 150 && backoff <= 300);
+		}
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitRetryPolicy#canRetry(int, long)}.
+	 * 
+	 * <p>Verify that a transmission cannot be retried once it runs out of 
+	 * attempts or exceeds the deadline.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCanRetry() throws Exception {
+		TransmitRetryPolicy policy = new TransmitRetryPolicy(3, 10, 20);
+		
+		assertTrue(policy.canRetry(1, 100000));
+		assertTrue(policy.canRetry(2, 100000));
+		assertFalse(policy.canRetry(3, 0));
+		
+		policy.setDeadline(500);
+		assertTrue(policy.canRetry(1, 500));
+		assertFalse(policy.canRetry(1, 501));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitRetryPolicy#setRetryable(XBeeTransmitStatus, boolean)}.
+	 * 
+	 * <p>Verify that the retryable statuses can be configured and that a 
+	 * successful status cannot be retried.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testRetryableStatuses() throws Exception {
+		TransmitRetryPolicy policy = new TransmitRetryPolicy();
+		
+		assertTrue(policy.isRetryable(XBeeTransmitStatus.NO_ACK));
+		assertTrue(policy.isRetryable(XBeeTransmitStatus.CCA_FAILURE));
+		assertFalse(policy.isRetryable(XBeeTransmitStatus.SUCCESS));
+		assertFalse(policy.isRetryable(XBeeTransmitStatus.PAYLOAD_TOO_LARGE));
+		
+		policy.setRetryable(XBeeTransmitStatus.NO_ACK, false);
+		policy.setRetryable(XBeeTransmitStatus.PAYLOAD_TOO_LARGE, true);
+		assertFalse(policy.isRetryable(XBeeTransmitStatus.NO_ACK));
+		assertTrue(policy.isRetryable(XBeeTransmitStatus.PAYLOAD_TOO_LARGE));
+		
+		try {
+			policy.setRetryable(XBeeTransmitStatus.SUCCESS, true);
+			fail("An IllegalArgumentException should have been thrown.");
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitRetryPolicy#TransmitRetryPolicy(int, int, int)}.
+	 * 
+	 * <p>Verify that invalid parameters are rejected.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testInvalidParameters() throws Exception {
+		try {
+			new TransmitRetryPolicy(0, 10, 20);
+			fail("An IllegalArgumentException should have been thrown.");
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+		try {
+			new TransmitRetryPolicy(3, 30, 20);
+			fail("An IllegalArgumentException should have been thrown.");
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+}
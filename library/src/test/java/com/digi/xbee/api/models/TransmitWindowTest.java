@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TransmitWindowTest {
+	
+	// Constants.
+	private static final XBee64BitAddress ADDRESS_1 = new XBee64BitAddress("0013A20040A820DB");
+	private static final XBee64BitAddress ADDRESS_2 = new XBee64BitAddress("0013A20040A820DC");
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitWindow#TransmitWindow(int, int)}.
+	 * 
+	 * <p>Verify that the window cannot be created with a maximum size less 
+	 * than the initial size.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testCreateWindowInvalidSizes() {
+		new TransmitWindow(4, 2);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitWindow#acquire(Object, int)}.
+	 * 
+	 * <p>Verify that no more transmissions than the window size can be 
+	 * outstanding.</p>
+	 */
+	@Test
+	public void testAcquireWindowFull() {
+		TransmitWindow window = new TransmitWindow(2, 8);
+		
+		assertTrue(window.acquire(null, 0) != TransmitWindow.NO_TICKET);
+		assertTrue(window.acquire(null, 0) != TransmitWindow.NO_TICKET);
+		assertEquals(TransmitWindow.NO_TICKET, window.acquire(null, 0));
+		assertEquals(TransmitWindow.NO_TICKET, window.acquire(null, 20));
+		assertEquals(2, window.getOutstanding());
+		
+		window.transmitAborted(null);
+		
+		assertEquals(1, window.getOutstanding());
+		assertTrue(window.acquire(null, 0) != TransmitWindow.NO_TICKET);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitWindow#transmitCompleted(long, Object, XBeeTransmitStatus, int)}.
+	 * 
+	 * <p>Verify that the window grows about one frame per window of 
+	 * successful transmissions up to the maximum size.</p>
+	 */
+	@Test
+	public void testTransmitCompletedAdditiveIncrease() {
+		TransmitWindow window = new TransmitWindow(2, 4);
+		
+		// 2 + 1/2 + 1/2.5 + 1/2.9 = 3.24
+		for (int i = 0; i < 3; i++)
+			window.transmitCompleted(window.acquire(null, 0), null, XBeeTransmitStatus.SUCCESS, 0);
+		assertEquals(3, window.getSize());
+		
+		for (int i = 0; i < 100; i++)
+			window.transmitCompleted(window.acquire(null, 0), null, XBeeTransmitStatus.SUCCESS, 0);
+		assertEquals(4, window.getSize());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitWindow#transmitCompleted(long, Object, XBeeTransmitStatus, int)}.
+	 * 
+	 * <p>Verify that the window is halved once for the failures of the 
+	 * transmissions in flight when the window was decreased.</p>
+	 */
+	@Test
+	public void testTransmitCompletedMultiplicativeDecrease() {
+		TransmitWindow window = new TransmitWindow(8, 8);
+		
+		long[] tickets = new long[8];
+		for (int i = 0; i < tickets.length; i++)
+			tickets[i] = window.acquire(null, 0);
+		
+		// All the transmissions in flight fail, the window is halved once.
+		for (int i = 0; i < tickets.length; i++)
+			window.transmitCompleted(tickets[i], null, XBeeTransmitStatus.NO_ACK, 0);
+		assertEquals(4, window.getSize());
+		
+		// Transmissions started after the decrease halve it again.
+		window.transmitCompleted(window.acquire(null, 0), null, null, 0);
+		assertEquals(2, window.getSize());
+		
+		// Successful transmissions with many retries also halve it.
+		window.transmitCompleted(window.acquire(null, 0), null, XBeeTransmitStatus.SUCCESS, 
+				TransmitWindow.DEFAULT_RETRY_THRESHOLD);
+		assertEquals(1, window.getSize());
+		
+		// The window never goes below one frame.
+		window.transmitCompleted(window.acquire(null, 0), null, XBeeTransmitStatus.NO_ACK, 0);
+		assertEquals(1, window.getSize());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.TransmitWindow#setPerDestination(boolean)}.
+	 * 
+	 * <p>Verify that failures to a destination do not throttle the 
+	 * transmissions to other destinations.</p>
+	 */
+	@Test
+	public void testPerDestinationWindows() {
+		TransmitWindow window = new TransmitWindow(2, 16);
+		window.setPerDestination(true);
+		
+		// Grow the global window.
+		for (int i = 0; i < 20; i++)
+			window.transmitCompleted(window.acquire(ADDRESS_2, 0), ADDRESS_2, XBeeTransmitStatus.SUCCESS, 0);
+		
+		long ticket1 = window.acquire(ADDRESS_1, 0);
+		long ticket2 = window.acquire(ADDRESS_1, 0);
+		assertEquals(TransmitWindow.NO_TICKET, window.acquire(ADDRESS_1, 0));
+		
+		window.transmitCompleted(ticket1, ADDRESS_1, XBeeTransmitStatus.NO_ACK, 0);
+		
+		assertEquals(1, window.getSize(ADDRESS_1));
+		assertEquals(TransmitWindow.NO_TICKET, window.acquire(ADDRESS_1, 0));
+		assertTrue(window.acquire(ADDRESS_2, 0) != TransmitWindow.NO_TICKET);
+		assertTrue(window.acquire(ADDRESS_2, 0) != TransmitWindow.NO_TICKET);
+		
+		window.transmitCompleted(ticket2, ADDRESS_1, XBeeTransmitStatus.SUCCESS, 0);
+		assertTrue(window.acquire(ADDRESS_1, 0) != TransmitWindow.NO_TICKET);
+	}
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.digi.xbee.api.RemoteXBeeDevice;
+
+public class XBeeMessageFragmenterTest {
+	
+	// Constants.
+	private static final int MAX_PAYLOAD_SIZE = 20;
+	
+	// Variables.
+	private XBeeMessageFragmenter fragmenter;
+	private XBeeMessageReassembler reassembler;
+	
+	private RemoteXBeeDevice remoteDevice1;
+	private RemoteXBeeDevice remoteDevice2;
+	
+	@Before
+	public void setUp() {
+		fragmenter = new XBeeMessageFragmenter(MAX_PAYLOAD_SIZE);
+		reassembler = fragmenter.createReassembler();
+		
+		remoteDevice1 = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(remoteDevice1.get64BitAddress()).thenReturn(new XBee64BitAddress("0013A20040000001"));
+		remoteDevice2 = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(remoteDevice2.get64BitAddress()).thenReturn(new XBee64BitAddress("0013A20040000002"));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeeMessageFragmenter#XBeeMessageFragmenter(int)}.
+	 * 
+	 * <p>Verify that the payload size must leave room for the header.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public final void testCreateFragmenterPayloadTooSmall() {
+		new XBeeMessageFragmenter(XBeeMessageFragmenter.HEADER_SIZE);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeeMessageFragmenter#needsEncoding(byte[])}.
+	 * 
+	 * <p>Verify that only data bigger than a frame or starting with the 
+	 * marker byte is encoded.</p>
+	 */
+	@Test
+	public final void testNeedsEncoding() {
+		assertFalse(fragmenter.needsEncoding(new byte[MAX_PAYLOAD_SIZE]));
+		assertFalse(fragmenter.needsEncoding(new byte[0]));
+		assertTrue(fragmenter.needsEncoding(new byte[MAX_PAYLOAD_SIZE + 1]));
+		assertTrue(fragmenter.needsEncoding(new byte[]{XBeeMessageFragmenter.MARKER, 0x01}));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeeMessageFragmenter#encode(byte[])}.
+	 * 
+	 * <p>Verify that the data is split in fragments that fit in the payload 
+	 * size, sharing the message ID, and that every new message gets a new 
+	 * ID.</p>
+	 */
+	@Test
+	public final void testEncode() {
+		byte[] data = createData(40);
+		
+		List<byte[]> fragments = fragmenter.encode(data);
+		
+		// 16 bytes of data per fragment.
+		assertEquals(3, fragments.size());
+		assertEquals(MAX_PAYLOAD_SIZE, fragments.get(0).length);
+		assertEquals(MAX_PAYLOAD_SIZE, fragments.get(1).length);
+		assertEquals(XBeeMessageFragmenter.HEADER_SIZE + 8, fragments.get(2).length);
+		for (int i = 0; i < fragments.size(); i++) {
+			assertEquals(XBeeMessageFragmenter.MARKER, fragments.get(i)[0]);
+			assertEquals(fragments.get(0)[XBeeMessageFragmenter.INDEX_MESSAGE_ID], fragments.get(i)[XBeeMessageFragmenter.INDEX_MESSAGE_ID]);
+			assertEquals(i, fragments.get(i)[XBeeMessageFragmenter.INDEX_FRAGMENT]);
+			assertEquals(3, fragments.get(i)[XBeeMessageFragmenter.INDEX_COUNT]);
+		}
+		assertEquals(data[16], fragments.get(1)[XBeeMessageFragmenter.HEADER_SIZE]);
+		
+		assertFalse(fragments.get(0)[XBeeMessageFragmenter.INDEX_MESSAGE_ID] 
+				== fragmenter.encode(data).get(0)[XBeeMessageFragmenter.INDEX_MESSAGE_ID]);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeeMessageFragmenter#encode(byte[])}.
+	 * 
+	 * <p>Verify that data needing more than the maximum number of fragments 
+	 * is rejected.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public final void testEncodeTooManyFragments() {
+		fragmenter.encode(new byte[16 * XBeeMessageFragmenter.MAX_FRAGMENTS + 1]);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeeMessageReassembler#decode(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that data that is not a fragment is returned as is and that 
+	 * a message of a single fragment is returned without its header.</p>
+	 */
+	@Test
+	public final void testDecodeNotFragmented() {
+		byte[] data = createData(10);
+		assertSame(data, reassembler.decode(remoteDevice1, data));
+		
+		byte[] markedData = new byte[]{XBeeMessageFragmenter.MARKER, 0x01, 0x02};
+		List<byte[]> fragments = fragmenter.encode(markedData);
+		assertEquals(1, fragments.size());
+		assertArrayEquals(markedData, reassembler.decode(remoteDevice1, fragments.get(0)));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeeMessageReassembler#decode(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that the message is delivered when its last missing fragment 
+	 * is received, whatever the order and repetitions of the fragments.</p>
+	 */
+	@Test
+	public final void testDecodeOutOfOrderAndRepeated() {
+		byte[] data = createData(40);
+		List<byte[]> fragments = fragmenter.encode(data);
+		
+		assertNull(reassembler.decode(remoteDevice1, fragments.get(2)));
+		assertNull(reassembler.decode(remoteDevice1, fragments.get(0)));
+		assertNull(reassembler.decode(remoteDevice1, fragments.get(0)));
+		assertEquals(1, reassembler.getPendingMessages());
+		
+		assertArrayEquals(data, reassembler.decode(remoteDevice1, fragments.get(1)));
+		assertEquals(0, reassembler.getPendingMessages());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeeMessageReassembler#decode(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that fragments with the same message ID from different 
+	 * devices are reassembled separately.</p>
+	 */
+	@Test
+	public final void testDecodeInterleavedSources() {
+		byte[] data = createData(40);
+		List<byte[]> fragments = fragmenter.encode(data);
+		
+		for (int i = 0; i < fragments.size() - 1; i++) {
+			assertNull(reassembler.decode(remoteDevice1, fragments.get(i)));
+			assertNull(reassembler.decode(remoteDevice2, fragments.get(i)));
+		}
+		assertEquals(2, reassembler.getPendingMessages());
+		
+		assertArrayEquals(data, reassembler.decode(remoteDevice2, fragments.get(2)));
+		assertArrayEquals(data, reassembler.decode(remoteDevice1, fragments.get(2)));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeeMessageReassembler#decode(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that incomplete messages are discarded when the reassembly 
+	 * timeout expires.</p>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public final void testDecodeTimeout() throws Exception {
+		fragmenter.setReassemblyTimeout(50);
+		List<byte[]> fragments = fragmenter.encode(createData(40));
+		
+		assertNull(reassembler.decode(remoteDevice1, fragments.get(0)));
+		assertNull(reassembler.decode(remoteDevice1, fragments.get(1)));
+		Thread.sleep(100);
+		
+		assertEquals(0, reassembler.getPendingMessages());
+		assertNull(reassembler.decode(remoteDevice1, fragments.get(2)));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeeMessageReassembler#decode(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that the oldest incomplete messages of a device are discarded 
+	 * when the reassembly size of the device is exceeded.</p>
+	 */
+	@Test
+	public final void testDecodeMaxReassemblySize() {
+		fragmenter.setMaxReassemblySize(40);
+		List<byte[]> oldFragments = fragmenter.encode(createData(40));
+		List<byte[]> newFragments = fragmenter.encode(createData(40));
+		
+		// 16 + 16 bytes of the first message.
+		assertNull(reassembler.decode(remoteDevice1, oldFragments.get(0)));
+		assertNull(reassembler.decode(remoteDevice1, oldFragments.get(1)));
+		// Other devices do not count for the limit.
+		assertNull(reassembler.decode(remoteDevice2, oldFragments.get(0)));
+		// 16 bytes more exceed the limit, so the first message is discarded.
+		assertNull(reassembler.decode(remoteDevice1, newFragments.get(0)));
+		assertEquals(2, reassembler.getPendingMessages());
+		
+		assertNull(reassembler.decode(remoteDevice1, oldFragments.get(2)));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeeMessageReassembler#decode(RemoteXBeeDevice, byte[])}.
+	 * 
+	 * <p>Verify that a fragment retransmitted after its message is complete 
+	 * is dropped and is not merged with a later message with the same ID.</p>
+	 */
+	@Test
+	public final void testDecodeRetransmittedAfterComplete() {
+		byte[] data = createData(40);
+		List<byte[]> fragments = fragmenter.encode(data);
+		
+		assertNull(reassembler.decode(remoteDevice1, fragments.get(0)));
+		assertNull(reassembler.decode(remoteDevice1, fragments.get(1)));
+		assertArrayEquals(data, reassembler.decode(remoteDevice1, fragments.get(2)));
+		
+		assertNull(reassembler.decode(remoteDevice1, fragments.get(1)));
+		assertEquals(0, reassembler.getPendingMessages());
+		
+		// Wrap the 8-bit message ID so the next message reuses it.
+		for (int i = 0; i < 255; i++)
+			fragmenter.encode(data);
+		byte[] newData = new byte[40];
+		List<byte[]> newFragments = fragmenter.encode(newData);
+		assertEquals(fragments.get(0)[1], newFragments.get(0)[1]);
+		
+		assertNull(reassembler.decode(remoteDevice1, newFragments.get(0)));
+		assertNull(reassembler.decode(remoteDevice1, newFragments.get(2)));
+		assertArrayEquals(newData, reassembler.decode(remoteDevice1, newFragments.get(1)));
+	}
+	
+	/**
+	 * Creates data of the given size with different values in every byte.
+	 * 
+	 * @param size The size of the data.
+	 * 
+	 * @return The data.
+	 */
+	private byte[] createData(int size) {
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++)
+			data[i] = (byte)i;
+		return data;
+	}
+}
@@ -14,6 +14,7 @@ package com.digi.xbee.api.models;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Map;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -49,7 +50,7 @@ public class XBeePacketsQueueTest {
 	private final static String ADDRESS_64_3 = "0123012301230123";
 	private final static String ADDRESS_16_1 = "0123";
 	private final static String ADDRESS_16_2 = "4567";
-	private final static String METHOD_SLEEP = "sleep";
+	private final static String METHOD_WAIT_FOR_PACKET = "waitForPacket";
 	private final static String METHOD_IS_DATA_PACKET = "isDataPacket";
 	private final static String METHOD_ADDRESSES_MATCH = "addressesMatch";
 	
@@ -360,22 +361,21 @@ public class XBeePacketsQueueTest {
 		PowerMockito.mockStatic(System.class);
 		PowerMockito.when(System.currentTimeMillis()).thenReturn(currentMillis);
 		
-		// When the sleep method is called, add 100ms to the currentMillis variable.
+		// When the wait method is called, add 100ms to the currentMillis variable 
+		// (simulates a wake up every 100ms without a matching packet).
 		PowerMockito.doAnswer(new Answer<Object>() {
 			public Object answer(InvocationOnMock invocation) throws Exception {
-				Object[] args = invocation.getArguments();
-				int sleepTime = (Integer)args[0];
-				changeMillisToReturn(sleepTime);
-				return null;
+				changeMillisToReturn(100);
+				return true;
 			}
-		}).when(xbeePacketsQueue, METHOD_SLEEP, Mockito.anyInt());
+		}).when(xbeePacketsQueue, PowerMockito.method(XBeePacketsQueue.class, METHOD_WAIT_FOR_PACKET, long.class)).withArguments(Mockito.anyLong());
 		
 		// Request the first packet with 5s of timeout.
 		XBeePacket xbeePacket = xbeePacketsQueue.getFirstPacket(5000);
 		
-		// Verify that the sleep method was called 50 times (50 * 100ms = 5s) and the packet 
+		// Verify that the wait method was called 50 times (50 * 100ms = 5s) and the packet 
 		// retrieved is null.
-		PowerMockito.verifyPrivate(xbeePacketsQueue, Mockito.times(50)).invoke(METHOD_SLEEP, 100);
+		PowerMockito.verifyPrivate(xbeePacketsQueue, Mockito.times(50)).invoke(METHOD_WAIT_FOR_PACKET, Mockito.anyLong());
 		assertNull(xbeePacket);
 	}
 	
@@ -414,22 +414,21 @@ public class XBeePacketsQueueTest {
 		PowerMockito.mockStatic(System.class);
 		PowerMockito.when(System.currentTimeMillis()).thenReturn(currentMillis);
 		
-		// When the sleep method is called, add 100ms to the currentMillis variable.
+		// When the wait method is called, add 100ms to the currentMillis variable 
+		// (simulates a wake up every 100ms without a matching packet).
 		PowerMockito.doAnswer(new Answer<Object>() {
 			public Object answer(InvocationOnMock invocation) throws Exception {
-				Object[] args = invocation.getArguments();
-				int sleepTime = (Integer)args[0];
-				changeMillisToReturn(sleepTime);
-				return null;
+				changeMillisToReturn(100);
+				return true;
 			}
-		}).when(xbeePacketsQueue, METHOD_SLEEP, Mockito.anyInt());
+		}).when(xbeePacketsQueue, PowerMockito.method(XBeePacketsQueue.class, METHOD_WAIT_FOR_PACKET, long.class)).withArguments(Mockito.anyLong());
 		
 		// Request the first packet from our remote XBee device with 5s of timeout.
 		XBeePacket xbeePacket = xbeePacketsQueue.getFirstPacketFrom(mockedRemoteDevice, 5000);
 		
-		// Verify that the sleep method was called 50 times (50 * 100ms = 5s) and the packet 
+		// Verify that the wait method was called 50 times (50 * 100ms = 5s) and the packet 
 		// retrieved is null (there was not any packet from our remote XBee device in the queue).
-		PowerMockito.verifyPrivate(xbeePacketsQueue, Mockito.times(50)).invoke(METHOD_SLEEP, 100);
+		PowerMockito.verifyPrivate(xbeePacketsQueue, Mockito.times(50)).invoke(METHOD_WAIT_FOR_PACKET, Mockito.anyLong());
 		assertNull(xbeePacket);
 	}
 	
@@ -458,22 +457,21 @@ public class XBeePacketsQueueTest {
 		PowerMockito.mockStatic(System.class);
 		PowerMockito.when(System.currentTimeMillis()).thenReturn(currentMillis);
 		
-		// When the sleep method is called, add 100ms to the currentMillis variable.
+		// When the wait method is called, add 100ms to the currentMillis variable 
+		// (simulates a wake up every 100ms without a matching packet).
 		PowerMockito.doAnswer(new Answer<Object>() {
 			public Object answer(InvocationOnMock invocation) throws Exception {
-				Object[] args = invocation.getArguments();
-				int sleepTime = (Integer)args[0];
-				changeMillisToReturn(sleepTime);
-				return null;
+				changeMillisToReturn(100);
+				return true;
 			}
-		}).when(xbeePacketsQueue, METHOD_SLEEP, Mockito.anyInt());
+		}).when(xbeePacketsQueue, PowerMockito.method(XBeePacketsQueue.class, METHOD_WAIT_FOR_PACKET, long.class)).withArguments(Mockito.anyLong());
 		
 		// Request the first data packet with 5s of timeout.
 		XBeePacket xbeePacket = xbeePacketsQueue.getFirstDataPacket(5000);
 		
-		// Verify that the sleep method was called 50 times (50 * 100ms = 5s) and the data 
+		// Verify that the wait method was called 50 times (50 * 100ms = 5s) and the data 
 		// packet retrieved is null (there was not any data packet in the queue).
-		PowerMockito.verifyPrivate(xbeePacketsQueue, Mockito.times(50)).invoke(METHOD_SLEEP, 100);
+		PowerMockito.verifyPrivate(xbeePacketsQueue, Mockito.times(50)).invoke(METHOD_WAIT_FOR_PACKET, Mockito.anyLong());
 		assertNull(xbeePacket);
 	}
 	
@@ -512,25 +510,407 @@ public class XBeePacketsQueueTest {
 		PowerMockito.mockStatic(System.class);
 		PowerMockito.when(System.currentTimeMillis()).thenReturn(currentMillis);
 		
-		// When the sleep method is called, add 100ms to the currentMillis variable.
+		// When the wait method is called, add 100ms to the currentMillis variable 
+		// (simulates a wake up every 100ms without a matching packet).
 		PowerMockito.doAnswer(new Answer<Object>() {
 			public Object answer(InvocationOnMock invocation) throws Exception {
-				Object[] args = invocation.getArguments();
-				int sleepTime = (Integer)args[0];
-				changeMillisToReturn(sleepTime);
-				return null;
+				changeMillisToReturn(100);
+				return true;
 			}
-		}).when(xbeePacketsQueue, METHOD_SLEEP, Mockito.anyInt());
+		}).when(xbeePacketsQueue, PowerMockito.method(XBeePacketsQueue.class, METHOD_WAIT_FOR_PACKET, long.class)).withArguments(Mockito.anyLong());
 		
 		// Request the first packet from our remote XBee device with 5s of timeout.
 		XBeePacket xbeePacket = xbeePacketsQueue.getFirstDataPacketFrom(mockedRemoteDevice, 5000);
 		
-		// Verify that the sleep method was called 50 times (50 * 100ms = 5s) and the packet 
+		// Verify that the wait method was called 50 times (50 * 100ms = 5s) and the packet 
 		// retrieved is null (there was not any packet from our remote XBee device in the queue).
-		PowerMockito.verifyPrivate(xbeePacketsQueue, Mockito.times(50)).invoke(METHOD_SLEEP, 100);
+		PowerMockito.verifyPrivate(xbeePacketsQueue, Mockito.times(50)).invoke(METHOD_WAIT_FOR_PACKET, Mockito.anyLong());
 		assertNull(xbeePacket);
 	}
 	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#getFirstPacketFrom(RemoteXBeeDevice, int)}, 
+	 * {@link com.digi.xbee.api.models.XBeePacketsQueue#getFirstDataPacketFrom(RemoteXBeeDevice, int)} and 
+	 * {@link com.digi.xbee.api.models.XBeePacketsQueue#getFirstPacket(int)}.
+	 * 
+	 * <p>Verify that the packets of a remote device are returned in arrival order and that the 
+	 * remaining packets keep the global arrival order.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testGetPacketsFromIndexOrder() throws Exception {
+		// Create a mocked remote XBee device.
+		RemoteXBeeDevice mockedRemoteDevice = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(mockedRemoteDevice.get64BitAddress()).thenReturn(xbee64BitAddress1);
+		
+		XBeePacketsQueue xbeePacketsQueue = new XBeePacketsQueue(10);
+		
+		// Interleave data and IO packets of 2 remote devices.
+		RX64Packet data1 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{1});
+		RX64Packet other1 = new RX64Packet(xbee64BitAddress2, 0, 0, new byte[]{2});
+		RX64IOPacket io1 = new RX64IOPacket(xbee64BitAddress1, 0, 0, null);
+		RX64Packet other2 = new RX64Packet(xbee64BitAddress2, 0, 0, new byte[]{3});
+		RX64Packet data2 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{4});
+		xbeePacketsQueue.addPacket(data1);
+		xbeePacketsQueue.addPacket(other1);
+		xbeePacketsQueue.addPacket(io1);
+		xbeePacketsQueue.addPacket(other2);
+		xbeePacketsQueue.addPacket(data2);
+		
+		// Verify that the data packets of the remote device skip its IO packet.
+		assertSame(data1, xbeePacketsQueue.getFirstDataPacketFrom(mockedRemoteDevice, 0));
+		assertSame(data2, xbeePacketsQueue.getFirstDataPacketFrom(mockedRemoteDevice, 0));
+		assertNull(xbeePacketsQueue.getFirstDataPacketFrom(mockedRemoteDevice, 0));
+		
+		// Verify that the IO packet is still available from the remote device.
+		assertSame(io1, xbeePacketsQueue.getFirstPacketFrom(mockedRemoteDevice, 0));
+		assertNull(xbeePacketsQueue.getFirstPacketFrom(mockedRemoteDevice, 0));
+		
+		// Verify the global order of the remaining packets.
+		assertEquals(2, xbeePacketsQueue.getCurrentSize());
+		assertSame(other1, xbeePacketsQueue.getFirstPacket(0));
+		assertSame(other2, xbeePacketsQueue.getFirstDataPacket(0));
+		assertEquals(0, xbeePacketsQueue.getCurrentSize());
+		
+		// Verify that the empty source indexes were discarded.
+		assertTrue(((Map<?, ?>)Whitebox.getInternalState(xbeePacketsQueue, "sourceChains")).isEmpty());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#addPacket(XBeePacket)}.
+	 * 
+	 * <p>Verify that when the queue is full the oldest packet is discarded from the source 
+	 * indexes too.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testAddPacketFullQueueIndexes() throws Exception {
+		// Create a mocked remote XBee device.
+		RemoteXBeeDevice mockedRemoteDevice = Mockito.mock(RemoteXBeeDevice.class);
+		Mockito.when(mockedRemoteDevice.get16BitAddress()).thenReturn(xbee16BitAddress1);
+		
+		XBeePacketsQueue xbeePacketsQueue = new XBeePacketsQueue(2);
+		
+		RX16Packet packet1 = new RX16Packet(xbee16BitAddress1, 0, 0, new byte[]{1});
+		RX16Packet packet2 = new RX16Packet(xbee16BitAddress2, 0, 0, new byte[]{2});
+		RX16Packet packet3 = new RX16Packet(xbee16BitAddress1, 0, 0, new byte[]{3});
+		xbeePacketsQueue.addPacket(packet1);
+		xbeePacketsQueue.addPacket(packet2);
+		xbeePacketsQueue.addPacket(packet3);
+		
+		// Verify that the first packet was discarded.
+		assertEquals(2, xbeePacketsQueue.getCurrentSize());
+		assertSame(packet3, xbeePacketsQueue.getFirstDataPacketFrom(mockedRemoteDevice, 0));
+		assertNull(xbeePacketsQueue.getFirstPacketFrom(mockedRemoteDevice, 0));
+		assertSame(packet2, xbeePacketsQueue.getFirstPacket(0));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#XBeePacketsQueue(int, QueueOverflowPolicy, int)}.
+	 * 
+	 * <p>Verify that the {@code XBeePacketsQueue} cannot be created if the overflow policy is 
+	 * null.</p>
+	 */
+	@Test(expected=NullPointerException.class)
+	public void testCreateNullOverflowPolicy() {
+		new XBeePacketsQueue(5, null, 0);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#XBeePacketsQueue(int, QueueOverflowPolicy, int)}.
+	 * 
+	 * <p>Verify that the {@code XBeePacketsQueue} cannot be created if the block timeout is 
+	 * negative.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testCreateNegativeBlockTimeout() {
+		new XBeePacketsQueue(5, QueueOverflowPolicy.BLOCK, -1);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#addPacket(XBeePacket)} and 
+	 * {@link com.digi.xbee.api.models.XBeePacketsQueue#getDroppedPacketsByFrameType()}.
+	 * 
+	 * <p>Verify that with the drop oldest policy the first packets are discarded and counted 
+	 * by frame type.</p>
+	 */
+	@Test
+	public void testAddPacketDropOldest() {
+		XBeePacketsQueue xbeePacketsQueue = new XBeePacketsQueue(2, QueueOverflowPolicy.DROP_OLDEST, 0);
+		
+		RX64Packet packet1 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{1});
+		RX16Packet packet2 = new RX16Packet(xbee16BitAddress1, 0, 0, new byte[]{2});
+		RX64Packet packet3 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{3});
+		RX64Packet packet4 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{4});
+		xbeePacketsQueue.addPacket(packet1);
+		xbeePacketsQueue.addPacket(packet2);
+		xbeePacketsQueue.addPacket(packet3);
+		xbeePacketsQueue.addPacket(packet4);
+		
+		// Verify that the 2 oldest packets were dropped.
+		assertSame(packet3, xbeePacketsQueue.getFirstPacket(0));
+		assertSame(packet4, xbeePacketsQueue.getFirstPacket(0));
+		
+		assertEquals(2, xbeePacketsQueue.getDroppedPackets());
+		assertEquals(1, xbeePacketsQueue.getDroppedPackets(APIFrameType.RX_64));
+		assertEquals(1, xbeePacketsQueue.getDroppedPackets(APIFrameType.RX_16));
+		assertEquals(0, xbeePacketsQueue.getDroppedPackets(APIFrameType.RECEIVE_PACKET));
+		
+		Map<APIFrameType, Long> counters = xbeePacketsQueue.getDroppedPacketsByFrameType();
+		assertEquals(2, counters.size());
+		assertEquals(Long.valueOf(1), counters.get(APIFrameType.RX_64));
+		assertEquals(Long.valueOf(1), counters.get(APIFrameType.RX_16));
+		
+		// Verify that the counters can be reset.
+		xbeePacketsQueue.resetDroppedPackets();
+		assertEquals(0, xbeePacketsQueue.getDroppedPackets());
+		assertTrue(xbeePacketsQueue.getDroppedPacketsByFrameType().isEmpty());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#addPacket(XBeePacket)}.
+	 * 
+	 * <p>Verify that with the drop newest policy the packets added to a full queue are 
+	 * discarded and counted.</p>
+	 */
+	@Test
+	public void testAddPacketDropNewest() {
+		XBeePacketsQueue xbeePacketsQueue = new XBeePacketsQueue(2, QueueOverflowPolicy.DROP_NEWEST, 0);
+		
+		RX64Packet packet1 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{1});
+		RX64Packet packet2 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{2});
+		RX64Packet packet3 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{3});
+		xbeePacketsQueue.addPacket(packet1);
+		xbeePacketsQueue.addPacket(packet2);
+		xbeePacketsQueue.addPacket(packet3);
+		
+		// Verify that the last packet was dropped.
+		assertEquals(2, xbeePacketsQueue.getCurrentSize());
+		assertSame(packet1, xbeePacketsQueue.getFirstPacket(0));
+		assertSame(packet2, xbeePacketsQueue.getFirstPacket(0));
+		assertEquals(1, xbeePacketsQueue.getDroppedPackets(APIFrameType.RX_64));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#addPacket(XBeePacket)}.
+	 * 
+	 * <p>Verify that with the block policy adding a packet to a full queue waits until a 
+	 * packet is read.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testAddPacketBlock() throws Exception {
+		final XBeePacketsQueue xbeePacketsQueue = new XBeePacketsQueue(1, QueueOverflowPolicy.BLOCK, 5000);
+		
+		final RX64Packet packet1 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{1});
+		final RX64Packet packet2 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{2});
+		xbeePacketsQueue.addPacket(packet1);
+		
+		// Add the second packet from another thread, it must wait for free space.
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				xbeePacketsQueue.addPacket(packet2);
+			}
+		});
+		writer.start();
+		writer.join(200);
+		assertTrue(writer.isAlive());
+		
+		// Read the first packet and verify that the second one is added.
+		assertSame(packet1, xbeePacketsQueue.getFirstPacket(0));
+		writer.join(5000);
+		assertFalse(writer.isAlive());
+		assertSame(packet2, xbeePacketsQueue.getFirstPacket(0));
+		assertEquals(0, xbeePacketsQueue.getDroppedPackets());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#addPacket(XBeePacket)}.
+	 * 
+	 * <p>Verify that with the block policy the packet is dropped if the queue is still full 
+	 * after the block timeout.</p>
+	 */
+	@Test
+	public void testAddPacketBlockTimeout() {
+		XBeePacketsQueue xbeePacketsQueue = new XBeePacketsQueue(1, QueueOverflowPolicy.BLOCK, 100);
+		
+		RX64Packet packet1 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{1});
+		RX64Packet packet2 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{2});
+		xbeePacketsQueue.addPacket(packet1);
+		
+		long start = System.nanoTime();
+		xbeePacketsQueue.addPacket(packet2);
+		long elapsed = (System.nanoTime() - start) / 1000000;
+		
+		// Verify that the method waited and the new packet was dropped.
+		assertTrue(elapsed >= 90);
+		assertEquals(1, xbeePacketsQueue.getCurrentSize());
+		assertSame(packet1, xbeePacketsQueue.getFirstPacket(0));
+		assertEquals(1, xbeePacketsQueue.getDroppedPackets(APIFrameType.RX_64));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#drainDataPackets(java.util.Collection, int, int)} and 
+	 * {@link com.digi.xbee.api.models.XBeePacketsQueue#drainIOPackets(java.util.Collection, int, int)}.
+	 * 
+	 * <p>Verify that the packets of the requested category are drained in arrival order up to 
+	 * the maximum number of packets.</p>
+	 */
+	@Test
+	public void testDrainPackets() {
+		XBeePacketsQueue xbeePacketsQueue = new XBeePacketsQueue(10);
+		
+		RX64Packet data1 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{1});
+		RX64IOPacket io1 = new RX64IOPacket(xbee64BitAddress1, 0, 0, null);
+		RX16Packet data2 = new RX16Packet(xbee16BitAddress1, 0, 0, new byte[]{2});
+		RX64Packet data3 = new RX64Packet(xbee64BitAddress2, 0, 0, new byte[]{3});
+		xbeePacketsQueue.addPacket(data1);
+		xbeePacketsQueue.addPacket(io1);
+		xbeePacketsQueue.addPacket(data2);
+		xbeePacketsQueue.addPacket(data3);
+		
+		// Drain 2 data packets.
+		ArrayList<XBeePacket> packets = new ArrayList<XBeePacket>();
+		assertEquals(2, xbeePacketsQueue.drainDataPackets(packets, 2, 0));
+		assertEquals(2, packets.size());
+		assertSame(data1, packets.get(0));
+		assertSame(data2, packets.get(1));
+		
+		// Drain the rest of data packets.
+		packets.clear();
+		assertEquals(1, xbeePacketsQueue.drainDataPackets(packets, 10, 0));
+		assertSame(data3, packets.get(0));
+		
+		// Drain the IO packets.
+		packets.clear();
+		assertEquals(1, xbeePacketsQueue.drainIOPackets(packets, 10, 0));
+		assertSame(io1, packets.get(0));
+		assertEquals(0, xbeePacketsQueue.getCurrentSize());
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#drainDataPackets(java.util.Collection, int, int)}.
+	 * 
+	 * <p>Verify that draining an empty queue waits until a data packet is added.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testDrainDataPacketsWait() throws Exception {
+		final XBeePacketsQueue xbeePacketsQueue = new XBeePacketsQueue(10);
+		final RX64Packet data1 = new RX64Packet(xbee64BitAddress1, 0, 0, new byte[]{1});
+		
+		// Drain with nothing available and no timeout.
+		ArrayList<XBeePacket> packets = new ArrayList<XBeePacket>();
+		assertEquals(0, xbeePacketsQueue.drainDataPackets(packets, 10, 0));
+		
+		// Add a data packet from another thread.
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					return;
+				}
+				xbeePacketsQueue.addPacket(data1);
+			}
+		});
+		producer.start();
+		
+		assertEquals(1, xbeePacketsQueue.drainDataPackets(packets, 10, 5000));
+		assertSame(data1, packets.get(0));
+		producer.join();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#getFirstDataPacket(int)}.
+	 * 
+	 * <p>Verify that a reader waiting for a data packet with a long timeout is woken up 
+	 * when the packet is added to the queue.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testGetFirstDataPacketWakesUpReader() throws Exception {
+		final XBeePacketsQueue xbeePacketsQueue = new XBeePacketsQueue(5);
+		final XBeePacket[] readPacket = new XBeePacket[1];
+		
+		// Wait for a data packet much longer than the test is allowed to take.
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				readPacket[0] = xbeePacketsQueue.getFirstDataPacket(60000);
+			}
+		});
+		reader.start();
+		
+		// Add the packet once the reader is blocked waiting for it.
+		long deadline = System.currentTimeMillis() + 5000;
+		while (reader.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		xbeePacketsQueue.addPacket(mockedRx64Packet);
+		
+		reader.join(5000);
+		assertFalse(reader.isAlive());
+		assertEquals(mockedRx64Packet, readPacket[0]);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#addPacket(XBeePacket)} and 
+	 * {@link com.digi.xbee.api.models.XBeePacketsQueue#getFirstPacket(int)}.
+	 * 
+	 * <p>Verify that concurrent producers and consumers exchange every packet exactly 
+	 * once.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testConcurrentProducersAndConsumers() throws Exception {
+		final int threads = 4;
+		final int packetsPerThread = 100;
+		final XBeePacketsQueue xbeePacketsQueue = new XBeePacketsQueue(threads * packetsPerThread);
+		
+		final XBeePacket[] packets = new XBeePacket[threads * packetsPerThread];
+		for (int i = 0; i < packets.length; i++)
+			packets[i] = Mockito.mock(XBeePacket.class);
+		
+		final ArrayList<XBeePacket> received = new ArrayList<XBeePacket>();
+		ArrayList<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < threads; t++) {
+			final int offset = t * packetsPerThread;
+			// Producer.
+			workers.add(new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < packetsPerThread; i++)
+						xbeePacketsQueue.addPacket(packets[offset + i]);
+				}
+			}));
+			// Consumer.
+			workers.add(new Thread(new Runnable() {
+				public void run() {
+					for (int i = 0; i < packetsPerThread; i++) {
+						XBeePacket xbeePacket = xbeePacketsQueue.getFirstPacket(5000);
+						synchronized (received) {
+							received.add(xbeePacket);
+						}
+					}
+				}
+			}));
+		}
+		for (Thread worker : workers)
+			worker.start();
+		for (Thread worker : workers)
+			worker.join();
+		
+		// Verify that every packet was received once and the queue is empty.
+		assertEquals(packets.length, received.size());
+		for (XBeePacket packet : packets)
+			assertTrue(received.remove(packet));
+		assertEquals(0, xbeePacketsQueue.getCurrentSize());
+	}
+	
 	/**
 	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#isDataPacket(XBeePacket)}.
 	 * 
@@ -0,0 +1,285 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.digi.xbee.api.packet.XBeePacket;
+import com.digi.xbee.api.packet.common.ReceivePacket;
+
+public class XBeePacketsSpoolTest {
+	
+	// Constants.
+	private final static int SEGMENT_SIZE = XBeePacketsSpool.MIN_SEGMENT_SIZE;
+	
+	private final static XBee64BitAddress ADDRESS_64 = new XBee64BitAddress("0013A20040A9E76B");
+	private final static XBee16BitAddress ADDRESS_16 = new XBee16BitAddress("1234");
+	
+	// Variables.
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsSpool#XBeePacketsSpool(File, int, int)}.
+	 * 
+	 * <p>Verify that the spool cannot be created with a segment size smaller 
+	 * than the minimum.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testCreateSpoolSegmentSizeTooSmall() throws Exception {
+		new XBeePacketsSpool(folder.getRoot(), SEGMENT_SIZE - 1, 1);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsSpool#XBeePacketsSpool(File, int, int)}.
+	 * 
+	 * <p>Verify that the spool cannot be created with a null directory.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test(expected=NullPointerException.class)
+	public void testCreateSpoolNullDirectory() throws Exception {
+		new XBeePacketsSpool(null, SEGMENT_SIZE, 1);
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsSpool#addPacket(XBeePacket)} and 
+	 * {@link com.digi.xbee.api.models.XBeePacketsSpool#getFirstPacket()}.
+	 * 
+	 * <p>Verify that packets are read in the same order they were added, 
+	 * rotating segments and deleting the consumed ones.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testAddAndGetPacketsRotatingSegments() throws Exception {
+		XBeePacketsSpool spool = new XBeePacketsSpool(folder.getRoot(), SEGMENT_SIZE, 4);
+		
+		// Every segment stores 7 packets, so 20 packets need 3 segments.
+		for (int i = 0; i < 20; i++)
+			assertTrue(spool.addPacket(createPacket(i)));
+		
+		assertEquals(20, spool.getCurrentSize());
+		assertEquals(3, getSegmentFiles().length);
+		assertEquals(3L * SEGMENT_SIZE, spool.getDiskUsage());
+		
+		for (int i = 0; i < 20; i++)
+			assertPacket(i, spool.getFirstPacket());
+		
+		assertNull(spool.getFirstPacket());
+		assertTrue(spool.isEmpty());
+		// Only the last segment is kept to continue writing.
+		assertEquals(1, getSegmentFiles().length);
+		
+		spool.close();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsSpool#addPacket(XBeePacket)}.
+	 * 
+	 * <p>Verify that packets are rejected when all the segments are in use.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testAddPacketSpoolFull() throws Exception {
+		XBeePacketsSpool spool = new XBeePacketsSpool(folder.getRoot(), SEGMENT_SIZE, 2);
+		
+		int added = 0;
+		while (spool.addPacket(createPacket(added)))
+			added++;
+		
+		assertTrue(added > 0);
+		assertEquals(added, spool.getCurrentSize());
+		assertEquals(2, getSegmentFiles().length);
+		
+		// Reading the first segment frees space for a new one.
+		int read = 0;
+		while (getSegmentFiles().length == 2)
+			assertPacket(read++, spool.getFirstPacket());
+		assertTrue(spool.addPacket(createPacket(added)));
+		
+		spool.close();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsSpool#XBeePacketsSpool(File, int, int)}.
+	 * 
+	 * <p>Verify that the pending packets are recovered when a new spool is 
+	 * created over the same directory.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testRecoverPendingPackets() throws Exception {
+		XBeePacketsSpool spool = new XBeePacketsSpool(folder.getRoot(), SEGMENT_SIZE, 4);
+		for (int i = 0; i < 20; i++)
+			spool.addPacket(createPacket(i));
+		for (int i = 0; i < 5; i++)
+			assertPacket(i, spool.getFirstPacket());
+		spool.close();
+		
+		spool = new XBeePacketsSpool(folder.getRoot(), SEGMENT_SIZE, 4);
+		
+		assertEquals(15, spool.getCurrentSize());
+		for (int i = 5; i < 20; i++)
+			assertPacket(i, spool.getFirstPacket());
+		assertNull(spool.getFirstPacket());
+		
+		spool.close();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsSpool#XBeePacketsSpool(File, int, int)}.
+	 * 
+	 * <p>Verify that a segment with a corrupted header is replayed from its 
+	 * beginning.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testRecoverCorruptedHeader() throws Exception {
+		XBeePacketsSpool spool = new XBeePacketsSpool(folder.getRoot(), SEGMENT_SIZE, 1);
+		for (int i = 0; i < 3; i++)
+			spool.addPacket(createPacket(i));
+		spool.close();
+		
+		File[] files = getSegmentFiles();
+		assertEquals(1, files.length);
+		RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+		file.seek(16);
+		file.writeInt(0);
+		file.close();
+		
+		spool = new XBeePacketsSpool(folder.getRoot(), SEGMENT_SIZE, 1);
+		
+		assertEquals(3, spool.getCurrentSize());
+		for (int i = 0; i < 3; i++)
+			assertPacket(i, spool.getFirstPacket());
+		
+		spool.close();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#setSpool(XBeePacketsSpool)}.
+	 * 
+	 * <p>Verify that the packets received while the queue is full are 
+	 * spooled and returned in arrival order as the queue is drained.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testQueueSpillAndReplay() throws Exception {
+		XBeePacketsSpool spool = new XBeePacketsSpool(folder.getRoot(), SEGMENT_SIZE, 4);
+		XBeePacketsQueue queue = new XBeePacketsQueue(5);
+		queue.setSpool(spool);
+		
+		for (int i = 0; i < 20; i++)
+			queue.addPacket(createPacket(i));
+		
+		assertEquals(5, queue.getCurrentSize());
+		assertEquals(15, spool.getCurrentSize());
+		assertEquals(0, queue.getDroppedPackets());
+		
+		ArrayList<XBeePacket> packets = new ArrayList<XBeePacket>();
+		assertPacket(0, queue.getFirstDataPacket(0));
+		assertEquals(19, queue.drainDataPackets(packets, 100, 0) + queue.drainDataPackets(packets, 100, 0) 
+				+ queue.drainDataPackets(packets, 100, 0) + queue.drainDataPackets(packets, 100, 0));
+		for (int i = 0; i < packets.size(); i++)
+			assertPacket(i + 1, packets.get(i));
+		
+		assertEquals(0, queue.getCurrentSize());
+		assertTrue(spool.isEmpty());
+		
+		spool.close();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePacketsQueue#setSpool(XBeePacketsSpool)}.
+	 * 
+	 * <p>Verify that the packets recovered by the spool are moved to the 
+	 * queue when it is attached.</p>
+	 * 
+	 * @throws Exception 
+	 */
+	@Test
+	public void testQueueSetSpoolRecoveredPackets() throws Exception {
+		XBeePacketsSpool spool = new XBeePacketsSpool(folder.getRoot(), SEGMENT_SIZE, 4);
+		for (int i = 0; i < 3; i++)
+			spool.addPacket(createPacket(i));
+		spool.close();
+		
+		spool = new XBeePacketsSpool(folder.getRoot(), SEGMENT_SIZE, 4);
+		XBeePacketsQueue queue = new XBeePacketsQueue(5);
+		queue.setSpool(spool);
+		
+		assertEquals(3, queue.getCurrentSize());
+		for (int i = 0; i < 3; i++)
+			assertPacket(i, queue.getFirstPacket(0));
+		
+		spool.close();
+	}
+	
+	/**
+	 * Creates a receive packet whose RF data contains the given index.
+	 * 
+	 * @param index The index of the packet.
+	 * 
+	 * @return The receive packet.
+	 */
+	private ReceivePacket createPacket(int index) {
+		byte[] data = new byte[100];
+		data[0] = (byte)(index >> 8);
+		data[1] = (byte)index;
+		return new ReceivePacket(ADDRESS_64, ADDRESS_16, 0, data);
+	}
+	
+	/**
+	 * Verifies that the given packet is a receive packet containing the 
+	 * given index.
+	 * 
+	 * @param index The expected index.
+	 * @param xbeePacket The packet to verify.
+	 */
+	private void assertPacket(int index, XBeePacket xbeePacket) {
+		assertTrue(xbeePacket instanceof ReceivePacket);
+		ReceivePacket packet = (ReceivePacket)xbeePacket;
+		assertEquals(ADDRESS_64, packet.get64bitSourceAddress());
+		byte[] data = packet.getRFData();
+		assertEquals(index, ((data[0] & 0xFF) << 8) | (data[1] & 0xFF));
+	}
+	
+	/**
+	 * Returns the segment files of the spool directory.
+	 * 
+	 * @return The segment files.
+	 * 
+	 * @throws IOException if the directory cannot be listed.
+	 */
+	private File[] getSegmentFiles() throws IOException {
+		File[] files = folder.getRoot().listFiles();
+		if (files == null)
+			throw new IOException("Could not list the spool directory.");
+		return files;
+	}
+}
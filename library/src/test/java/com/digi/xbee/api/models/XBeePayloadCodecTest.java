@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2014 Digi International Inc.,
+ * All rights not expressly granted are reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this file,
+ * You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * Digi International Inc. 11001 Bren Road East, Minnetonka, MN 55343
+ * =======================================================================
+ */
+package com.digi.xbee.api.models;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class XBeePayloadCodecTest {
+	
+	// Constants.
+	private static final XBee64BitAddress XBEE_64BIT_ADDRESS = new XBee64BitAddress("0013A20040000001");
+	
+	private static final byte[] READING = "{\"sensor\":\"temperature\",\"value\":21.5,\"unit\":\"C\"}".getBytes();
+	private static final byte[] DICTIONARY = "{\"sensor\":\"temperature\",\"value\":,\"unit\":\"C\"}".getBytes();
+	
+	// Variables.
+	private XBeePayloadCodec codec;
+	
+	@Before
+	public void setUp() {
+		codec = new XBeePayloadCodec();
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePayloadCodec#encode(XBee64BitAddress, byte[])}.
+	 * 
+	 * <p>Verify that repetitive data is compressed and decompressed back.</p>
+	 */
+	@Test
+	public final void testEncodeRepetitiveData() {
+		byte[] data = new byte[READING.length * 4];
+		for (int i = 0; i < 4; i++)
+			System.arraycopy(READING, 0, data, i * READING.length, READING.length);
+		
+		byte[] payload = codec.encode(XBEE_64BIT_ADDRESS, data);
+		
+		assertTrue(payload.length < data.length);
+		assertEquals(XBeePayloadCodec.MARKER, payload[0]);
+		assertEquals(XBeePayloadCodec.NO_DICTIONARY, payload[1]);
+		assertArrayEquals(data, codec.decode(payload));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePayloadCodec#encode(XBee64BitAddress, byte[])}.
+	 * 
+	 * <p>Verify that a preset dictionary compresses a single reading and 
+	 * that it is used only for the configured destination.</p>
+	 */
+	@Test
+	public final void testEncodeDestinationDictionary() {
+		codec.addDictionary(1, DICTIONARY);
+		codec.setDestinationDictionary(XBEE_64BIT_ADDRESS, 1);
+		
+		byte[] withDictionary = codec.encode(XBEE_64BIT_ADDRESS, READING);
+		byte[] withoutDictionary = codec.encode(new XBee64BitAddress("0013A20040000002"), READING);
+		
+		assertEquals(1, withDictionary[1]);
+		assertTrue(withDictionary.length < READING.length / 2);
+		assertTrue(withDictionary.length < withoutDictionary.length);
+		assertArrayEquals(READING, codec.decode(withDictionary));
+		assertArrayEquals(READING, codec.decode(withoutDictionary));
+		
+		// The receiver needs the same dictionary.
+		assertNull(new XBeePayloadCodec().decode(withDictionary));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePayloadCodec#encode(XBee64BitAddress, byte[])}.
+	 * 
+	 * <p>Verify that data is sent as is when compression does not save 
+	 * bytes.</p>
+	 */
+	@Test
+	public final void testEncodeIncompressibleData() {
+		byte[] data = new byte[64];
+		new Random(1).nextBytes(data);
+		data[0] = 0x00;
+		
+		assertSame(data, codec.encode(XBEE_64BIT_ADDRESS, data));
+		assertSame(data, codec.decode(data));
+		
+		byte[] small = new byte[]{0x01};
+		assertSame(small, codec.encode(XBEE_64BIT_ADDRESS, small));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePayloadCodec#encode(XBee64BitAddress, byte[])}.
+	 * 
+	 * <p>Verify that uncompressed data starting with the marker byte is 
+	 * escaped and decoded back.</p>
+	 */
+	@Test
+	public final void testEncodeMarkerData() {
+		byte[] data = new byte[]{XBeePayloadCodec.MARKER, 0x00};
+		
+		byte[] payload = codec.encode(XBEE_64BIT_ADDRESS, data);
+		
+		assertEquals(data.length + XBeePayloadCodec.HEADER_SIZE, payload.length);
+		assertArrayEquals(data, codec.decode(payload));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePayloadCodec#decode(byte[])}.
+	 * 
+	 * <p>Verify that corrupted payloads and payloads exceeding the maximum 
+	 * decoded size are discarded.</p>
+	 */
+	@Test
+	public final void testDecodeInvalidPayloads() {
+		byte[] data = new byte[1000];
+		byte[] payload = codec.encode(XBEE_64BIT_ADDRESS, data);
+		
+		byte[] truncated = new byte[payload.length - 2];
+		System.arraycopy(payload, 0, truncated, 0, truncated.length);
+		assertNull(codec.decode(truncated));
+		
+		codec.setMaxDecodedSize(500);
+		assertNull(codec.decode(payload));
+	}
+	
+	/**
+	 * Test method for {@link com.digi.xbee.api.models.XBeePayloadCodec#addDictionary(int, byte[])}.
+	 * 
+	 * <p>Verify that the dictionary IDs out of range are rejected.</p>
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public final void testAddDictionaryInvalidID() {
+		codec.addDictionary(XBeePayloadCodec.MAX_DICTIONARY_ID + 1, DICTIONARY);
+	}
+}